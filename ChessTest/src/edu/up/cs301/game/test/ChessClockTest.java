@@ -0,0 +1,74 @@
+package edu.up.cs301.game.test;
+
+import edu.up.cs301.chess.ChessClock;
+import edu.up.cs301.chess.ChessGameState;
+import edu.up.cs301.chess.ChessWireCodec;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class ChessClockTest extends AndroidTestCase {
+
+	/**
+	 * Tests that each move's time is taken after the delay, and the
+	 * increment is added once the move is made
+	 * @throws Throwable
+	 */
+	public void testIncrementAndDelay() throws Throwable {
+		ChessClock clock = new ChessClock(60000, 2000, 1000);
+		Assert.assertEquals(ChessClock.NONE, clock.getRunning());
+		clock.start(0, 0);
+		
+		// the delay passes before any time is taken
+		Assert.assertEquals(60000, clock.getRemaining(0, 500));
+		Assert.assertEquals(55000, clock.getRemaining(0, 6000));
+		
+		clock.press(6000);
+		Assert.assertEquals(1, clock.getRunning());
+		Assert.assertEquals(57000, clock.getRemaining(0, 20000));
+		Assert.assertEquals(60000, clock.getRemaining(1, 6500));
+		Assert.assertEquals(50000, clock.getRemaining(1, 17000));
+		
+		clock.stop(17000);
+		Assert.assertEquals(ChessClock.NONE, clock.getRunning());
+		Assert.assertEquals(50000, clock.getRemaining(1, 30000));
+		
+		clock.reset();
+		Assert.assertEquals(60000, clock.getRemaining(0, 0));
+		Assert.assertEquals(60000, clock.getRemaining(1, 0));
+	}
+	
+	/**
+	 * Tests that a player's flag falls when their time runs out
+	 * @throws Throwable
+	 */
+	public void testFlag() throws Throwable {
+		ChessClock clock = new ChessClock(1000, 0, 0);
+		clock.start(1, 5000);
+		Assert.assertFalse(clock.isFlagged(1, 5999));
+		Assert.assertTrue(clock.isFlagged(1, 6000));
+		Assert.assertFalse(clock.isFlagged(0, 6000));
+	}
+	
+	/**
+	 * Tests that the time each player has left is sent with the moves
+	 * @throws Throwable
+	 */
+	public void testWireTimes() throws Throwable {
+		ChessWireCodec sender = new ChessWireCodec();
+		ChessWireCodec receiver = new ChessWireCodec();
+		ChessGameState state = new ChessGameState(true);
+		state.setClock(300000, 300000);
+		ChessGameState received = (ChessGameState) receiver.decode(sender.encode(new ChessGameState(state)));
+		Assert.assertTrue(received.hasClock());
+		Assert.assertEquals(300000, received.getPlayer2Millis());
+		
+		// the time changes without a move
+		state.setClock(299000, 300000);
+		byte[] message = sender.encode(new ChessGameState(state));
+		Assert.assertEquals(25, message.length);
+		received = (ChessGameState) receiver.decode(message);
+		Assert.assertEquals(299000, received.getPlayer1Millis());
+		Assert.assertEquals(300000, received.getPlayer2Millis());
+	}
+}
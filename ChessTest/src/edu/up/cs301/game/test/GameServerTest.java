@@ -0,0 +1,180 @@
+package edu.up.cs301.game.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.up.cs301.chess.ChessGameServer;
+import edu.up.cs301.chess.ChessGameState;
+import edu.up.cs301.game.infoMsg.BindGameInfo;
+import edu.up.cs301.game.infoMsg.GameOverInfo;
+import edu.up.cs301.game.util.FramedObjectPasser;
+import edu.up.cs301.game.util.Frames;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class GameServerTest extends AndroidTestCase {
+
+	/**
+	 * A client that keeps what the server sends it
+	 */
+	private static class Client extends FramedObjectPasser {
+		private BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+		
+		public Client(int port, int gameId) {
+			super("127.0.0.1", port, gameId);
+		}
+		
+		@Override
+		public void onReceiveObject(Object obj) {
+			received.add(obj);
+		}
+		
+		public Object next() throws InterruptedException {
+			return received.poll(5, TimeUnit.SECONDS);
+		}
+	}
+	
+	/**
+	 * Tests that clients are put in games and the games start once they are
+	 * full, and that games that have started or were never given out can't
+	 * be joined
+	 * @throws Throwable
+	 */
+	public void testJoin() throws Throwable {
+		ChessGameServer server = new ChessGameServer(0, 2);
+		server.start();
+		try {
+			Client first = new Client(server.getPort(), 0);
+			Client second = new Client(server.getPort(), 0);
+			Assert.assertTrue(first.isReady());
+			Assert.assertTrue(second.isReady());
+			
+			// the two waiting players play each other
+			Assert.assertTrue(first.next() instanceof BindGameInfo);
+			Assert.assertTrue(second.next() instanceof BindGameInfo);
+			Assert.assertEquals(first.getGameId(), second.getGameId());
+			
+			Client other = new Client(server.getPort(), 0);
+			Assert.assertTrue(other.isReady());
+			
+			// other's join has been sent, but the server may not have
+			// handled it yet
+			long deadline = System.currentTimeMillis() + 5000;
+			while (server.getGameCount() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(2, server.getGameCount());
+			
+			// other's game is still waiting for its second player
+			Client late = new Client(server.getPort(), 0);
+			Assert.assertTrue(other.next() instanceof BindGameInfo);
+			Assert.assertTrue(late.next() instanceof BindGameInfo);
+			Assert.assertEquals(other.getGameId(), late.getGameId());
+			Assert.assertTrue(other.getGameId() != first.getGameId());
+			
+			// a game that has started can't take any more
+			Client extra = new Client(server.getPort(), first.getGameId());
+			Assert.assertTrue(extra.next() instanceof GameOverInfo);
+			
+			// and clients can't make up games
+			Client stranger = new Client(server.getPort(), 1000);
+			Assert.assertTrue(stranger.next() instanceof GameOverInfo);
+			Assert.assertEquals(2, server.getGameCount());
+			
+			first.close();
+			second.close();
+			other.close();
+			late.close();
+			extra.close();
+			stranger.close();
+		}
+		finally {
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Tests that a connection can only join one game, and that frames after
+	 * one bigger than the read buffer are still read
+	 * @throws Throwable
+	 */
+	public void testOneGamePerConnection() throws Throwable {
+		ChessGameServer server = new ChessGameServer(0, 2);
+		server.start();
+		Socket socket = new Socket("127.0.0.1", server.getPort());
+		try {
+			socket.setSoTimeout(5000);
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			Frames.write(out, 0, Frames.BYTES, new byte[100000]);
+			Frames.write(out, 0, Frames.JOIN, new byte[0]);
+			Frames.write(out, 0, Frames.JOIN, new byte[0]);
+			out.flush();
+			
+			// the first join waits for an opponent; the second is refused
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			int length = in.readInt();
+			in.readInt();
+			Assert.assertEquals(Frames.OBJECT, in.readUnsignedByte());
+			byte[] payload = new byte[length - Frames.HEADER_SIZE];
+			in.readFully(payload);
+			Assert.assertTrue(Frames.deserialize(payload) instanceof GameOverInfo);
+			Assert.assertEquals(1, server.getGameCount());
+		}
+		finally {
+			socket.close();
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Tests that game states can be read from a frame, but other classes
+	 * can't
+	 * @throws Throwable
+	 */
+	public void testUntrustedClasses() throws Throwable {
+		ChessGameState state = new ChessGameState(true);
+		Assert.assertEquals(state, Frames.deserialize(Frames.serialize(state)));
+		
+		byte[] bytes = Frames.serialize(new HashMap<String, String>());
+		try {
+			Frames.deserialize(bytes);
+			Assert.fail("read a HashMap");
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+	
+	/**
+	 * Tests that a game that has started ends when one of its players leaves
+	 * @throws Throwable
+	 */
+	public void testLeave() throws Throwable {
+		ChessGameServer server = new ChessGameServer(0, 2);
+		server.start();
+		try {
+			Client first = new Client(server.getPort(), 0);
+			Client second = new Client(server.getPort(), 0);
+			Assert.assertTrue(first.next() instanceof BindGameInfo);
+			Assert.assertTrue(second.next() instanceof BindGameInfo);
+			
+			first.close();
+			Object info = second.next();
+			while (info != null && !(info instanceof GameOverInfo)) {
+				info = second.next();
+			}
+			Assert.assertTrue(info instanceof GameOverInfo);
+			second.close();
+		}
+		finally {
+			server.stop();
+		}
+	}
+}
@@ -110,4 +110,46 @@ public class GameStateTest extends AndroidTestCase {
 		
 	}
 	
+	/**
+	 * Moves the knights out and back twice and tests that a draw can be
+	 * claimed once the starting position has occurred three times
+	 * 
+	 * @throws Throwable
+	 */
+	public void testRepetition() throws Throwable {
+		ChessGameState state = new ChessGameState(true);
+		long startHash = state.getPosition().getHash();
+		
+		byte[][] moves = { {7, 6, 5, 5}, {0, 6, 2, 5}, {5, 5, 7, 6}, {2, 5, 0, 6} };
+		for(int i = 0; i < 2; i++)
+		{
+			Assert.assertFalse(state.isCanDraw());
+			for(byte[] move: moves)
+			{
+				ChessPiece piece = state.getPieceMap()[move[0]][move[1]];
+				byte[] newPos = { move[2], move[3] };
+				state.applyMove(new ChessMoveAction(null, piece, newPos, null));
+			}
+			Assert.assertEquals(startHash, state.getPosition().getHash());
+		}
+		Assert.assertTrue(state.isCanDraw());
+	}
+	
+	/**
+	 * Tests that the pieces attacking a tile can be found in a copied state,
+	 * which has not made its piece views yet
+	 * 
+	 * @throws Throwable
+	 */
+	public void testAttackingPiecesOnCopy() throws Throwable {
+		ChessGameState state = new ChessGameState(new ChessGameState(true));
+		
+		// f6 is covered by the knight on g8 and the pawns on e7 and g7
+		ChessPiece[] attackers = state.getAttackingPieces(new byte[] { 2, 5 });
+		Assert.assertEquals(3, attackers.length);
+		for (ChessPiece attacker : attackers) {
+			Assert.assertNotNull(attacker);
+		}
+	}
+	
 }
\ No newline at end of file
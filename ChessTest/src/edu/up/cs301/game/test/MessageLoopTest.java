@@ -0,0 +1,88 @@
+package edu.up.cs301.game.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import edu.up.cs301.game.util.MessageLoop;
+import edu.up.cs301.game.util.MessageLoops;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class MessageLoopTest extends AndroidTestCase {
+
+	/**
+	 * Tests that loops sharing a pool each handle their messages in order
+	 * @throws Throwable
+	 */
+	public void testOrder() throws Throwable {
+		final int loops = 20;
+		final int messages = 500;
+		ExecutorService pool = Executors.newFixedThreadPool(3);
+		final CountDownLatch done = new CountDownLatch(loops * messages);
+		List<List<Integer>> handled = new ArrayList<List<Integer>>();
+		List<MessageLoop> all = new ArrayList<MessageLoop>();
+		for (int i = 0; i < loops; i++) {
+			handled.add(new ArrayList<Integer>());
+			all.add(MessageLoops.onExecutor(pool));
+		}
+		for (int m = 0; m < messages; m++) {
+			for (int i = 0; i < loops; i++) {
+				final List<Integer> list = handled.get(i);
+				final int message = m;
+				all.get(i).post(new Runnable() {
+					public void run() {
+						list.add(message);
+						done.countDown();
+					}
+				});
+			}
+		}
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (List<Integer> list : handled) {
+			Assert.assertEquals(messages, list.size());
+			for (int m = 0; m < messages; m++) {
+				Assert.assertEquals(m, (int)list.get(m));
+			}
+		}
+		pool.shutdown();
+	}
+	
+	/**
+	 * Tests that a loop with its own thread handles messages posted before
+	 * the thread is ready, and drops them once it has quit
+	 * @throws Throwable
+	 */
+	public void testQuit() throws Throwable {
+		final List<Integer> handled = new ArrayList<Integer>();
+		final CountDownLatch done = new CountDownLatch(1);
+		MessageLoop loop = MessageLoops.newThread("test loop");
+		for (int m = 0; m < 10; m++) {
+			final int message = m;
+			loop.post(new Runnable() {
+				public void run() {
+					handled.add(message);
+				}
+			});
+		}
+		loop.post(new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		});
+		loop.quit();
+		loop.post(new Runnable() {
+			public void run() {
+				handled.add(-1);
+			}
+		});
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		Assert.assertEquals(10, handled.size());
+		Assert.assertEquals(9, (int)handled.get(9));
+	}
+}
@@ -0,0 +1,189 @@
+package edu.up.cs301.game.test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import edu.up.cs301.chess.engine.BookBuilder;
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.OpeningBook;
+import edu.up.cs301.chess.engine.PolyglotKeys;
+import edu.up.cs301.chess.engine.Position;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class OpeningBookTest extends AndroidTestCase {
+
+	/**
+	 * Tests the keys against the examples in the Polyglot book format
+	 * description, including an en passant square that does and doesn't
+	 * count
+	 * @throws Throwable
+	 */
+	public void testPolyglotKeys() throws Throwable {
+		Position position = Position.fromFEN(Position.START_FEN);
+		Assert.assertEquals(0x463b96181691fc9cL, PolyglotKeys.compute(position));
+		
+		String[] moves = { "e2e4", "d7d5", "e4e5", "f7f5" };
+		long[] keys = { 0x823c9b50fd114196L, 0x0756b94461c50fb0L, 0x662fafb965db29d4L, 0x22a48b5a8e47ff78L };
+		for(int i = 0; i < moves.length; i++)
+		{
+			position.makeMove(findMove(position, moves[i]));
+			Assert.assertEquals(keys[i], PolyglotKeys.compute(position));
+		}
+	}
+	
+	/**
+	 * Tests that moves are found in a small book file, with castling
+	 * converted to the king's move
+	 * @throws Throwable
+	 */
+	public void testBook() throws Throwable {
+		Position start = Position.fromFEN(Position.START_FEN);
+		Position castle = Position.fromFEN("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+		long startKey = PolyglotKeys.compute(start);
+		long castleKey = PolyglotKeys.compute(castle);
+		
+		//entries are sorted by unsigned key; the start key is the smaller one
+		Assert.assertTrue(startKey + Long.MIN_VALUE < castleKey + Long.MIN_VALUE);
+		File file = File.createTempFile("book", ".bin");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		writeEntry(out, startKey, 12, 28, 300);
+		writeEntry(out, startKey, 11, 27, 100);
+		writeEntry(out, castleKey, 4, 7, 1);
+		out.close();
+		
+		try
+		{
+			OpeningBook book = new OpeningBook(file);
+			Assert.assertEquals(OpeningBook.POLYGLOT, book.getFormat());
+			Assert.assertEquals(3, book.getSize());
+			
+			int[] moves = new int[OpeningBook.MAX_BOOK_MOVES];
+			int[] weights = new int[OpeningBook.MAX_BOOK_MOVES];
+			Assert.assertEquals(2, book.getMoves(start, moves, weights));
+			Assert.assertEquals("e2e4", Move.toString(moves[0]));
+			Assert.assertEquals(300, weights[0]);
+			Assert.assertEquals("d2d4", Move.toString(moves[1]));
+			
+			Assert.assertEquals(1, book.getMoves(castle, moves, weights));
+			Assert.assertEquals("e1g1", Move.toString(moves[0]));
+			Assert.assertEquals(Move.CASTLE, Move.getFlags(moves[0]));
+			
+			Assert.assertEquals(0, book.getMoves(Position.fromFEN("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), moves, weights));
+			Assert.assertEquals(Move.NONE, book.pickMove(Position.fromFEN("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), new Random()));
+			String picked = Move.toString(book.pickMove(start, new Random()));
+			Assert.assertTrue(picked.equals("e2e4") || picked.equals("d2d4"));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Tests the book in assets: it has the main first moves and castling,
+	 * and is the book BookBuilder writes from its lines
+	 * @throws Throwable
+	 */
+	public void testBundledBook() throws Throwable {
+		File file = File.createTempFile("book", ".bin");
+		File built = File.createTempFile("built", ".bin");
+		InputStream in = getContext().getAssets().open("book.bin");
+		OutputStream out = new FileOutputStream(file);
+		byte[] buffer = new byte[1024];
+		int read;
+		while((read = in.read(buffer)) != -1)
+		{
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		out.close();
+		
+		try
+		{
+			OpeningBook book = new OpeningBook(file, OpeningBook.POLYGLOT);
+			Position position = Position.fromFEN(Position.START_FEN);
+			int[] moves = new int[OpeningBook.MAX_BOOK_MOVES];
+			int[] weights = new int[OpeningBook.MAX_BOOK_MOVES];
+			int count = book.getMoves(position, moves, weights);
+			String names = "";
+			for(int i = 0; i < count; i++)
+			{
+				names += Move.toString(moves[i]) + " ";
+			}
+			for(String name: new String[] { "e2e4", "d2d4", "c2c4", "g1f3" })
+			{
+				Assert.assertTrue(name + " not in " + names, names.contains(name));
+			}
+			Assert.assertTrue(book.pickMove(position, new Random()) != Move.NONE);
+			
+			for(String name: "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6".split(" "))
+			{
+				position.makeMove(findMove(position, name));
+			}
+			Assert.assertEquals(1, book.getMoves(position, moves, weights));
+			Assert.assertEquals("e1g1", Move.toString(moves[0]));
+			Assert.assertEquals(Move.CASTLE, Move.getFlags(moves[0]));
+			
+			//the asset has to be built again when the lines change
+			BookBuilder builder = new BookBuilder();
+			for(String line: BookBuilder.LINES)
+			{
+				builder.addLine(line);
+			}
+			builder.write(built);
+			Assert.assertTrue(Arrays.equals(readAll(built), readAll(file)));
+		}
+		finally
+		{
+			file.delete();
+			built.delete();
+		}
+	}
+	
+	/**
+	 * Reads a whole file
+	 */
+	private static byte[] readAll(File file) throws Throwable
+	{
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		int offset = 0;
+		int read;
+		while(offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1)
+		{
+			offset += read;
+		}
+		in.close();
+		return bytes;
+	}
+	
+	/**
+	 * Writes a Polyglot book entry
+	 */
+	private static void writeEntry(DataOutputStream out, long key, int from, int to, int weight) throws Throwable
+	{
+		out.writeLong(key);
+		out.writeShort((from << 6) | to);
+		out.writeShort(weight);
+		out.writeInt(0);
+	}
+	
+	/**
+	 * Finds a legal move by its UCI name
+	 */
+	private static int findMove(Position position, String name)
+	{
+		int move = MoveGenerator.parseMove(position, name);
+		Assert.assertTrue("no move " + name, move != Move.NONE);
+		return move;
+	}
+}
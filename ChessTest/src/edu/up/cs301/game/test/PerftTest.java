@@ -0,0 +1,127 @@
+package edu.up.cs301.game.test;
+
+import java.util.Map;
+
+import edu.up.cs301.chess.ChessGameState;
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.Perft;
+import edu.up.cs301.chess.engine.Position;
+import edu.up.cs301.chess.engine.Zobrist;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class PerftTest extends AndroidTestCase {
+
+	/**
+	 * Compares the move generator against the published perft counts of the
+	 * standard positions
+	 * @throws Throwable
+	 */
+	public void testPerft() throws Throwable {
+		Assert.assertEquals(8902, new Perft(Position.fromFEN(Position.START_FEN)).perft(3));
+		Assert.assertEquals(2039, new Perft(Position.fromFEN(Perft.KIWIPETE)).perft(2));
+		Assert.assertEquals(2812, new Perft(Position.fromFEN(Perft.ENDGAME)).perft(3));
+		Assert.assertEquals(264, new Perft(Position.fromFEN(Perft.PROMOTIONS)).perft(2));
+		Assert.assertEquals(1486, new Perft(Position.fromFEN(Perft.MIDGAME)).perft(2));
+	}
+	
+	/**
+	 * Tests that the divide counts add up to the perft count
+	 * @throws Throwable
+	 */
+	public void testDivide() throws Throwable {
+		Perft perft = new Perft(Position.fromFEN(Perft.KIWIPETE));
+		Map<String, Long> counts = perft.divide(2);
+		Assert.assertEquals(48, counts.size());
+		
+		long total = 0;
+		for(long count: counts.values())
+		{
+			total += count;
+		}
+		Assert.assertEquals(perft.perft(2), total);
+	}
+	
+	/**
+	 * Tests that an en passant capture that would uncover a check along the
+	 * rank is not generated
+	 * @throws Throwable
+	 */
+	public void testPinnedEnPassant() throws Throwable {
+		Position position = Position.fromFEN("8/8/8/KPp4r/8/8/8/7k w - c6 0 1");
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+		for(int i=0;i<numMoves;i++)
+		{
+			Assert.assertFalse(Move.toString(moves[i]).equals("b5c6"));
+		}
+		Assert.assertEquals(numMoves, new Perft(position).perft(1));
+	}
+	
+	/**
+	 * Makes a move, given in UCI notation, on a position
+	 */
+	private void play(Position position, String uci) {
+		int move = MoveGenerator.parseMove(position, uci);
+		Assert.assertTrue("illegal move " + uci, move != Move.NONE);
+		position.makeMove(move);
+	}
+	
+	/**
+	 * Checks the hash kept as moves are made against one computed from
+	 * scratch, at every position down to a depth
+	 */
+	private void checkHashes(Position position, int depth) {
+		Assert.assertEquals(Zobrist.compute(position), position.getHash());
+		if(depth == 0)
+		{
+			return;
+		}
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+		for(int i=0;i<numMoves;i++)
+		{
+			position.makeMove(moves[i]);
+			checkHashes(position, depth - 1);
+			position.unmakeMove();
+		}
+	}
+	
+	/**
+	 * Tests that an en passant square only changes the hash when a pawn can
+	 * take there, so a position hashes the same however it was reached
+	 * @throws Throwable
+	 */
+	public void testEnPassantHash() throws Throwable {
+		Position position = Position.fromFEN(Position.START_FEN);
+		play(position, "e2e4");
+		Assert.assertEquals(Position.fromFEN(
+				"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1").getHash(),
+				position.getHash());
+		
+		// here the pawn on d4 can take on e3
+		position = Position.fromFEN("rnbqkbnr/ppp1pppp/8/8/3p4/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+		play(position, "e2e4");
+		Assert.assertFalse(Position.fromFEN(
+				"rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1").getHash()
+				== position.getHash());
+		
+		checkHashes(Position.fromFEN(Perft.KIWIPETE), 3);
+		checkHashes(Position.fromFEN("8/8/8/KPp4r/8/8/8/7k w - c6 0 1"), 4);
+	}
+	
+	/**
+	 * Tests that the game state gives the same moves as the move generator
+	 * after being set up from a FEN string
+	 * @throws Throwable
+	 */
+	public void testSetPosition() throws Throwable {
+		ChessGameState state = new ChessGameState(true);
+		state.setPosition(Position.fromFEN(Perft.KIWIPETE));
+		Assert.assertEquals(Perft.KIWIPETE, state.toFEN());
+		Assert.assertEquals(48, MoveGenerator.getPossibleMoves(state, null, true).length);
+	}
+	
+}
@@ -0,0 +1,219 @@
+package edu.up.cs301.game.test;
+
+import edu.up.cs301.chess.engine.Evaluation;
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.MoveOrder;
+import edu.up.cs301.chess.engine.ParallelSearch;
+import edu.up.cs301.chess.engine.Perft;
+import edu.up.cs301.chess.engine.Position;
+import edu.up.cs301.chess.engine.Search;
+import edu.up.cs301.chess.engine.StaticExchange;
+import edu.up.cs301.chess.engine.TranspositionTable;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class SearchTest extends AndroidTestCase {
+
+	/**
+	 * Tests that the search finds a mate in one and scores it as a mate
+	 * @throws Throwable
+	 */
+	public void testMateInOne() throws Throwable {
+		Search search = new Search();
+		int move = search.search(Position.fromFEN("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 4, 0);
+		Assert.assertEquals("a1a8", Move.toString(move));
+		Assert.assertEquals(Search.MATE - 1, search.getBestScore());
+	}
+	
+	/**
+	 * Tests that the search takes a free queen
+	 * @throws Throwable
+	 */
+	public void testWinsMaterial() throws Throwable {
+		Search search = new Search();
+		int move = search.search(Position.fromFEN("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1"), 3, 0);
+		Assert.assertEquals("d2d5", Move.toString(move));
+	}
+	
+	/**
+	 * Tests that the search stops at its deadline and still returns a move
+	 * from a finished iteration
+	 * @throws Throwable
+	 */
+	public void testDeadline() throws Throwable {
+		Search search = new Search();
+		long start = System.currentTimeMillis();
+		int move = search.search(Position.fromFEN(Position.START_FEN), Search.MAX_PLY, 200);
+		long time = System.currentTimeMillis() - start;
+		Assert.assertTrue(move != Move.NONE);
+		Assert.assertTrue(search.isStopped());
+		Assert.assertTrue(search.getCompletedDepth() >= 1);
+		Assert.assertTrue(time < 1000);
+	}
+	
+	/**
+	 * Tests that a position with no legal moves has no best move
+	 * @throws Throwable
+	 */
+	public void testNoMoves() throws Throwable {
+		Search search = new Search();
+		int move = search.search(Position.fromFEN("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"), 4, 0);
+		Assert.assertEquals(Move.NONE, move);
+	}
+	
+	/**
+	 * Tests that a search on several threads finds the same mate and stops
+	 * all of its threads at the deadline
+	 * @throws Throwable
+	 */
+	public void testParallel() throws Throwable {
+		ParallelSearch search = new ParallelSearch(4, new TranspositionTable(1, false));
+		try
+		{
+			int move = search.search(Position.fromFEN("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 4, 0);
+			Assert.assertEquals("a1a8", Move.toString(move));
+			Assert.assertEquals(Search.MATE - 1, search.getBestScore());
+			
+			long start = System.currentTimeMillis();
+			move = search.search(Position.fromFEN(Position.START_FEN), Search.MAX_PLY, 200);
+			Assert.assertTrue(move != Move.NONE);
+			Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+			Assert.assertTrue(search.getCompletedDepth() >= 1);
+		}
+		finally
+		{
+			search.shutdown();
+		}
+	}
+	
+	/**
+	 * Tests that a stop sent before a search on several threads starts ends
+	 * it straight away, on every thread, until the search is reset
+	 * @throws Throwable
+	 */
+	public void testParallelStop() throws Throwable {
+		ParallelSearch search = new ParallelSearch(4, new TranspositionTable(1, false));
+		try
+		{
+			search.stop();
+			long start = System.currentTimeMillis();
+			int move = search.search(Position.fromFEN(Position.START_FEN), Search.MAX_PLY, 0);
+			Assert.assertTrue(move != Move.NONE);
+			Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+			
+			search.reset();
+			move = search.search(Position.fromFEN("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 4, 0);
+			Assert.assertEquals("a1a8", Move.toString(move));
+		}
+		finally
+		{
+			search.shutdown();
+		}
+	}
+	
+	/**
+	 * Tests that the hash move comes first, then captures of the most
+	 * valuable piece by the least valuable one
+	 * @throws Throwable
+	 */
+	public void testMoveOrder() throws Throwable {
+		//the queen on d5 can be taken by the pawn or the rook, and the rook can take a knight
+		Position position = Position.fromFEN("4k3/8/8/3q4/2P5/8/3R3n/4K3 w - - 0 1");
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+		int hashMove = MoveGenerator.parseMove(position, "e1d1");
+		
+		MoveOrder ordering = new MoveOrder();
+		ordering.newSearch();
+		ordering.score(position, moves, numMoves, 0, hashMove);
+		Assert.assertEquals("e1d1", Move.toString(ordering.next(moves, 0, 0, numMoves)));
+		Assert.assertEquals("c4d5", Move.toString(ordering.next(moves, 0, 1, numMoves)));
+		Assert.assertEquals("d2d5", Move.toString(ordering.next(moves, 0, 2, numMoves)));
+		Assert.assertEquals("d2h2", Move.toString(ordering.next(moves, 0, 3, numMoves)));
+		
+		//a quiet move that caused a cutoff becomes a killer and goes next
+		int killer = moves[numMoves - 1];
+		ordering.cutoff(position, killer, 0, 4, 3);
+		ordering.score(position, moves, numMoves, 0, hashMove);
+		ordering.next(moves, 0, 0, numMoves);
+		ordering.next(moves, 0, 1, numMoves);
+		ordering.next(moves, 0, 2, numMoves);
+		ordering.next(moves, 0, 3, numMoves);
+		Assert.assertEquals(killer, ordering.next(moves, 0, 4, numMoves));
+		Assert.assertEquals(0.0, ordering.getFirstMoveCutoffRate());
+	}
+	
+	/**
+	 * Tests the static exchange evaluation of undefended, defended and
+	 * x-ray defended pieces
+	 * @throws Throwable
+	 */
+	public void testStaticExchange() throws Throwable {
+		Position position = Position.fromFEN("4k3/8/8/3p4/4P3/8/8/4K3 w - - 0 1");
+		int move = findMove(position, "e4d5");
+		Assert.assertTrue(StaticExchange.isAtLeast(position, move, 100));
+		Assert.assertFalse(StaticExchange.isAtLeast(position, move, 101));
+		
+		//the queen is taken back by the pawn
+		position = Position.fromFEN("4k3/8/2p5/3p4/8/8/3Q4/4K3 w - - 0 1");
+		Assert.assertFalse(StaticExchange.isAtLeast(position, findMove(position, "d2d5"), 0));
+		
+		//the rook behind the first one wins the exchange
+		position = Position.fromFEN("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1");
+		move = findMove(position, "d2d5");
+		Assert.assertTrue(StaticExchange.isAtLeast(position, move, 100));
+		Assert.assertFalse(StaticExchange.isAtLeast(position, move, 101));
+	}
+	
+	/**
+	 * Tests that the quiescence search sees a capture being taken back
+	 * beyond the search depth
+	 * @throws Throwable
+	 */
+	public void testQuiescence() throws Throwable {
+		Search search = new Search();
+		int move = search.search(Position.fromFEN("4k3/8/2p5/3p4/8/8/3Q4/4K3 w - - 0 1"), 1, 0);
+		Assert.assertFalse("d2d5".equals(Move.toString(move)));
+		Assert.assertTrue(search.getBestScore() > 0);
+	}
+	
+	/**
+	 * Tests that the evaluation is symmetric and that the material and
+	 * piece-square totals kept by Position match the ones computed from
+	 * scratch after making and unmaking moves
+	 * @throws Throwable
+	 */
+	public void testEvaluation() throws Throwable {
+		Position position = Position.fromFEN(Position.START_FEN);
+		Assert.assertEquals(0, Evaluation.evaluate(position));
+		Assert.assertEquals(Evaluation.MAX_PHASE, position.getPhase());
+		
+		//the same position with the colors swapped scores the same for the side to move
+		Assert.assertEquals(Evaluation.evaluate(Position.fromFEN("4k3/pp3p2/8/3P4/8/8/5PPP/R3K3 w - - 0 1")),
+				Evaluation.evaluate(Position.fromFEN("r3k3/5ppp/8/8/3p4/8/PP3P2/4K3 b - - 0 1")));
+		
+		position = Position.fromFEN(Perft.KIWIPETE);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+		for(int i = 0; i < numMoves; i++)
+		{
+			position.makeMove(moves[i]);
+			Assert.assertEquals(Evaluation.computeMidgame(position), position.getMidgameScore());
+			Assert.assertEquals(Evaluation.computeEndgame(position), position.getEndgameScore());
+			position.unmakeMove();
+		}
+		Assert.assertEquals(Evaluation.computeMidgame(position), position.getMidgameScore());
+		Assert.assertEquals(Evaluation.computeEndgame(position), position.getEndgameScore());
+	}
+	
+	/**
+	 * Finds a legal move by its coordinate notation
+	 */
+	private static int findMove(Position position, String text) {
+		int move = MoveGenerator.parseMove(position, text);
+		Assert.assertTrue(text + " is not a legal move", move != Move.NONE);
+		return move;
+	}
+}
@@ -0,0 +1,119 @@
+package edu.up.cs301.game.test;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.Pgn;
+import edu.up.cs301.chess.engine.Position;
+import edu.up.cs301.chess.engine.Tournament;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class TournamentTest extends AndroidTestCase {
+
+	/**
+	 * Tests standard algebraic notation for captures, castling,
+	 * disambiguation, promotion and mate
+	 * @throws Throwable
+	 */
+	public void testSan() throws Throwable {
+		Position position = Position.fromFEN("r3k2r/1P6/8/8/3N1N2/8/8/R3K2R w KQkq - 0 1");
+		Assert.assertEquals("O-O", Pgn.toSan(position, findMove(position, "e1g1")));
+		Assert.assertEquals("O-O-O", Pgn.toSan(position, findMove(position, "e1c1")));
+		Assert.assertEquals("Nde6", Pgn.toSan(position, findMove(position, "d4e6")));
+		Assert.assertEquals("bxa8=Q+", Pgn.toSan(position, findMove(position, "b7a8q")));
+		Assert.assertEquals("b8=N", Pgn.toSan(position, findMove(position, "b7b8n")));
+		
+		position = Position.fromFEN("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+		Assert.assertEquals("Ra8#", Pgn.toSan(position, findMove(position, "a1a8")));
+	}
+	
+	/**
+	 * Tests the Elo difference and its interval
+	 * @throws Throwable
+	 */
+	public void testElo() throws Throwable {
+		double[] elo = Tournament.elo(10, 0, 10);
+		Assert.assertEquals(0, elo[0], 1e-9);
+		Assert.assertTrue(elo[1] < 0 && elo[2] > 0);
+		
+		//a 75% score is about 191 Elo
+		elo = Tournament.elo(30, 30, 0);
+		Assert.assertEquals(190.8, elo[0], 0.1);
+		Assert.assertTrue(elo[1] < elo[0] && elo[0] < elo[2]);
+	}
+	
+	/**
+	 * Tests a short game between two built in engines
+	 * @throws Throwable
+	 */
+	public void testGame() throws Throwable {
+		Tournament tournament = new Tournament(Tournament.BUILTIN, Tournament.BUILTIN,
+				new Tournament.Limit(0, 0, 1), 1, 10);
+		Tournament.GameResult game = tournament.playGame(1, Tournament.getDefaultOpenings()[0], true);
+		Assert.assertEquals("1/2-1/2", game.getResult());
+		Assert.assertEquals("move limit", game.getReason());
+		Assert.assertEquals(10, game.getPlies());
+		Assert.assertTrue(game.getPgn().contains("[FEN \"r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3\"]"));
+		Assert.assertTrue(game.getPgn().contains("3. "));
+	}
+	
+	/**
+	 * Tests that an engine that never answers "go" loses on time, and one
+	 * that exits loses too
+	 * @throws Throwable
+	 */
+	public void testEngineFailure() throws Throwable {
+		String handshake = "while read line; do\n"
+				+ "  case \"$line\" in\n"
+				+ "    uci) echo uciok;;\n"
+				+ "    isready) echo readyok;;\n";
+		File hung = writeScript(handshake + "  esac\ndone\n");
+		File crash = writeScript(handshake + "    go*) exit 1;;\n  esac\ndone\n");
+		try
+		{
+			Tournament.Limit limit = new Tournament.Limit(0, 100, 0);
+			Tournament tournament = new Tournament("sh " + hung.getPath(), Tournament.BUILTIN, limit, 1, 10);
+			long start = System.currentTimeMillis();
+			Tournament.GameResult game = tournament.playGame(1, Position.START_FEN, true);
+			Assert.assertEquals("0-1", game.getResult());
+			Assert.assertTrue(game.getReason(), game.getReason().startsWith("time forfeit"));
+			Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+			
+			tournament = new Tournament(Tournament.BUILTIN, "sh " + crash.getPath(), limit, 1, 10);
+			game = tournament.playGame(2, Position.START_FEN, true);
+			Assert.assertEquals("1-0", game.getResult());
+			Assert.assertTrue(game.getReason(), game.getReason().startsWith("engine failed"));
+		}
+		finally
+		{
+			hung.delete();
+			crash.delete();
+		}
+	}
+	
+	/**
+	 * Writes a shell script for a fake engine
+	 */
+	private static File writeScript(String text) throws Throwable
+	{
+		File file = File.createTempFile("engine", ".sh");
+		FileWriter out = new FileWriter(file);
+		out.write(text);
+		out.close();
+		return file;
+	}
+	
+	/**
+	 * Finds a legal move by its UCI name
+	 */
+	private static int findMove(Position position, String name)
+	{
+		int move = MoveGenerator.parseMove(position, name);
+		Assert.assertTrue("no move " + name, move != Move.NONE);
+		return move;
+	}
+}
@@ -0,0 +1,89 @@
+package edu.up.cs301.game.test;
+
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.Position;
+import edu.up.cs301.chess.engine.Search;
+import edu.up.cs301.chess.engine.TranspositionTable;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class TranspositionTableTest extends AndroidTestCase {
+
+	/**
+	 * Tests that stored entries are found again with the same data, both on
+	 * and off the heap
+	 * @throws Throwable
+	 */
+	public void testStoreProbe() throws Throwable {
+		for(boolean offHeap: new boolean[] { false, true })
+		{
+			TranspositionTable table = new TranspositionTable(1, offHeap);
+			Assert.assertEquals(offHeap, table.isOffHeap());
+			Assert.assertEquals(1024 * 1024 / TranspositionTable.ENTRY_BYTES, table.getSize());
+			int move = Move.create(12, 28);
+			long hash = Position.fromFEN(Position.START_FEN).getHash();
+			table.store(hash, move, -1234, 7, TranspositionTable.BOUND_LOWER);
+			
+			long data = table.probe(hash);
+			Assert.assertTrue(data != 0);
+			Assert.assertEquals(move, TranspositionTable.getMove(data));
+			Assert.assertEquals(-1234, TranspositionTable.getScore(data));
+			Assert.assertEquals(7, TranspositionTable.getDepth(data));
+			Assert.assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.getBound(data));
+			Assert.assertEquals(0, table.probe(hash + 1));
+			Assert.assertEquals(1, table.getHits());
+			Assert.assertEquals(2, table.getProbes());
+			Assert.assertEquals(1, table.getOccupied());
+			
+			table.clear();
+			Assert.assertEquals(0, table.probe(hash));
+		}
+	}
+	
+	/**
+	 * Tests that a full bucket replaces its shallowest entry
+	 * @throws Throwable
+	 */
+	public void testReplacement() throws Throwable {
+		TranspositionTable table = new TranspositionTable(1, false);
+		long buckets = table.getSize() / TranspositionTable.BUCKET_SIZE;
+		
+		//these all go in bucket 0
+		for(int i = 0; i <= TranspositionTable.BUCKET_SIZE; i++)
+		{
+			table.store(i * buckets, Move.NONE, 0, 10 - i, TranspositionTable.BOUND_EXACT);
+		}
+		Assert.assertTrue(table.probe(0) != 0);
+		Assert.assertEquals(0, table.probe((TranspositionTable.BUCKET_SIZE - 1) * buckets));
+		Assert.assertTrue(table.probe(TranspositionTable.BUCKET_SIZE * buckets) != 0);
+	}
+	
+	/**
+	 * Tests that the table is kept between searches and used by the next one
+	 * @throws Throwable
+	 */
+	public void testReuse() throws Throwable {
+		Search search = new Search();
+		Position position = Position.fromFEN(Position.START_FEN);
+		search.search(position, 4, 0);
+		long nodes = search.getNodes();
+		Assert.assertTrue(search.getTable().getOccupied() > 0);
+		
+		search.search(position, 4, 0);
+		Assert.assertTrue(search.getNodes() < nodes);
+		Assert.assertTrue(search.getTable().getHits() > 0);
+	}
+	
+	/**
+	 * Tests that mate scores are stored relative to the position
+	 * @throws Throwable
+	 */
+	public void testMateScores() throws Throwable {
+		int score = Search.MATE - 5;
+		int stored = TranspositionTable.scoreToTable(score, 3);
+		Assert.assertEquals(Search.MATE - 2, stored);
+		Assert.assertEquals(Search.MATE - 7, TranspositionTable.scoreFromTable(stored, 5));
+		Assert.assertEquals(150, TranspositionTable.scoreToTable(150, 3));
+	}
+}
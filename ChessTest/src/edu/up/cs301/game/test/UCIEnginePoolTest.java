@@ -0,0 +1,164 @@
+package edu.up.cs301.game.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.up.cs301.chess.engine.Position;
+import edu.up.cs301.chess.engine.UCIEnginePool;
+import edu.up.cs301.chess.engine.UCIInterface;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class UCIEnginePoolTest extends AndroidTestCase {
+
+	//A fake engine that answers the handshake and always plays e2e4
+	private static final String ENGINE = "while read line; do\n"
+			+ "  case \"$line\" in\n"
+			+ "    uci) echo uciok;;\n"
+			+ "    isready) echo readyok;;\n"
+			+ "    go*) echo bestmove e2e4;;\n"
+			+ "    quit) exit 0;;\n"
+			+ "  esac\n"
+			+ "done\n";
+
+	private File script;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		script = File.createTempFile("engine", ".sh");
+		FileWriter out = new FileWriter(script);
+		out.write(ENGINE);
+		out.close();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		script.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * @return the command that runs the fake engine
+	 */
+	private String command() {
+		return "sh " + script.getPath();
+	}
+
+	/**
+	 * Tests that engines are lent out until there are none left, that a
+	 * released engine can be borrowed again, and the statistics
+	 * @throws Throwable
+	 */
+	public void testBorrowRelease() throws Throwable {
+		UCIEnginePool pool = new UCIEnginePool(command(), 2);
+		try {
+			Assert.assertEquals(2, pool.getSize());
+			Assert.assertEquals(2, pool.getIdle());
+
+			UCIInterface first = pool.borrow("game 1", 1000);
+			UCIInterface second = pool.borrow("game 2", 1000);
+			Assert.assertNotNull(first);
+			Assert.assertNotNull(second);
+			Assert.assertNotSame(first, second);
+			Assert.assertTrue(first.isRunning());
+			Assert.assertEquals(0, pool.getIdle());
+
+			//none are left
+			Assert.assertNull(pool.borrow("game 3", 100));
+			Assert.assertEquals(1, pool.getTimeouts());
+
+			pool.release(first);
+			Assert.assertSame(first, pool.borrow("game 3", 1000));
+			pool.release(first);
+			pool.release(second);
+			Assert.assertEquals(3, pool.getBorrows());
+			Assert.assertEquals(2, pool.getIdle());
+
+			Assert.assertEquals("e2e4", pool.getBestMove("game 1", Position.START_FEN, 10, 1000));
+			Assert.assertEquals(4, pool.getBorrows());
+			Assert.assertEquals(2, pool.getIdle());
+			Assert.assertTrue(pool.getAverageSearchMillis() > 0);
+			Assert.assertEquals(0, pool.getRestarts());
+
+			try {
+				pool.release(new UCIInterface(command()));
+				Assert.fail("released an engine from elsewhere");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that borrowing waits while every engine is busy, and that the
+	 * callers that wait get engines in the order they asked
+	 * @throws Throwable
+	 */
+	public void testWaitInOrder() throws Throwable {
+		final UCIEnginePool pool = new UCIEnginePool(command(), 1);
+		try {
+			UCIInterface engine = pool.borrow("game 0", 1000);
+			Assert.assertNotNull(engine);
+
+			final List<String> order = new ArrayList<String>();
+			Thread[] waiters = new Thread[3];
+			for (int i = 0; i < waiters.length; i++) {
+				final String game = "game " + (i + 1);
+				waiters[i] = new Thread(new Runnable() {
+					public void run() {
+						try {
+							UCIInterface borrowed = pool.borrow(game, 10000);
+							synchronized (order) {
+								order.add(game);
+							}
+							pool.release(borrowed);
+						}
+						catch (InterruptedException e) {
+						}
+					}
+				});
+				waiters[i].start();
+
+				//let each one start waiting before the next
+				Thread.sleep(100);
+			}
+
+			//they are all still waiting
+			synchronized (order) {
+				Assert.assertTrue(order.isEmpty());
+			}
+			pool.release(engine);
+			for (Thread waiter : waiters) {
+				waiter.join(10000);
+			}
+			Assert.assertEquals("[game 1, game 2, game 3]", order.toString());
+			Assert.assertEquals(4, pool.getBorrows());
+			Assert.assertEquals(0, pool.getTimeouts());
+			Assert.assertTrue(pool.getMaxWaitMillis() >= 200);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that the shared pool has the size it was first asked for
+	 * @throws Throwable
+	 */
+	public void testShared() throws Throwable {
+		String command = command();
+		UCIEnginePool pool = UCIEnginePool.getShared(command, 3);
+		Assert.assertEquals(3, pool.getSize());
+		Assert.assertSame(pool, UCIEnginePool.getShared(command, 5));
+		Assert.assertSame(pool, UCIEnginePool.getShared(command));
+		Assert.assertEquals(command, pool.getPath());
+	}
+}
@@ -0,0 +1,47 @@
+package edu.up.cs301.game.test;
+
+import edu.up.cs301.chess.engine.UCIInfo;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class UCIInfoTest extends AndroidTestCase {
+
+	/**
+	 * Tests parsing info lines with centipawn and mate scores
+	 * @throws Throwable
+	 */
+	public void testParse() throws Throwable {
+		UCIInfo info = UCIInfo.parse("info depth 12 seldepth 18 multipv 1 score cp -34 upperbound "
+				+ "nodes 123456 nps 987654 time 125 pv e7e5 g1f3 b8c6");
+		Assert.assertNotNull(info);
+		Assert.assertEquals(12, info.getDepth());
+		Assert.assertEquals(18, info.getSelectiveDepth());
+		Assert.assertTrue(info.hasScore());
+		Assert.assertFalse(info.isMate());
+		Assert.assertEquals(-34, info.getScore());
+		Assert.assertEquals(UCIInfo.UPPER_BOUND, info.getBound());
+		Assert.assertEquals(123456, info.getNodes());
+		Assert.assertEquals(987654, info.getNodesPerSecond());
+		Assert.assertEquals(125, info.getTime());
+		Assert.assertEquals(3, info.getPv().length);
+		Assert.assertEquals("b8c6", info.getPv()[2]);
+		
+		info = UCIInfo.parse("info depth 5 score mate 3 pv h5f7");
+		Assert.assertTrue(info.isMate());
+		Assert.assertEquals(3, info.getScore());
+		Assert.assertEquals(UCIInfo.EXACT, info.getBound());
+		Assert.assertEquals(-1, info.getNodes());
+	}
+	
+	/**
+	 * Tests that lines that aren't about the search are ignored
+	 * @throws Throwable
+	 */
+	public void testIgnored() throws Throwable {
+		Assert.assertNull(UCIInfo.parse("info string NNUE evaluation enabled"));
+		Assert.assertNull(UCIInfo.parse("info currmove e2e4 currmovenumber 1"));
+		Assert.assertNull(UCIInfo.parse("bestmove e2e4 ponder e7e5"));
+		Assert.assertNull(UCIInfo.parse("info depth x"));
+	}
+}
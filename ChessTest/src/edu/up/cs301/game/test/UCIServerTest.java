@@ -0,0 +1,117 @@
+package edu.up.cs301.game.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import edu.up.cs301.chess.engine.UCIServer;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class UCIServerTest extends AndroidTestCase {
+
+	/**
+	 * Tests a short UCI session: the handshake, a position with moves and a
+	 * search to a fixed depth
+	 * @throws Throwable
+	 */
+	public void testSession() throws Throwable {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		UCIServer server = new UCIServer(new PrintStream(output));
+		String input = "uci\nisready\nposition fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1\ngo depth 3\n"
+				+ "position startpos moves e2e4 e7e5\nd\nquit\n";
+		server.run(new BufferedReader(new StringReader(input)));
+		
+		String text = output.toString();
+		Assert.assertTrue(text.contains("id name " + UCIServer.NAME));
+		Assert.assertTrue(text.contains("uciok"));
+		Assert.assertTrue(text.contains("readyok"));
+		Assert.assertTrue(text.contains("score mate 1"));
+		Assert.assertTrue(text.contains("bestmove a1a8"));
+		Assert.assertTrue(text.contains("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2"));
+	}
+	
+	/**
+	 * Tests that the search still works with its table off the heap
+	 * @throws Throwable
+	 */
+	public void testOffHeapHash() throws Throwable {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		UCIServer server = new UCIServer(new PrintStream(output));
+		String input = "uci\nsetoption name Hash value 2\nsetoption name OffHeapHash value true\n"
+				+ "position fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1\ngo depth 3\nposition startpos\nquit\n";
+		server.run(new BufferedReader(new StringReader(input)));
+		
+		String text = output.toString();
+		Assert.assertTrue(text.contains("option name OffHeapHash type check"));
+		Assert.assertFalse(text.contains("unknown option"));
+		Assert.assertTrue(text.contains("bestmove a1a8"));
+	}
+	
+	/**
+	 * Tests that a stop sent straight after an infinite search is started
+	 * still ends the search
+	 * @throws Throwable
+	 */
+	public void testStopAfterGo() throws Throwable {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final UCIServer server = new UCIServer(new PrintStream(output));
+		final String input = "position startpos\ngo infinite\nstop\nquit\n";
+		Thread session = new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.run(new BufferedReader(new StringReader(input)));
+				} catch (IOException e) {
+				}
+			}
+		});
+		session.setDaemon(true);
+		session.start();
+		session.join(10000);
+		Assert.assertFalse(session.isAlive());
+		Assert.assertTrue(output.toString().contains("bestmove "));
+	}
+	
+	/**
+	 * Tests that an infinite or pondering search that finds a mate holds
+	 * its move until stop or ponderhit
+	 * @throws Throwable
+	 */
+	public void testHoldMove() throws Throwable {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		UCIServer server = new UCIServer(new PrintStream(output));
+		server.execute("position fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+		server.execute("go infinite");
+		Thread.sleep(500);
+		Assert.assertTrue(output.toString().contains("score mate 1"));
+		Assert.assertFalse(output.toString().contains("bestmove"));
+		server.execute("stop");
+		Assert.assertTrue(output.toString().contains("bestmove a1a8"));
+		
+		output.reset();
+		server.execute("go ponder wtime 1000 btime 1000");
+		Thread.sleep(500);
+		Assert.assertFalse(output.toString().contains("bestmove"));
+		server.execute("ponderhit");
+		
+		//the next command waits for the search
+		server.execute("isready");
+		server.execute("position startpos");
+		Assert.assertTrue(output.toString().contains("bestmove a1a8"));
+		server.execute("quit");
+	}
+	
+	/**
+	 * Tests that the bench node count is the same every time
+	 * @throws Throwable
+	 */
+	public void testBench() throws Throwable {
+		UCIServer server = new UCIServer(new PrintStream(new ByteArrayOutputStream()));
+		long nodes = server.bench(3);
+		Assert.assertTrue(nodes > 0);
+		Assert.assertEquals(nodes, server.bench(3));
+	}
+}
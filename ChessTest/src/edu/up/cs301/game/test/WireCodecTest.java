@@ -0,0 +1,88 @@
+package edu.up.cs301.game.test;
+
+import edu.up.cs301.chess.ChessGameState;
+import edu.up.cs301.chess.ChessWireCodec;
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.Position;
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+
+
+public class WireCodecTest extends AndroidTestCase {
+
+	/**
+	 * Makes a move, given in UCI notation, on a game state
+	 */
+	private void play(ChessGameState state, String uci) {
+		int move = MoveGenerator.parseMove(state.getPosition(), uci);
+		Assert.assertTrue("illegal move " + uci, move != Move.NONE);
+		state.applyMove(MoveGenerator.toAction(state, move, null));
+	}
+	
+	/**
+	 * Tests that states after the first are sent as single moves
+	 * @throws Throwable
+	 */
+	public void testMoves() throws Throwable {
+		ChessWireCodec sender = new ChessWireCodec();
+		ChessWireCodec receiver = new ChessWireCodec();
+		ChessGameState state = new ChessGameState(false);
+		play(state, "e2e4");
+		
+		byte[] message = sender.encode(new ChessGameState(state));
+		ChessGameState received = (ChessGameState) receiver.decode(message);
+		Assert.assertEquals(state, received);
+		Assert.assertEquals(1, sender.getSnapshotMessages());
+		
+		String[] game = { "e7e5", "g1f3", "b8c6", "f1c4", "g8f6", "e1g1", "f6e4", "d2d4" };
+		for (String move : game) {
+			play(state, move);
+			message = sender.encode(new ChessGameState(state));
+			Assert.assertEquals(17, message.length);
+			received = (ChessGameState) receiver.decode(message);
+			Assert.assertEquals(state, received);
+			Assert.assertEquals(state.getMoveList().size(), received.getMoveList().size());
+		}
+		Assert.assertEquals(game.length, sender.getMoveMessages());
+		
+		// the game ending is sent without a move
+		state.setGameOver(true);
+		state.setPlayer1Won(true);
+		received = (ChessGameState) receiver.decode(sender.encode(new ChessGameState(state)));
+		Assert.assertTrue(received.isGameOver());
+		Assert.assertTrue(received.isPlayer1Won());
+		Assert.assertFalse(received.isPlayer2Won());
+	}
+	
+	/**
+	 * Tests that a missed message makes the receiver ask for a snapshot
+	 * @throws Throwable
+	 */
+	public void testResync() throws Throwable {
+		ChessWireCodec sender = new ChessWireCodec();
+		ChessWireCodec receiver = new ChessWireCodec();
+		ChessGameState state = new ChessGameState(true);
+		state.setPosition(Position.fromFEN("4k3/8/8/8/8/8/4P3/4K2R w K - 0 1"));
+		Assert.assertEquals(state, receiver.decode(sender.encode(new ChessGameState(state))));
+		
+		// lose a message
+		play(state, "e1g1");
+		sender.encode(new ChessGameState(state));
+		play(state, "e8d7");
+		Assert.assertNull(receiver.decode(sender.encode(new ChessGameState(state))));
+		byte[] request = receiver.resyncRequest();
+		Assert.assertNotNull(request);
+		Assert.assertNull(receiver.resyncRequest());
+		
+		Assert.assertTrue(sender.onReply(request));
+		ChessGameState received = (ChessGameState) receiver.decode(sender.encode(new ChessGameState(state)));
+		Assert.assertEquals(state, received);
+		Assert.assertEquals(2, received.getMoveList().size());
+		Assert.assertEquals(2, sender.getSnapshotMessages());
+		
+		// and it follows on from the snapshot
+		play(state, "e2e4");
+		Assert.assertEquals(state, receiver.decode(sender.encode(new ChessGameState(state))));
+	}
+}
@@ -0,0 +1,140 @@
+package edu.up.cs301.chess;
+
+/**
+ * A chess clock: the time each player has left, of which only the player
+ * to move's is running. A player is given the increment after each move
+ * they finish, and their clock only starts running once the delay has
+ * passed on each move.
+ *
+ * The clock does not keep time itself; every method is given the time now,
+ * in milliseconds from any fixed point, so a game can check it on its timer
+ * ticks and tests can make time pass.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public class ChessClock {
+
+	// No player's clock is running
+	public static final int NONE = -1;
+
+	// The time each player starts with, and what each move adds or holds
+	// back, in milliseconds
+	private final long baseMillis;
+	private final long incrementMillis;
+	private final long delayMillis;
+
+	// The time each player had left when their clock last stopped
+	private final long[] remaining = new long[2];
+
+	// The player whose clock is running, and when it started
+	private int running;
+	private long startedAt;
+
+	/**
+	 * constructor
+	 *
+	 * @param baseMillis
+	 *            the time each player has for the game
+	 * @param incrementMillis
+	 *            the time added after each move
+	 * @param delayMillis
+	 *            the time each move can take before the clock runs
+	 */
+	public ChessClock(long baseMillis, long incrementMillis, long delayMillis) {
+		this.baseMillis = baseMillis;
+		this.incrementMillis = Math.max(0, incrementMillis);
+		this.delayMillis = Math.max(0, delayMillis);
+		reset();
+	}
+
+	/**
+	 * Gives both players their whole time back and stops the clock
+	 */
+	public void reset() {
+		remaining[0] = baseMillis;
+		remaining[1] = baseMillis;
+		running = NONE;
+	}
+
+	/**
+	 * Starts a player's clock, stopping the other's without an increment
+	 *
+	 * @param player
+	 *            the index of the player to move
+	 * @param now
+	 *            the time now
+	 */
+	public void start(int player, long now) {
+		stop(now);
+		running = player;
+		startedAt = now;
+	}
+
+	/**
+	 * Ends the move of the player whose clock is running: they get the
+	 * increment, and the other player's clock starts
+	 *
+	 * @param now
+	 *            the time now
+	 */
+	public void press(long now) {
+		if (running == NONE) {
+			return;
+		}
+		int player = running;
+		stop(now);
+		remaining[player] += incrementMillis;
+		start(1 - player, now);
+	}
+
+	/**
+	 * Stops the clock
+	 *
+	 * @param now
+	 *            the time now
+	 */
+	public void stop(long now) {
+		if (running != NONE) {
+			remaining[running] = getRemaining(running, now);
+			running = NONE;
+		}
+	}
+
+	/**
+	 * @param player
+	 *            the index of a player
+	 * @param now
+	 *            the time now
+	 * @return the time the player has left, in milliseconds; 0 or less once
+	 *         their flag has fallen
+	 */
+	public long getRemaining(int player, long now) {
+		if (player != running) {
+			return remaining[player];
+		}
+		long used = Math.max(0, now - startedAt - delayMillis);
+		return remaining[player] - used;
+	}
+
+	/**
+	 * @param player
+	 *            the index of a player
+	 * @param now
+	 *            the time now
+	 * @return true if the player has run out of time
+	 */
+	public boolean isFlagged(int player, long now) {
+		return getRemaining(player, now) <= 0;
+	}
+
+	/**
+	 * @return the index of the player whose clock is running, or NONE
+	 */
+	public int getRunning() {
+		return running;
+	}
+}
@@ -6,14 +6,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Random;
 
 import android.content.res.AssetManager;
 import android.os.Handler;
 import android.util.Log;
 import edu.up.cs301.chess.actions.ChessMoveAction;
 import edu.up.cs301.chess.actions.DrawAction;
+import edu.up.cs301.chess.engine.Move;
 import edu.up.cs301.chess.engine.MoveGenerator;
-import edu.up.cs301.chess.engine.UCIInterface;
+import edu.up.cs301.chess.engine.OpeningBook;
+import edu.up.cs301.chess.engine.ParallelSearch;
+import edu.up.cs301.chess.engine.Search;
+import edu.up.cs301.chess.engine.UCIEnginePool;
 import edu.up.cs301.game.GameComputerPlayer;
 import edu.up.cs301.game.GameMainActivity;
 import edu.up.cs301.game.actionMsg.GameAction;
@@ -34,6 +39,11 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
 	public static final int RANDOM = 0;
 	public static final int TAKE_PIECES = 1; 
 	
+	//levels that use the built in search engine
+	public static final int SEARCH_EASY = 2;
+	public static final int SEARCH_MEDIUM = 4;
+	public static final int SEARCH_HARD = 8;
+	
 	public static final int CRITTER = 9; 
 	public static final int STOCKFISH = 10; 
 	/*
@@ -53,8 +63,12 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
     
     private ArrayList<String> engines;
     
-    //The interface between the chess engine executable and java
-    private UCIInterface client;
+    //The engine processes shared with the other games, which this player
+    //borrows one of for each move
+    private UCIEnginePool client;
+    
+    //how long to wait for a free engine, as a multiple of the wait time
+    private static final int ENGINE_QUEUE_FACTOR = 10;
     
     //the time to wait before sending a move
     private int waitTime;
@@ -69,6 +83,16 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
     
     private long start;
     
+    //The built in search engine, kept between moves so its transposition
+    //table carries over; it uses a thread per processor
+    private ParallelSearch search;
+    
+    //the Polyglot opening book in assets, built by BookBuilder, that the
+    //search plays from, or null
+    private static final String BOOK_FILE = "book.bin";
+    private OpeningBook book;
+    private Random random = new Random();
+    
 	/**
      * Constructor for objects of class CounterComputerPlayer1
      * 
@@ -149,33 +173,31 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
 		start = System.currentTimeMillis();
 		ChessGameState newState = new ChessGameState(gameState);
 		chosenMove = null;
-		if(smart > 1)
+		if(smart >= SEARCH_EASY && smart < CRITTER)
+		{
+			chosenMove = searchMove(newState);
+		}
+		else if(smart >= CRITTER)
 		{
 			String FEN = gameState.toFEN();
 			
 			if(FEN != null && !FEN.equals(""))
 			{
-				// initialize and connect to engine
-				if(client != null && client.isRestart())
-				{
-					//restart the interface and engine if it failed
-					receiveActivity(activity);
-				}
 				final Runnable getBestMove = new Runnable() {
 					@Override
 					public void run()
 					{
-						//client.sendCommand("uci");//the list of commands
-						if (client != null && client.startEngine())
+						//the pool's engines are kept running between moves
+						//and games, and are started again if they fail
+						if (client != null)
 						{
 							String fen = gameState.toFEN();
-							String bestMove = client.getBestMove(fen,waitTime);
+							Object gameKey = (game != null) ? game : player;
+							String bestMove = client.getBestMove(gameKey, fen, waitTime,
+									(long) waitTime * ENGINE_QUEUE_FACTOR);
 						
-							Log.d("computer player","engine's best move:"+bestMove);
+							Log.d("computer player","engine's best move:"+bestMove+" "+client);
 							chosenMove = ChessMoveAction.moveTextToAction(gameState, player, bestMove);
-							
-							// stop the engine
-							client.stopEngine();
 						}
 					}
 				};
@@ -235,6 +257,64 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
 		sendMove();
 	}
 
+	/**
+	 * Finds a move with the built in search engine. The search is limited by
+	 * depth at the easier levels and by the wait time at all of them.
+	 * 
+	 * @param state a copy of the game state to search
+	 * @return the move, or null if none was found
+	 */
+	private ChessMoveAction searchMove(ChessGameState state)
+	{
+		//book moves are instant, so only search once out of the book
+		if(book != null)
+		{
+			int bookMove = book.pickMove(state.getPosition(), random);
+			if(bookMove != Move.NONE)
+			{
+				Log.d("computer player", "book: " + Move.toString(bookMove));
+				return MoveGenerator.toAction(state, bookMove, this);
+			}
+		}
+		if(search == null)
+		{
+			search = new ParallelSearch();
+		}
+		int depth = Search.MAX_PLY;
+		if(intelligence == SEARCH_EASY)
+		{
+			depth = 2;
+		}
+		else if(intelligence == SEARCH_MEDIUM)
+		{
+			depth = 4;
+		}
+		search.setGameHistory(state.getPositionHistory());
+		int best = search.search(state.getPosition(), depth, waitTime);
+		Log.d("computer player", "search: " + Move.toString(best) + " depth " + search.getCompletedDepth()
+				+ " score " + search.getBestScore() + " nodes " + search.getNodes() + " threads " + search.getThreads()
+				+ " first move cutoffs " + Math.round(search.getFirstMoveCutoffRate() * 100) + "% " + search.getTable());
+		if(best == Move.NONE)
+		{
+			return null;
+		}
+		return MoveGenerator.toAction(state, best, this);
+	}
+
+	/**
+	 * Stops the search engine's threads when the game ends. The external
+	 * engines are shared, so they are left running for the next game.
+	 */
+	@Override
+	protected void gameIsOver(String msg) {
+		if(search != null)
+		{
+			search.shutdown();
+			search = null;
+		}
+		super.gameIsOver(msg);
+	}
+
 	/**
 	 * Returns the color of this player as a boolean.
 	 * 
@@ -351,6 +431,48 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
 	    	
 	    }
 	}
+	
+	/**
+	 * Opens the opening book in assets, if there is one. It is copied to the
+	 * cache the first time so it can be memory mapped.
+	 */
+	private void loadBook()
+	{
+		File bookFile = new File(activity.getCacheDir(), BOOK_FILE);
+		try
+		{
+			if(!bookFile.exists())
+			{
+				InputStream in = activity.getAssets().open(BOOK_FILE);
+				try
+				{
+					OutputStream out = new FileOutputStream(bookFile);
+					try
+					{
+						copyFile(in, out);
+					}
+					finally
+					{
+						out.close();
+					}
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			book = new OpeningBook(bookFile, OpeningBook.POLYGLOT);
+			Log.d("computer player", "opening book: " + book.getSize() + " entries");
+		}
+		catch(IOException e)
+		{
+			//play without a book
+			Log.d("computer player", "no opening book: " + e.getMessage());
+			bookFile.delete();
+			book = null;
+		}
+	}
+	
 	private void copyFile(InputStream in, OutputStream out) throws IOException
 	{
 	    byte[] buffer = new byte[1024];
@@ -367,8 +489,8 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
 		// remember who our activity is
 		this.activity = activity;
 		
-		//copy assets
-		if(intelligence > 1)
+		//copy assets for the external engines
+		if(intelligence >= CRITTER)
 		{
 			copyAssets();
 			String engine = "";
@@ -383,7 +505,11 @@ public class ChessComputerPlayer1 extends GameComputerPlayer implements ChessPla
 		        	engine = str;
 		        }
 			}
-			client = new UCIInterface(engine);
+			client = UCIEnginePool.getShared(engine);
+		}
+		else if(intelligence >= SEARCH_EASY)
+		{
+			loadBook();
 		}
 		
 		engineHandler = new Handler();
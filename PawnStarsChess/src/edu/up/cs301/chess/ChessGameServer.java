@@ -0,0 +1,139 @@
+package edu.up.cs301.chess;
+
+import java.io.IOException;
+
+import edu.up.cs301.game.GameServer;
+import edu.up.cs301.game.LocalGame;
+import edu.up.cs301.game.util.WireCodec;
+
+/**
+ * A server that hosts chess games for players on other devices. A player
+ * joins by giving the server's address followed by "#" and a game number
+ * as the IP code, or just "#" to play whoever is waiting.
+ *
+ * Run from the command line with
+ * <PRE>
+ *   java edu.up.cs301.chess.ChessGameServer [-port 2244] [-threads 4]
+ *       [-time 5] [-increment 3] [-delay 0]
+ * </PRE>
+ * where -time gives each player that many minutes for the game, and
+ * -increment and -delay are in seconds. Without -time games are untimed.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public class ChessGameServer extends GameServer {
+
+	// the port the app uses by default
+	public static final int PORT_NUMBER = 2244;
+
+	// the clock each game is played with, in milliseconds; no time means
+	// untimed games
+	private final long baseMillis;
+	private final long incrementMillis;
+	private final long delayMillis;
+
+	/**
+	 * constructor
+	 *
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @param threads
+	 *            the number of threads that handle the clients' messages
+	 */
+	public ChessGameServer(int port, int threads) {
+		this(port, threads, 0, 0, 0);
+	}
+
+	/**
+	 * constructor for a server whose games are played with a clock
+	 *
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @param threads
+	 *            the number of threads that handle the clients' messages
+	 * @param baseMillis
+	 *            the time each player has for a game, or 0 for untimed games
+	 * @param incrementMillis
+	 *            the time added after each move
+	 * @param delayMillis
+	 *            the time each move can take before the clock runs
+	 */
+	public ChessGameServer(int port, int threads, long baseMillis,
+			long incrementMillis, long delayMillis) {
+		super(port, threads);
+		this.baseMillis = baseMillis;
+		this.incrementMillis = incrementMillis;
+		this.delayMillis = delayMillis;
+	}
+
+	/**
+	 * create a game
+	 *
+	 * @return a chess game
+	 */
+	@Override
+	public LocalGame createLocalGame() {
+		if (baseMillis > 0) {
+			return new ChessLocalGame(baseMillis, incrementMillis, delayMillis);
+		}
+		return new ChessLocalGame();
+	}
+
+	/**
+	 * @return 2, the number of players in chess
+	 */
+	@Override
+	public int getNumPlayers() {
+		return ChessGameState.MAX_PLAYERS;
+	}
+
+	/**
+	 * create the codec for sending states to a player; the same one the app
+	 * uses
+	 *
+	 * @return a codec that sends most states as a single move
+	 */
+	@Override
+	public WireCodec createWireCodec() {
+		return new ChessWireCodec();
+	}
+
+	/**
+	 * Runs a server until it is killed
+	 *
+	 * @param args
+	 *            -port, -threads, -time, -increment and -delay
+	 * @throws IOException
+	 *             if the port can't be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = PORT_NUMBER;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double minutes = 0;
+		double increment = 0;
+		double delay = 0;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-port")) {
+				port = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-time")) {
+				minutes = Double.parseDouble(args[i + 1]);
+			} else if (args[i].equals("-increment")) {
+				increment = Double.parseDouble(args[i + 1]);
+			} else if (args[i].equals("-delay")) {
+				delay = Double.parseDouble(args[i + 1]);
+			}
+		}
+		ChessGameServer server = new ChessGameServer(port, threads,
+				(long) (minutes * 60000), (long) (increment * 1000),
+				(long) (delay * 1000));
+		server.start();
+		System.out.println("Chess server listening on port " + server.getPort()
+				+ " with " + threads + " threads");
+	}
+}
@@ -5,17 +5,21 @@ import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Locale;
-import java.util.Vector;
 
 import android.util.Log;
 import edu.up.cs301.chess.actions.*;
+import edu.up.cs301.chess.engine.AttackTables;
+import edu.up.cs301.chess.engine.Bitboards;
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.Position;
 import edu.up.cs301.game.actionMsg.GameAction;
 import edu.up.cs301.game.infoMsg.GameState;
 
 /**
- * This contains the state for a Chess board. The state consists of an array of
- * the pieces on the board, the points each player has, whose turn it is, if
- * player 1 is in check, and player 1's color.
+ * This contains the state for a Chess board. The state consists of the
+ * position of the pieces on the board, the points each player has, whose turn
+ * it is, if player 1 is in check, and player 1's color.
  * 
  * @author Anthony Donaldson
  * @author Derek Schumacher
@@ -38,29 +42,56 @@ public class ChessGameState extends GameState implements Serializable {
 	// Number of times the board can be in the same state until a draw happens
 	private static final int MAX_REPETITION = 3;
 
+	// Initial size of the position history
+	private static final int HISTORY_CAPACITY = 16;
+
+	// The column the kings start in
+	private static final int KING_FILE = 4;
+
 	// to satisfy Serializable interface
 	private static final long serialVersionUID = 7737493762369851826L;
 
 	/*
-	 * Represents the board. Each piece is represented by its own character. A
-	 * null character means no piece is there. Player 1 is given the "bottom" of
-	 * the array.
+	 * Represents the board as bitboards. Everything else about the board,
+	 * such as the piece map and each player's pieces, is built from this.
+	 */
+	private Position position;
+
+	/*
+	 * Each player's pieces keep the same slot for the whole game so the GUI
+	 * and the saved move tables can refer to them. Slots 0 to NUM_PIECES-1
+	 * are player 1's pieces and the rest are player 2's, in the same order
+	 * as the arrays returned by getPlayer1Pieces and getPlayer2Pieces. A
+	 * captured piece has a square of -1.
 	 */
-	private ChessPiece[][] pieceMap;
+	private byte[] slotSquares;
+	private byte[] slotTypes;
 
-	// Arrays to keep track of which pieces are alive/dead:
-	private ChessPiece[] player1Pieces;
-	private ChessPiece[] player2Pieces;
+	// Bit i is set when the piece in slot i has moved
+	private int movedSlots;
 
-	// Keep track of current score as the game progresses:
-	private int player1Points;
-	private int player2Points;
+	/*
+	 * Views of the position used by the GUI. Player 1 is given the "bottom"
+	 * of the piece map. These are built when they are first asked for after
+	 * the position changes.
+	 */
+	private transient ChessPiece[][] pieceMap;
+	private transient ChessPiece[] player1Pieces;
+	private transient ChessPiece[] player2Pieces;
 
 	/*
-	 * Keep track of whose turn it is. True means it is player 1's turn, false
-	 * means it is player 2's turn.
+	 * The squares each color's pieces can move to when its king is in check
+	 * and the pieces pinned to its king, indexed by Position.WHITE or
+	 * Position.BLACK. These are worked out once per position, the first time
+	 * a legal move is asked for.
 	 */
-	private boolean whoseTurn;
+	private transient long[] checkMasks;
+	private transient long[] pinnedPieces;
+	private transient boolean legalMasksValid;
+
+	// Keep track of current score as the game progresses:
+	private int player1Points;
+	private int player2Points;
 
 	// Keep track if a player is in check
 	private boolean player1InCheck;
@@ -75,9 +106,6 @@ public class ChessGameState extends GameState implements Serializable {
 	// Keep track of which players can castle left or castle right
 	private boolean[][] canCastle;
 
-	// Keep track of the location where an en passant can happen
-	private byte[] canEnPassant;
-
 	// Keep track of when a player can claim a draw
 	private boolean canDraw;
 
@@ -90,92 +118,78 @@ public class ChessGameState extends GameState implements Serializable {
 	// The stack containing all of the moves applied so far to this game state
 	private ArrayDeque<ChessMoveAction> moveList;
 
-	private Vector<String> pieceMapHistory;
+	// The FEN of the position the move list starts from
+	private String startFEN;
+
+	// The time each player had left after the last move, in milliseconds,
+	// if the game is played with a clock
+	private boolean hasClock;
+	private long player1Millis;
+	private long player2Millis;
 
 	/*
-	 * The number of moves since the last capture. Can be used to indicate a
-	 * stalemate.
+	 * The hash of each position since the last capture or pawn move, oldest
+	 * first. Earlier positions can never occur again, so the history is
+	 * cleared whenever the halfmove clock goes back to 0.
 	 */
-	private int lastCapture;
+	private long[] positionHistory;
+	private int positionHistorySize;
 
-	private boolean[][][] player1Moves;
-	private boolean[][][] player2Moves;
+	/*
+	 * The tiles each piece can move to, in the same order as the player
+	 * piece arrays. These are generated the first time they are asked for
+	 * after the position changes, and are not copied with the state.
+	 */
+	private transient boolean[][][] player1Moves;
+	private transient boolean[][][] player2Moves;
+
+	// The order of the non-pawn pieces on the first rank
+	private static final byte[] FIRST_RANK = new byte[] { ChessPiece.ROOK,
+			ChessPiece.KNIGHT, ChessPiece.BISHOP, ChessPiece.QUEEN,
+			ChessPiece.KING, ChessPiece.BISHOP, ChessPiece.KNIGHT,
+			ChessPiece.ROOK };
 
 	/**
 	 * constructor, initializing the ChessGameState to its initial state
 	 * 
 	 */
 	public ChessGameState(boolean player1White) {
-		pieceMap = new ChessPiece[BOARD_WIDTH][BOARD_HEIGHT];
-		player1Pieces = new ChessPiece[NUM_PIECES];
-		player2Pieces = new ChessPiece[NUM_PIECES];
+		position = Position.fromFEN(Position.START_FEN);
+		slotSquares = new byte[MAX_PLAYERS * NUM_PIECES];
+		slotTypes = new byte[MAX_PLAYERS * NUM_PIECES];
+		movedSlots = 0;
 
-		whoseTurn = player1White;
 		player1IsWhite = player1White;
 		player1InCheck = false;
 		player2InCheck = false;
 		isGameOver = false;
 		player1Points = 0;
 		player2Points = 0;
-		lastCapture = 0;
 		moveList = new ArrayDeque<ChessMoveAction>();
-		pieceMapHistory = new Vector<String>();
+		startFEN = Position.START_FEN;
+		positionHistory = new long[HISTORY_CAPACITY];
+		positionHistory[0] = position.getHash();
+		positionHistorySize = 1;
 		canCastle = new boolean[MAX_PLAYERS][2];
-		canEnPassant = new byte[] { -1, -1 };
 		canDraw = false;
 
-		// Give each player a pawn of the appropriate color:
-		for (int i = 0; i < BOARD_WIDTH; ++i) {
-			byte[] loc1 = new byte[] { BOARD_HEIGHT - 2, (byte) i };
-			byte[] loc2 = new byte[] { 1, (byte) i };
-
-			// swap locations
-			if (!player1IsWhite) {
-				byte[] temp = loc1;
-				loc1 = loc2;
-				loc2 = temp;
-			}
-			// add the pieces to the player's list
-			player1Pieces[i] = new ChessPiece(ChessPiece.PAWN, player1IsWhite);
-			player1Pieces[i].setLocation(loc1);
-			player2Pieces[i] = new ChessPiece(ChessPiece.PAWN, !player1IsWhite);
-			player2Pieces[i].setLocation(loc2);
-
-			// add to the piece map
-			pieceMap[loc1[0]][loc1[1]] = player1Pieces[i];
-			pieceMap[loc2[0]][loc2[1]] = player2Pieces[i];
-		}
-
-		// Give each player the remaining pieces of the appropriate color:
-		byte[] pieces = new byte[] { ChessPiece.ROOK, ChessPiece.KNIGHT,
-				ChessPiece.BISHOP, ChessPiece.QUEEN, ChessPiece.KING,
-				ChessPiece.BISHOP, ChessPiece.KNIGHT, ChessPiece.ROOK };
-
-		// Puts non-pawn pieces into the piecemap
-		for (int i = 0; i < BOARD_WIDTH; i++) {
-			byte[] loc1 = { BOARD_HEIGHT - 1, (byte) i };
-			byte[] loc2 = { 0, (byte) i };
-
-			// swap locations
-			if (!player1IsWhite) {
-				byte[] temp = loc1;
-				loc1 = loc2;
-				loc2 = temp;
-			}
+		// Give each player their pieces in the same slots as before:
+		// pawns first, then the first rank from left to right
+		for (int player = 0; player < MAX_PLAYERS; player++) {
+			boolean white = (player == 0) == player1IsWhite;
+			int pawnRank = white ? 1 : BOARD_HEIGHT - 2;
+			int firstRank = white ? 0 : BOARD_HEIGHT - 1;
+			int offset = player * NUM_PIECES;
 
-			player1Pieces[i + BOARD_WIDTH] = new ChessPiece(pieces[i],
-					player1IsWhite);
-			player1Pieces[i + BOARD_WIDTH].setLocation(loc1);
+			for (int i = 0; i < BOARD_WIDTH; ++i) {
+				slotSquares[offset + i] = (byte) Bitboards.square(pawnRank, i);
+				slotTypes[offset + i] = ChessPiece.PAWN;
 
-			player2Pieces[i + BOARD_WIDTH] = new ChessPiece(pieces[i],
-					!player1IsWhite);
-			player2Pieces[i + BOARD_WIDTH].setLocation(loc2);
-
-			pieceMap[loc1[0]][loc1[1]] = player1Pieces[i + BOARD_WIDTH];
-			pieceMap[loc2[0]][loc2[1]] = player2Pieces[i + BOARD_WIDTH];
+				slotSquares[offset + i + BOARD_WIDTH] = (byte) Bitboards
+						.square(firstRank, i);
+				slotTypes[offset + i + BOARD_WIDTH] = FIRST_RANK[i];
+			}
 		}
-
-		updateMoves(true);
 	}
 
 	/**
@@ -196,34 +210,15 @@ public class ChessGameState extends GameState implements Serializable {
 
 		// Sets all variables equal to the original ChessGameState
 
-		// Creates copies of the pieces and puts them in the board
-		pieceMap = new ChessPiece[BOARD_WIDTH][BOARD_HEIGHT];
-		player1Pieces = ChessPiece.copyPieceList(orig.getPlayer1Pieces());
-		player2Pieces = ChessPiece.copyPieceList(orig.getPlayer2Pieces());
-
-		// Place the pieces in the board
-		for (ChessPiece piece : player1Pieces) {
-			byte[] loc = piece.getLocation();
-
-			if (!outOfBounds(loc) && piece.isAlive()) {
-				pieceMap[loc[0]][loc[1]] = piece;
-			}
-		}
-
-		for (ChessPiece piece : player2Pieces) {
-			byte[] loc = piece.getLocation();
-			if (!outOfBounds(loc) && piece.isAlive()) {
-				pieceMap[loc[0]][loc[1]] = piece;
-			}
-		}
-		// Copy the piece map history
-		pieceMapHistory = new Vector<String>();
-		pieceMapHistory.ensureCapacity(orig.getPieceMapHistory().capacity());
+		// Copy the board; the piece views are rebuilt when they are needed
+		position = new Position(orig.position);
+		slotSquares = orig.slotSquares.clone();
+		slotTypes = orig.slotTypes.clone();
+		movedSlots = orig.movedSlots;
 
-		Iterator<String> it1 = orig.getPieceMapHistory().iterator();
-		while (it1.hasNext()) {
-			pieceMapHistory.add(it1.next());
-		}
+		// Copy the position history
+		positionHistory = orig.positionHistory.clone();
+		positionHistorySize = orig.positionHistorySize;
 
 		// Copy the move list
 		moveList = new ArrayDeque<ChessMoveAction>();
@@ -231,22 +226,14 @@ public class ChessGameState extends GameState implements Serializable {
 		while (it2.hasNext()) {
 			moveList.add(it2.next().clone());
 		}
+		startFEN = orig.startFEN;
 
 		canCastle = copyCastle(orig.getCanCastle());
 
-		canEnPassant = new byte[2];
-		System.arraycopy(orig.getCanEnPassant(), 0, canEnPassant, 0, 2);
-
-		// copy generated move 3d arrays
-		player1Moves = copyPlayerMoves(orig.getPlayer1Moves());
-		player2Moves = copyPlayerMoves(orig.getPlayer2Moves());
-
 		// Primitive values do not need to be copied
 		player1Points = orig.getPlayer1Points();
 		player2Points = orig.getPlayer2Points();
 
-		whoseTurn = orig.isWhoseTurn();
-
 		player1InCheck = orig.isPlayer1InCheck();
 		player2InCheck = orig.isPlayer2InCheck();
 
@@ -255,35 +242,13 @@ public class ChessGameState extends GameState implements Serializable {
 		canDraw = orig.isCanDraw();
 
 		player1IsWhite = orig.isPlayer1IsWhite();
-
-		player1InCheck = orig.isPlayer1InCheck();
-		player2InCheck = orig.isPlayer2InCheck();
-
-		player1Points = orig.getPlayer1Points();
-		player2Points = orig.getPlayer2Points();
 		
 		player1Won = orig.isPlayer1Won();
 		player2Won = orig.isPlayer2Won();
 
-	}
-
-	private boolean[][][] copyPlayerMoves(boolean[][][] moves) {
-		boolean[][][] newMoves = new boolean[NUM_PIECES][BOARD_HEIGHT][BOARD_WIDTH];
-		if (moves != null) {
-			for (int i = 0; i < NUM_PIECES; i++) {
-				if (moves[i] != null) {
-					for (int j = 0; j < BOARD_HEIGHT; j++) {
-						if (moves[i][j] != null) {
-							for (int k = 0; k < BOARD_HEIGHT; k++) {
-								newMoves[i][j][k] = moves[i][j][k];
-							}
-						}
-					}
-				}
-			}
-		}
-
-		return newMoves;
+		hasClock = orig.hasClock;
+		player1Millis = orig.player1Millis;
+		player2Millis = orig.player2Millis;
 	}
 
 	private boolean[][] copyCastle(boolean[][] orig) {
@@ -322,18 +287,17 @@ public class ChessGameState extends GameState implements Serializable {
 			return false;
 
 		ChessGameState comp = (ChessGameState) obj;
-		ChessPiece[][] otherPieceMap = comp.getPieceMap();
 
-		// Check if the two 2d arrays are equal
-		if (!ChessPiece.pieceMapEquals(pieceMap, otherPieceMap))
+		// Check if the boards are equal
+		if (!position.equals(comp.position))
 			return false;
 
-		// Check if the player's piece arrays are equal
-		if (!ChessPiece
-				.pieceArrayEquals(player1Pieces, comp.getPlayer1Pieces()))
+		// Check if the player's pieces are equal
+		if (!Arrays.equals(slotSquares, comp.slotSquares))
+			return false;
+		if (!Arrays.equals(slotTypes, comp.slotTypes))
 			return false;
-		if (!ChessPiece
-				.pieceArrayEquals(player2Pieces, comp.getPlayer2Pieces()))
+		if (movedSlots != comp.movedSlots)
 			return false;
 
 		// Check if all primitive instance variables are equals
@@ -342,9 +306,6 @@ public class ChessGameState extends GameState implements Serializable {
 		if (player2Points != comp.getPlayer2Points())
 			return false;
 
-		if (whoseTurn != comp.isWhoseTurn())
-			return false;
-
 		if (player1InCheck != comp.isPlayer1InCheck())
 			return false;
 
@@ -396,12 +357,10 @@ public class ChessGameState extends GameState implements Serializable {
 			// TODO make sure this is necessary
 			// TODO: fix this code: implement game winning conditions
 
+			boolean whoseTurn = isWhoseTurn();
 			if (this.isPlayer1InCheck() && whoseTurn && !fromApplyMove) {
 				fromApplyMove = true;
-				boolean[][][] arr = this.getPlayer1Moves();
-				
-				if (Arrays.deepEquals(arr,
-						new boolean[NUM_PIECES][BOARD_WIDTH][BOARD_HEIGHT])) {
+				if (hasNoMoves()) {
 					isGameOver = true;
 					this.player1Won = false;
 					this.player2Won = true;
@@ -412,9 +371,7 @@ public class ChessGameState extends GameState implements Serializable {
 
 			} else if (this.isPlayer2InCheck() && !whoseTurn && !fromApplyMove) {
 				fromApplyMove = true;
-				boolean[][][] arr = this.getPlayer2Moves();
-				if (Arrays.deepEquals(arr,
-						new boolean[NUM_PIECES][BOARD_WIDTH][BOARD_HEIGHT])) {
+				if (hasNoMoves()) {
 					isGameOver = true;
 					this.player2Won = false;
 					this.player1Won = true;
@@ -427,16 +384,12 @@ public class ChessGameState extends GameState implements Serializable {
 
 			// Check for stalemate
 			if (!this.isPlayer2InCheck()
-					&& this.whoseTurn
-					&& Arrays.deepEquals(this.getPlayer1Moves(),
-							new boolean[NUM_PIECES][BOARD_WIDTH][BOARD_HEIGHT])) {
+					&& whoseTurn && hasNoMoves()) {
 				this.player2Won = true;
 				this.player1Won = true;
 				isGameOver = true;
 			} else if (!this.isPlayer1InCheck()
-					&& !this.whoseTurn
-					&& Arrays.deepEquals(this.getPlayer2Moves(),
-							new boolean[NUM_PIECES][BOARD_WIDTH][BOARD_HEIGHT])) {
+					&& !whoseTurn && hasNoMoves()) {
 				this.player2Won = true;
 				this.player1Won = true;
 				isGameOver = true;
@@ -462,6 +415,7 @@ public class ChessGameState extends GameState implements Serializable {
 		String rtnVal = "";
 
 		String turn = "";
+		boolean whoseTurn = isWhoseTurn();
 		if (player1IsWhite == whoseTurn)// white's turn
 		{
 			turn = "White";
@@ -488,6 +442,7 @@ public class ChessGameState extends GameState implements Serializable {
 		}
 
 		rtnVal += "\nState\n";
+		ChessPiece[][] pieceMap = getPieceMap();
 		for (int i = 0; i < BOARD_HEIGHT; i++) {
 			for (int j = 0; j < BOARD_WIDTH; j++) {
 				if (pieceMap[i][j] != null) {
@@ -539,6 +494,7 @@ public class ChessGameState extends GameState implements Serializable {
 	 *         of each piece on the board
 	 */
 	public ChessPiece[][] getPieceMap() {
+		buildViews();
 		return pieceMap;
 	}
 
@@ -547,6 +503,9 @@ public class ChessGameState extends GameState implements Serializable {
 	 *         can move
 	 */
 	public boolean[][][] getPlayer1Moves() {
+		if (player1Moves == null) {
+			player1Moves = findMoves(getPlayer1Pieces(), true);
+		}
 		return player1Moves;
 	}
 
@@ -555,6 +514,9 @@ public class ChessGameState extends GameState implements Serializable {
 	 *         can move
 	 */
 	public boolean[][][] getPlayer2Moves() {
+		if (player2Moves == null) {
+			player2Moves = findMoves(getPlayer2Pieces(), true);
+		}
 		return player2Moves;
 	}
 
@@ -565,7 +527,25 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            each piece on the board
 	 */
 	public void setPieceMap(ChessPiece[][] pieceMap) {
-		this.pieceMap = pieceMap;
+		position.clear();
+		Arrays.fill(slotSquares, (byte) -1);
+		movedSlots = 0;
+
+		// Give each piece on the map a slot, preferring the slot it starts
+		// the game in
+		for (int row = 0; row < BOARD_HEIGHT; row++) {
+			for (int col = 0; col < BOARD_WIDTH; col++) {
+				ChessPiece piece = pieceMap[row][col];
+				if (piece != null && piece.isAlive()) {
+					int slot = findFreeSlot(piece.isWhite() == player1IsWhite,
+							piece.getType(), col);
+					if (slot != -1) {
+						placeSlot(slot, toSquare(row, col), piece);
+					}
+				}
+			}
+		}
+		positionChanged(true);
 	}
 
 	/**
@@ -574,6 +554,7 @@ public class ChessGameState extends GameState implements Serializable {
 	 *         NUM_PIECES(16)
 	 */
 	public ChessPiece[] getPlayer1Pieces() {
+		buildViews();
 		return player1Pieces;
 	}
 
@@ -583,7 +564,7 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            an array of player 1's ChessPieces of length NUM_PIECES(16)
 	 */
 	public void setPlayer1Pieces(ChessPiece[] player1Pieces) {
-		this.player1Pieces = player1Pieces;
+		setPlayerPieces(player1Pieces, 0);
 	}
 
 	/**
@@ -592,6 +573,7 @@ public class ChessGameState extends GameState implements Serializable {
 	 *         NUM_PIECES(16)
 	 */
 	public ChessPiece[] getPlayer2Pieces() {
+		buildViews();
 		return player2Pieces;
 	}
 
@@ -601,7 +583,42 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            an array of player 2's ChessPieces of length NUM_PIECES(16)
 	 */
 	public void setPlayer2Pieces(ChessPiece[] player2Pieces) {
-		this.player2Pieces = player2Pieces;
+		setPlayerPieces(player2Pieces, NUM_PIECES);
+	}
+
+	/**
+	 * Replaces one player's pieces on the board, keeping the order of the
+	 * array as the order of the slots
+	 * 
+	 * @param pieces
+	 *            an array of the player's ChessPieces of length NUM_PIECES(16)
+	 * @param offset
+	 *            the first slot of the player
+	 */
+	private void setPlayerPieces(ChessPiece[] pieces, int offset) {
+		// Take the player's old pieces off the board
+		for (int i = offset; i < offset + NUM_PIECES; i++) {
+			if (slotSquares[i] >= 0) {
+				position.removePiece(slotSquares[i]);
+			}
+			slotSquares[i] = -1;
+			movedSlots &= ~(1 << i);
+		}
+
+		for (int i = 0; i < NUM_PIECES && i < pieces.length; i++) {
+			ChessPiece piece = pieces[i];
+			if (piece != null && piece.isAlive()
+					&& !outOfBounds(piece.getLocation())) {
+				byte[] loc = piece.getLocation();
+				int square = toSquare(loc[0], loc[1]);
+				if (position.pieceAt(square) != Position.EMPTY) {
+					killSlot(slotAt(square));
+					position.removePiece(square);
+				}
+				placeSlot(offset + i, square, piece);
+			}
+		}
+		positionChanged(true);
 	}
 
 	/**
@@ -643,7 +660,7 @@ public class ChessGameState extends GameState implements Serializable {
 	 * @return true if it is player 1's turn and false if it is player 2's turn
 	 */
 	public boolean isWhoseTurn() {
-		return whoseTurn;
+		return position.getSideToMove() == getPlayerColor(true);
 	}
 
 	/**
@@ -653,7 +670,10 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            turn
 	 */
 	public void setWhoseTurn(boolean whoseTurn) {
-		this.whoseTurn = whoseTurn;
+		position.setSideToMove(getPlayerColor(whoseTurn));
+
+		// only the player whose turn it is can capture en passant
+		movesChanged();
 	}
 
 	/**
@@ -736,7 +756,7 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            player1 is black and player2 is white
 	 */
 	public void setPlayer1IsWhite(boolean player1IsWhite) {
-		this.player1IsWhite = player1IsWhite;
+		setPlayer1Color(player1IsWhite);
 	}
 
 	/**
@@ -746,7 +766,20 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            player1 is black and player2 is white
 	 */
 	public void setPlayer1Color(boolean color) {
-		player1IsWhite = color;
+		if (color != player1IsWhite) {
+			// The pieces on the board stay where they are, so each player
+			// takes over the other player's pieces
+			byte[] squares = slotSquares.clone();
+			byte[] types = slotTypes.clone();
+			System.arraycopy(squares, 0, slotSquares, NUM_PIECES, NUM_PIECES);
+			System.arraycopy(squares, NUM_PIECES, slotSquares, 0, NUM_PIECES);
+			System.arraycopy(types, 0, slotTypes, NUM_PIECES, NUM_PIECES);
+			System.arraycopy(types, NUM_PIECES, slotTypes, 0, NUM_PIECES);
+			movedSlots = (movedSlots >>> NUM_PIECES) | (movedSlots << NUM_PIECES);
+
+			player1IsWhite = color;
+			positionChanged(true);
+		}
 	}
 
 	/**
@@ -759,6 +792,59 @@ public class ChessGameState extends GameState implements Serializable {
 		return moveList;
 	}
 
+	/**
+	 * Returns the position the move list starts from: the normal starting
+	 * position, or the one given to setPosition.
+	 * 
+	 * @return the position in Forsyth-Edwards Notation
+	 */
+	public String getStartFEN() {
+		return (startFEN == null) ? Position.START_FEN : startFEN;
+	}
+
+	/**
+	 * Returns true if the game is played with a clock
+	 * 
+	 * @return hasClock
+	 */
+	public boolean hasClock() {
+		return hasClock;
+	}
+
+	/**
+	 * Returns the time player 1 had left after the last move
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getPlayer1Millis() {
+		return player1Millis;
+	}
+
+	/**
+	 * Returns the time player 2 had left after the last move
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getPlayer2Millis() {
+		return player2Millis;
+	}
+
+	/**
+	 * Sets the time each player has left, which also makes the game one
+	 * played with a clock. The times are not part of equals, since they
+	 * change without the board changing.
+	 * 
+	 * @param player1Millis
+	 *            the time player 1 has left, in milliseconds
+	 * @param player2Millis
+	 *            the time player 2 has left, in milliseconds
+	 */
+	public void setClock(long player1Millis, long player2Millis) {
+		this.hasClock = true;
+		this.player1Millis = player1Millis;
+		this.player2Millis = player2Millis;
+	}
+
 	/**
 	 * Returns true if a player can claim a draw
 	 * 
@@ -801,23 +887,37 @@ public class ChessGameState extends GameState implements Serializable {
 	}
 
 	/**
-	 * Gets a vector containing all of the previous piece configurations on the
-	 * board
+	 * Gets the hashes of the positions since the last capture or pawn move,
+	 * oldest first
 	 * 
 	 * @return
 	 */
-	public Vector<String> getPieceMapHistory() {
-		return pieceMapHistory;
+	public long[] getPositionHistory() {
+		return Arrays.copyOf(positionHistory, positionHistorySize);
 	}
 
 	/**
-	 * Gets an int array describing which tiles can do an En Passant and if it
-	 * is right or left.
+	 * Gets the tile a pawn would move to to do an En Passant, or {-1,-1} if
+	 * no pawn can do one this turn.
 	 * 
 	 * @return
 	 */
 	public byte[] getCanEnPassant() {
-		return canEnPassant;
+		int square = position.getEnPassant();
+		if (square == Bitboards.NO_SQUARE) {
+			return new byte[] { -1, -1 };
+		}
+		return toLocation(square);
+	}
+
+	/**
+	 * Gets the board this game state is backed by. The board should not be
+	 * changed except through applyMove.
+	 * 
+	 * @return the position of the pieces on the board
+	 */
+	public Position getPosition() {
+		return position;
 	}
 
 	/**
@@ -865,50 +965,15 @@ public class ChessGameState extends GameState implements Serializable {
 			break;
 		}
 
-		if (piece.getType() != ChessPiece.KING) {
-			// See if the player is in check, and update
-			// moves appropriately if they are:
-			if (legal) {
-				// Traverse through the valid moves, and see
-				// if they will stop the king from being in check:
-				for (int row = 0; row < BOARD_WIDTH; ++row) {
-					for (int col = 0; col < BOARD_HEIGHT; ++col) {
-						if (moves != null) {
-							if (moves[row][col] == true) {
-								byte[] pieceLocation = { (byte) row, (byte) col };
-								if (!this.willSaveKing(pieceLocation, piece)) {
-									moves[row][col] = false;
-								}
-								// TODO: check to see if the pieces move will put the king in
-								// check
-								else if (this.willKillKing(pieceLocation, piece)) {
-									moves[row][col] =false;
-								}
-							}
-						}
-					}
-				}
-
-				
-
-			}
+		if (legal && moves != null && piece.getType() != ChessPiece.KING) {
+			// Remove the moves that leave the king in check (the king's own
+			// moves are already checked)
+			moves = toMoveArray(legalTargets(toSquare(yLocation, xLocation),
+					toTargets(moves)));
 		}
 		return moves;
 	}
 
-	/**
-	 * Checks to see if the pieces' move will put the king in check
-	 * 
-	 * @return
-	 */
-	private boolean willKillKing(byte [] pieceLocation, ChessPiece piece) {
-		
-		return false;
-		
-		
-		
-	}
-	
 	/*
 	 * public boolean[][] getPossibleMoves(ChessPiece piece, boolean
 	 * fromIsInCheck) { boolean[][] moves = null;
@@ -952,119 +1017,61 @@ public class ChessGameState extends GameState implements Serializable {
 	 * }
 	 */
 
-	private boolean[][] removeInvalidKingMoves(ChessPiece piece,
-			boolean[][] moves) {
-		// Iterate through all the moves
-		for (int i = 0; i < BOARD_HEIGHT; ++i) {
-			for (int j = 0; j < BOARD_WIDTH; ++j) {
-				if (moves[i][j] == true) {
-					// Make a copy of the piece:
-					ChessPiece kingCopy = new ChessPiece(piece);
-
-					// Make a copy of the current game state
-					ChessGameState stateCopy = new ChessGameState(this);
-
-					// Fake the move:
-					this.fakeMove(kingCopy, stateCopy, (byte) i, (byte) j, true);
-
-					// Save current piece map
-					ChessPiece[][] pieceMap = this.getPieceMap();
-
-					// Update piece map with the fake data, so getPossibleMoves
-					// will work:
-					this.pieceMap = stateCopy.pieceMap;
-
-					// See if that makes the king in check
-					if (stateCopy.isInCheck()) {
-						// If it does, remove that move:
-						if (this.isWhoseTurn() && stateCopy.player1InCheck) {
-							moves[i][j] = false;
-						} else if (!this.isWhoseTurn()
-								&& stateCopy.player2InCheck) {
-							moves[i][j] = false;
-						}
-					}
-
-					// Restore the move of the current game state:
-					this.pieceMap = pieceMap;
-				}
-			}
+	/**
+	 * Removes the squares a piece can move to that would leave its king in
+	 * check. The pieces giving check and the pinned pieces are worked out
+	 * once per position, so no move has to be tried on the board.
+	 * 
+	 * @param from
+	 *            the square the piece is on
+	 * @param targets
+	 *            the squares it can move to, ignoring its king
+	 * @return the squares it can legally move to
+	 */
+	private long legalTargets(int from, long targets) {
+		int color = position.colorAt(from);
+		if (color == Position.EMPTY) {
+			return 0L;
 		}
-
-		return moves;
-	}
-
-	private void fakeMove(ChessPiece piece, ChessGameState stateCopy, byte i,
-			byte j, boolean isKing) {
-		int xLocation = piece.getLocation()[0];
-		int yLocation = piece.getLocation()[1];
-		stateCopy.pieceMap[yLocation][xLocation] = null;
-
-		if (stateCopy.pieceMap[i][j] != null) {
-			stateCopy.pieceMap[i][j].kill();
-		}
-		stateCopy.pieceMap[i][j] = piece;
-		if (this.whoseTurn && isKing) {
-			stateCopy.player1Pieces[12] = piece;
-		} else if (isKing) {
-			stateCopy.player2Pieces[12] = piece;
-		}
-		byte[] location = { i, j };
-		piece.setLocation(location);
-	}
-
-	private boolean[][] removeDangerousMoves(ChessPiece piece, boolean[][] moves) {
-		for (int i = 0; i < BOARD_WIDTH; ++i) {
-			for (int j = 0; j < BOARD_HEIGHT; ++j) {
-				if (moves[i][j]) {
-					// If the king is in check, remove all moves that would not
-					// save the king
-					if (this.isInCheck()) {
-						byte[] location = { (byte) i, (byte) j };
-						if (!this.willSaveKing(location, piece)) {
-							moves[i][j] = false;
-						}
-					}
-
-					// Also, remove moves if they would put the king in check:
-					ChessPiece pieceCopy = new ChessPiece(piece);
-					ChessGameState stateCopy = new ChessGameState(this);
-
-					// Fake the move
-					this.fakeMove(pieceCopy, stateCopy, (byte) i, (byte) j,
-							false);
-
-					stateCopy.isInCheck();
-
-					if ((whoseTurn && stateCopy.isPlayer1InCheck())
-							|| (!whoseTurn && stateCopy.isPlayer2InCheck())) {
-						moves[i][j] = false;
-					}
-				}
+		if (!legalMasksValid) {
+			if (checkMasks == null) {
+				checkMasks = new long[2];
+				pinnedPieces = new long[2];
+			}
+			for (int c = Position.WHITE; c <= Position.BLACK; c++) {
+				checkMasks[c] = MoveGenerator.checkMask(position, c);
+				pinnedPieces[c] = position.getPinned(c);
 			}
+			legalMasksValid = true;
 		}
 
-		return moves;
+		// A rook moving onto its own king is castling, which is checked in
+		// updateCanCastle
+		long castling = targets & position.getOccupancy(color);
+		return MoveGenerator.legalTargets(position, from, targets & ~castling,
+				checkMasks[color], pinnedPieces[color])
+				| castling;
 	}
 
 	/**
-	 * Gets the tiles the piece can move to
+	 * Gets the tiles the piece can move to. If the move table has not been
+	 * generated for this position, only this piece's moves are found.
 	 * 
 	 * @param piece
 	 * @return
 	 */
 	public boolean[][] getSavedPossibleMoves(ChessPiece piece) {
-		if (whoseTurn) {
-			for (int i = 0; i < NUM_PIECES; i++) {
-				if (player1Pieces[i].equals(piece)) {
-					return player1Moves[i];
-				}
-			}
-		} else {
-			for (int i = 0; i < NUM_PIECES; i++) {
-				if (player2Pieces[i].equals(piece)) {
-					return player2Moves[i];
+		boolean player1 = isWhoseTurn();
+		ChessPiece[] pieces = player1 ? getPlayer1Pieces() : getPlayer2Pieces();
+		boolean[][][] table = player1 ? player1Moves : player2Moves;
+		for (int i = 0; i < NUM_PIECES; i++) {
+			if (pieces[i].equals(piece)) {
+				if (table != null) {
+					return table[i];
 				}
+				boolean[][] moves = getPossibleMoves(pieces[i], true);
+				return (moves != null) ? moves
+						: new boolean[BOARD_HEIGHT][BOARD_WIDTH];
 			}
 		}
 		return null;
@@ -1085,227 +1092,100 @@ public class ChessGameState extends GameState implements Serializable {
 	 */
 	public boolean[][] getPawnMoves(byte xLocation, byte yLocation,
 			ChessPiece piece) {
-		boolean[][] moves = new boolean[BOARD_WIDTH][BOARD_HEIGHT];
-
-		byte i = xLocation;
-		byte dy; // the direction the pawn is going
-		if (piece.isWhite()) {
-			dy = -1;
-		} else {
-			dy = 1;
-		}
-		byte j = yLocation;
+		int color = getColor(piece);
+		int from = toSquare(yLocation, xLocation);
+		int forward = (color == Position.WHITE) ? BOARD_WIDTH : -BOARD_WIDTH;
+		long empty = ~position.getOccupied();
+		long targets = 0;
 
 		// See if the squares in front are taken:
-		j += dy;
-		if (j >= 0 && j < BOARD_HEIGHT) {
-			if (this.pieceMap[j][i] == null) {
-				moves[j][i] = true;
-
-				if (piece.getHasMoved() == false) {
-					j += dy;
-					if (!outOfBounds(i, j)) {
-						if (this.pieceMap[j][i] == null) {
-							moves[j][i] = true;
-						}
-					}
+		int to = from + forward;
+		if (to >= 0 && to < Bitboards.NUM_SQUARES
+				&& (empty & Bitboards.bit(to)) != 0) {
+			targets |= Bitboards.bit(to);
+
+			if (piece.getHasMoved() == false) {
+				to += forward;
+				if (to >= 0 && to < Bitboards.NUM_SQUARES) {
+					targets |= empty & Bitboards.bit(to);
 				}
 			}
 		}
 
-		// See if the pawn can attack from its current location:
-		j = yLocation;
-		j += dy;
-		i += 1;
-		if (!outOfBounds(i, j)) {
-			if (pieceMap[j][i] != null
-					&& pieceMap[j][i].isWhite() != piece.isWhite()) {
-				moves[j][i] = true;
-			} else if (canEnPassant != null && canEnPassant[0] == j
-					&& canEnPassant[1] == i) {
-				byte[] loc = moveList.peekLast().getNewPos();
-				if (loc[0] == yLocation && Math.abs(loc[1] - xLocation) == 1) {
-					moves[loc[0]][loc[1]] = true;
-				}
-			}
+		// See if the pawn can attack from its current location. Only the
+		// player whose turn it is can do an en passant.
+		long enemies = position.getOccupancy(1 - color);
+		if (position.getEnPassant() != Bitboards.NO_SQUARE
+				&& position.getSideToMove() == color) {
+			enemies |= Bitboards.bit(position.getEnPassant());
 		}
+		targets |= AttackTables.pawnAttacks(color, from) & enemies;
 
-		i -= 2;
-		if (!outOfBounds(i, j)) {
-			if (pieceMap[j][i] != null
-					&& pieceMap[j][i].isWhite() != piece.isWhite()) {
-				moves[j][i] = true;
-			} else if (canEnPassant != null && canEnPassant[0] == j
-					&& canEnPassant[1] == i) {
-				byte[] loc = moveList.peekLast().getNewPos();
-				if (loc[0] == yLocation && Math.abs(loc[1] - xLocation) == 1) {
-					moves[loc[0]][loc[1]] = true;
-				}
-			}
-		}
-
-		return moves;
+		return toMoveArray(targets);
 	}
 
 	/**
 	 * Checks to see if the move will save the king
 	 */
 	public boolean willSaveKing(byte[] newLocation, ChessPiece piece) {
-		// See if the move saves the king from being attacked:
-		ChessGameState stateCopy = new ChessGameState(this);
-
-		byte x = newLocation[1];
-		byte y = newLocation[0];
-		byte oldX = piece.getLocation()[1];
-		byte oldY = piece.getLocation()[0];
-		ChessPiece whichPiece = stateCopy.findPiece(piece);
-
-		// moves the piece
-		
-		/*ChessMoveAction proposedMove = new ChessMoveAction(null, piece, newLocation, whichPiece);
-		stateCopy.applyMove(proposedMove);*/
-
-		// takes a piece
-		if (stateCopy.pieceMap[y][x] != null) {
-			// This means we are taking a piece:
-			ChessPiece takenPiece = stateCopy.pieceMap[y][x];
-			// Remove it from the board:
-			takenPiece.kill();
-		}
-		
-		stateCopy.getPieceMap()[oldY][oldX] = null;
-		stateCopy.pieceMap[y][x] = whichPiece;
-		whichPiece.move(newLocation);
-
-		stateCopy.setWhoseTurn(!whoseTurn);
-		stateCopy.updateMoves(false);
-		
-		byte[] kingLoc = getKing(whoseTurn).getLocation();
-
-		if (stateCopy.isAttacked(kingLoc, stateCopy)) {
+		// See if the move leaves the king attacked:
+		byte[] oldLocation = piece.getLocation();
+		if (outOfBounds(oldLocation) || outOfBounds(newLocation)) {
 			return false;
-		} else {
-			return true;
 		}
+		long to = Bitboards.bit(toSquare(newLocation[0], newLocation[1]));
+		return legalTargets(toSquare(oldLocation[0], oldLocation[1]), to) != 0;
 	}
 
+	/**
+	 * Finds the pieces of the player who is not moving that attack a square
+	 * 
+	 * @param loc the square
+	 * @return the attacking pieces, or null if there are none
+	 */
 	public ChessPiece[] getAttackingPieces(byte[] loc) {
-		ChessPiece[] attackingPieces = new ChessPiece[NUM_PIECES];
-
-		// Find all pieces of opposite color, and see if their valid
-		// moves would kill the king:
-		ChessPiece[] pieces = new ChessPiece[NUM_PIECES];
-		if (whoseTurn) {
-			pieces = this.getPlayer2Pieces();
-		} else {
-			pieces = this.getPlayer1Pieces();
-		}
-		int index = 0;// Keeps track of array index for us
-		// Traverse each piece:
-		for (ChessPiece piece : pieces) {
-			// Get the possible moves for that piece:
-			boolean[][] moves = getPossibleMoves(piece, false);
-			if (moves != null) {
-
-				for (int i = 0; i < BOARD_HEIGHT; ++i) {
-					for (int j = 0; j < BOARD_WIDTH; ++j) {
-						// Check to see if one of the possible
-						// moves can kill the king:
-						if (moves[i][j] == true) {
-							if (i == loc[0] && j == loc[1]) {
-								// If it can, add the piece to the list:
-								attackingPieces[index++] = piece;
-							}
-						}
-					}
-				}
-			}
-		}
-		if (index == 0) {
+		if (outOfBounds(loc)) {
 			return null;
 		}
-		// Package up the array nicely (no extra spaces)
-		ChessPiece[] arr = new ChessPiece[index];
-		for (int i = 0; i < index; ++i) {
-			arr[i] = attackingPieces[i];
-		}
-
-		if (arr != null && arr[0] != null) {
-			return arr;
-		} else {
+		long attackers = position.attackersTo(toSquare(loc[0], loc[1]),
+				1 - position.getSideToMove(), position.getOccupied());
+		if (attackers == 0) {
 			return null;
 		}
+		ChessPiece[][] pieceMap = getPieceMap();
+		ChessPiece[] arr = new ChessPiece[Long.bitCount(attackers)];
+		for (int i = 0; attackers != 0; i++) {
+			byte[] attacker = toLocation(Long.numberOfTrailingZeros(attackers));
+			attackers &= attackers - 1;
+			arr[i] = pieceMap[attacker[0]][attacker[1]];
+		}
+		return arr;
 	}
 
+	/**
+	 * Checks if the player whose turn it is can attack a tile
+	 * 
+	 * @param loc
+	 * @return true if one of their pieces can take a piece on the tile
+	 */
 	public boolean isAttacked(byte[] loc) {
-		// Find all pieces of opposite color, and see if their valid
-		// moves would kill the king:
-		ChessPiece[] pieces = new ChessPiece[NUM_PIECES];
-		if (whoseTurn) {
-			pieces = this.getPlayer1Pieces();
-		} else {
-			pieces = this.getPlayer2Pieces();
-		}
-		// Traverse each piece:
-		for (ChessPiece piece : pieces) {
-			// Get the possible moves for that piece:
-			boolean[][] moves = this.getPossibleMoves(piece, false);
-			if (moves != null) {
-
-				for (int i = 0; i < BOARD_HEIGHT; ++i) {
-					for (int j = 0; j < BOARD_WIDTH; ++j) {
-						// Check to see if one of the possible
-						// moves can kill the king:
-						if (moves[i][j] == true) {
-							if (i == loc[0] && j == loc[1]) {
-								// If it can, add the piece to the list:
-								return true;
-							}
-						}
-					}
-				}
-			}
-		}
-		return false;
+		return isAttacked(loc, this);
 	}
-	
+
 	/**
-	 * 
+	 * Checks if the pieces of the player whose turn it is in this game state
+	 * can attack a tile in another game state
 	 * 
 	 * @param loc
 	 * @param stateCopy
 	 * @return
 	 */
 	public boolean isAttacked(byte[] loc, ChessGameState stateCopy) {
-		// Find all pieces of opposite color, and see if their valid
-		// moves would kill the king:
-		ChessPiece[] pieces = new ChessPiece[NUM_PIECES];
-		if (whoseTurn) {
-			pieces = this.getPlayer1Pieces();
-		} else {
-			pieces = this.getPlayer2Pieces();
-		}
-		// Traverse each piece:
-		for (ChessPiece piece : pieces) {
-			// Get the possible moves for that piece:
-			boolean[][] moves = stateCopy.getPossibleMoves(piece, false);
-			if (moves != null) {
-
-				for (int i = 0; i < BOARD_HEIGHT; ++i) {
-					for (int j = 0; j < BOARD_WIDTH; ++j) {
-						// Check to see if one of the possible
-						// moves can kill the king:
-						if (moves[i][j] == true) {
-							if (i == loc[0] && j == loc[1]) {
-								// If it can, add the piece to the list:
-								return true;
-							}
-						}
-					}
-				}
-			}
+		if (outOfBounds(loc)) {
+			return false;
 		}
-		return false;
+		return stateCopy.position.isAttacked(toSquare(loc[0], loc[1]),
+				position.getSideToMove());
 	}
 
 	/**
@@ -1322,59 +1202,9 @@ public class ChessGameState extends GameState implements Serializable {
 	 */
 	public boolean[][] getKnightMoves(byte xLocation, byte yLocation,
 			ChessPiece piece) {
-		boolean[][] moves = new boolean[BOARD_WIDTH][BOARD_HEIGHT];
-		// Pass by reference into checkKnightSpot...
-
-		// Check up two right one (or right one up two)
-		checkKnightSpot(piece, xLocation + 1, yLocation - 2, moves);
-
-		// Check down two right one (or right one two down):
-		checkKnightSpot(piece, xLocation + 1, yLocation + 2, moves);
-
-		// Check up two left one (or left one up two)
-		checkKnightSpot(piece, xLocation - 1, yLocation - 2, moves);
-
-		// Check down two left one (or left one two down):
-		checkKnightSpot(piece, xLocation - 1, yLocation + 2, moves);
-
-		// Check left two one up (or one up two left):
-		checkKnightSpot(piece, xLocation - 2, yLocation - 1, moves);
-
-		// Check left two one down (or one down two left):
-		checkKnightSpot(piece, xLocation - 2, yLocation + 1, moves);
-
-		// Check right two one down:
-		checkKnightSpot(piece, xLocation + 2, yLocation - 1, moves);
-
-		// Check right two one up:
-		checkKnightSpot(piece, xLocation + 2, yLocation + 1, moves);
-
-		return moves;
-	}
-
-	/**
-	 * Alters moves array to determine which location knight can move to
-	 * 
-	 * @param xLocation
-	 *            x-coordinate to be checked
-	 * @param yLocation
-	 *            y-coordinate to be checked
-	 * @param moves
-	 *            array to be modified
-	 */
-	public void checkKnightSpot(ChessPiece piece, int xLocation, int yLocation,
-			boolean[][] moves) {
-		if (!outOfBounds((byte) xLocation, (byte) yLocation)) {
-			// See if the spot is taken:
-			if (this.pieceMap[yLocation][xLocation] == null) {
-				moves[yLocation][xLocation] = true;
-			} else if (this.pieceMap[yLocation][xLocation].isWhite() != piece
-					.isWhite()) {
-				// If the pieces are different colors, the knight can move to
-				// that spot (and take the piece)
-				moves[yLocation][xLocation] = true;
-			}
-		}
+		int from = toSquare(yLocation, xLocation);
+		return toMoveArray(AttackTables.knightAttacks(from)
+				& ~position.getOccupancy(getColor(piece)));
 	}
 
 	/**
@@ -1390,80 +1220,14 @@ public class ChessGameState extends GameState implements Serializable {
 	 */
 	public boolean[][] getBishopMoves(int xLocation, int yLocation,
 			ChessPiece piece) {
-		boolean[][] moves = new boolean[BOARD_WIDTH][BOARD_HEIGHT];
-
-		// TODO think about how to do this more succinctly...
-		// Check northwest direction:
-		int i = xLocation - 1;
-		int j = yLocation - 1;
-
-		while (i >= 0 && j >= 0 && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			i--;
-			j--;
-		}
-		if (i >= 0 && j >= 0) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-
-		// Check northeast direction:
-		i = xLocation + 1;
-		j = yLocation - 1;
-		while (i < BOARD_WIDTH && j >= 0 && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			i++;
-			j--;
-		}
-		if (i < BOARD_WIDTH && j >= 0) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-
-		// Check southwest direction:
-		i = xLocation - 1;
-		j = yLocation + 1;
-		while (i >= 0 && j < BOARD_HEIGHT && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			i--;
-			j++;
-		}
-		if (i >= 0 && j < BOARD_HEIGHT) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-
-		// Check southeast direction:
-		i = xLocation + 1;
-		j = yLocation + 1;
-		while (i < BOARD_WIDTH && j < BOARD_HEIGHT
-				&& this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			i++;
-			j++;
-		}
-		if (i < BOARD_WIDTH && j < BOARD_HEIGHT) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-
-		return moves;
+		int from = toSquare(yLocation, xLocation);
+		return toMoveArray(AttackTables.bishopAttacks(from,
+				position.getOccupied())
+				& ~position.getOccupancy(getColor(piece)));
 	}
 
 	/**
-	 * Determines the position the queen can move to.
+	 * Determines the position the king can move to.
 	 * 
 	 * @param xLocation
 	 *            of the current piece
@@ -1471,51 +1235,21 @@ public class ChessGameState extends GameState implements Serializable {
 	 *            of the current piece
 	 * @param piece
 	 *            of interest
+	 * @param legal
+	 *            true to remove the moves that put the king in check
 	 * @return 2-D array, true means the piece can move there
 	 */
-
 	public boolean[][] getKingMoves(byte xLocation, byte yLocation,
 			ChessPiece piece, boolean legal) {
+		int from = toSquare(yLocation, xLocation);
+		long targets = AttackTables.kingAttacks(from)
+				& ~position.getOccupancy(getColor(piece));
 
-		boolean[][] moves = new boolean[BOARD_WIDTH][BOARD_HEIGHT];
-
-		for (byte i = (byte) (xLocation - 1); i <= xLocation + 1; i++) {
-			for (byte j = (byte) (yLocation - 1); j <= yLocation + 1; j++) {
-				if ((i != xLocation || j != yLocation)
-						&& outOfBounds(i, j) == false) {
-					if (pieceMap[j][i] == null
-							|| pieceMap[j][i].isWhite() != piece.isWhite()) {
-						moves[j][i] = true;
-
-						if (legal) {
-							// See if the move will put you into check:
-							ChessGameState stateCopy = new ChessGameState(this);
-							ChessPiece pieceCopy = stateCopy.findPiece(piece);
-
-							stateCopy.pieceMap[xLocation][yLocation] = null;
-							// Hack a move for the state:
-							if (stateCopy.pieceMap[j][i] != null) {
-								// This means we are taking a piece:
-								ChessPiece takenPiece = stateCopy.pieceMap[j][i];
-								// Remove it from the board:
-								takenPiece.kill();
-							}
-
-							byte[] location = { j, i };
-							pieceCopy.setLocation(location);
-							stateCopy.pieceMap[j][i] = pieceCopy;
-							stateCopy.setWhoseTurn(!whoseTurn);
-							stateCopy.updateMoves(false);
-							if (stateCopy.isAttacked(location)) {
-								moves[j][i] = false;
-
-							}
-						}
-					}
-				}
-			}
+		if (legal) {
+			// Remove the moves that will put you into check:
+			targets = legalTargets(from, targets);
 		}
-		return moves;
+		return toMoveArray(targets);
 	}
 
 	/**
@@ -1531,93 +1265,22 @@ public class ChessGameState extends GameState implements Serializable {
 	 */
 	public boolean[][] getRookMoves(byte xLocation, byte yLocation,
 			ChessPiece piece) {
-		boolean[][] moves = new boolean[BOARD_WIDTH][BOARD_HEIGHT];
-		byte i = (byte) (xLocation + 1);
-		byte j = yLocation;
-
-		// check to the EAST
-		while (!outOfBounds(i, j) && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			i++;
-		}
-		if (!outOfBounds(i, j)) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-		// check to the west
-		i = (byte) (xLocation - 1);
-		j = yLocation;
-
-		while (!outOfBounds(i, j) && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			i--;
-		}
-		if (!outOfBounds(i, j)) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-
-		// check south
-
-		i = xLocation;
-		j = (byte) (yLocation + 1);
-
-		while (!outOfBounds(i, j) && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			j++;
-		}
-		if (!outOfBounds(i, j)) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
-		// check to the NORTH
-
-		i = xLocation;
-		j = (byte) (yLocation - 1);
-
-		while (!outOfBounds(i, j) && this.pieceMap[j][i] == null) {
-			moves[j][i] = true;
-			j--;
-		}
-		if (!outOfBounds(i, j)) {
-			if (this.pieceMap[j][i] != null) {
-				if (this.pieceMap[j][i].isWhite() != piece.isWhite()) {
-					moves[j][i] = true;
-				}
-			}
-		}
+		int from = toSquare(yLocation, xLocation);
+		boolean[][] moves = toMoveArray(AttackTables.rookAttacks(from,
+				position.getOccupied())
+				& ~position.getOccupancy(getColor(piece)));
 
 		if (canCastle != null) {
-			// Castling
-			ChessPiece[] kings = findPieces(ChessPiece.KING,
-					(piece.isWhite() == player1IsWhite));
-			if (kings != null && kings.length != 0 && kings[0] != null) {
-				byte[] kingLoc = kings[0].getLocation();
-
-				if (xLocation == 0 && yLocation == BOARD_HEIGHT - 1
-						&& canCastle[1][0]) { // Player 1, Left
-					moves[kingLoc[0]][kingLoc[1]] = true;
-				} else if (xLocation == 0 && yLocation == 0 && canCastle[0][0]) { // Player
-																					// 2,
-					moves[kingLoc[0]][kingLoc[1]] = true; // Left
-				} else if (xLocation == BOARD_WIDTH - 1
-						&& yLocation == BOARD_HEIGHT - 1 && canCastle[1][1]) { // Player
-																				// 1,
-					moves[kingLoc[0]][kingLoc[1]] = true; // Right
-				} else if (xLocation == BOARD_WIDTH - 1 && yLocation == 0
-						&& canCastle[0][1]) // Player 2, Right
-				{
-					moves[kingLoc[0]][kingLoc[1]] = true;
-				}
+			// Castling: the rook can move onto its king
+			int canCastleY = (piece.isWhite() == player1IsWhite) ? 1 : 0;
+			byte firstRank = piece.isWhite() ? (byte) (BOARD_HEIGHT - 1) : 0;
+
+			if (yLocation == firstRank && xLocation == 0
+					&& canCastle[canCastleY][0]) { // Left
+				moves[firstRank][KING_FILE] = true;
+			} else if (yLocation == firstRank && xLocation == BOARD_WIDTH - 1
+					&& canCastle[canCastleY][1]) { // Right
+				moves[firstRank][KING_FILE] = true;
 			}
 		}
 
@@ -1625,7 +1288,7 @@ public class ChessGameState extends GameState implements Serializable {
 	}
 
 	/**
-	 * Determines the position the Rook can move to.
+	 * Determines the position the queen can move to.
 	 * 
 	 * @param xLocation
 	 *            of the current piece
@@ -1637,18 +1300,54 @@ public class ChessGameState extends GameState implements Serializable {
 	 */
 	public boolean[][] getQueenMoves(byte xLocation, byte yLocation,
 			ChessPiece piece) {
+		int from = toSquare(yLocation, xLocation);
+		return toMoveArray(AttackTables.queenAttacks(from,
+				position.getOccupied())
+				& ~position.getOccupancy(getColor(piece)));
+	}
 
+	/**
+	 * Converts a bitboard of squares into a 2-D array of tiles
+	 * 
+	 * @param targets
+	 *            the squares a piece can move to
+	 * @return 2-D array, true means the piece can move there
+	 */
+	private static boolean[][] toMoveArray(long targets) {
 		boolean[][] moves = new boolean[BOARD_WIDTH][BOARD_HEIGHT];
+		while (targets != 0) {
+			int square = Bitboards.lowestSquare(targets);
+			targets &= targets - 1;
+			moves[BOARD_HEIGHT - 1 - Bitboards.rank(square)][Bitboards
+					.file(square)] = true;
+		}
+		return moves;
+	}
 
-		boolean[][] rookMoves = getRookMoves(xLocation, yLocation, piece);
-		boolean[][] bishopMoves = getBishopMoves(xLocation, yLocation, piece);
-		for (int i = 0; i < BOARD_HEIGHT; i++) {
-			for (int j = 0; j < BOARD_WIDTH; j++) {
-				moves[i][j] = rookMoves[i][j] || bishopMoves[i][j];
+	/**
+	 * Converts a 2-D array of tiles into a bitboard of squares
+	 * 
+	 * @param moves
+	 *            2-D array, true means the piece can move there
+	 * @return the squares a piece can move to
+	 */
+	private static long toTargets(boolean[][] moves) {
+		long targets = 0;
+		for (int row = 0; row < BOARD_HEIGHT; row++) {
+			for (int col = 0; col < BOARD_WIDTH; col++) {
+				if (moves[row][col]) {
+					targets |= Bitboards.bit(toSquare(row, col));
+				}
 			}
 		}
+		return targets;
+	}
 
-		return moves;
+	/**
+	 * Returns the color of a piece on the board
+	 */
+	private static int getColor(ChessPiece piece) {
+		return piece.isWhite() ? Position.WHITE : Position.BLACK;
 	}
 
 	/**
@@ -1672,152 +1371,180 @@ public class ChessGameState extends GameState implements Serializable {
 			return false;
 		}
 
-		byte[] location = act.getNewPos();
-		ChessPiece takenPiece = pieceMap[location[0]][location[1]];// findPiece(act.getTakenPiece());
 		byte[] newPos = act.getNewPos();
+		if (outOfBounds(newPos)) {
+			return false;
+		}
 
 		byte newYPos = newPos[0];
 		byte newXPos = newPos[1];
 
-		byte oldYPos = piece.getLocation()[0];
-		byte oldXPos = piece.getLocation()[1];
+		int from = toSquare(piece.getLocation()[0], piece.getLocation()[1]);
+		int to = toSquare(newYPos, newXPos);
 
 		boolean[][] validMoves = getSavedPossibleMoves(piece);
 
+		// Castling is a rook moving onto its own king
+		boolean isCastle = piece.getType() == ChessPiece.ROOK
+				&& position.typeAt(to) == ChessPiece.KING
+				&& position.colorAt(to) == position.colorAt(from);
 		if (act instanceof RookMove) {
-			// Castling
 			int type = ((RookMove) act).getType();
-			if (type == RookMove.CASTLE_LEFT || type == RookMove.CASTLE_RIGHT) {
-				boolean isPlayer1 = (act.getWhichPiece().isWhite() == player1IsWhite);
-				byte firstRank;
-				ChessPiece king = getKing(isPlayer1);
-				byte newKingX = 0;
-				byte newRookX = 0;
-				byte canCastleX = 0;
-				byte canCastleY;
-
-				// Find the king, current row, and if the player is in check
-				if (isPlayer1) {// player 1, on bottom
-					firstRank = BOARD_HEIGHT - 1;
-					canCastleY = 1;
-				} else {// player 2, on top
-					firstRank = 0;
-					canCastleY = 0;
-				}
-				if (type == RookMove.CASTLE_LEFT) {
-					newRookX = 2;
-					newKingX = 1;
-					canCastleX = 0;
-				}
-				if (type == RookMove.CASTLE_RIGHT) {
-					newRookX = 5;
-					newKingX = 6;
-					canCastleX = 1;
-				}
-
-				if (canCastle[canCastleY][canCastleX]) {
-					byte[] kingLoc = king.getLocation();
-					byte[] rookLoc = piece.getLocation();
-
-					king.move(new byte[] { firstRank, newKingX });
-					piece.move(new byte[] { firstRank, newRookX });
-
-					pieceMap[firstRank][newKingX] = king;
-					pieceMap[firstRank][newRookX] = piece;
-
-					pieceMap[kingLoc[0]][kingLoc[1]] = null;
-					pieceMap[rookLoc[0]][rookLoc[1]] = null;
-
-					success = true;
-				}
-			}
-		}
-		if (act instanceof PawnMove) {
-			// promotion
-			PawnMove pawnAct = (PawnMove) act;
-			if (pawnAct.getType() == PawnMove.PROMOTION) {
-				piece.setType(pawnAct.getNewType());
-			}
-		}
-		if (validMoves != null && validMoves[newYPos][newXPos] && !success) {
+			isCastle |= type == RookMove.CASTLE_LEFT
+					|| type == RookMove.CASTLE_RIGHT;
+		}
+
+		if (isCastle) {
+			boolean isPlayer1 = (piece.isWhite() == player1IsWhite);
+			byte canCastleY = (byte) (isPlayer1 ? 1 : 0);
+			byte canCastleX = (byte) (Bitboards.file(from) == 0 ? 0 : 1);
+			int kingSquare = position.getKingSquare(position.colorAt(from));
+
+			if (isPlayer1 == isWhoseTurn()
+					&& canCastle[canCastleY][canCastleX]) {
+				// The king moves two tiles towards the rook and the rook
+				// jumps over it
+				int newKingSquare = (canCastleX == 0) ? kingSquare - 2
+						: kingSquare + 2;
+				doMove(kingSquare, newKingSquare, ChessPiece.INVALID);
+				success = true;
+			}
+		} else if (validMoves != null && validMoves[newYPos][newXPos]) {
 			// If the move is normal and valid, apply the move
-
-			// Capture
-			if (takenPiece != null) {
-				// update the scores:
-				updateScores(takenPiece);
-				byte[] loc = takenPiece.getLocation();
-				takenPiece.kill();
-				pieceMap[loc[0]][loc[1]] = null;
-				lastCapture = 0;
-
-			} else {
-				lastCapture++;
+			byte promotion = ChessPiece.INVALID;
+			if (piece.getType() == ChessPiece.PAWN
+					&& (newYPos == 0 || newYPos == BOARD_HEIGHT - 1)) {
+				// Promote to a queen unless another piece was asked for
+				promotion = ChessPiece.QUEEN;
+				if (act instanceof PawnMove) {
+					PawnMove pawnAct = (PawnMove) act;
+					byte newType = pawnAct.getNewType();
+					if (pawnAct.getType() == PawnMove.PROMOTION
+							&& newType != ChessPiece.PAWN
+							&& newType != ChessPiece.KING
+							&& newType >= 0 && newType < ChessPiece.NUM_TYPES) {
+						promotion = newType;
+					}
+				}
 			}
-
-			// Move the piece on the pieceMap and in the piece
-			piece.move(newPos);
-			pieceMap[oldYPos][oldXPos] = null;
-			pieceMap[newYPos][newXPos] = piece;
-
+			doMove(from, to, promotion);
 			success = true;
 		}
 		if (success) {
 
-			// Switch turns
-			whoseTurn = !whoseTurn;
-
 			// Update the move list
 			moveList.add(act);
 
-			updateMoves(true);
-			// Check if the players can castle and
-			// calculate where each piece can move
+			// Check if the players can castle; where each piece can move is
+			// worked out when it is needed
 			updateCanCastle();
 
-			// Check if any pawns can en passant
-			updateCanEnPassant();
-
 			// Check if any of the players are in check
 			isInCheck();
 
 			// Check if a player is allowed to declare a draw
 			updateCanDraw();
-		} else {
-			updateMoves(true);
 		}
 		return success;
 	}
 
 	/**
-	 * Generates the possible moves for each piece on the board
+	 * Moves a piece on the board and updates everything that depends on it:
+	 * captures, castling, promotion, the scores and whose turn it is. The move
+	 * must already be known to be valid.
+	 * 
+	 * @param from
+	 *            the square the piece is on
+	 * @param to
+	 *            the square the piece moves to
+	 * @param promotion
+	 *            the type a pawn becomes, or ChessPiece.INVALID
+	 */
+	private void doMove(int from, int to, byte promotion) {
+		int type = position.typeAt(from);
+		int slot = slotAt(from);
+
+		// En passant takes the pawn behind the square moved to
+		int captureSquare = to;
+		if (type == ChessPiece.PAWN && to == position.getEnPassant()
+				&& Bitboards.file(from) != Bitboards.file(to)) {
+			captureSquare = Bitboards.square(Bitboards.rank(from),
+					Bitboards.file(to));
+		}
+
+		// Capture
+		if (position.pieceAt(captureSquare) != Position.EMPTY) {
+			// update the scores:
+			updateScores(position.typeAt(captureSquare));
+			killSlot(slotAt(captureSquare));
+		}
+
+		// Castling moves the rook over the king
+		if (type == ChessPiece.KING
+				&& Math.abs(Bitboards.file(to) - Bitboards.file(from)) == 2) {
+			int rookFrom = (to > from) ? from + 3 : from - 4;
+			int rookTo = (to > from) ? from + 1 : from - 1;
+			moveSlot(slotAt(rookFrom), rookTo);
+		}
+
+		// Move the piece
+		moveSlot(slot, to);
+		if (promotion != ChessPiece.INVALID) {
+			slotTypes[slot] = promotion;
+		}
+
+		// The position takes care of the castling rights, en passant,
+		// the move counters and switching turns
+		position.makeMove(Move.create(from, to, promotion));
+
+		positionChanged(false);
+	}
+
+	/**
+	 * Generates the possible moves for each piece on the board now instead
+	 * of when they are first asked for
 	 * 
 	 * @param legal
 	 */
 	public void updateMoves(boolean legal) {
-		player1Moves = new boolean[NUM_PIECES][BOARD_HEIGHT][BOARD_WIDTH];
-		player2Moves = new boolean[NUM_PIECES][BOARD_HEIGHT][BOARD_WIDTH];
+		player1Moves = findMoves(getPlayer1Pieces(), legal);
+		player2Moves = findMoves(getPlayer2Pieces(), legal);
+	}
 
-		// Find the moves each piece can make
+	/**
+	 * Generates the possible moves for each of a player's pieces
+	 * 
+	 * @param pieces
+	 *            the player's pieces
+	 * @param legal
+	 *            true to leave out moves that put the king in check
+	 * @return the tiles each piece can move to
+	 */
+	private boolean[][][] findMoves(ChessPiece[] pieces, boolean legal) {
+		boolean[][][] moves = new boolean[NUM_PIECES][BOARD_HEIGHT][BOARD_WIDTH];
 		for (int i = 0; i < NUM_PIECES; i++) {
-			boolean[][] tempMoves = getPossibleMoves(player1Pieces[i], legal);
+			boolean[][] tempMoves = getPossibleMoves(pieces[i], legal);
 			if (tempMoves != null) {
-				player1Moves[i] = tempMoves;
-			}
-
-			tempMoves = getPossibleMoves(player2Pieces[i], legal);
-			if (tempMoves != null) {
-				player2Moves[i] = tempMoves;
+				moves[i] = tempMoves;
 			}
 		}
+		return moves;
+	}
+
+	/**
+	 * Throws away the move tables so they are generated again the next time
+	 * they are asked for
+	 */
+	private void movesChanged() {
+		player1Moves = null;
+		player2Moves = null;
 	}
 
 	/**
 	 * Updates the score when a piece is taken
 	 */
-	private void updateScores(ChessPiece takenPiece) {
-		if (takenPiece != null) {
-			int tP = takenPiece.getType();
+	private void updateScores(int tP) {
+		if (tP != ChessPiece.INVALID) {
 			int points = 0;
 
 			// add points based on type
@@ -1840,7 +1567,7 @@ public class ChessGameState extends GameState implements Serializable {
 				points += 1;
 			}
 
-			if (whoseTurn) {
+			if (isWhoseTurn()) {
 				player1Points += points;
 			} else {
 				player2Points += points;
@@ -1859,6 +1586,7 @@ public class ChessGameState extends GameState implements Serializable {
 		player2InCheck = false;
 
 		// The king that currently can move
+		boolean whoseTurn = isWhoseTurn();
 		ChessPiece king = getKing(whoseTurn);
 		if (king == null) {
 			return false;
@@ -1885,201 +1613,119 @@ public class ChessGameState extends GameState implements Serializable {
 		if (outOfBounds(kingLoc)) {
 			return false;
 		}
-		int y = kingLoc[0];
-		int x = kingLoc[1];
 
-		boolean[][][] attackSquares;
-		if (whoseTurn) {
-			attackSquares = player2Moves;
-		} else {
-			attackSquares = player1Moves;
-		}
-
-		// See what tiles each piece can attack
-		for (int i = 0; i < NUM_PIECES; i++) {
-			boolean[][] tempAttacked = attackSquares[i];
-			if (tempAttacked != null && tempAttacked[y][x] == true) {
-				// A piece can attack a king if you don't do anything
-				player1InCheck = whoseTurn;
-				player2InCheck = !whoseTurn;
-				if (!moveList.isEmpty()) {
-					moveList.getLast().setMakesCheck(true);
-				}
+		// See if any piece can attack the king if you don't do anything
+		if (position.isInCheck(position.getSideToMove())) {
+			player1InCheck = whoseTurn;
+			player2InCheck = !whoseTurn;
+			if (!moveList.isEmpty()) {
+				moveList.getLast().setMakesCheck(true);
 			}
 		}
 
 		// TODO: fix this code
 
 		if (player1InCheck) {
-			isGameOver = true;
-			for (int i = 0; i < NUM_PIECES; i++) {
-				for (int j = 0; j < BOARD_HEIGHT; j++) {
-					for (int k = 0; k < BOARD_WIDTH; k++) {
-						if (player1Moves[i][j][k]) {
-							// if a valid move can be made, the game isn't over
-							isGameOver = false;
-							return true;
-						}
-					}
-				}
-			}
-			if (isGameOver) {
-				player2Won = true;
+			// if a valid move can be made, the game isn't over
+			isGameOver = hasNoMoves();
+			if (!isGameOver) {
+				return true;
 			}
+			player2Won = true;
 		}
 		if (player2InCheck) {
-			isGameOver = true;
-			for (int i = 0; i < NUM_PIECES; i++) {
-				for (int j = 0; j < BOARD_HEIGHT; j++) {
-					for (int k = 0; k < BOARD_WIDTH; k++) {
-						if (player2Moves[i][j][k]) {
-							isGameOver = false;
-							return true;
-						}
-					}
-				}
-			}
-			if (isGameOver) {
-				player1Won = true;
+			isGameOver = hasNoMoves();
+			if (!isGameOver) {
+				return true;
 			}
+			player1Won = true;
 		}
 		return false;
 	}
 
 	/**
-	 * Calculates the position where a pawn would go to do an en passant
+	 * Returns true if the player whose turn it is has no legal moves. This
+	 * uses the move generator, so the move tables don't have to be built.
 	 */
-	public void updateCanEnPassant() {
-		canEnPassant = new byte[] { -1, -1 };
-		for (int i = 0; i < BOARD_WIDTH; i++) {
-
-			if (moveList.peekLast() instanceof PawnMove) {
-				PawnMove lastMove = (PawnMove) moveList.getLast();
-
-				// the last move had to be a double jump from the opponent
-				if (lastMove.getType() == PawnMove.FIRST_MOVE) {
-					canEnPassant[1] = lastMove.getNewPos()[1];
-					if (whoseTurn) {
-						canEnPassant[0] = (byte) (lastMove.getNewPos()[0] - 1);
-					} else {
-						canEnPassant[0] = (byte) (lastMove.getNewPos()[0] + 1);
-					}
-				}
-			}
-		}
-		// Log.d("game state","can en passant x:"+canEnPassant[1]+" y:"+canEnPassant[0]);
+	private boolean hasNoMoves() {
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		return MoveGenerator.generateLegalMoves(position, moves) == 0;
 	}
 
 	/**
-	 * Finds and saves the locations where each piece can move. It also checks
-	 * if the players can still castle for their next turn or not
+	 * Checks if the players can castle for their next turn or not. The move
+	 * tables are thrown away so the rooks get their new castling moves.
 	 */
 
 	private void updateCanCastle() {
 
-		int firstRank = 4;
-		boolean check = false;
-
 		// Assume no one can castle
 		canCastle = new boolean[2][2];
+		movesChanged();
 
 		for (int y = 0; y < canCastle.length; y++) {
-			// Find the rooks, kings, and empty spaces required for castling
-			// for each player
-
-			ChessPiece[] attackPieces;
-			boolean[][] attackedSquares = null;
 			boolean player1 = (y == 1);
-			ChessPiece king = getKing(player1);
-			if (player1) {// player 1
-				firstRank = BOARD_HEIGHT - 1;// the rook and king's initial row
-				check = player1InCheck;
-				attackPieces = player2Pieces;
-			} else {// player 2
-				firstRank = 0;// the rook and king's initial row
-				check = player2InCheck;
-				attackPieces = player1Pieces;
+			int color = getPlayerColor(player1);
+			int firstRank = (color == Position.WHITE) ? 0 : BOARD_HEIGHT - 1;
+			int kingSquare = Bitboards.square(firstRank, KING_FILE);
+
+			/*
+			 * According to the rules of chess, there are special conditions
+			 * when castling is not allowed.
+			 */
+			if (position.pieceAt(kingSquare) != Position.pieceIndex(color,
+					ChessPiece.KING)) {
+				// make sure the king is a king that hasn't moved
+				continue;
+			}
+			if (position.isInCheck(color)) {
+				// make sure the king isn't in check
+				continue;
 			}
-			ChessPiece[] rooks = new ChessPiece[] { pieceMap[firstRank][0],
-					pieceMap[firstRank][BOARD_WIDTH - 1] };
 
 			xLoop: for (int x = 0; x < canCastle[0].length; x++) {
-				/*
-				 * According to the rules of chess, there are special conditions
-				 * when castling is not allowed.
-				 */
-				if (rooks[x] == null || !rooks[x].isAlive()) {
-					// make sure the piece is alive
-					continue xLoop;
-				}
-				if (rooks[x].getHasMoved()
-						|| rooks[x].getType() != ChessPiece.ROOK) {
-					// make sure the rook array has a rook that didn't move
-					continue xLoop;
+				int right;
+				int rookFile;
+				if (x == 0) {
+					right = (color == Position.WHITE) ? Position.WHITE_QUEENSIDE
+							: Position.BLACK_QUEENSIDE;
+					rookFile = 0;
+				} else {
+					right = (color == Position.WHITE) ? Position.WHITE_KINGSIDE
+							: Position.BLACK_KINGSIDE;
+					rookFile = BOARD_WIDTH - 1;
 				}
-				if (king == null || king.getHasMoved()
-						|| king.getType() != ChessPiece.KING) {
-					// make sure the king is a king that hasn't moved
+				int rookSquare = Bitboards.square(firstRank, rookFile);
+
+				if ((position.getCastling() & right) == 0) {
+					// make sure the rook and king didn't move
 					continue xLoop;
 				}
-				if (check) {
-					// make sure the king isn't in check
+				if (position.pieceAt(rookSquare) != Position.pieceIndex(color,
+						ChessPiece.ROOK)) {
+					// make sure the rook is still there
 					continue xLoop;
 				}
 
-				// Find the bounds between the squares to check
-				int minSpace = rooks[x].getLocation()[1];
-				int maxSpace = king.getLocation()[1];
-				if (minSpace > maxSpace) {
-					int temp = minSpace;
-					minSpace = maxSpace;
-					maxSpace = temp;
-				}
-
-				// Check for taken spaces between the rook
-				// and king
+				// Check for taken spaces between the rook and king
+				int minSpace = Math.min(rookFile, KING_FILE);
+				int maxSpace = Math.max(rookFile, KING_FILE);
 				for (int i = minSpace + 1; i < maxSpace; i++) {
-					if (pieceMap[firstRank][i] != null) {
+					if (position.pieceAt(Bitboards.square(firstRank, i)) != Position.EMPTY) {
 						continue xLoop;
 					}
 				}
 
-				// Check for attacked squares last because it is expensive to do
-				if (attackedSquares == null) {
-					attackedSquares = new boolean[BOARD_HEIGHT][BOARD_WIDTH];
-					for (int i = 0; i < NUM_PIECES; i++) {
-						boolean[][] tempAttackedSquares = getSavedPossibleMoves(attackPieces[i]);
-						if (tempAttackedSquares != null) {
-							for (int j = 0; j < BOARD_WIDTH; j++) {
-								attackedSquares[firstRank][j] |= tempAttackedSquares[firstRank][j];
-							}
-						}
-					}
-				}
-
-				// Check for attacked spaces between the rook
-				// and king
-				for (int i = minSpace + 1; i < maxSpace; i++) {
-					if (attackedSquares[firstRank][i] == true) {
+				// Check for attacked spaces the king moves across
+				int dx = (rookFile < KING_FILE) ? -1 : 1;
+				for (int i = 1; i <= 2; i++) {
+					if (position.isAttacked(kingSquare + dx * i, 1 - color)) {
 						continue xLoop;
 					}
 				}
+
 				// If it reached this point, the player can castle
 				canCastle[y][x] = true;
-
-				byte[] kingLoc = king.getLocation();
-
-				if (!outOfBounds(kingLoc)) {
-					// add in castling move
-					for (int i = 0; i < NUM_PIECES; i++) {
-						if (player1Pieces[i] == rooks[x]) {
-							player1Moves[i][kingLoc[0]][kingLoc[1]] = true;
-						}
-						if (player2Pieces[i] == rooks[x]) {
-							player2Moves[i][kingLoc[0]][kingLoc[1]] = true;
-						}
-					}
-				}
 			}
 		}
 	}
@@ -2087,30 +1733,39 @@ public class ChessGameState extends GameState implements Serializable {
 	private void updateCanDraw() {
 		// Once you can claim a draw, it stays that way
 		if (!canDraw) {
-			// fifty move rule
-			if (lastCapture >= MAX_MOVES_SINCE_CAPTURE) {
+			// fifty move rule (the clock counts each player's moves)
+			if (position.getHalfmoveClock() >= 2 * MAX_MOVES_SINCE_CAPTURE) {
 				canDraw = true;
 				return;
 			}
 
-			// convert the piece map into an array of ints for better storage
-			String fen = toFEN();
+			// positions from before a capture or pawn move can't repeat
+			int halfmoves = position.getHalfmoveClock();
+			if (halfmoves == 0) {
+				positionHistorySize = 0;
+			}
 
-			// threefold repetition rule
-			Iterator<String> it = pieceMapHistory.iterator();
-			int matches = 0;
-			while (it.hasNext()) {
-				if (it.next().equals(fen)) {
+			// threefold repetition rule: only positions with the same player
+			// to move can match, so check every second one
+			long hash = position.getHash();
+			int matches = 1;
+			int oldest = Math.max(0, positionHistorySize - halfmoves);
+			for (int i = positionHistorySize - 2; i >= oldest; i -= 2) {
+				if (positionHistory[i] == hash) {
 					// found a state equivalent to the one right now
 					matches++;
-				}
-				if (matches >= MAX_REPETITION) {
-					canDraw = true;
-					return;
+					if (matches >= MAX_REPETITION) {
+						canDraw = true;
+						return;
+					}
 				}
 			}
 
-			pieceMapHistory.add(fen);
+			if (positionHistorySize == positionHistory.length) {
+				positionHistory = Arrays.copyOf(positionHistory,
+						positionHistorySize * 2);
+			}
+			positionHistory[positionHistorySize++] = hash;
 		}
 	}
 
@@ -2125,13 +1780,13 @@ public class ChessGameState extends GameState implements Serializable {
 		ChessPiece[] pieces = new ChessPiece[NUM_PIECES];
 		int i = 0;
 		if (isPlayer1) {
-			for (ChessPiece p : player1Pieces) {
+			for (ChessPiece p : getPlayer1Pieces()) {
 				if (p.getType() == type && p.isAlive()) {
 					pieces[i++] = p;
 				}
 			}
 		} else {
-			for (ChessPiece p : player2Pieces) {
+			for (ChessPiece p : getPlayer2Pieces()) {
 				if (p.getType() == type && p.isAlive()) {
 					pieces[i++] = p;
 				}
@@ -2177,116 +1832,285 @@ public class ChessGameState extends GameState implements Serializable {
 		// if that didn't work, try using the index where it is supposed to be
 
 		if (player1) {
-			return player1Pieces[12];
+			return getPlayer1Pieces()[12];
 		} else {
-			return player2Pieces[12];
+			return getPlayer2Pieces()[12];
 		}
 	}
 
+	/**
+	 * Converts the game state into Forsyth-Edwards Notation
+	 * 
+	 * @return the FEN string
+	 */
 	public String toFEN() {
-		String fen = "";
-		int i = 0;
-		if (!player1IsWhite) {
-			i = BOARD_HEIGHT - 1;
+		return position.toFEN();
+	}
+
+	/**
+	 * Sets up the board from a position, such as one read from a FEN string
+	 * with Position.fromFEN. The move list and position history start over
+	 * from this position.
+	 * 
+	 * @param newPosition
+	 *            the position to copy
+	 */
+	public void setPosition(Position newPosition) {
+		position = new Position(newPosition);
+		Arrays.fill(slotSquares, (byte) -1);
+		movedSlots = 0;
+
+		for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+			int type = position.typeAt(square);
+			if (type == ChessPiece.INVALID) {
+				continue;
+			}
+			int color = position.colorAt(square);
+			int slot = findFreeSlot(color == getPlayerColor(true), type,
+					Bitboards.file(square));
+			if (slot == -1) {
+				// more than 16 pieces for one player
+				position.removePiece(square);
+				continue;
+			}
+			slotSquares[slot] = (byte) square;
+			slotTypes[slot] = (byte) type;
+			if (!onStartSquare(square, color, type)) {
+				movedSlots |= 1 << slot;
+			}
+		}
+
+		moveList.clear();
+		startFEN = position.toFEN();
+		positionHistory[0] = position.getHash();
+		positionHistorySize = 1;
+		canDraw = false;
+		isGameOver = false;
+		positionChanged(true);
+
+		updateCanCastle();
+		isInCheck();
+	}
+
+	/**
+	 * Returns true if a piece could still be where it starts the game. Kings
+	 * and rooks also need the castling rights that go with them.
+	 */
+	private boolean onStartSquare(int square, int color, int type) {
+		int firstRank = (color == Position.WHITE) ? 0 : BOARD_HEIGHT - 1;
+		int rank = Bitboards.rank(square);
+		int file = Bitboards.file(square);
+		if (type == ChessPiece.PAWN) {
+			return rank == firstRank + ((color == Position.WHITE) ? 1 : -1);
 		}
-		while (i >= 0 && i < BOARD_HEIGHT) {
-			int numEmpty = 0;
-			for (int j = 0; j < BOARD_WIDTH; j++) {
-				if (pieceMap[i][j] == null) {
-					numEmpty++;
-				} else {
-					int type = pieceMap[i][j].getType();
-					if (numEmpty > 0) {
-						fen += numEmpty;
-					}
-					numEmpty = 0;
-					String pieceChar = "";
-					if (type == ChessPiece.PAWN) {
-						pieceChar = "p";
-					} else if (type == ChessPiece.QUEEN) {
-						pieceChar = "q";
-					} else if (type == ChessPiece.KING) {
-						pieceChar = "k";
-					} else if (type == ChessPiece.ROOK) {
-						pieceChar = "r";
-					} else if (type == ChessPiece.BISHOP) {
-						pieceChar = "b";
-					} else if (type == ChessPiece.KNIGHT) {
-						pieceChar = "n";
-					}
+		if (rank != firstRank || FIRST_RANK[file] != type) {
+			return false;
+		}
+		int kingside = (color == Position.WHITE) ? Position.WHITE_KINGSIDE
+				: Position.BLACK_KINGSIDE;
+		int queenside = (color == Position.WHITE) ? Position.WHITE_QUEENSIDE
+				: Position.BLACK_QUEENSIDE;
+		int castling = position.getCastling();
+		if (type == ChessPiece.KING) {
+			return (castling & (kingside | queenside)) != 0;
+		}
+		if (type == ChessPiece.ROOK) {
+			return (castling & ((file < KING_FILE) ? queenside : kingside)) != 0;
+		}
+		return true;
+	}
 
-					if (pieceMap[i][j].isWhite()) {
-						pieceChar = pieceChar.toUpperCase(Locale.US);
-					}
+	/**
+	 * Returns the color of a player's pieces on the board
+	 * 
+	 * @param player1
+	 *            true for player 1, false for player 2
+	 * @return Position.WHITE or Position.BLACK
+	 */
+	private int getPlayerColor(boolean player1) {
+		return (player1 == player1IsWhite) ? Position.WHITE : Position.BLACK;
+	}
 
-					fen += pieceChar;
-				}
-			}
+	/**
+	 * Converts a row and column of the piece map into a square on the board
+	 * 
+	 * @param row
+	 * @param col
+	 * @return the square, see Bitboards
+	 */
+	public static int toSquare(int row, int col) {
+		return Bitboards.square(BOARD_HEIGHT - 1 - row, col);
+	}
 
-			if (numEmpty > 0) {
-				fen += numEmpty;
-			}
+	/**
+	 * Converts a square on the board into a {row, column} location
+	 * 
+	 * @param square
+	 * @return the location in the piece map
+	 */
+	public static byte[] toLocation(int square) {
+		return new byte[] { (byte) (BOARD_HEIGHT - 1 - Bitboards.rank(square)),
+				(byte) Bitboards.file(square) };
+	}
 
-			if (player1IsWhite) {
-				i++;
-			} else {
-				i--;
-			}
-			// not the last row
-			if (i != -1 || i != BOARD_HEIGHT) {
-				fen += "/";
+	/**
+	 * Finds the slot of the piece on a square
+	 * 
+	 * @param square
+	 * @return the slot, or -1 if the square is empty
+	 */
+	private int slotAt(int square) {
+		for (int i = 0; i < slotSquares.length; i++) {
+			if (slotSquares[i] == square) {
+				return i;
 			}
 		}
-		if (player1IsWhite == whoseTurn) {
-			fen += " w ";
-		} else {
-			fen += " b ";
+		return -1;
+	}
+
+	/**
+	 * Marks the piece in a slot as moved to a new square
+	 */
+	private void moveSlot(int slot, int square) {
+		if (slot != -1) {
+			slotSquares[slot] = (byte) square;
+			movedSlots |= 1 << slot;
 		}
-		if (!canCastle[0][0] && !canCastle[0][1] && !canCastle[1][0]
-				&& !canCastle[1][1]) {
-			fen += "-";
+	}
+
+	/**
+	 * Marks the piece in a slot as taken
+	 */
+	private void killSlot(int slot) {
+		if (slot != -1) {
+			slotSquares[slot] = -1;
 		}
-		if (player1IsWhite) {
-			if (canCastle[0][0]) {
-				fen += "q";// player 2 left
-			}
-			if (canCastle[0][1]) {
-				fen += "k";// player 2 right
-			}
-			if (canCastle[1][0]) {
-				fen += "Q";// player 1 left
-			}
-			if (canCastle[1][1]) {
-				fen += "K"; // player 1 right
+	}
+
+	/**
+	 * Puts a piece on the board in a slot
+	 */
+	private void placeSlot(int slot, int square, ChessPiece piece) {
+		position.putPiece(square, piece.isWhite() ? Position.WHITE
+				: Position.BLACK, piece.getType());
+		slotSquares[slot] = (byte) square;
+		slotTypes[slot] = piece.getType();
+		if (piece.getHasMoved()) {
+			movedSlots |= 1 << slot;
+		}
+	}
+
+	/**
+	 * Finds an empty slot for a piece, preferring the slot the piece would
+	 * have at the start of the game
+	 * 
+	 * @param player1
+	 *            true if the piece belongs to player 1
+	 * @param type
+	 *            the type of the piece
+	 * @param col
+	 *            the column the piece is in
+	 * @return the slot, or -1 if the player has no empty slots
+	 */
+	private int findFreeSlot(boolean player1, int type, int col) {
+		int offset = player1 ? 0 : NUM_PIECES;
+
+		// The first rank is on the same side of the king as it starts
+		if (type == ChessPiece.PAWN) {
+			if (slotSquares[offset + col] == -1) {
+				return offset + col;
 			}
 		} else {
-			if (canCastle[0][0]) {
-				fen += "Q";// player 2 left
-			}
-			if (canCastle[0][1]) {
-				fen += "K";// player 2 right
+			for (int i = 0; i < BOARD_WIDTH; i++) {
+				int slot = offset + BOARD_WIDTH + i;
+				if (FIRST_RANK[i] == type && slotSquares[slot] == -1
+						&& (i < KING_FILE) == (col < KING_FILE)) {
+					return slot;
+				}
 			}
-			if (canCastle[1][0]) {
-				fen += "q";// player 1 left
+			for (int i = 0; i < BOARD_WIDTH; i++) {
+				int slot = offset + BOARD_WIDTH + i;
+				if (FIRST_RANK[i] == type && slotSquares[slot] == -1) {
+					return slot;
+				}
 			}
-			if (canCastle[1][1]) {
-				fen += "k"; // player 1 right
+		}
+
+		// Otherwise take any slot that is left
+		for (int slot = offset; slot < offset + NUM_PIECES; slot++) {
+			if (slotSquares[slot] == -1) {
+				return slot;
 			}
 		}
+		return -1;
+	}
 
-		if (canEnPassant[0] == 0 && canEnPassant[1] == 0) {
-			fen += " - ";
-		} else {
-			fen += " ";
-			fen += (char) (97 + canEnPassant[1]);
-			fen += ChessGameState.BOARD_HEIGHT - canEnPassant[0];
-			fen += " ";
+	/**
+	 * Called after the board changes. If the piece views have been built, the
+	 * pieces in them are updated so references to them stay valid.
+	 * 
+	 * @param rebuild
+	 *            true to throw away the views instead of updating them
+	 */
+	private void positionChanged(boolean rebuild) {
+		legalMasksValid = false;
+		movesChanged();
+		if (rebuild) {
+			pieceMap = null;
+			player1Pieces = null;
+			player2Pieces = null;
+		} else if (pieceMap != null) {
+			syncViews();
 		}
+	}
 
-		fen += lastCapture / 2;
-		fen += " ";
-		fen += moveList.size();
+	/**
+	 * Builds the piece map and player piece arrays if they are not built yet
+	 */
+	private void buildViews() {
+		if (pieceMap != null) {
+			return;
+		}
+		pieceMap = new ChessPiece[BOARD_HEIGHT][BOARD_WIDTH];
+		player1Pieces = new ChessPiece[NUM_PIECES];
+		player2Pieces = new ChessPiece[NUM_PIECES];
+		for (int i = 0; i < NUM_PIECES; i++) {
+			player1Pieces[i] = new ChessPiece(slotTypes[i], player1IsWhite);
+			player2Pieces[i] = new ChessPiece(slotTypes[i + NUM_PIECES],
+					!player1IsWhite);
+		}
+		syncViews();
+	}
+
+	/**
+	 * Copies the slots into the pieces of the views
+	 */
+	private void syncViews() {
+		for (int row = 0; row < BOARD_HEIGHT; row++) {
+			Arrays.fill(pieceMap[row], null);
+		}
+		for (int slot = 0; slot < slotSquares.length; slot++) {
+			ChessPiece piece = (slot < NUM_PIECES) ? player1Pieces[slot]
+					: player2Pieces[slot - NUM_PIECES];
+			piece.setType(slotTypes[slot]);
 
-		return fen;
+			if (slotSquares[slot] < 0) {
+				if (piece.isAlive()) {
+					piece.kill();
+				}
+				continue;
+			}
+
+			byte[] loc = toLocation(slotSquares[slot]);
+			if ((movedSlots & (1 << slot)) != 0) {
+				if (!piece.getHasMoved()
+						|| !Arrays.equals(loc, piece.getLocation())) {
+					piece.move(loc);
+				}
+			} else {
+				piece.setLocation(loc);
+			}
+			pieceMap[loc[0]][loc[1]] = piece;
+		}
 	}
 }
@@ -1,6 +1,7 @@
 package edu.up.cs301.chess;
 
 import edu.up.cs301.chess.actions.*;
+import edu.up.cs301.chess.engine.Position;
 import edu.up.cs301.game.GamePlayer;
 import edu.up.cs301.game.LocalGame;
 import edu.up.cs301.game.actionMsg.GameAction;
@@ -17,9 +18,18 @@ import android.util.Log;
  */
 public class ChessLocalGame extends LocalGame implements ChessGame {
 
+	// how often the clock is checked for a fallen flag, in milliseconds
+	private static final int CLOCK_INTERVAL = 100;
+
 	// the game's state
 	private ChessGameState gameState;
 
+	// the players' clock, or null if the game is untimed
+	private ChessClock clock;
+
+	// whether the game was lost on time
+	private boolean lostOnTime = false;
+
 	/**
 	 * Can this player move?
 	 * 
@@ -40,6 +50,36 @@ public class ChessLocalGame extends LocalGame implements ChessGame {
 		this.gameState = new ChessGameState(true);
 	}
 
+	/**
+	 * This ctor starts a game played with a clock. White's clock starts once
+	 * both players are ready.
+	 * 
+	 * @param baseMillis
+	 *            the time each player has for the game, in milliseconds
+	 * @param incrementMillis
+	 *            the time added after each move
+	 * @param delayMillis
+	 *            the time each move can take before the clock runs
+	 */
+	public ChessLocalGame(long baseMillis, long incrementMillis,
+			long delayMillis) {
+		this();
+		clock = new ChessClock(baseMillis, incrementMillis, delayMillis);
+		updateClock();
+	}
+
+	/**
+	 * starts the game, and the timer that watches the clock
+	 */
+	@Override
+	public void start(GamePlayer[] players) {
+		super.start(players);
+		if (clock != null) {
+			getTimer().setInterval(CLOCK_INTERVAL);
+			getTimer().start();
+		}
+	}
+
 	/**
 	 * The actions that should be sent are ChessMoveAction, SelectPieceAction,
 	 * SelectUpgradeAction, ResignAction, and DrawActions. It returns true if it
@@ -53,8 +93,23 @@ public class ChessLocalGame extends LocalGame implements ChessGame {
 
 			ChessMoveAction act = (ChessMoveAction) action;
 
-			if (canMove(getPlayerIdx(act.getPlayer()))) {
-				gameState.applyMove(act);
+			int playerIdx = getPlayerIdx(act.getPlayer());
+			if (canMove(playerIdx)) {
+				if (clock == null) {
+					gameState.applyMove(act);
+				} else {
+					long now = now();
+					if (clock.isFlagged(playerIdx, now)) {
+						// the move came too late
+						flagFell(playerIdx);
+					} else if (gameState.applyMove(act)) {
+						clock.press(now);
+						if (gameState.isGameOver()) {
+							clock.stop(now);
+						}
+						updateClock();
+					}
+				}
 			}
 			return true;
 		} else if (action instanceof ResignAction) {
@@ -97,6 +152,10 @@ public class ChessLocalGame extends LocalGame implements ChessGame {
 			// whoever sends the choose color action determines color
 			ChooseColorAction act = (ChooseColorAction) action;
 			gameState = new ChessGameState(act.isPlayer1IsWhite());
+			if (clock != null) {
+				clock.reset();
+				updateClock();
+			}
 
 			// Make sure both players get updated state information
 			this.sendAllUpdatedState();
@@ -109,6 +168,83 @@ public class ChessLocalGame extends LocalGame implements ChessGame {
 		}
 	}// makeMove
 
+	/**
+	 * Checks the clock: starts it for the player to move if it isn't running,
+	 * and ends the game if their flag has fallen
+	 */
+	@Override
+	protected void timerTicked() {
+		if (clock == null || gameState.isGameOver()) {
+			return;
+		}
+		long now = now();
+		int toMove = gameState.isWhoseTurn() ? 0 : 1;
+		if (clock.getRunning() == ChessClock.NONE) {
+			clock.start(toMove, now);
+		} else if (clock.isFlagged(toMove, now)) {
+			flagFell(toMove);
+		}
+	}
+
+	/**
+	 * Ends the game when a player runs out of time. The other player wins,
+	 * unless they have too little left to ever checkmate, which is a draw.
+	 * 
+	 * @param playerIdx
+	 *            the player whose flag fell
+	 */
+	private void flagFell(int playerIdx) {
+		clock.stop(now());
+		boolean player1Flagged = (playerIdx == 0);
+		if (canMate(!player1Flagged)) {
+			gameState.setPlayer1Won(!player1Flagged);
+			gameState.setPlayer2Won(player1Flagged);
+		} else {
+			// both players winning means there was a draw
+			gameState.setPlayer1Won(true);
+			gameState.setPlayer2Won(true);
+		}
+		gameState.setGameOver(true);
+		lostOnTime = true;
+		updateClock();
+	}
+
+	/**
+	 * Tells whether a player has the material to checkmate: anything more
+	 * than their king and one knight or bishop
+	 * 
+	 * @param player1
+	 *            true for player 1, false for player 2
+	 * @return true if the player could win on the board
+	 */
+	private boolean canMate(boolean player1) {
+		Position position = gameState.getPosition();
+		int color = (player1 == gameState.isPlayer1IsWhite()) ? Position.WHITE
+				: Position.BLACK;
+		long heavy = position.getPieces(color, ChessPiece.PAWN)
+				| position.getPieces(color, ChessPiece.ROOK)
+				| position.getPieces(color, ChessPiece.QUEEN);
+		long minor = position.getPieces(color, ChessPiece.KNIGHT)
+				| position.getPieces(color, ChessPiece.BISHOP);
+		return heavy != 0 || Long.bitCount(minor) > 1;
+	}
+
+	/**
+	 * Copies the time each player has left into the state
+	 */
+	private void updateClock() {
+		long now = now();
+		gameState.setClock(Math.max(0, clock.getRemaining(0, now)),
+				Math.max(0, clock.getRemaining(1, now)));
+	}
+
+	/**
+	 * @return the time now for the clock, in milliseconds
+	 */
+	private static long now() {
+		return System.nanoTime() / 1000000;
+	}
+
 	/**
 	 * Gets the most recent ChessGameState
 	 * 
@@ -155,6 +291,9 @@ public class ChessLocalGame extends LocalGame implements ChessGame {
 
 			// both players winning means there was a draw
 			if (gameState.isPlayer1Won() && gameState.isPlayer2Won()) {
+				if (lostOnTime) {
+					return "Time has run out, but the game is a draw.";
+				}
 				return "The game has ended in a draw.";
 			}
 
@@ -168,7 +307,8 @@ public class ChessLocalGame extends LocalGame implements ChessGame {
 				winningPlayerName = "Nobody";
 			}
 
-			return "The game is over. " + winningPlayerName + " has won.";
+			return "The game is over. " + winningPlayerName + " has won"
+					+ (lostOnTime ? " on time." : ".");
 		} else {
 			return null;
 		}
@@ -8,6 +8,7 @@ import edu.up.cs301.game.GamePlayer;
 import edu.up.cs301.game.LocalGame;
 import edu.up.cs301.game.config.GameConfig;
 import edu.up.cs301.game.config.GamePlayerType;
+import edu.up.cs301.game.util.WireCodec;
 
 /**
  * This is the primary activity for Chess.
@@ -21,7 +22,7 @@ import edu.up.cs301.game.config.GamePlayerType;
 public class ChessMainActivity extends GameMainActivity {
 	
 	// the port number that this game will use when playing over the network
-	private static final int PORT_NUMBER = 2244;
+	private static final int PORT_NUMBER = ChessGameServer.PORT_NUMBER;
 	
 	/**
 	 * Create the default configuration for this game:
@@ -66,6 +67,21 @@ public class ChessMainActivity extends GameMainActivity {
 				//1 means it is smart
 				return new ChessComputerPlayer2(name,ChessComputerPlayer1.STOCKFISH);
 			}});
+		
+		playerTypes.add(new GamePlayerType("Search Computer Player (easy)") {
+			public GamePlayer createPlayer(String name) {
+				return new ChessComputerPlayer2(name,ChessComputerPlayer1.SEARCH_EASY);
+			}});
+		
+		playerTypes.add(new GamePlayerType("Search Computer Player (medium)") {
+			public GamePlayer createPlayer(String name) {
+				return new ChessComputerPlayer2(name,ChessComputerPlayer1.SEARCH_MEDIUM);
+			}});
+		
+		playerTypes.add(new GamePlayerType("Search Computer Player (hard)") {
+			public GamePlayer createPlayer(String name) {
+				return new ChessComputerPlayer2(name,ChessComputerPlayer1.SEARCH_HARD);
+			}});
 
 		// Create a game configuration class for Chess:
 		// - player types as given above
@@ -103,4 +119,15 @@ public class ChessMainActivity extends GameMainActivity {
 		return new ChessLocalGame();
 	}
 
+	/**
+	 * create the codec for sending states over the network
+	 * 
+	 * @return
+	 * 		a codec that sends most states as a single move
+	 */
+	@Override
+	public WireCodec createWireCodec() {
+		return new ChessWireCodec();
+	}
+
 }
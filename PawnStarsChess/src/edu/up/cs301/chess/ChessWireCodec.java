@@ -0,0 +1,418 @@
+package edu.up.cs301.chess;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.up.cs301.chess.actions.ChessMoveAction;
+import edu.up.cs301.chess.engine.Move;
+import edu.up.cs301.chess.engine.MoveGenerator;
+import edu.up.cs301.chess.engine.Position;
+import edu.up.cs301.game.infoMsg.GameInfo;
+import edu.up.cs301.game.util.WireCodec;
+
+/**
+ * Sends chess game states across the network as a few bytes each. After the
+ * first state, a state that is one move on from the last is sent as just
+ * that move, a sequence number and the hash of the position it leads to,
+ * which is 17 bytes instead of a serialized state of well over a kilobyte.
+ * Anything else, or a state the other side asks for because the sequence
+ * or hash didn't match, is sent as a snapshot: the starting position and
+ * the moves played from it, which the other side replays.
+ *
+ * Every message starts with a version byte, the message type, the
+ * sequence number, the flags and, in a game with a clock, the time each
+ * player has left. States the snapshot can't rebuild exactly are left to
+ * Java serialization.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public class ChessWireCodec implements WireCodec {
+
+	// The version of the format, so old clients can tell
+	public static final int VERSION = 2;
+
+	// Message types
+	public static final int MOVE = 0;
+	public static final int SNAPSHOT = 1;
+	public static final int RESYNC = 2;
+
+	// Bits of the flags byte
+	private static final int GAME_OVER = 1;
+	private static final int PLAYER1_WON = 2;
+	private static final int PLAYER2_WON = 4;
+	private static final int PLAYER1_WHITE = 8;
+	private static final int HAS_CLOCK = 16;
+
+	// A packed move that is no move, for states that only changed flags
+	private static final int NO_MOVE = 0;
+
+	// Sending side: the last state sent, the sequence number of the last
+	// message, and whether the next state must be a snapshot
+	private ChessGameState lastSent;
+	private int sendSeq;
+	private boolean snapshotNeeded = true;
+
+	// Receiving side: the last state decoded, its sequence number, and
+	// whether a snapshot has been asked for
+	private ChessGameState lastReceived;
+	private int receiveSeq;
+	private boolean resyncPending;
+
+	// Statistics
+	private long moveMessages;
+	private long snapshotMessages;
+	private long bytesEncoded;
+
+	/**
+	 * Encodes a state as a move if it is one move on from the last state
+	 * sent, or as a snapshot
+	 */
+	public synchronized byte[] encode(GameInfo info) {
+		if (!(info instanceof ChessGameState)) {
+			return null;
+		}
+		ChessGameState state = (ChessGameState) info;
+		byte[] message = null;
+		if (!snapshotNeeded && lastSent != null) {
+			message = encodeMove(state);
+		}
+		if (message == null) {
+			message = encodeSnapshot(state);
+			if (message == null) {
+				// the other side will get the whole state
+				lastSent = null;
+				snapshotNeeded = true;
+				return null;
+			}
+			snapshotMessages++;
+			snapshotNeeded = false;
+		} else {
+			moveMessages++;
+		}
+		lastSent = state;
+		bytesEncoded += message.length;
+		return message;
+	}
+
+	/**
+	 * A resync request makes the next state a snapshot
+	 */
+	public synchronized boolean onReply(byte[] message) {
+		try {
+			DataInputStream in = open(message);
+			if (in.readUnsignedByte() == RESYNC) {
+				snapshotNeeded = true;
+				return true;
+			}
+		} catch (IOException e) {
+			// not a message we know
+		}
+		return false;
+	}
+
+	/**
+	 * Decodes a move on from the last state received, or a snapshot
+	 */
+	public synchronized GameInfo decode(byte[] message) {
+		try {
+			DataInputStream in = open(message);
+			int type = in.readUnsignedByte();
+			int seq = in.readInt();
+			int flags = in.readUnsignedByte();
+			int player1Millis = 0;
+			int player2Millis = 0;
+			if ((flags & HAS_CLOCK) != 0) {
+				player1Millis = in.readInt();
+				player2Millis = in.readInt();
+			}
+			ChessGameState state;
+			if (type == MOVE) {
+				if (lastReceived == null || seq != receiveSeq + 1) {
+					return lost();
+				}
+				state = new ChessGameState(lastReceived);
+				if (!replay(state, in.readUnsignedShort())) {
+					return lost();
+				}
+			} else if (type == SNAPSHOT) {
+				state = new ChessGameState((flags & PLAYER1_WHITE) != 0);
+				String fen = in.readUTF();
+				if (!fen.equals(Position.START_FEN)) {
+					state.setPosition(Position.fromFEN(fen));
+				}
+				int count = in.readUnsignedShort();
+				for (int i = 0; i < count; i++) {
+					if (!replay(state, in.readUnsignedShort())) {
+						return lost();
+					}
+				}
+			} else {
+				return null;
+			}
+			setFlags(state, flags);
+			if ((flags & HAS_CLOCK) != 0) {
+				state.setClock(player1Millis, player2Millis);
+			}
+			if (state.getPosition().getHash() != in.readLong()) {
+				return lost();
+			}
+			lastReceived = state;
+			receiveSeq = seq;
+			resyncPending = false;
+			return new ChessGameState(state);
+		} catch (IOException e) {
+			return lost();
+		} catch (RuntimeException e) {
+			// a bad FEN or a move the state couldn't take
+			return lost();
+		}
+	}
+
+	/**
+	 * States sent whole replace the last state received
+	 */
+	public synchronized void received(GameInfo info) {
+		if (info instanceof ChessGameState) {
+			lastReceived = new ChessGameState((ChessGameState) info);
+			resyncPending = false;
+		}
+	}
+
+	/**
+	 * Asks for a snapshot, unless one has been asked for already
+	 */
+	public synchronized byte[] resyncRequest() {
+		if (resyncPending) {
+			return null;
+		}
+		resyncPending = true;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(VERSION);
+			out.writeByte(RESYNC);
+			out.writeInt(receiveSeq);
+		} catch (IOException e) {
+			// can't happen with a byte array
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return the number of states sent as a move
+	 */
+	public synchronized long getMoveMessages() {
+		return moveMessages;
+	}
+
+	/**
+	 * @return the number of states sent as a snapshot
+	 */
+	public synchronized long getSnapshotMessages() {
+		return snapshotMessages;
+	}
+
+	/**
+	 * @return the total size of the messages encoded, in bytes
+	 */
+	public synchronized long getBytesEncoded() {
+		return bytesEncoded;
+	}
+
+	/**
+	 * Encodes a state as the move that leads to it from the last state sent
+	 *
+	 * @return the message, or null if the state isn't one move on
+	 */
+	private byte[] encodeMove(ChessGameState state) {
+		int moves = state.getMoveList().size();
+		int lastMoves = lastSent.getMoveList().size();
+		ChessGameState replayed = new ChessGameState(lastSent);
+		int packed = NO_MOVE;
+		if (moves == lastMoves + 1) {
+			int move = MoveGenerator.toMove(replayed, state.getMoveList()
+					.getLast());
+			packed = pack(move);
+			if (move == Move.NONE || !replay(replayed, packed)) {
+				return null;
+			}
+		} else if (moves != lastMoves) {
+			return null;
+		}
+		setFlags(replayed, flags(state));
+		if (!replayed.equals(state)) {
+			return null;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+		DataOutputStream out = start(bytes, MOVE, state);
+		try {
+			out.writeShort(packed);
+			out.writeLong(state.getPosition().getHash());
+		} catch (IOException e) {
+			return null;
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Encodes a state as its starting position and the moves played from it
+	 *
+	 * @return the message, or null if replaying the moves doesn't give the
+	 *         same state
+	 */
+	private byte[] encodeSnapshot(ChessGameState state) {
+		ChessGameState replayed = new ChessGameState(state.isPlayer1IsWhite());
+		String fen = state.getStartFEN();
+		if (!fen.equals(Position.START_FEN)) {
+			replayed.setPosition(Position.fromFEN(fen));
+		}
+		List<Integer> packed = new ArrayList<Integer>();
+		try {
+			for (ChessMoveAction action : state.getMoveList()) {
+				int move = pack(MoveGenerator.toMove(replayed, action));
+				if (!replay(replayed, move)) {
+					return null;
+				}
+				packed.add(move);
+			}
+		} catch (RuntimeException e) {
+			return null;
+		}
+		setFlags(replayed, flags(state));
+		if (!replayed.equals(state)) {
+			return null;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = start(bytes, SNAPSHOT, state);
+		try {
+			out.writeUTF(fen);
+			out.writeShort(packed.size());
+			for (int move : packed) {
+				out.writeShort(move);
+			}
+			out.writeLong(state.getPosition().getHash());
+		} catch (IOException e) {
+			return null;
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Starts a message to send
+	 */
+	private DataOutputStream start(ByteArrayOutputStream bytes, int type,
+			ChessGameState state) {
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(VERSION);
+			out.writeByte(type);
+			out.writeInt(++sendSeq);
+			out.writeByte(flags(state));
+			if (state.hasClock()) {
+				out.writeInt(toInt(state.getPlayer1Millis()));
+				out.writeInt(toInt(state.getPlayer2Millis()));
+			}
+		} catch (IOException e) {
+			// can't happen with a byte array
+		}
+		return out;
+	}
+
+	/**
+	 * Opens a message that was received
+	 *
+	 * @return the stream, after the version
+	 * @throws IOException
+	 *             if the message is of a different version
+	 */
+	private static DataInputStream open(byte[] message) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				message));
+		if (in.readUnsignedByte() != VERSION) {
+			throw new IOException("wrong version");
+		}
+		return in;
+	}
+
+	/**
+	 * Called when a message doesn't follow on from the last state received;
+	 * later moves can't be used until a snapshot comes
+	 *
+	 * @return null
+	 */
+	private GameInfo lost() {
+		lastReceived = null;
+		return null;
+	}
+
+	/**
+	 * Packs a move into 16 bits: the squares it is from and to, and the
+	 * piece it promotes to plus one
+	 */
+	private static int pack(int move) {
+		if (move == Move.NONE) {
+			return NO_MOVE;
+		}
+		return Move.getFrom(move) | Move.getTo(move) << 6
+				| (Move.getPromotion(move) + 1) << 12;
+	}
+
+	/**
+	 * Makes a packed move on a state, if it is legal
+	 *
+	 * @return false if the move isn't legal in the state
+	 */
+	private static boolean replay(ChessGameState state, int packed) {
+		if (packed == NO_MOVE) {
+			return true;
+		}
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int numMoves = MoveGenerator.generateLegalMoves(state.getPosition(),
+				moves);
+		for (int i = 0; i < numMoves; i++) {
+			if (pack(moves[i]) == packed) {
+				return state.applyMove(MoveGenerator.toAction(state, moves[i],
+						null));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the flags byte for a state
+	 */
+	private static int flags(ChessGameState state) {
+		return (state.isGameOver() ? GAME_OVER : 0)
+				| (state.isPlayer1Won() ? PLAYER1_WON : 0)
+				| (state.isPlayer2Won() ? PLAYER2_WON : 0)
+				| (state.isPlayer1IsWhite() ? PLAYER1_WHITE : 0)
+				| (state.hasClock() ? HAS_CLOCK : 0);
+	}
+
+	/**
+	 * @return a time in milliseconds, cut to fit in an int
+	 */
+	private static int toInt(long millis) {
+		return (int) Math.max(Integer.MIN_VALUE,
+				Math.min(Integer.MAX_VALUE, millis));
+	}
+
+	/**
+	 * Sets the outcome of the game from a flags byte, since resigning and
+	 * draws aren't moves
+	 */
+	private static void setFlags(ChessGameState state, int flags) {
+		state.setGameOver((flags & GAME_OVER) != 0);
+		state.setPlayer1Won((flags & PLAYER1_WON) != 0);
+		state.setPlayer2Won((flags & PLAYER2_WON) != 0);
+	}
+}
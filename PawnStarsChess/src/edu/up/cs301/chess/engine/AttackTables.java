@@ -0,0 +1,352 @@
+package edu.up.cs301.chess.engine;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Precomputed attack tables. Knights, kings and pawns attack the same
+ * squares no matter what else is on the board, so their attacks are stored
+ * per square. Rooks and bishops use magic bitboards: the pieces that could
+ * block a slider are multiplied by a magic number, and the top bits of the
+ * product index a table holding the attack set for that arrangement of
+ * blockers. Queens are a rook plus a bishop.
+ *
+ * The tables are built once, the first time this class is used. The magic
+ * numbers were found ahead of time, so building the tables only takes a few
+ * milliseconds of filling in arrays.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class AttackTables {
+
+	//Squares each piece attacks from each square
+	private static final long[] KNIGHT_ATTACKS = new long[Bitboards.NUM_SQUARES];
+	private static final long[] KING_ATTACKS = new long[Bitboards.NUM_SQUARES];
+	private static final long[][] PAWN_ATTACKS = new long[2][Bitboards.NUM_SQUARES];
+
+	//The squares that can block a slider, not counting the edge of the board
+	private static final long[] ROOK_MASKS = new long[Bitboards.NUM_SQUARES];
+	private static final long[] BISHOP_MASKS = new long[Bitboards.NUM_SQUARES];
+
+	//How far to shift the product of the blockers and the magic
+	private static final int[] ROOK_SHIFTS = new int[Bitboards.NUM_SQUARES];
+	private static final int[] BISHOP_SHIFTS = new int[Bitboards.NUM_SQUARES];
+
+	//Where each square's attack sets start in the shared tables
+	private static final int[] ROOK_OFFSETS = new int[Bitboards.NUM_SQUARES];
+	private static final int[] BISHOP_OFFSETS = new int[Bitboards.NUM_SQUARES];
+
+	//Attack sets for every arrangement of blockers, for all squares
+	private static final long[] ROOK_TABLE;
+	private static final long[] BISHOP_TABLE;
+
+	//For each pair of squares on the same line, the squares between them,
+	//and the whole line through them
+	private static final long[][] BETWEEN = new long[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+	private static final long[][] LINE = new long[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+
+	//Directions as {rank, file} steps
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+	private static final int[][] KNIGHT_JUMPS = { { 1, 2 }, { 2, 1 }, { 2, -1 },
+			{ 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+
+	private static final long[] ROOK_MAGICS = {
+		0x2480004004A08110L, 0x04C0100040082000L, 0x09000D0040200010L, 0x0500080520100101L,
+		0x2300080100140E10L, 0x4200040200100801L, 0x020006000A881441L, 0x1E00040841002082L,
+		0x8020800080204002L, 0x002B002090400500L, 0x2002801000200080L, 0x4181000824100100L,
+		0x0032808008000400L, 0x000A000410020008L, 0x0000800100800200L, 0xC612800040800100L,
+		0x0000308000400082L, 0x0204464010002000L, 0x0090008020008010L, 0x1880808010000800L,
+		0x2000808004000800L, 0x0000808002000400L, 0x1000010100040200L, 0x008006000C014081L,
+		0x0040400080002080L, 0x01102008C0005000L, 0x0020401200248200L, 0x0020080180500080L,
+		0x40A0040080800800L, 0x0001000900028400L, 0x0200010080800200L, 0x0800008200004104L,
+		0x0800401422800080L, 0x1011020042002080L, 0x0090200043001101L, 0x0030001080800800L,
+		0x008200100A000520L, 0x0001000401000208L, 0x2300100244000148L, 0x410A010082000044L,
+		0x0130304000808000L, 0x0800500020044000L, 0x0018100020008080L, 0x8400201042020009L,
+		0x2000080004008080L, 0x4026001004020008L, 0x0121081002040001L, 0x0020008424420009L,
+		0x580020C50A800100L, 0x80201000204000C0L, 0x0010200010008080L, 0x0008100009002100L,
+		0x0001800800440280L, 0x4C00044010200801L, 0x8085021001080400L, 0x090C088130440200L,
+		0x0902001020410082L, 0x00C0220041001082L, 0x4121004008102007L, 0x4001000420081001L,
+		0x009A010C08106032L, 0x4002000801049002L, 0x0108100108308204L, 0x0000090848208406L
+	};
+
+	private static final long[] BISHOP_MAGICS = {
+		0xA410102100441040L, 0x2082900E02084080L, 0x200802206201B020L, 0x0104040085084800L,
+		0x0084042004121800L, 0x0008410820010018L, 0xA091009004200008L, 0x0000104804042006L,
+		0x0000041004410401L, 0x0040085004104C41L, 0x0001040820810408L, 0x0800209200404200L,
+		0x0012011040A98202L, 0x0003010402400400L, 0x0000020082084000L, 0x0002002A08020800L,
+		0x1040000408082158L, 0x6802440D18260400L, 0x80C2018424040208L, 0x0040800802810000L,
+		0x820C002082A04400L, 0x0092020100908404L, 0x0800414202104400L, 0x0012040086050508L,
+		0x01A4400104101404L, 0x00011010A002C200L, 0x0040440008280010L, 0x0030040190440008L,
+		0x0201001001004000L, 0x06048A0001024600L, 0x644084000A940481L, 0x2000A084420A0080L,
+		0x020AA00410202801L, 0x0018010822841880L, 0x000404040802002CL, 0x8000200800890810L,
+		0xB004040400001010L, 0x410101040A0A0200L, 0x00B2088502020850L, 0x0004604200008088L,
+		0x008802904450100CL, 0x8000410868202080L, 0x0050820802000100L, 0x0004802011001800L,
+		0x1080880100441400L, 0x0004008204100200L, 0x0002100400840102L, 0x3618208420824840L,
+		0x0102080209050000L, 0x0000C34804104400L, 0x0080020084444020L, 0xA000224820882000L,
+		0x0000802020410008L, 0x8021200302020821L, 0x0208021094011800L, 0x0110810104208244L,
+		0x00C1084042201010L, 0x0000042404024858L, 0x20040408A1084820L, 0xC800020000208800L,
+		0x0004000004050408L, 0x0104404290121080L, 0x1004A0081010A080L, 0x0042025012008104L
+	};
+
+	static
+	{
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			int rank = Bitboards.rank(square);
+			int file = Bitboards.file(square);
+
+			for(int i = 0; i < KNIGHT_JUMPS.length; i++)
+			{
+				KNIGHT_ATTACKS[square] |= bitAt(rank + KNIGHT_JUMPS[i][0], file + KNIGHT_JUMPS[i][1]);
+			}
+			for(int dr = -1; dr <= 1; dr++)
+			{
+				for(int df = -1; df <= 1; df++)
+				{
+					if(dr != 0 || df != 0)
+					{
+						KING_ATTACKS[square] |= bitAt(rank + dr, file + df);
+					}
+				}
+			}
+			PAWN_ATTACKS[Position.WHITE][square] = bitAt(rank + 1, file - 1) | bitAt(rank + 1, file + 1);
+			PAWN_ATTACKS[Position.BLACK][square] = bitAt(rank - 1, file - 1) | bitAt(rank - 1, file + 1);
+		}
+
+		ROOK_TABLE = initSliders(ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS);
+		BISHOP_TABLE = initSliders(BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+
+		for(int a = 0; a < Bitboards.NUM_SQUARES; a++)
+		{
+			for(int b = 0; b < Bitboards.NUM_SQUARES; b++)
+			{
+				if(a == b)
+				{
+					continue;
+				}
+				long ends = (1L << a) | (1L << b);
+				if((rookAttacks(a, 0L) & (1L << b)) != 0)
+				{
+					BETWEEN[a][b] = rookAttacks(a, 1L << b) & rookAttacks(b, 1L << a);
+					LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | ends;
+				}
+				else if((bishopAttacks(a, 0L) & (1L << b)) != 0)
+				{
+					BETWEEN[a][b] = bishopAttacks(a, 1L << b) & bishopAttacks(b, 1L << a);
+					LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | ends;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private AttackTables()
+	{
+	}
+
+	/**
+	 * Fills in the masks, shifts and offsets for a slider and builds its table
+	 * @return the table of attack sets
+	 */
+	private static long[] initSliders(int[][] directions, long[] magics,
+			long[] masks, int[] shifts, int[] offsets)
+	{
+		int size = 0;
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			masks[square] = slide(square, directions, 0L) & ~edges(square);
+			int bits = Long.bitCount(masks[square]);
+			shifts[square] = 64 - bits;
+			offsets[square] = size;
+			size += 1 << bits;
+		}
+
+		long[] table = new long[size];
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			//go through every subset of the mask
+			long mask = masks[square];
+			long blockers = 0;
+			do
+			{
+				int index = offsets[square] + (int) ((blockers * magics[square]) >>> shifts[square]);
+				table[index] = slide(square, directions, blockers);
+				blockers = (blockers - mask) & mask;
+			}
+			while(blockers != 0);
+		}
+		return table;
+	}
+
+	/**
+	 * Walks from a square in each direction until it hits a blocker or the
+	 * edge of the board. Only used to build the tables.
+	 * @return the squares reached, including blockers
+	 */
+	private static long slide(int square, int[][] directions, long blockers)
+	{
+		long attacks = 0;
+		for(int i = 0; i < directions.length; i++)
+		{
+			int rank = Bitboards.rank(square) + directions[i][0];
+			int file = Bitboards.file(square) + directions[i][1];
+			while(Bitboards.onBoard(rank, file))
+			{
+				long bit = Bitboards.bit(Bitboards.square(rank, file));
+				attacks |= bit;
+				if((blockers & bit) != 0)
+				{
+					break;
+				}
+				rank += directions[i][0];
+				file += directions[i][1];
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Returns the edges of the board that are not on the same rank or file as
+	 * the square. A piece on an edge can't block anything behind it.
+	 */
+	private static long edges(int square)
+	{
+		long rankEdges = (Bitboards.RANK_1 | Bitboards.RANK_8) & ~(Bitboards.RANK_1 << (8 * Bitboards.rank(square)));
+		long fileEdges = (Bitboards.FILE_A | Bitboards.FILE_H) & ~(Bitboards.FILE_A << Bitboards.file(square));
+		return rankEdges | fileEdges;
+	}
+
+	/**
+	 * Returns the bit for a rank and file, or 0 if it is off the board
+	 */
+	private static long bitAt(int rank, int file)
+	{
+		return Bitboards.onBoard(rank, file) ? Bitboards.bit(Bitboards.square(rank, file)) : 0L;
+	}
+
+	/**
+	 * Returns the squares a knight attacks
+	 * @param square
+	 * @return the attacked squares
+	 */
+	public static long knightAttacks(int square)
+	{
+		return KNIGHT_ATTACKS[square];
+	}
+
+	/**
+	 * Returns the squares a king attacks
+	 * @param square
+	 * @return the attacked squares
+	 */
+	public static long kingAttacks(int square)
+	{
+		return KING_ATTACKS[square];
+	}
+
+	/**
+	 * Returns the squares a pawn attacks diagonally
+	 * @param color the color of the pawn
+	 * @param square
+	 * @return the attacked squares
+	 */
+	public static long pawnAttacks(int color, int square)
+	{
+		return PAWN_ATTACKS[color][square];
+	}
+
+	/**
+	 * Returns the squares a rook attacks
+	 * @param square
+	 * @param occupied every occupied square on the board
+	 * @return the attacked squares, including the first piece in each direction
+	 */
+	public static long rookAttacks(int square, long occupied)
+	{
+		long blockers = occupied & ROOK_MASKS[square];
+		return ROOK_TABLE[ROOK_OFFSETS[square] + (int) ((blockers * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+	}
+
+	/**
+	 * Returns the squares a bishop attacks
+	 * @param square
+	 * @param occupied every occupied square on the board
+	 * @return the attacked squares, including the first piece in each direction
+	 */
+	public static long bishopAttacks(int square, long occupied)
+	{
+		long blockers = occupied & BISHOP_MASKS[square];
+		return BISHOP_TABLE[BISHOP_OFFSETS[square] + (int) ((blockers * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+	}
+
+	/**
+	 * Returns the squares a queen attacks
+	 * @param square
+	 * @param occupied every occupied square on the board
+	 * @return the attacked squares, including the first piece in each direction
+	 */
+	public static long queenAttacks(int square, long occupied)
+	{
+		return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+	}
+
+	/**
+	 * Returns the squares strictly between two squares on the same rank,
+	 * file or diagonal
+	 * @param from
+	 * @param to
+	 * @return the squares, or 0 if they are not on a line
+	 */
+	public static long between(int from, int to)
+	{
+		return BETWEEN[from][to];
+	}
+
+	/**
+	 * Returns the whole rank, file or diagonal through two squares, from one
+	 * edge of the board to the other
+	 * @param from
+	 * @param to
+	 * @return the squares, or 0 if they are not on a line
+	 */
+	public static long line(int from, int to)
+	{
+		return LINE[from][to];
+	}
+
+	/**
+	 * Returns the squares a piece attacks
+	 * @param color the color of the piece, only used for pawns
+	 * @param type a type from ChessPiece
+	 * @param square
+	 * @param occupied every occupied square on the board
+	 * @return the attacked squares
+	 */
+	public static long attacks(int color, int type, int square, long occupied)
+	{
+		switch(type)
+		{
+		case ChessPiece.PAWN:
+			return PAWN_ATTACKS[color][square];
+		case ChessPiece.KNIGHT:
+			return KNIGHT_ATTACKS[square];
+		case ChessPiece.BISHOP:
+			return bishopAttacks(square, occupied);
+		case ChessPiece.ROOK:
+			return rookAttacks(square, occupied);
+		case ChessPiece.QUEEN:
+			return queenAttacks(square, occupied);
+		case ChessPiece.KING:
+			return KING_ATTACKS[square];
+		default:
+			return 0L;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package edu.up.cs301.chess.engine;
+
+import edu.up.cs301.chess.ChessGameState;
+import edu.up.cs301.chess.actions.ChessMoveAction;
+
+/**
+ * Times move generation and the game state operations the players use
+ * most, on the standard perft positions, so the speed can be compared
+ * between versions. Each operation is run until the JIT has warmed up and
+ * then timed over several rounds, and the fastest round is reported.
+ *
+ * Can be run from the command line:
+ * Benchmark [perft depth]
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class Benchmark {
+
+	//How long to run each operation before timing it
+	private static final long WARMUP_NANOS = 500000000L;
+
+	//How long each timed round lasts
+	private static final long ROUND_NANOS = 200000000L;
+
+	//Number of timed rounds
+	private static final int ROUNDS = 5;
+
+	//Default perft depth
+	private static final int PERFT_DEPTH = 4;
+
+	//Results are added here so the JIT can't skip the work
+	private static long sink;
+
+	/**
+	 * An operation to time
+	 */
+	private abstract static class Operation {
+		final String name;
+
+		Operation(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Does the operation once
+		 * @return anything that depends on the result
+		 */
+		abstract long run(ChessGameState state, Position position, int[] moves);
+	}
+
+	//The operations to time
+	private static final Operation[] OPERATIONS = {
+		new Operation("generateLegalMoves") {
+			long run(ChessGameState state, Position position, int[] moves)
+			{
+				return MoveGenerator.generateLegalMoves(position, moves);
+			}
+		},
+		new Operation("getPossibleMoves") {
+			long run(ChessGameState state, Position position, int[] moves)
+			{
+				return MoveGenerator.getPossibleMoves(state, null, true).length;
+			}
+		},
+		new Operation("copy constructor") {
+			long run(ChessGameState state, Position position, int[] moves)
+			{
+				return new ChessGameState(state).hashCode();
+			}
+		},
+		new Operation("copy + applyMove") {
+			long run(ChessGameState state, Position position, int[] moves)
+			{
+				ChessGameState copy = new ChessGameState(state);
+				int numMoves = MoveGenerator.generateLegalMoves(copy.getPosition(), moves);
+				if(numMoves == 0)
+				{
+					return 0;
+				}
+				ChessMoveAction action = MoveGenerator.toAction(copy, moves[0], null);
+				return copy.applyMove(action) ? 1 : 0;
+			}
+		},
+		new Operation("toFEN") {
+			long run(ChessGameState state, Position position, int[] moves)
+			{
+				return state.toFEN().length();
+			}
+		},
+		new Operation("isInCheck") {
+			long run(ChessGameState state, Position position, int[] moves)
+			{
+				return state.isInCheck() ? 1 : 0;
+			}
+		},
+	};
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private Benchmark()
+	{
+	}
+
+	/**
+	 * Times an operation on a position
+	 * @return the fastest time for one run in nanoseconds
+	 */
+	private static double time(Operation operation, ChessGameState state)
+	{
+		Position position = new Position(state.getPosition());
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+		long end = System.nanoTime() + WARMUP_NANOS;
+		while(System.nanoTime() < end)
+		{
+			sink += operation.run(state, position, moves);
+		}
+
+		double best = Double.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++)
+		{
+			long runs = 0;
+			long start = System.nanoTime();
+			long now = start;
+			while(now - start < ROUND_NANOS)
+			{
+				sink += operation.run(state, position, moves);
+				runs++;
+				now = System.nanoTime();
+			}
+			best = Math.min(best, (double) (now - start) / runs);
+		}
+		return best;
+	}
+
+	/**
+	 * Prints the time of each operation on each standard position, then the
+	 * perft speed
+	 * @param args optionally the perft depth
+	 */
+	public static void main(String[] args)
+	{
+		int depth = (args.length > 0) ? Integer.parseInt(args[0]) : PERFT_DEPTH;
+
+		for(int i = 0; i < Perft.POSITIONS.length; i++)
+		{
+			ChessGameState state = new ChessGameState(true);
+			state.setPosition(Position.fromFEN(Perft.POSITIONS[i]));
+			System.out.println(Perft.POSITIONS[i]);
+			for(Operation operation: OPERATIONS)
+			{
+				System.out.printf("  %-20s %12.1f ns/op%n", operation.name, time(operation, state));
+			}
+		}
+
+		long nodes = 0;
+		long start = System.nanoTime();
+		for(String fen: Perft.POSITIONS)
+		{
+			nodes += new Perft(Position.fromFEN(fen)).perft(depth);
+		}
+		long time = System.nanoTime() - start;
+		System.out.println("perft " + depth + ": " + nodes + " nodes, "
+				+ (nodes * 1000000000L / Math.max(time, 1)) + " nodes/second");
+
+		//print the sink so it is used
+		System.out.println("(" + sink + ")");
+	}
+}
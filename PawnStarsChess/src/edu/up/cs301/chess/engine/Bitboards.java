@@ -0,0 +1,151 @@
+package edu.up.cs301.chess.engine;
+
+/**
+ * Constants and helpers for working with bitboards. A bitboard is a long
+ * where bit n is set when square n is part of the set. Squares are numbered
+ * from a1 = 0 to h8 = 63, going across each rank before moving up a rank.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class Bitboards {
+
+	//Number of squares on the board
+	public static final int NUM_SQUARES = 64;
+
+	//Used when a square does not exist
+	public static final int NO_SQUARE = -1;
+
+	//Masks for each file
+	public static final long FILE_A = 0x0101010101010101L;
+	public static final long FILE_B = FILE_A << 1;
+	public static final long FILE_G = FILE_A << 6;
+	public static final long FILE_H = FILE_A << 7;
+
+	//Masks for each rank
+	public static final long RANK_1 = 0xFFL;
+	public static final long RANK_2 = RANK_1 << 8;
+	public static final long RANK_3 = RANK_1 << 16;
+	public static final long RANK_4 = RANK_1 << 24;
+	public static final long RANK_5 = RANK_1 << 32;
+	public static final long RANK_6 = RANK_1 << 40;
+	public static final long RANK_7 = RANK_1 << 48;
+	public static final long RANK_8 = RANK_1 << 56;
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private Bitboards()
+	{
+	}
+
+	/**
+	 * Returns the square on the given rank and file
+	 * @param rank 0 for the first rank, 7 for the eighth rank
+	 * @param file 0 for the a-file, 7 for the h-file
+	 * @return the square index
+	 */
+	public static int square(int rank, int file)
+	{
+		return (rank << 3) | file;
+	}
+
+	/**
+	 * Returns the rank of a square, 0 being the first rank
+	 * @param square
+	 * @return the rank
+	 */
+	public static int rank(int square)
+	{
+		return square >>> 3;
+	}
+
+	/**
+	 * Returns the file of a square, 0 being the a-file
+	 * @param square
+	 * @return the file
+	 */
+	public static int file(int square)
+	{
+		return square & 7;
+	}
+
+	/**
+	 * Returns a bitboard with only the given square set
+	 * @param square
+	 * @return the bitboard
+	 */
+	public static long bit(int square)
+	{
+		return 1L << square;
+	}
+
+	/**
+	 * Returns true if a rank and file are on the board
+	 * @param rank
+	 * @param file
+	 * @return true if it is on the board
+	 */
+	public static boolean onBoard(int rank, int file)
+	{
+		return rank >= 0 && rank < 8 && file >= 0 && file < 8;
+	}
+
+	/**
+	 * Returns the lowest square in a bitboard
+	 * @param bb a non-empty bitboard
+	 * @return the lowest square
+	 */
+	public static int lowestSquare(long bb)
+	{
+		return Long.numberOfTrailingZeros(bb);
+	}
+
+	/**
+	 * Returns the number of squares in a bitboard
+	 * @param bb
+	 * @return the number of set bits
+	 */
+	public static int count(long bb)
+	{
+		return Long.bitCount(bb);
+	}
+
+	/**
+	 * Converts a square into algebraic notation, such as "e4"
+	 * @param square
+	 * @return the name of the square or "-" if there isn't one
+	 */
+	public static String squareName(int square)
+	{
+		if(square < 0 || square >= NUM_SQUARES)
+		{
+			return "-";
+		}
+		return "" + (char)('a' + file(square)) + (char)('1' + rank(square));
+	}
+
+	/**
+	 * Converts algebraic notation, such as "e4", into a square
+	 * @param name
+	 * @return the square or NO_SQUARE if the name is invalid
+	 */
+	public static int parseSquare(String name)
+	{
+		if(name == null || name.length() != 2)
+		{
+			return NO_SQUARE;
+		}
+		int file = name.charAt(0) - 'a';
+		int rank = name.charAt(1) - '1';
+		if(!onBoard(rank, file))
+		{
+			return NO_SQUARE;
+		}
+		return square(rank, file);
+	}
+}
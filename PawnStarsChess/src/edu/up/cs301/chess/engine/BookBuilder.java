@@ -0,0 +1,173 @@
+package edu.up.cs301.chess.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Writes a Polyglot opening book from lines of moves. Every position on a
+ * line gets its next move as a book move, weighted by how many lines play
+ * it, so transpositions are merged.
+ *
+ * The assets/book.bin the computer players use is built from LINES:
+ * BookBuilder [FILE]
+ * and has to be built again whenever they change.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class BookBuilder {
+
+	//The main lines of the common openings, in UCI notation
+	public static final String[] LINES = {
+		//open games
+		"e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6 e1g1 f8e7",
+		"e2e4 e7e5 g1f3 b8c6 f1b5 g8f6 e1g1 f6e4 d2d4 e4d6",
+		"e2e4 e7e5 g1f3 b8c6 f1c4 f8c5 c2c3 g8f6 d2d3 d7d6",
+		"e2e4 e7e5 g1f3 b8c6 f1c4 g8f6 d2d3 f8e7 e1g1 e8g8",
+		"e2e4 e7e5 g1f3 b8c6 d2d4 e5d4 f3d4 g8f6 d4c6 b7c6",
+		"e2e4 e7e5 g1f3 g8f6 f3e5 d7d6 e5f3 f6e4 d2d4 d6d5",
+		"e2e4 e7e5 b1c3 g8f6 g1f3 b8c6",
+		"e2e4 e7e5 f1c4 g8f6 d2d3 c7c6",
+		//Sicilian
+		"e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3 a7a6",
+		"e2e4 c7c5 g1f3 b8c6 d2d4 c5d4 f3d4 g8f6 b1c3 e7e5",
+		"e2e4 c7c5 g1f3 e7e6 d2d4 c5d4 f3d4 a7a6 f1d3",
+		"e2e4 c7c5 b1c3 b8c6 g2g3 g7g6 f1g2 f8g7",
+		"e2e4 c7c5 c2c3 g8f6 e4e5 f6d5 d2d4 c5d4",
+		//French, Caro-Kann and others
+		"e2e4 e7e6 d2d4 d7d5 b1c3 g8f6 c1g5 f8e7 e4e5 f6d7",
+		"e2e4 e7e6 d2d4 d7d5 b1d2 c7c5 e4d5 e6d5",
+		"e2e4 e7e6 d2d4 d7d5 e4e5 c7c5 c2c3 b8c6 g1f3 d8b6",
+		"e2e4 c7c6 d2d4 d7d5 b1c3 d5e4 c3e4 c8f5 e4g3 f5g6",
+		"e2e4 c7c6 d2d4 d7d5 e4e5 c8f5 g1f3 e7e6",
+		"e2e4 d7d5 e4d5 d8d5 b1c3 d5a5 d2d4 g8f6",
+		"e2e4 d7d6 d2d4 g8f6 b1c3 g7g6",
+		//queen's gambit
+		"d2d4 d7d5 c2c4 e7e6 b1c3 g8f6 c1g5 f8e7 e2e3 e8g8",
+		"d2d4 d7d5 c2c4 d5c4 g1f3 g8f6 e2e3 e7e6 f1c4 c7c5",
+		"d2d4 d7d5 c2c4 c7c6 g1f3 g8f6 b1c3 d5c4 a2a4 c8f5",
+		"d2d4 d7d5 c1f4 g8f6 e2e3 c7c5 c2c3 b8c6",
+		//Indian defenses
+		"d2d4 g8f6 c2c4 g7g6 b1c3 f8g7 e2e4 d7d6 g1f3 e8g8",
+		"d2d4 g8f6 c2c4 g7g6 b1c3 d7d5 c4d5 f6d5 e2e4 d5c3",
+		"d2d4 g8f6 c2c4 e7e6 b1c3 f8b4 e2e3 e8g8 f1d3 d7d5",
+		"d2d4 g8f6 c2c4 e7e6 g1f3 b7b6 g2g3 c8b7 f1g2 f8e7",
+		"d2d4 g8f6 c2c4 c7c5 d4d5 e7e6 b1c3 e6d5 c4d5 d7d6",
+		//flank openings
+		"c2c4 e7e5 b1c3 g8f6 g1f3 b8c6 g2g3 d7d5",
+		"c2c4 g8f6 b1c3 e7e6 e2e4 d7d5 e4e5",
+		"c2c4 c7c5 g1f3 g8f6 b1c3 b8c6",
+		"g1f3 d7d5 g2g3 g8f6 f1g2 e7e6 e1g1 f8e7 d2d3 e8g8",
+		"g1f3 g8f6 c2c4 g7g6 b1c3 f8g7" };
+
+	//Polyglot's promotion pieces, from 1 to 4
+	private static final int[] POLYGLOT_PROMOTIONS = { ChessPiece.INVALID, ChessPiece.KNIGHT,
+		ChessPiece.BISHOP, ChessPiece.ROOK, ChessPiece.QUEEN };
+
+	//How often each book move is played, by key and then move; keys are
+	//kept in unsigned order, as the book is searched
+	private final Map<Long, Map<Integer, Integer>> weights = new TreeMap<Long, Map<Integer, Integer>>();
+
+	/**
+	 * Adds a line's moves to the book
+	 * @param line moves from the start position in UCI notation, split by spaces
+	 * @throws IllegalArgumentException if a move isn't legal
+	 */
+	public void addLine(String line)
+	{
+		Position position = Position.fromFEN(Position.START_FEN);
+		for(String name: line.trim().split(" +"))
+		{
+			int move = MoveGenerator.parseMove(position, name);
+			if(move == Move.NONE)
+			{
+				throw new IllegalArgumentException("illegal move " + name + " in " + line);
+			}
+			Long key = PolyglotKeys.compute(position) + Long.MIN_VALUE;
+			Map<Integer, Integer> moves = weights.get(key);
+			if(moves == null)
+			{
+				moves = new TreeMap<Integer, Integer>();
+				weights.put(key, moves);
+			}
+			int bookMove = encode(position, move);
+			Integer count = moves.get(bookMove);
+			moves.put(bookMove, (count == null) ? 1 : count + 1);
+			position.makeMove(move);
+		}
+	}
+
+	/**
+	 * Writes the book, with the entries sorted by key
+	 * @param file
+	 * @throws IOException if it can't be written
+	 */
+	public void write(File file) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			for(Map.Entry<Long, Map<Integer, Integer>> position: weights.entrySet())
+			{
+				long key = position.getKey() - Long.MIN_VALUE;
+				for(Map.Entry<Integer, Integer> move: position.getValue().entrySet())
+				{
+					out.writeLong(key);
+					out.writeShort(move.getKey());
+					out.writeShort(Math.min(move.getValue(), 0xFFFF));
+					out.writeInt(0);
+				}
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Converts a move to Polyglot's: to square, from square and promotion,
+	 * with castling as the king taking its own rook
+	 */
+	private static int encode(Position position, int move)
+	{
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+		if(Move.getFlags(move) == Move.CASTLE)
+		{
+			to = (to > from) ? from + 3 : from - 4;
+		}
+		int promotion = 0;
+		for(int i = 1; i < POLYGLOT_PROMOTIONS.length; i++)
+		{
+			if(POLYGLOT_PROMOTIONS[i] == Move.getPromotion(move))
+			{
+				promotion = i;
+			}
+		}
+		return to | (from << 6) | (promotion << 12);
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		BookBuilder builder = new BookBuilder();
+		for(String line: LINES)
+		{
+			builder.addLine(line);
+		}
+		File file = new File((args.length > 0) ? args[0] : "book.bin");
+		builder.write(file);
+		System.out.println("wrote " + (file.length() / OpeningBook.ENTRY_BYTES) + " entries to " + file);
+	}
+}
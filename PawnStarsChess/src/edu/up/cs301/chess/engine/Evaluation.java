@@ -0,0 +1,441 @@
+package edu.up.cs301.chess.engine;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Scores a position for the search. Scores are in centipawns (a pawn is
+ * worth about 100) from the point of view of the side to move, so a
+ * positive score means the side to move is ahead.
+ *
+ * Every term has a middlegame and an endgame value, and the two are
+ * blended by how much material is left (a "tapered" evaluation), so for
+ * example the king is kept safe while there are queens on the board and
+ * brought to the center once they are gone. The terms are:
+ *
+ * - material and piece-square tables, which Position keeps up to date as
+ *   pieces move, so they cost nothing here
+ * - mobility: how many safe squares each piece can move to
+ * - king safety: the pawns in front of each king and the pieces attacking
+ *   the squares around it
+ * - pawn structure: doubled, isolated and passed pawns
+ * - the bishop pair
+ *
+ * The piece-square tables are the PeSTO tables, written with rank 8 first
+ * so they look like the board from white's side.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class Evaluation {
+
+	//The value of each piece type for exchanges, indexed by the types in ChessPiece
+	public static final int[] PIECE_VALUES = { 900, 0, 500, 330, 320, 100 };
+
+	//The phase when all of the pieces are on the board
+	public static final int MAX_PHASE = 24;
+
+	//Material in the middlegame and endgame, indexed by type
+	private static final int[] MIDGAME_VALUES = { 1025, 0, 477, 365, 337, 82 };
+	private static final int[] ENDGAME_VALUES = { 936, 0, 512, 297, 281, 94 };
+
+	//How much each type counts towards the phase
+	private static final int[] PHASE_WEIGHTS = { 4, 0, 2, 1, 1, 0 };
+
+	//Piece-square tables from white's side, rank 8 first, indexed by type
+	private static final int[][] MIDGAME_TABLES = {
+		{ //queen
+			-28,   0,  29,  12,  59,  44,  43,  45,
+			-24, -39,  -5,   1, -16,  57,  28,  54,
+			-13, -17,   7,   8,  29,  56,  47,  57,
+			-27, -27, -16, -16,  -1,  17,  -2,   1,
+			 -9, -26,  -9, -10,  -2,  -4,   3,  -3,
+			-14,   2, -11,  -2,  -5,   2,  14,   5,
+			-35,  -8,  11,   2,   8,  15,  -3,   1,
+			 -1, -18,  -9,  10, -15, -25, -31, -50,
+		},
+		{ //king
+			-65,  23,  16, -15, -56, -34,   2,  13,
+			 29,  -1, -20,  -7,  -8,  -4, -38, -29,
+			 -9,  24,   2, -16, -20,   6,  22, -22,
+			-17, -20, -12, -27, -30, -25, -14, -36,
+			-49,  -1, -27, -39, -46, -44, -33, -51,
+			-14, -14, -22, -46, -44, -30, -15, -27,
+			  1,   7,  -8, -64, -43, -16,   9,   8,
+			-15,  36,  12, -54,   8, -28,  24,  14,
+		},
+		{ //rook
+			 32,  42,  32,  51,  63,   9,  31,  43,
+			 27,  32,  58,  62,  80,  67,  26,  44,
+			 -5,  19,  26,  36,  17,  45,  61,  16,
+			-24, -11,   7,  26,  24,  35,  -8, -20,
+			-36, -26, -12,  -1,   9,  -7,   6, -23,
+			-45, -25, -16, -17,   3,   0,  -5, -33,
+			-44, -16, -20,  -9,  -1,  11,  -6, -71,
+			-19, -13,   1,  17,  16,   7, -37, -26,
+		},
+		{ //bishop
+			-29,   4, -82, -37, -25, -42,   7,  -8,
+			-26,  16, -18, -13,  30,  59,  18, -47,
+			-16,  37,  43,  40,  35,  50,  37,  -2,
+			 -4,   5,  19,  50,  37,  37,   7,  -2,
+			 -6,  13,  13,  26,  34,  12,  10,   4,
+			  0,  15,  15,  15,  14,  27,  18,  10,
+			  4,  15,  16,   0,   7,  21,  33,   1,
+			-33,  -3, -14, -21, -13, -12, -39, -21,
+		},
+		{ //knight
+			-167, -89, -34, -49,  61, -97, -15, -107,
+			 -73, -41,  72,  36,  23,  62,   7,  -17,
+			 -47,  60,  37,  65,  84, 129,  73,   44,
+			  -9,  17,  19,  53,  37,  69,  18,   22,
+			 -13,   4,  16,  13,  28,  19,  21,   -8,
+			 -23,  -9,  12,  10,  19,  17,  25,  -16,
+			 -29, -53, -12,  -3,  -1,  18, -14,  -19,
+			-105, -21, -58, -33, -17, -28, -19,  -23,
+		},
+		{ //pawn
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			 98, 134,  61,  95,  68, 126,  34, -11,
+			 -6,   7,  26,  31,  65,  56,  25, -20,
+			-14,  13,   6,  21,  23,  12,  17, -23,
+			-27,  -2,  -5,  12,  17,   6,  10, -25,
+			-26,  -4,  -4, -10,   3,   3,  33, -12,
+			-35,  -1, -20, -23, -15,  24,  38, -22,
+			  0,   0,   0,   0,   0,   0,   0,   0,
+		},
+	};
+	private static final int[][] ENDGAME_TABLES = {
+		{ //queen
+			 -9,  22,  22,  27,  27,  19,  10,  20,
+			-17,  20,  32,  41,  58,  25,  30,   0,
+			-20,   6,   9,  49,  47,  35,  19,   9,
+			  3,  22,  24,  45,  57,  40,  57,  36,
+			-18,  28,  19,  47,  31,  34,  39,  23,
+			-16, -27,  15,   6,   9,  17,  10,   5,
+			-22, -23, -30, -16, -16, -23, -36, -32,
+			-33, -28, -22, -43,  -5, -32, -20, -41,
+		},
+		{ //king
+			-74, -35, -18, -18, -11,  15,   4, -17,
+			-12,  17,  14,  17,  17,  38,  23,  11,
+			 10,  17,  23,  15,  20,  45,  44,  13,
+			 -8,  22,  24,  27,  26,  33,  26,   3,
+			-18,  -4,  21,  24,  27,  23,   9, -11,
+			-19,  -3,  11,  21,  23,  16,   7,  -9,
+			-27, -11,   4,  13,  14,   4,  -5, -17,
+			-53, -34, -21, -11, -28, -14, -24, -43,
+		},
+		{ //rook
+			 13,  10,  18,  15,  12,  12,   8,   5,
+			 11,  13,  13,  11,  -3,   3,   8,   3,
+			  7,   7,   7,   5,   4,  -3,  -5,  -3,
+			  4,   3,  13,   1,   2,   1,  -1,   2,
+			  3,   5,   8,   4,  -5,  -6,  -8, -11,
+			 -4,   0,  -5,  -1,  -7, -12,  -8, -16,
+			 -6,  -6,   0,   2,  -9,  -9, -11,  -3,
+			 -9,   2,   3,  -1,  -5, -13,   4, -20,
+		},
+		{ //bishop
+			-14, -21, -11,  -8,  -7,  -9, -17, -24,
+			 -8,  -4,   7, -12,  -3, -13,  -4, -14,
+			  2,  -8,   0,  -1,  -2,   6,   0,   4,
+			 -3,   9,  12,   9,  14,  10,   3,   2,
+			 -6,   3,  13,  19,   7,  10,  -3,  -9,
+			-12,  -3,   8,  10,  13,   3,  -7, -15,
+			-14, -18,  -7,  -1,   4,  -9, -15, -27,
+			-23,  -9, -23,  -5,  -9, -16,  -5, -17,
+		},
+		{ //knight
+			-58, -38, -13, -28, -31, -27, -63, -99,
+			-25,  -8, -25,  -2,  -9, -25, -24, -52,
+			-24, -20,  10,   9,  -1,  -9, -19, -41,
+			-17,   3,  22,  22,  22,  11,   8, -18,
+			-18,  -6,  16,  25,  16,  17,   4, -18,
+			-23,  -3,  -1,  15,  10,  -3, -20, -22,
+			-42, -20, -10,  -5,  -2, -20, -23, -44,
+			-29, -51, -23, -15, -22, -18, -50, -64,
+		},
+		{ //pawn
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			178, 173, 158, 134, 147, 132, 165, 187,
+			 94, 100,  85,  67,  56,  53,  82,  84,
+			 32,  24,  13,   5,  -2,   4,  17,  17,
+			 13,   9,  -3,  -7,  -7,  -8,   3,  -1,
+			  4,   7,  -6,   1,   0,  -5,  -1,  -8,
+			 13,   8,   8,  10,  13,   0,   2,  -7,
+			  0,   0,   0,   0,   0,   0,   0,   0,
+		},
+	};
+
+	//Material plus piece-square value of each piece index on each square,
+	//negative for black, so a position's total is white's lead
+	private static final int[][] MIDGAME = new int[2 * ChessPiece.NUM_TYPES][Bitboards.NUM_SQUARES];
+	private static final int[][] ENDGAME = new int[2 * ChessPiece.NUM_TYPES][Bitboards.NUM_SQUARES];
+
+	//Mobility per square over the usual number, indexed by type
+	private static final int[] MOBILITY_MIDGAME = { 1, 0, 2, 5, 4, 0 };
+	private static final int[] MOBILITY_ENDGAME = { 2, 0, 4, 5, 4, 0 };
+	private static final int[] MOBILITY_BASE = { 13, 0, 7, 6, 4, 0 };
+
+	//How dangerous each type is when it attacks the squares around a king
+	private static final int[] KING_ATTACK_WEIGHTS = { 80, 0, 40, 20, 20, 0 };
+
+	//Percent of the attack weight that counts, by number of attackers
+	private static final int[] KING_ATTACK_SCALE = { 0, 0, 50, 75, 88, 94, 97, 99 };
+
+	//Bonus for each pawn in front of the king in the middlegame
+	private static final int PAWN_SHIELD = 12;
+
+	//Pawn structure
+	private static final int DOUBLED_MIDGAME = -10;
+	private static final int DOUBLED_ENDGAME = -20;
+	private static final int ISOLATED_MIDGAME = -10;
+	private static final int ISOLATED_ENDGAME = -15;
+	private static final int[] PASSED_MIDGAME = { 0, 5, 10, 15, 25, 40, 60, 0 };
+	private static final int[] PASSED_ENDGAME = { 0, 10, 20, 35, 60, 100, 150, 0 };
+
+	//Bishop pair
+	private static final int BISHOP_PAIR_MIDGAME = 30;
+	private static final int BISHOP_PAIR_ENDGAME = 50;
+
+	//Each file, and the files next to each file
+	private static final long[] FILES = new long[8];
+	private static final long[] ADJACENT_FILES = new long[8];
+
+	//The squares in front of a pawn on its own and the adjacent files, by color
+	private static final long[][] PASSED_MASKS = new long[2][Bitboards.NUM_SQUARES];
+
+	//The squares around a king, and the squares of its pawn shield by color
+	private static final long[] KING_ZONES = new long[Bitboards.NUM_SQUARES];
+	private static final long[][] SHIELDS = new long[2][Bitboards.NUM_SQUARES];
+
+	static
+	{
+		for(int type = 0; type < ChessPiece.NUM_TYPES; type++)
+		{
+			for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+			{
+				//the tables start at a8, so flip the rank for white
+				int white = Position.pieceIndex(Position.WHITE, type);
+				int black = Position.pieceIndex(Position.BLACK, type);
+				MIDGAME[white][square] = MIDGAME_VALUES[type] + MIDGAME_TABLES[type][square ^ 56];
+				ENDGAME[white][square] = ENDGAME_VALUES[type] + ENDGAME_TABLES[type][square ^ 56];
+				MIDGAME[black][square] = -MIDGAME_VALUES[type] - MIDGAME_TABLES[type][square];
+				ENDGAME[black][square] = -ENDGAME_VALUES[type] - ENDGAME_TABLES[type][square];
+			}
+		}
+
+		for(int file = 0; file < 8; file++)
+		{
+			FILES[file] = Bitboards.FILE_A << file;
+		}
+		for(int file = 0; file < 8; file++)
+		{
+			ADJACENT_FILES[file] = ((file > 0) ? FILES[file - 1] : 0) | ((file < 7) ? FILES[file + 1] : 0);
+		}
+
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			int rank = Bitboards.rank(square);
+			int file = Bitboards.file(square);
+			long files = FILES[file] | ADJACENT_FILES[file];
+			long above = (rank < 7) ? -1L << ((rank + 1) * 8) : 0;
+			long below = (rank > 0) ? -1L >>> ((8 - rank) * 8) : 0;
+			PASSED_MASKS[Position.WHITE][square] = files & above;
+			PASSED_MASKS[Position.BLACK][square] = files & below;
+
+			KING_ZONES[square] = AttackTables.kingAttacks(square) | (1L << square);
+			long twoAbove = (rank < 7) ? above & ~((rank < 5) ? -1L << ((rank + 3) * 8) : 0) : 0;
+			long twoBelow = (rank > 0) ? below & ~((rank > 2) ? -1L >>> ((10 - rank) * 8) : 0) : 0;
+			SHIELDS[Position.WHITE][square] = files & twoAbove;
+			SHIELDS[Position.BLACK][square] = files & twoBelow;
+		}
+	}
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private Evaluation()
+	{
+	}
+
+	/**
+	 * Returns the middlegame material and piece-square value of a piece on
+	 * a square, negative for black. Position adds these up as pieces move.
+	 * @param pieceIndex see Position.pieceIndex
+	 * @param square
+	 * @return the value
+	 */
+	public static int midgame(int pieceIndex, int square)
+	{
+		return MIDGAME[pieceIndex][square];
+	}
+
+	/**
+	 * Returns the endgame material and piece-square value of a piece on a
+	 * square, negative for black
+	 * @param pieceIndex see Position.pieceIndex
+	 * @param square
+	 * @return the value
+	 */
+	public static int endgame(int pieceIndex, int square)
+	{
+		return ENDGAME[pieceIndex][square];
+	}
+
+	/**
+	 * Returns how much a piece counts towards the game phase
+	 * @param pieceIndex see Position.pieceIndex
+	 * @return the phase weight
+	 */
+	public static int phaseWeight(int pieceIndex)
+	{
+		return PHASE_WEIGHTS[pieceIndex % ChessPiece.NUM_TYPES];
+	}
+
+	/**
+	 * Scores a position
+	 * @param position
+	 * @return the score for the side to move
+	 */
+	public static int evaluate(Position position)
+	{
+		int midgame = position.getMidgameScore();
+		int endgame = position.getEndgameScore();
+		long occupied = position.getOccupied();
+		long whitePawns = position.getPieces(Position.WHITE, ChessPiece.PAWN);
+		long blackPawns = position.getPieces(Position.BLACK, ChessPiece.PAWN);
+		long whitePawnAttacks = ((whitePawns << 7) & ~Bitboards.FILE_H) | ((whitePawns << 9) & ~Bitboards.FILE_A);
+		long blackPawnAttacks = ((blackPawns >>> 9) & ~Bitboards.FILE_H) | ((blackPawns >>> 7) & ~Bitboards.FILE_A);
+
+		for(int color = Position.WHITE; color <= Position.BLACK; color++)
+		{
+			int sign = (color == Position.WHITE) ? 1 : -1;
+			int enemy = 1 - color;
+			long pawns = position.getPieces(color, ChessPiece.PAWN);
+			long enemyPawns = position.getPieces(enemy, ChessPiece.PAWN);
+
+			//mobility, and attacks on the enemy king
+			long area = ~position.getOccupancy(color) & ~((color == Position.WHITE) ? blackPawnAttacks : whitePawnAttacks);
+			int enemyKing = position.getKingSquare(enemy);
+			long kingZone = (enemyKing == Bitboards.NO_SQUARE) ? 0 : KING_ZONES[enemyKing];
+			int attackers = 0;
+			int attackWeight = 0;
+			for(int type = ChessPiece.QUEEN; type <= ChessPiece.KNIGHT; type++)
+			{
+				if(type == ChessPiece.KING)
+				{
+					continue;
+				}
+				long pieces = position.getPieces(color, type);
+				while(pieces != 0)
+				{
+					int square = Long.numberOfTrailingZeros(pieces);
+					pieces &= pieces - 1;
+					long attacks = AttackTables.attacks(color, type, square, occupied);
+					int mobility = Long.bitCount(attacks & area) - MOBILITY_BASE[type];
+					midgame += sign * mobility * MOBILITY_MIDGAME[type];
+					endgame += sign * mobility * MOBILITY_ENDGAME[type];
+					if((attacks & kingZone) != 0)
+					{
+						attackers++;
+						attackWeight += KING_ATTACK_WEIGHTS[type] * Long.bitCount(attacks & kingZone);
+					}
+				}
+			}
+			midgame += sign * attackWeight * KING_ATTACK_SCALE[Math.min(attackers, 7)] / 100;
+
+			//pawns in front of the king
+			int king = position.getKingSquare(color);
+			if(king != Bitboards.NO_SQUARE)
+			{
+				midgame += sign * PAWN_SHIELD * Long.bitCount(SHIELDS[color][king] & pawns);
+			}
+
+			//pawn structure
+			long remaining = pawns;
+			while(remaining != 0)
+			{
+				int square = Long.numberOfTrailingZeros(remaining);
+				remaining &= remaining - 1;
+				int file = Bitboards.file(square);
+				if((ADJACENT_FILES[file] & pawns) == 0)
+				{
+					midgame += sign * ISOLATED_MIDGAME;
+					endgame += sign * ISOLATED_ENDGAME;
+				}
+				if((PASSED_MASKS[color][square] & enemyPawns) == 0
+						&& (PASSED_MASKS[color][square] & FILES[file] & pawns) == 0)
+				{
+					int rank = (color == Position.WHITE) ? Bitboards.rank(square) : 7 - Bitboards.rank(square);
+					midgame += sign * PASSED_MIDGAME[rank];
+					endgame += sign * PASSED_ENDGAME[rank];
+				}
+			}
+			for(int file = 0; file < 8; file++)
+			{
+				int count = Long.bitCount(pawns & FILES[file]);
+				if(count > 1)
+				{
+					midgame += sign * (count - 1) * DOUBLED_MIDGAME;
+					endgame += sign * (count - 1) * DOUBLED_ENDGAME;
+				}
+			}
+
+			if(Long.bitCount(position.getPieces(color, ChessPiece.BISHOP)) >= 2)
+			{
+				midgame += sign * BISHOP_PAIR_MIDGAME;
+				endgame += sign * BISHOP_PAIR_ENDGAME;
+			}
+		}
+
+		int phase = Math.min(position.getPhase(), MAX_PHASE);
+		int score = (midgame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+		return (position.getSideToMove() == Position.WHITE) ? score : -score;
+	}
+
+	/**
+	 * Computes a position's middlegame material and piece-square total from
+	 * scratch. Position keeps it up to date as it changes, so this is only
+	 * needed to check that it is right.
+	 * @param position
+	 * @return white's lead
+	 */
+	public static int computeMidgame(Position position)
+	{
+		int total = 0;
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			int index = position.pieceAt(square);
+			if(index != Position.EMPTY)
+			{
+				total += MIDGAME[index][square];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Computes a position's endgame material and piece-square total from
+	 * scratch
+	 * @param position
+	 * @return white's lead
+	 */
+	public static int computeEndgame(Position position)
+	{
+		int total = 0;
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			int index = position.pieceAt(square);
+			if(index != Position.EMPTY)
+			{
+				total += ENDGAME[index][square];
+			}
+		}
+		return total;
+	}
+}
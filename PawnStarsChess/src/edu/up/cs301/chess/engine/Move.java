@@ -0,0 +1,167 @@
+package edu.up.cs301.chess.engine;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Helpers for moves packed into an int, so the engine can make and store
+ * moves without creating objects. The lowest 6 bits are the square the
+ * piece moves from, the next 6 bits are the square it moves to, and the
+ * next 3 bits are the type a pawn is promoted to plus one (0 if it is not a
+ * promotion). Moves from the move generator also have 2 bits of flags for
+ * special moves and 3 bits for the type of the captured piece plus one.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class Move {
+
+	//Not a move; a piece can never move from a1 to a1
+	public static final int NONE = 0;
+
+	//Flags for special moves
+	public static final int NORMAL = 0;
+	public static final int DOUBLE_PUSH = 1;
+	public static final int EN_PASSANT = 2;
+	public static final int CASTLE = 3;
+
+	private static final int SQUARE_MASK = 0x3F;
+	private static final int TO_SHIFT = 6;
+	private static final int PROMOTION_SHIFT = 12;
+	private static final int PROMOTION_MASK = 0x7;
+	private static final int FLAGS_SHIFT = 15;
+	private static final int FLAGS_MASK = 0x3;
+	private static final int CAPTURED_SHIFT = 17;
+	private static final int CAPTURED_MASK = 0x7;
+
+	//The squares and promotion, which are all that is needed to make a move
+	private static final int SQUARES_AND_PROMOTION = (1 << FLAGS_SHIFT) - 1;
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private Move()
+	{
+	}
+
+	/**
+	 * Packs a move that is not a promotion
+	 * @param from the square the piece is on
+	 * @param to the square the piece moves to
+	 * @return the move
+	 */
+	public static int create(int from, int to)
+	{
+		return from | (to << TO_SHIFT);
+	}
+
+	/**
+	 * Packs a move
+	 * @param from the square the piece is on
+	 * @param to the square the piece moves to
+	 * @param promotion the type a pawn becomes, or ChessPiece.INVALID
+	 * @return the move
+	 */
+	public static int create(int from, int to, int promotion)
+	{
+		return from | (to << TO_SHIFT) | ((promotion + 1) << PROMOTION_SHIFT);
+	}
+
+	/**
+	 * Packs a move with its flags and captured piece
+	 * @param from the square the piece is on
+	 * @param to the square the piece moves to
+	 * @param promotion the type a pawn becomes, or ChessPiece.INVALID
+	 * @param flags NORMAL, DOUBLE_PUSH, EN_PASSANT or CASTLE
+	 * @param captured the type of the piece taken, or ChessPiece.INVALID
+	 * @return the move
+	 */
+	public static int create(int from, int to, int promotion, int flags, int captured)
+	{
+		return from | (to << TO_SHIFT) | ((promotion + 1) << PROMOTION_SHIFT)
+				| (flags << FLAGS_SHIFT) | ((captured + 1) << CAPTURED_SHIFT);
+	}
+
+	/**
+	 * @return the square the piece moves from
+	 */
+	public static int getFrom(int move)
+	{
+		return move & SQUARE_MASK;
+	}
+
+	/**
+	 * @return the square the piece moves to
+	 */
+	public static int getTo(int move)
+	{
+		return (move >>> TO_SHIFT) & SQUARE_MASK;
+	}
+
+	/**
+	 * @return the type a pawn is promoted to, or ChessPiece.INVALID
+	 */
+	public static int getPromotion(int move)
+	{
+		return ((move >>> PROMOTION_SHIFT) & PROMOTION_MASK) - 1;
+	}
+
+	/**
+	 * @return NORMAL, DOUBLE_PUSH, EN_PASSANT or CASTLE
+	 */
+	public static int getFlags(int move)
+	{
+		return (move >>> FLAGS_SHIFT) & FLAGS_MASK;
+	}
+
+	/**
+	 * @return the type of the piece taken, or ChessPiece.INVALID
+	 */
+	public static int getCaptured(int move)
+	{
+		return ((move >>> CAPTURED_SHIFT) & CAPTURED_MASK) - 1;
+	}
+
+	/**
+	 * @return true if the move takes a piece
+	 */
+	public static boolean isCapture(int move)
+	{
+		return (move & (CAPTURED_MASK << CAPTURED_SHIFT)) != 0;
+	}
+
+	/**
+	 * Returns true if two moves go between the same squares and promote to
+	 * the same type, whether or not they have flags
+	 * @param move1
+	 * @param move2
+	 * @return true if they are the same move
+	 */
+	public static boolean sameMove(int move1, int move2)
+	{
+		return (move1 & SQUARES_AND_PROMOTION) == (move2 & SQUARES_AND_PROMOTION);
+	}
+
+	/**
+	 * Converts a move to coordinate notation, such as "e2e4" or "e7e8q"
+	 * @param move
+	 * @return the move as a string
+	 */
+	public static String toString(int move)
+	{
+		if(move == NONE)
+		{
+			return "0000";
+		}
+		String text = Bitboards.squareName(getFrom(move)) + Bitboards.squareName(getTo(move));
+		int promotion = getPromotion(move);
+		if(promotion != ChessPiece.INVALID)
+		{
+			text += "qkrbnp".charAt(promotion);
+		}
+		return text;
+	}
+}
@@ -21,6 +21,17 @@ import edu.up.cs301.chess.actions.RookMove;
  */
 public class MoveGenerator {
 	
+	//More moves than any position can have (the most known is 218)
+	public static final int MAX_MOVES = 256;
+	
+	//The types a pawn can be promoted to, best first
+	private static final int[] PROMOTIONS = { ChessPiece.QUEEN, ChessPiece.KNIGHT,
+		ChessPiece.ROOK, ChessPiece.BISHOP };
+	
+	//The pieces other than pawns and the king, in the order their moves are generated
+	private static final int[] PIECE_TYPES = { ChessPiece.KNIGHT, ChessPiece.BISHOP,
+		ChessPiece.ROOK, ChessPiece.QUEEN };
+	
 	/**
 	 * Returns an array containing the moves a player can make
 	 * 
@@ -36,62 +47,443 @@ public class MoveGenerator {
 			return null;
 		}
 		
-		//Contain each array of moves in a 2d array
-		ChessMoveAction[][] moveList2d = new ChessMoveAction[ChessGameState.NUM_PIECES][];
+		//generate the moves as ints and only create actions for the legal ones
+		int[] moves = new int[MAX_MOVES];
+		int numMoves = generateLegalMoves(state.getPosition(), moves);
 		
-		//get the pieces that can move
-		ChessPiece[] pieces;
-		if(state.isWhoseTurn())//player 1's turn
+		ChessMoveAction[] moveList = new ChessMoveAction[numMoves];
+		for(int i=0;i<numMoves;i++)
 		{
-			pieces = state.getPlayer1Pieces();
+			moveList[i] = toAction(state, moves[i], player);
 		}
-		else//player 2's turn
-		{
-			pieces = state.getPlayer2Pieces();
-		}
-		for(int i=0;i<ChessGameState.NUM_PIECES;i++)
+		return moveList;
+	}
+	
+	/**
+	 * Generates the moves the side to move can make, ignoring whether they
+	 * leave its king in check. Castling is only generated when the king is
+	 * not in check and does not move through or into check. Nothing is
+	 * allocated, so a search can keep one buffer per ply.
+	 * 
+	 * @param position the position to generate moves for
+	 * @param moves the buffer to put the moves in, with room for MAX_MOVES
+	 * @return the number of moves
+	 */
+	public static int generateMoves(Position position, int[] moves)
+	{
+		return generate(position, moves, false, true);
+	}
+	
+	/**
+	 * Generates the moves the side to move can make without leaving its
+	 * king in check. The pieces giving check and the pieces pinned to the
+	 * king are found once, and the moves are filtered with bit masks, so no
+	 * move has to be tried on the board. Only king moves and en passant are
+	 * checked one at a time.
+	 * 
+	 * @param position the position to generate moves for
+	 * @param moves the buffer to put the moves in, with room for MAX_MOVES
+	 * @return the number of moves
+	 */
+	public static int generateLegalMoves(Position position, int[] moves)
+	{
+		return generate(position, moves, true, true);
+	}
+	
+	/**
+	 * Finds a legal move from its coordinate notation, as used by UCI
+	 * 
+	 * @param position the position the move is made in
+	 * @param text the move, such as "e2e4" or "e7e8q"; see Move.toString
+	 * @return the move, or Move.NONE if no legal move has that name
+	 */
+	public static int parseMove(Position position, String text)
+	{
+		int[] moves = new int[MAX_MOVES];
+		int numMoves = generateLegalMoves(position, moves);
+		for(int i = 0; i < numMoves; i++)
 		{
-			if(pieces[i].isAlive())
+			if(Move.toString(moves[i]).equals(text))
 			{
-				/*
-				 * get all possible moves the player can make
-				 * including ones that do not protect the king
-				 */
-				
-				ChessMoveAction[] newActions = getPieceMoves(state, new ChessPiece(pieces[i]), player, color, false);
-				moveList2d[i] = newActions;
+				return moves[i];
 			}
 		}
+		return Move.NONE;
+	}
+	
+	/**
+	 * Generates the legal captures and promotions of the side to move, for
+	 * a quiescence search. Nothing is allocated.
+	 * 
+	 * @param position the position to generate moves for
+	 * @param moves the buffer to put the moves in, with room for MAX_MOVES
+	 * @return the number of moves
+	 */
+	public static int generateLegalCaptures(Position position, int[] moves)
+	{
+		return generate(position, moves, true, false);
+	}
+	
+	/**
+	 * Generates moves for the side to move
+	 * @param legal true to leave out the moves that leave the king in check
+	 * @param quiet false to only generate captures and promotions
+	 * @return the number of moves
+	 */
+	private static int generate(Position position, int[] moves, boolean legal, boolean quiet)
+	{
+		int color = position.getSideToMove();
+		long own = position.getOccupancy(color);
+		long occupied = position.getOccupied();
+		long enemies = occupied & ~own;
+		int king = position.getKingSquare(color);
+		int count = 0;
 		
+		//the squares moves other than pawn pushes can go to
+		long targetMask = quiet ? ~own : enemies;
 		
-		//Calculate the length of the new array
-		int length = 0;
-		for(int i=0;i<ChessGameState.NUM_PIECES;i++)
+		//the squares pieces other than the king can move to, and the pieces
+		//that can only move towards or away from the king
+		long checkMask = ~0L;
+		long pinned = 0;
+		if(legal && king != Bitboards.NO_SQUARE)
 		{
-			if(moveList2d[i] != null)
-			{
-				length += moveList2d[i].length;
-			}
+			checkMask = checkMask(position, color);
+			pinned = position.getPinned(color);
 		}
 		
-		//Add every move into the array
-		ChessMoveAction[] moveList = new ChessMoveAction[length];
-		int c=0;
-		for(int i=0;i<ChessGameState.NUM_PIECES;i++)
+		//only the king can move out of double check
+		if(checkMask != 0)
 		{
-			if(moveList2d[i] != null)
+			//pawns
+			int forward = (color == Position.WHITE) ? 8 : -8;
+			int startRank = (color == Position.WHITE) ? 1 : 6;
+			int lastRank = (color == Position.WHITE) ? 7 : 0;
+			int enPassant = position.getEnPassant();
+			long pawns = position.getPieces(color, ChessPiece.PAWN);
+			while(pawns != 0)
 			{
-				for(int j=0;j<moveList2d[i].length;j++)
+				int from = Long.numberOfTrailingZeros(pawns);
+				pawns &= pawns - 1;
+				long allowed = checkMask;
+				if((pinned & (1L << from)) != 0)
+				{
+					allowed &= AttackTables.line(king, from);
+				}
+				
+				int to = from + forward;
+				if((occupied & (1L << to)) == 0 && (quiet || Bitboards.rank(to) == lastRank))
 				{
-					if(moveList2d[i][j] != null)
+					if((allowed & (1L << to)) != 0)
 					{
-						moveList[c++] = moveList2d[i][j];
+						count = addPawnMoves(moves, count, from, to, ChessPiece.INVALID);
+					}
+					
+					int doubleTo = to + forward;
+					if(quiet && Bitboards.rank(from) == startRank && (occupied & (1L << doubleTo)) == 0
+							&& (allowed & (1L << doubleTo)) != 0)
+					{
+						moves[count++] = Move.create(from, doubleTo, ChessPiece.INVALID,
+								Move.DOUBLE_PUSH, ChessPiece.INVALID);
 					}
 				}
+				
+				long attacks = AttackTables.pawnAttacks(color, from);
+				long captures = attacks & enemies & allowed;
+				while(captures != 0)
+				{
+					to = Long.numberOfTrailingZeros(captures);
+					captures &= captures - 1;
+					count = addPawnMoves(moves, count, from, to, position.typeAt(to));
+				}
+				if(enPassant != Bitboards.NO_SQUARE && (attacks & (1L << enPassant)) != 0
+						&& (!legal || isEnPassantLegal(position, from, enPassant)))
+				{
+					moves[count++] = Move.create(from, enPassant, ChessPiece.INVALID,
+							Move.EN_PASSANT, ChessPiece.PAWN);
+				}
+			}
+			
+			//knights, bishops, rooks and queens
+			for(int type: PIECE_TYPES)
+			{
+				long pieces = position.getPieces(color, type);
+				while(pieces != 0)
+				{
+					int from = Long.numberOfTrailingZeros(pieces);
+					pieces &= pieces - 1;
+					
+					long targets = AttackTables.attacks(color, type, from, occupied) & targetMask & checkMask;
+					if((pinned & (1L << from)) != 0)
+					{
+						targets &= AttackTables.line(king, from);
+					}
+					count = addMoves(position, moves, count, from, targets);
+				}
 			}
 		}
 		
-		return moveList;
+		//the king
+		if(king != Bitboards.NO_SQUARE)
+		{
+			long targets = AttackTables.kingAttacks(king) & targetMask;
+			if(legal)
+			{
+				targets = safeKingTargets(position, king, targets);
+			}
+			count = addMoves(position, moves, count, king, targets);
+		}
+		
+		return quiet ? addCastling(position, moves, count) : count;
+	}
+	
+	/**
+	 * Returns the squares a color's pieces other than the king can move to
+	 * without leaving the king in check. That is every square if the king is
+	 * not in check, the checking piece and the squares between it and the
+	 * king if there is one, and no squares if there are two.
+	 * 
+	 * @param position
+	 * @param color
+	 * @return the squares
+	 */
+	public static long checkMask(Position position, int color)
+	{
+		long checkers = position.getCheckers(color);
+		if(checkers == 0)
+		{
+			return ~0L;
+		}
+		if((checkers & (checkers - 1)) != 0)
+		{
+			return 0L;
+		}
+		return checkers | AttackTables.between(position.getKingSquare(color),
+				Long.numberOfTrailingZeros(checkers));
+	}
+	
+	/**
+	 * Removes the squares a piece can move to that would leave its own king
+	 * in check
+	 * 
+	 * @param position
+	 * @param from the square the piece is on
+	 * @param targets the squares it can move to, ignoring its king
+	 * @param checkMask from checkMask for the piece's color
+	 * @param pinned from Position.getPinned for the piece's color
+	 * @return the squares it can legally move to
+	 */
+	public static long legalTargets(Position position, int from, long targets,
+			long checkMask, long pinned)
+	{
+		int color = position.colorAt(from);
+		if(color == Position.EMPTY)
+		{
+			return 0L;
+		}
+		int king = position.getKingSquare(color);
+		if(king == Bitboards.NO_SQUARE)
+		{
+			return targets;
+		}
+		if(from == king)
+		{
+			return safeKingTargets(position, king, targets);
+		}
+		
+		long allowed = checkMask;
+		if((pinned & (1L << from)) != 0)
+		{
+			allowed &= AttackTables.line(king, from);
+		}
+		long legal = targets & allowed;
+		
+		//en passant takes a piece that is not on the square moved to
+		int enPassant = position.getEnPassant();
+		if(enPassant != Bitboards.NO_SQUARE && (targets & (1L << enPassant)) != 0
+				&& position.typeAt(from) == ChessPiece.PAWN
+				&& Bitboards.file(from) != Bitboards.file(enPassant))
+		{
+			legal &= ~(1L << enPassant);
+			if(isEnPassantLegal(position, from, enPassant))
+			{
+				legal |= 1L << enPassant;
+			}
+		}
+		return legal;
+	}
+	
+	/**
+	 * Removes the squares a king can move to that are attacked. The king is
+	 * taken off the board first so it can't hide behind itself from a slider.
+	 * @return the safe squares
+	 */
+	private static long safeKingTargets(Position position, int king, long targets)
+	{
+		int enemy = 1 - position.colorAt(king);
+		long occupied = position.getOccupied() & ~(1L << king);
+		long safe = 0;
+		while(targets != 0)
+		{
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			if(position.attackersTo(to, enemy, occupied) == 0)
+			{
+				safe |= 1L << to;
+			}
+		}
+		return safe;
+	}
+	
+	/**
+	 * Returns true if an en passant capture leaves the king safe. Two pawns
+	 * leave the rank at once, so a pin along the rank has to be checked with
+	 * the board as it is after the capture.
+	 * @return true if it is legal
+	 */
+	private static boolean isEnPassantLegal(Position position, int from, int to)
+	{
+		int color = position.colorAt(from);
+		int king = position.getKingSquare(color);
+		if(king == Bitboards.NO_SQUARE)
+		{
+			return true;
+		}
+		int captured = (color == Position.WHITE) ? to - 8 : to + 8;
+		long occupied = (position.getOccupied() & ~(1L << from) & ~(1L << captured)) | (1L << to);
+		return (position.attackersTo(king, 1 - color, occupied) & ~(1L << captured)) == 0;
+	}
+	
+	/**
+	 * Adds a move from one square to each target square
+	 * @return the new number of moves
+	 */
+	private static int addMoves(Position position, int[] moves, int count, int from, long targets)
+	{
+		while(targets != 0)
+		{
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			moves[count++] = Move.create(from, to, ChessPiece.INVALID,
+					Move.NORMAL, position.typeAt(to));
+		}
+		return count;
+	}
+	
+	/**
+	 * Adds a pawn move, or one move for each type if it is a promotion
+	 * @return the new number of moves
+	 */
+	private static int addPawnMoves(int[] moves, int count, int from, int to, int captured)
+	{
+		int rank = Bitboards.rank(to);
+		if(rank == 0 || rank == 7)
+		{
+			for(int promotion: PROMOTIONS)
+			{
+				moves[count++] = Move.create(from, to, promotion, Move.NORMAL, captured);
+			}
+		}
+		else
+		{
+			moves[count++] = Move.create(from, to, ChessPiece.INVALID, Move.NORMAL, captured);
+		}
+		return count;
+	}
+	
+	/**
+	 * Adds the castling moves of the side to move
+	 * @return the new number of moves
+	 */
+	private static int addCastling(Position position, int[] moves, int count)
+	{
+		int color = position.getSideToMove();
+		int rights = position.getCastling();
+		int kingside = (color == Position.WHITE) ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+		int queenside = (color == Position.WHITE) ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+		if((rights & (kingside | queenside)) == 0)
+		{
+			return count;
+		}
+		
+		int king = Bitboards.square((color == Position.WHITE) ? 0 : 7, 4);
+		if(position.pieceAt(king) != Position.pieceIndex(color, ChessPiece.KING)
+				|| position.isAttacked(king, 1 - color))
+		{
+			return count;
+		}
+		
+		int rook = Position.pieceIndex(color, ChessPiece.ROOK);
+		long occupied = position.getOccupied();
+		if((rights & kingside) != 0 && position.pieceAt(king + 3) == rook
+				&& (occupied & ((1L << (king + 1)) | (1L << (king + 2)))) == 0
+				&& !position.isAttacked(king + 1, 1 - color)
+				&& !position.isAttacked(king + 2, 1 - color))
+		{
+			moves[count++] = Move.create(king, king + 2, ChessPiece.INVALID,
+					Move.CASTLE, ChessPiece.INVALID);
+		}
+		if((rights & queenside) != 0 && position.pieceAt(king - 4) == rook
+				&& (occupied & ((1L << (king - 1)) | (1L << (king - 2)) | (1L << (king - 3)))) == 0
+				&& !position.isAttacked(king - 1, 1 - color)
+				&& !position.isAttacked(king - 2, 1 - color))
+		{
+			moves[count++] = Move.create(king, king - 2, ChessPiece.INVALID,
+					Move.CASTLE, ChessPiece.INVALID);
+		}
+		return count;
+	}
+	
+	/**
+	 * Converts a move from the move generator into the action the game
+	 * expects. Castling becomes the rook moving onto the king.
+	 * 
+	 * @param state the game state the move is for
+	 * @param move
+	 * @param player the player making the move
+	 * @return the action
+	 */
+	public static ChessMoveAction toAction(ChessGameState state, int move, ChessPlayer player)
+	{
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+		byte[] loc = ChessGameState.toLocation(from);
+		byte[] newLoc = ChessGameState.toLocation(to);
+		ChessPiece[][] pieceMap = state.getPieceMap();
+		ChessPiece piece = new ChessPiece(pieceMap[loc[0]][loc[1]]);
+		ChessPiece taken = pieceMap[newLoc[0]][newLoc[1]];
+		
+		switch(Move.getFlags(move))
+		{
+		case Move.CASTLE:
+			byte[] rookLoc = ChessGameState.toLocation((to > from) ? from + 3 : from - 4);
+			ChessPiece rook = new ChessPiece(pieceMap[rookLoc[0]][rookLoc[1]]);
+			byte moveType = (to > from) ? RookMove.CASTLE_RIGHT : RookMove.CASTLE_LEFT;
+			return new RookMove(player, rook, loc, null, moveType);
+		case Move.DOUBLE_PUSH:
+			return new PawnMove(player, piece, newLoc, null, PawnMove.FIRST_MOVE);
+		case Move.EN_PASSANT:
+			//the pawn taken is next to the one moving
+			taken = pieceMap[loc[0]][newLoc[1]];
+			return new PawnMove(player, piece, newLoc, taken, PawnMove.EN_PASSANT);
+		}
+		
+		int promotion = Move.getPromotion(move);
+		if(promotion != ChessPiece.INVALID)
+		{
+			PawnMove pawnAct = new PawnMove(player, piece, newLoc, taken, PawnMove.PROMOTION);
+			pawnAct.setNewType((byte) promotion);
+			return pawnAct;
+		}
+		if(piece.getType() == ChessPiece.PAWN)
+		{
+			return new PawnMove(player, piece, newLoc, taken, PawnMove.NONE);
+		}
+		if(piece.getType() == ChessPiece.ROOK)
+		{
+			return new RookMove(player, piece, newLoc, taken, RookMove.NONE);
+		}
+		return new ChessMoveAction(player, piece, newLoc, taken);
 	}
 	
 	/**
@@ -219,15 +611,12 @@ public class MoveGenerator {
 							//vertical distance is 2
 							moveList.add(new PawnMove(player, piece, newLoc, taken,PawnMove.FIRST_MOVE));
 						}
-						else if(taken == null && Math.abs(i-state.getCanEnPassant()[1]) == 1 
-								&& j == state.getCanEnPassant()[0])
+						else if(taken == null && j != piece.getLocation()[1]
+								&& i == state.getCanEnPassant()[0] && j == state.getCanEnPassant()[1])
 						{
-							//the piece is moving horizontally, but not on another piece
-							//and it is on the same rank as a double jumped pawn
-							
-							newLoc = state.getCanEnPassant();
-							//en passants happen around the middle of the board, so they do not happen at (0,0)
-							taken = state.getPieceMap()[newLoc[0]][newLoc[1]];
+							//the piece is moving diagonally, but not on another piece,
+							//so it is taking the double jumped pawn next to it
+							taken = state.getPieceMap()[y1][j];
 							moveList.add(new PawnMove(player, piece, newLoc, taken,PawnMove.EN_PASSANT));
 						}
 						else if(i == ChessGameState.BOARD_HEIGHT-1 || i == 0)
@@ -280,6 +669,96 @@ public class MoveGenerator {
 		return moveList.toArray(new ChessMoveAction[moveList.size()]);
 	}
 
+	/**
+	 * Converts a ChessMoveAction into a move the Position can make. Castling
+	 * becomes the king moving two tiles, and promotions become a queen
+	 * unless the action asks for something else.
+	 * 
+	 * @param state the game state the action is for
+	 * @param action
+	 * @return the move, or Move.NONE if the action is not a move on the board
+	 */
+	public static int toMove(ChessGameState state, ChessMoveAction action)
+	{
+		if(action == null || action.getWhichPiece() == null)
+		{
+			return Move.NONE;
+		}
+		byte[] loc = action.getWhichPiece().getLocation();
+		byte[] newLoc = action.getNewPos();
+		if(ChessGameState.outOfBounds(loc) || ChessGameState.outOfBounds(newLoc))
+		{
+			return Move.NONE;
+		}
+		Position position = state.getPosition();
+		int from = ChessGameState.toSquare(loc[0], loc[1]);
+		int to = ChessGameState.toSquare(newLoc[0], newLoc[1]);
+		int color = position.colorAt(from);
+		int type = position.typeAt(from);
+		if(color == Position.EMPTY)
+		{
+			return Move.NONE;
+		}
+		
+		//castling is a rook moving onto its own king
+		if(type == ChessPiece.ROOK && position.typeAt(to) == ChessPiece.KING
+				&& position.colorAt(to) == color)
+		{
+			return encode(position, to, (from < to) ? to - 2 : to + 2, ChessPiece.INVALID);
+		}
+		
+		//promotion
+		if(type == ChessPiece.PAWN && (Bitboards.rank(to) == 0 || Bitboards.rank(to) == 7))
+		{
+			int promotion = ChessPiece.QUEEN;
+			if(action instanceof PawnMove && ((PawnMove)action).getType() == PawnMove.PROMOTION)
+			{
+				int newType = ((PawnMove)action).getNewType();
+				if(newType != ChessPiece.PAWN && newType != ChessPiece.KING
+						&& newType >= 0 && newType < ChessPiece.NUM_TYPES)
+				{
+					promotion = newType;
+				}
+			}
+			return encode(position, from, to, promotion);
+		}
+		return encode(position, from, to, ChessPiece.INVALID);
+	}
+	
+	/**
+	 * Packs a move with the flags and captured piece the move generator
+	 * would give it
+	 * 
+	 * @param position the position the move is made in
+	 * @param from
+	 * @param to
+	 * @param promotion the type a pawn becomes, or ChessPiece.INVALID
+	 * @return the move
+	 */
+	private static int encode(Position position, int from, int to, int promotion)
+	{
+		int type = position.typeAt(from);
+		int captured = position.typeAt(to);
+		int flags = Move.NORMAL;
+		if(type == ChessPiece.PAWN)
+		{
+			if(Math.abs(to - from) == 16)
+			{
+				flags = Move.DOUBLE_PUSH;
+			}
+			else if(to == position.getEnPassant() && Bitboards.file(to) != Bitboards.file(from))
+			{
+				flags = Move.EN_PASSANT;
+				captured = ChessPiece.PAWN;
+			}
+		}
+		else if(type == ChessPiece.KING && Math.abs(to - from) == 2)
+		{
+			flags = Move.CASTLE;
+		}
+		return Move.create(from, to, promotion, flags, captured);
+	}
+
 	/**
 	 * You must defend yourself from check threats, so this function removes
 	 * all moves that do not protect the king.
@@ -291,22 +770,25 @@ public class MoveGenerator {
 	public static ChessMoveAction[] removeIllegalMoves(ChessGameState state,
 			ChessMoveAction[] moves, boolean color)
 	{
+		// The legal moves are found with masks, without changing the board
+		int[] legal = new int[MAX_MOVES];
+		int numLegal = generateLegalMoves(state.getPosition(), legal);
 		
-		ChessGameState[] nextStates = new ChessGameState[moves.length];
-		
-		// Apply each move to a new game state
-		for(int i=0;i<moves.length;i++)
-		{
-			ChessGameState copy = new ChessGameState(state);
-			copy.applyMove(moves[i]);
-			nextStates[i] = copy;
-		}
-		
-		// Find which states allow the king to be taken
+		// Find which moves allow the king to be taken
 		int numRemoved = 0;
-		for(int i=0;i<nextStates.length;i++)
+		for(int i=0;i<moves.length;i++)
 		{
-			if(canTakeKing(nextStates[i], color == state.isPlayer1IsWhite()))
+			int move = toMove(state, moves[i]);
+			boolean found = false;
+			for(int k=0;k<numLegal && move != Move.NONE;k++)
+			{
+				if(Move.sameMove(move, legal[k]))
+				{
+					found = true;
+					break;
+				}
+			}
+			if(!found)
 			{
 				moves[i] = null;
 				numRemoved++;
@@ -0,0 +1,231 @@
+package edu.up.cs301.chess.engine;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Puts moves in the order the search should try them. Alpha-beta only
+ * skips moves after it finds a good one, so the sooner it tries the best
+ * move the less it has to search. The order is:
+ *
+ * 1. the best move from the transposition table
+ * 2. captures and queen promotions, taking the most valuable piece with
+ *    the least valuable one first (MVV-LVA)
+ * 3. the two killer moves of the ply, quiet moves that recently caused a
+ *    cutoff at the same distance from the root
+ * 4. captures that lose material according to StaticExchange, by MVV-LVA
+ * 5. other quiet moves, by how often they caused cutoffs anywhere (the
+ *    history table)
+ * 6. promotions to other pieces
+ *
+ * Each move gets a score in a buffer next to the move buffer, and next()
+ * swaps the best remaining move into place, so nothing is allocated and
+ * the moves after a cutoff never have to be sorted.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class MoveOrder {
+
+	//Bases of the score bands
+	private static final int HASH_MOVE = 1 << 30;
+	private static final int CAPTURE = 1 << 28;
+	private static final int KILLER = 1 << 26;
+	private static final int LOSING_CAPTURE = 1 << 24;
+	private static final int UNDER_PROMOTION = -1;
+
+	//History scores are halved when one gets this big, so they stay below the killers
+	private static final int HISTORY_LIMIT = 1 << 20;
+
+	//How valuable each type is for MVV-LVA, indexed by the types in ChessPiece
+	private static final int[] RANK = { 5, 6, 4, 3, 2, 1 };
+
+	//A score for each move in the move buffers
+	private final int[][] scores = new int[Search.MAX_PLY][MoveGenerator.MAX_MOVES];
+
+	//Two killer moves per ply
+	private final int[][] killers = new int[Search.MAX_PLY][2];
+
+	//How often each move caused a cutoff, by color, from and to square
+	private final int[][][] history = new int[2][Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+
+	//Statistics
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	/**
+	 * Gets ready for a new search. The killers are forgotten, since the
+	 * plies now mean different positions, and the history is halved so
+	 * newer cutoffs count for more.
+	 */
+	public void newSearch()
+	{
+		for(int[] plyKillers: killers)
+		{
+			plyKillers[0] = Move.NONE;
+			plyKillers[1] = Move.NONE;
+		}
+		ageHistory();
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+	}
+
+	/**
+	 * Scores a list of moves for next()
+	 * @param position the position the moves are from
+	 * @param moveList
+	 * @param numMoves the length of the list
+	 * @param ply how many moves from the root
+	 * @param hashMove the move from the transposition table, or Move.NONE
+	 */
+	public void score(Position position, int[] moveList, int numMoves, int ply, int hashMove)
+	{
+		int[] plyScores = scores[ply];
+		int[] plyKillers = killers[ply];
+		int[][] colorHistory = history[position.getSideToMove()];
+		for(int i = 0; i < numMoves; i++)
+		{
+			int move = moveList[i];
+			int promotion = Move.getPromotion(move);
+			int score;
+			if(move == hashMove)
+			{
+				score = HASH_MOVE;
+			}
+			else if(Move.isCapture(move) || promotion == ChessPiece.QUEEN)
+			{
+				int victim = Move.isCapture(move) ? RANK[Move.getCaptured(move)] : 0;
+				if(promotion != ChessPiece.INVALID)
+				{
+					victim += RANK[promotion];
+				}
+				int attacker = RANK[position.typeAt(Move.getFrom(move))];
+				score = victim * 8 - attacker;
+				score += StaticExchange.isAtLeast(position, move, 0) ? CAPTURE : LOSING_CAPTURE;
+			}
+			else if(promotion != ChessPiece.INVALID)
+			{
+				score = UNDER_PROMOTION;
+			}
+			else if(move == plyKillers[0])
+			{
+				score = KILLER + 1;
+			}
+			else if(move == plyKillers[1])
+			{
+				score = KILLER;
+			}
+			else
+			{
+				score = colorHistory[Move.getFrom(move)][Move.getTo(move)];
+			}
+			plyScores[i] = score;
+		}
+	}
+
+	/**
+	 * Moves the best of the remaining moves to an index
+	 * @param moveList the moves scored by score()
+	 * @param ply the ply they were scored for
+	 * @param index the index to fill; the moves before it have been tried
+	 * @param numMoves the length of the list
+	 * @return the move now at the index
+	 */
+	public int next(int[] moveList, int ply, int index, int numMoves)
+	{
+		int[] plyScores = scores[ply];
+		int best = index;
+		for(int i = index + 1; i < numMoves; i++)
+		{
+			if(plyScores[i] > plyScores[best])
+			{
+				best = i;
+			}
+		}
+		int move = moveList[best];
+		if(best != index)
+		{
+			moveList[best] = moveList[index];
+			moveList[index] = move;
+			int score = plyScores[best];
+			plyScores[best] = plyScores[index];
+			plyScores[index] = score;
+		}
+		return move;
+	}
+
+	/**
+	 * Records a move that caused a cutoff
+	 * @param position the position it was made from
+	 * @param move
+	 * @param ply how many moves from the root
+	 * @param depth how deep the position was being searched
+	 * @param index how many moves were tried before it
+	 */
+	public void cutoff(Position position, int move, int ply, int depth, int index)
+	{
+		cutoffs++;
+		if(index == 0)
+		{
+			firstMoveCutoffs++;
+		}
+
+		//captures and promotions are already ordered well
+		if(Move.isCapture(move) || Move.getPromotion(move) != ChessPiece.INVALID)
+		{
+			return;
+		}
+
+		int[] plyKillers = killers[ply];
+		if(plyKillers[0] != move)
+		{
+			plyKillers[1] = plyKillers[0];
+			plyKillers[0] = move;
+		}
+
+		//deeper cutoffs save more work, so they count for more
+		int[] squares = history[position.getSideToMove()][Move.getFrom(move)];
+		squares[Move.getTo(move)] += depth * depth;
+		if(squares[Move.getTo(move)] >= HISTORY_LIMIT)
+		{
+			ageHistory();
+		}
+	}
+
+	/**
+	 * Halves every history score
+	 */
+	private void ageHistory()
+	{
+		for(int[][] colorHistory: history)
+		{
+			for(int[] squares: colorHistory)
+			{
+				for(int i = 0; i < squares.length; i++)
+				{
+					squares[i] >>= 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of cutoffs since the last newSearch()
+	 */
+	public long getCutoffs()
+	{
+		return cutoffs;
+	}
+
+	/**
+	 * @return the fraction of cutoffs caused by the first move tried; the
+	 * 		closer to 1 the better the ordering
+	 */
+	public double getFirstMoveCutoffRate()
+	{
+		return (cutoffs == 0) ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+}
@@ -0,0 +1,311 @@
+package edu.up.cs301.chess.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Reads opening moves from a book file. The file is memory mapped instead
+ * of read in, so opening a book is instant and it takes no heap, and the
+ * entries are sorted by position key so they are found with a binary
+ * search.
+ *
+ * Two formats are supported, both with 16 byte entries:
+ *
+ * POLYGLOT (.bin): big endian; a 64 bit key from PolyglotKeys, a 16 bit
+ * move, a 16 bit weight and 32 bits of learning data that is ignored.
+ *
+ * CRITTER (.cbk, the book.cbk in assets): little endian; a 64 bit key, a
+ * 32 bit move and a 32 bit weight. The move has the from square in bits
+ * 0-5, the to square in bits 6-11, the piece in bits 12-15, the captured
+ * piece in bits 16-23 and a castling flag in bit 24. The keys are Critter's
+ * own position hashes, which aren't published, so these books can only be
+ * searched by key with getMoves(long, ...) and not by position.
+ *
+ * Castling is stored as the king taking its own rook in both formats, and
+ * is converted to the king moving two squares.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class OpeningBook {
+
+	//Book formats
+	public static final int POLYGLOT = 0;
+	public static final int CRITTER = 1;
+
+	//Bytes per entry in both formats
+	public static final int ENTRY_BYTES = 16;
+
+	//Most moves a book can have for one position
+	public static final int MAX_BOOK_MOVES = 64;
+
+	//Polyglot's promotion pieces, from 1 to 4
+	private static final int[] POLYGLOT_PROMOTIONS = { ChessPiece.INVALID, ChessPiece.KNIGHT,
+		ChessPiece.BISHOP, ChessPiece.ROOK, ChessPiece.QUEEN };
+
+	//The mapped file
+	private final ByteBuffer entries;
+
+	//Number of entries
+	private final int size;
+
+	//POLYGLOT or CRITTER
+	private final int format;
+
+	/**
+	 * Opens a book, working out the format from the file name: .cbk is a
+	 * Critter book and anything else is a Polyglot book
+	 * @param file
+	 * @throws IOException if it can't be read
+	 */
+	public OpeningBook(File file) throws IOException
+	{
+		this(file, file.getName().toLowerCase().endsWith(".cbk") ? CRITTER : POLYGLOT);
+	}
+
+	/**
+	 * Opens a book
+	 * @param file
+	 * @param format POLYGLOT or CRITTER
+	 * @throws IOException if it can't be read
+	 */
+	public OpeningBook(File file, int format) throws IOException
+	{
+		if(format != POLYGLOT && format != CRITTER)
+		{
+			throw new IllegalArgumentException("unknown book format " + format);
+		}
+		this.format = format;
+
+		//the mapping stays valid after the file is closed
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = input.getChannel();
+			long length = channel.size();
+			if(length % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE)
+			{
+				throw new IOException("not a book file: " + file);
+			}
+			entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+					.order((format == POLYGLOT) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			size = (int) (length / ENTRY_BYTES);
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Returns the key a position is stored under in this book
+	 * @param position
+	 * @return the key
+	 * @throws UnsupportedOperationException for a Critter book, whose keys
+	 * 		can't be computed
+	 */
+	public long getKey(Position position)
+	{
+		if(format != POLYGLOT)
+		{
+			throw new UnsupportedOperationException("Critter book keys can't be computed");
+		}
+		return PolyglotKeys.compute(position);
+	}
+
+	/**
+	 * Finds the first entry with a key
+	 * @return its index, or -1 if there isn't one
+	 */
+	private int find(long key)
+	{
+		int low = 0;
+		int high = size;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			//keys are sorted as unsigned numbers
+			if(entries.getLong(middle * ENTRY_BYTES) + Long.MIN_VALUE < key + Long.MIN_VALUE)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return (low < size && entries.getLong(low * ENTRY_BYTES) == key) ? low : -1;
+	}
+
+	/**
+	 * Reads the moves stored under a key. The moves only have their squares
+	 * and promotion, not the flags from the move generator.
+	 * @param key
+	 * @param moves filled with the moves, with room for MAX_BOOK_MOVES
+	 * @param weights filled with how often to play each move
+	 * @return the number of moves
+	 */
+	public int getMoves(long key, int[] moves, int[] weights)
+	{
+		int count = 0;
+		for(int index = find(key); index >= 0 && index < size && count < MAX_BOOK_MOVES; index++)
+		{
+			int offset = index * ENTRY_BYTES;
+			if(entries.getLong(offset) != key)
+			{
+				break;
+			}
+			if(format == POLYGLOT)
+			{
+				moves[count] = decodePolyglot(entries.getShort(offset + 8) & 0xFFFF);
+				weights[count] = entries.getShort(offset + 10) & 0xFFFF;
+			}
+			else
+			{
+				moves[count] = decodeCritter(entries.getInt(offset + 8));
+				weights[count] = entries.getInt(offset + 12);
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the legal book moves for a position, as moves from the move
+	 * generator
+	 * @param position
+	 * @param moves filled with the moves, with room for MAX_BOOK_MOVES
+	 * @param weights filled with how often to play each move
+	 * @return the number of moves
+	 */
+	public int getMoves(Position position, int[] moves, int[] weights)
+	{
+		int count = getMoves(getKey(position), moves, weights);
+		if(count == 0)
+		{
+			return 0;
+		}
+
+		//replace each book move with the legal move, and drop the ones
+		//that aren't legal in case of a collision
+		int[] legal = new int[MoveGenerator.MAX_MOVES];
+		int numLegal = MoveGenerator.generateLegalMoves(position, legal);
+		int kept = 0;
+		for(int i = 0; i < count; i++)
+		{
+			int move = castleToKingMove(position, moves[i]);
+			for(int j = 0; j < numLegal; j++)
+			{
+				if(Move.sameMove(move, legal[j]))
+				{
+					moves[kept] = legal[j];
+					weights[kept] = weights[i];
+					kept++;
+					break;
+				}
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Picks a book move at random, more often the higher its weight
+	 * @param position
+	 * @param random
+	 * @return the move, or Move.NONE if the position isn't in the book
+	 */
+	public int pickMove(Position position, Random random)
+	{
+		int[] moves = new int[MAX_BOOK_MOVES];
+		int[] weights = new int[MAX_BOOK_MOVES];
+		int count = getMoves(position, moves, weights);
+		long total = 0;
+		for(int i = 0; i < count; i++)
+		{
+			total += weights[i];
+		}
+		if(total == 0)
+		{
+			return (count == 0) ? Move.NONE : moves[random.nextInt(count)];
+		}
+		long choice = (long) (random.nextDouble() * total);
+		for(int i = 0; i < count; i++)
+		{
+			choice -= weights[i];
+			if(choice < 0)
+			{
+				return moves[i];
+			}
+		}
+		return moves[count - 1];
+	}
+
+	/**
+	 * Converts a move stored as the king taking its own rook to the king
+	 * moving two squares
+	 */
+	private static int castleToKingMove(Position position, int move)
+	{
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+		int color = position.colorAt(from);
+		if(position.typeAt(from) == ChessPiece.KING && position.typeAt(to) == ChessPiece.ROOK
+				&& position.colorAt(to) == color)
+		{
+			return Move.create(from, (to > from) ? from + 2 : from - 2);
+		}
+		return move;
+	}
+
+	/**
+	 * Converts a Polyglot move: to file, to rank, from file and from rank in
+	 * 3 bits each, then the promotion
+	 */
+	private static int decodePolyglot(int bookMove)
+	{
+		int to = bookMove & 0x3F;
+		int from = (bookMove >>> 6) & 0x3F;
+		int promotion = (bookMove >>> 12) & 0x7;
+		return Move.create(from, to, (promotion < POLYGLOT_PROMOTIONS.length)
+				? POLYGLOT_PROMOTIONS[promotion] : ChessPiece.INVALID);
+	}
+
+	/**
+	 * Converts a Critter move. Only the squares are kept; castling is the
+	 * king taking its rook like in Polyglot.
+	 */
+	private static int decodeCritter(int bookMove)
+	{
+		int from = bookMove & 0x3F;
+		int to = (bookMove >>> 6) & 0x3F;
+		return Move.create(from, to);
+	}
+
+	/**
+	 * @return POLYGLOT or CRITTER
+	 */
+	public int getFormat()
+	{
+		return format;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,328 @@
+package edu.up.cs301.chess.engine;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Searches on several threads at once ("lazy SMP"). Every thread runs its
+ * own Search of the same position, and they all share one transposition
+ * table. The threads don't divide up the work; instead each one finds
+ * results in the table that another thread has already stored, so
+ * together they get deeper than one thread would. The helper threads
+ * start at different depths and try the root moves in different orders so
+ * they don't all search the same thing at the same time.
+ *
+ * The main search runs on the calling thread. When it finishes, the
+ * helpers are stopped and the result of whichever thread finished the
+ * deepest iteration is returned.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class ParallelSearch {
+
+	//The table shared by all of the threads
+	private final TranspositionTable table;
+
+	//One search per thread; the first runs on the calling thread
+	private final Search[] searches;
+
+	//Runs the helpers, or null if there is only one thread
+	private final ExecutorService executor;
+
+	//The helpers' running searches
+	private final Future<?>[] helpers;
+
+	//Which search had the result of the last search
+	private Search best;
+
+	/**
+	 * Makes a search that uses every processor, with a table of the default
+	 * size
+	 */
+	public ParallelSearch()
+	{
+		this(Runtime.getRuntime().availableProcessors(), new TranspositionTable());
+	}
+
+	/**
+	 * Constructor
+	 * @param threads the number of threads to search with, at least 1
+	 * @param table the table to share between them
+	 */
+	public ParallelSearch(int threads, TranspositionTable table)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("there must be at least one thread");
+		}
+		this.table = table;
+		searches = new Search[threads];
+		for(int i = 0; i < threads; i++)
+		{
+			searches[i] = new Search(table, i);
+		}
+		helpers = new Future<?>[threads - 1];
+		best = searches[0];
+
+		if(threads > 1)
+		{
+			//daemon threads so an abandoned search doesn't keep the program running
+			executor = Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+				private int count;
+
+				public synchronized Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "search helper " + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		else
+		{
+			executor = null;
+		}
+	}
+
+	/**
+	 * Sets the hashes of the positions played in the game so far
+	 * @see Search#setGameHistory(long[])
+	 */
+	public void setGameHistory(long[] history)
+	{
+		for(Search search: searches)
+		{
+			search.setGameHistory(history);
+		}
+	}
+
+	/**
+	 * Limits how many positions each thread can visit
+	 * @see Search#setNodeLimit(long)
+	 */
+	public void setNodeLimit(long limit)
+	{
+		for(Search search: searches)
+		{
+			search.setNodeLimit(limit);
+		}
+	}
+
+	/**
+	 * Sets what is told about each iteration the main thread finishes
+	 * @see Search#setListener(Search.Listener)
+	 */
+	public void setListener(Search.Listener listener)
+	{
+		searches[0].setListener(listener);
+	}
+
+	/**
+	 * Searches a position for the best move on all of the threads
+	 * @param root the position to search; it is not changed
+	 * @param maxDepth the deepest iteration to search, from 1 to MAX_PLY - 1
+	 * @param timeMillis how long to search, or 0 for no limit
+	 * @return the best move, or Move.NONE if there are no legal moves
+	 */
+	public int search(final Position root, final int maxDepth, final long timeMillis)
+	{
+		if(executor != null && executor.isShutdown())
+		{
+			throw new IllegalStateException("the search has been shut down");
+		}
+		for(Search search: searches)
+		{
+			search.clearNodes();
+		}
+
+		//age the shared table once, not once per thread
+		table.newSearch();
+
+		//the helpers were stopped at the end of the last search; a helper
+		//that starts after this search has stopped it won't search at all.
+		//The main search's stop is only cleared by reset, so a stop sent
+		//before this search began still counts.
+		for(int i = 0; i < helpers.length; i++)
+		{
+			final Search helper = searches[i + 1];
+			helper.reset();
+			helpers[i] = executor.submit(new Runnable() {
+				public void run()
+				{
+					helper.search(root, maxDepth, timeMillis, false);
+				}
+			});
+		}
+
+		searches[0].search(root, maxDepth, timeMillis, false);
+
+		//the helpers are only there to help the main search
+		for(int i = 1; i < searches.length; i++)
+		{
+			searches[i].stop();
+		}
+		for(int i = 0; i < helpers.length; i++)
+		{
+			waitFor(helpers[i]);
+			helpers[i] = null;
+		}
+
+		best = searches[0];
+		for(int i = 1; i < searches.length; i++)
+		{
+			if(searches[i].getCompletedDepth() > best.getCompletedDepth())
+			{
+				best = searches[i];
+			}
+		}
+		return best.getBestMove();
+	}
+
+	/**
+	 * Waits for a helper to finish
+	 */
+	private static void waitFor(Future<?> helper)
+	{
+		boolean interrupted = false;
+		while(true)
+		{
+			try
+			{
+				helper.get();
+				break;
+			}
+			catch(InterruptedException e)
+			{
+				//the helper has been stopped, so this won't be long
+				interrupted = true;
+			}
+			catch(ExecutionException e)
+			{
+				throw new RuntimeException("search helper failed", e.getCause());
+			}
+		}
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops the search as soon as possible. It can be called from any thread.
+	 */
+	public void stop()
+	{
+		for(Search search: searches)
+		{
+			search.stop();
+		}
+	}
+
+	/**
+	 * Stops the search at a given time. It can be called from any thread.
+	 * @param time when to stop, from System.currentTimeMillis()
+	 * @see Search#stopAt(long)
+	 */
+	public void stopAt(long time)
+	{
+		for(Search search: searches)
+		{
+			search.stopAt(time);
+		}
+	}
+
+	/**
+	 * Clears a stop, so the next search runs. Call this before starting a
+	 * search on another thread.
+	 * @see Search#reset()
+	 */
+	public void reset()
+	{
+		for(Search search: searches)
+		{
+			search.reset();
+		}
+	}
+
+	/**
+	 * Stops the helper threads for good. The search can't be used after this.
+	 */
+	public void shutdown()
+	{
+		stop();
+		if(executor != null)
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the number of threads searching
+	 */
+	public int getThreads()
+	{
+		return searches.length;
+	}
+
+	/**
+	 * @return the best move found by the last search
+	 */
+	public int getBestMove()
+	{
+		return best.getBestMove();
+	}
+
+	/**
+	 * @return the score of the best move for the side to move
+	 */
+	public int getBestScore()
+	{
+		return best.getBestScore();
+	}
+
+	/**
+	 * @return the depth of the deepest iteration that finished on any thread
+	 */
+	public int getCompletedDepth()
+	{
+		return best.getCompletedDepth();
+	}
+
+	/**
+	 * @return how often the main thread's first move caused a cutoff
+	 * @see MoveOrder#getFirstMoveCutoffRate()
+	 */
+	public double getFirstMoveCutoffRate()
+	{
+		return searches[0].getMoveOrder().getFirstMoveCutoffRate();
+	}
+
+	/**
+	 * @return the number of positions searched by all of the threads
+	 */
+	public long getNodes()
+	{
+		long nodes = 0;
+		for(Search search: searches)
+		{
+			nodes += search.getNodes();
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return the transposition table shared by the threads
+	 */
+	public TranspositionTable getTable()
+	{
+		return table;
+	}
+}
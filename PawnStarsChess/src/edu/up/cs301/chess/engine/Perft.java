@@ -0,0 +1,173 @@
+package edu.up.cs301.chess.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the positions that can be reached in a number of moves (perft).
+ * The counts for well known positions have been published, so comparing
+ * against them finds bugs in the move generator, and timing them measures
+ * how fast it is. "Divide" gives the count under each first move, which
+ * narrows down which move a wrong count comes from.
+ *
+ * Can be run from the command line:
+ * Perft depth [fen] [divide]
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class Perft {
+
+	//Positions with published perft counts
+	public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+	public static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+	public static final String PROMOTIONS = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+	public static final String MIDGAME = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+	//The standard positions, starting with the start of a game
+	public static final String[] POSITIONS = { Position.START_FEN, KIWIPETE,
+		ENDGAME, PROMOTIONS, MIDGAME };
+
+	//Deepest search supported
+	public static final int MAX_DEPTH = 16;
+
+	//The position being searched, changed in place
+	private final Position position;
+
+	//One move buffer per ply
+	private final int[][] moves = new int[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+
+	/**
+	 * Constructor
+	 * @param position the position to count from; it is copied
+	 */
+	public Perft(Position position)
+	{
+		this.position = new Position(position);
+	}
+
+	/**
+	 * Counts the positions reachable in exactly depth moves
+	 * @param depth from 0 to MAX_DEPTH
+	 * @return the number of positions
+	 */
+	public long perft(int depth)
+	{
+		checkDepth(depth);
+		return count(depth, 0);
+	}
+
+	/**
+	 * Counts the positions reachable in exactly depth moves under each legal
+	 * first move
+	 * @param depth from 1 to MAX_DEPTH
+	 * @return the counts in move generator order, keyed by coordinate notation
+	 */
+	public Map<String, Long> divide(int depth)
+	{
+		checkDepth(depth);
+		if(depth < 1)
+		{
+			throw new IllegalArgumentException("depth must be at least 1");
+		}
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		int[] rootMoves = moves[0];
+		int numMoves = MoveGenerator.generateLegalMoves(position, rootMoves);
+		for(int i = 0; i < numMoves; i++)
+		{
+			position.makeMove(rootMoves[i]);
+			counts.put(Move.toString(rootMoves[i]), count(depth - 1, 1));
+			position.unmakeMove();
+		}
+		return counts;
+	}
+
+	/**
+	 * Counts the positions below the current one
+	 */
+	private long count(int depth, int ply)
+	{
+		if(depth == 0)
+		{
+			return 1;
+		}
+		int[] plyMoves = moves[ply];
+		int numMoves = MoveGenerator.generateLegalMoves(position, plyMoves);
+
+		//the moves at the last ply don't need to be made to be counted
+		if(depth == 1)
+		{
+			return numMoves;
+		}
+		long nodes = 0;
+		for(int i = 0; i < numMoves; i++)
+		{
+			position.makeMove(plyMoves[i]);
+			nodes += count(depth - 1, ply + 1);
+			position.unmakeMove();
+		}
+		return nodes;
+	}
+
+	/**
+	 * Throws an exception if a depth is not supported
+	 */
+	private static void checkDepth(int depth)
+	{
+		if(depth < 0 || depth > MAX_DEPTH)
+		{
+			throw new IllegalArgumentException("depth must be from 0 to " + MAX_DEPTH);
+		}
+	}
+
+	/**
+	 * Prints the perft count of a position, and the divide counts if asked
+	 * @param args the depth, then optionally a FEN string and "divide"
+	 */
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			System.out.println("usage: Perft depth [fen] [divide]");
+			return;
+		}
+		int depth = Integer.parseInt(args[0]);
+		String fen = Position.START_FEN;
+		boolean divide = false;
+		for(int i = 1; i < args.length; i++)
+		{
+			if(args[i].equals("divide"))
+			{
+				divide = true;
+			}
+			else
+			{
+				fen = args[i];
+			}
+		}
+
+		Perft perft = new Perft(Position.fromFEN(fen));
+		long start = System.nanoTime();
+		long nodes = 0;
+		if(divide)
+		{
+			for(Map.Entry<String, Long> entry: perft.divide(depth).entrySet())
+			{
+				System.out.println(entry.getKey() + ": " + entry.getValue());
+				nodes += entry.getValue();
+			}
+		}
+		else
+		{
+			nodes = perft.perft(depth);
+		}
+		long time = System.nanoTime() - start;
+		System.out.println("nodes: " + nodes);
+		System.out.println("time: " + (time / 1000000) + " ms");
+		System.out.println("nodes/second: " + (time > 0 ? nodes * 1000000000L / time : 0));
+	}
+}
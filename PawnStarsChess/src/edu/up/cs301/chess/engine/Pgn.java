@@ -0,0 +1,211 @@
+package edu.up.cs301.chess.engine;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Writes games in Portable Game Notation (PGN), the text format other chess
+ * programs read, with the moves in standard algebraic notation (SAN) such
+ * as "Nf3", "exd5", "O-O" or "e8=Q+".
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class Pgn {
+
+	//The letter of each type, by the types in ChessPiece
+	private static final String LETTERS = "QKRBNP";
+
+	//Longest line of moves
+	private static final int LINE_LENGTH = 79;
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private Pgn()
+	{
+	}
+
+	/**
+	 * Converts a move to standard algebraic notation
+	 * @param position the position the move is made from; it is left as it was
+	 * @param move a legal move
+	 * @return the move, like "Nbd7" or "Qxf7#"
+	 */
+	public static String toSan(Position position, int move)
+	{
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+		int type = position.typeAt(from);
+		boolean capture = Move.isCapture(move) || Move.getFlags(move) == Move.EN_PASSANT;
+		StringBuilder san = new StringBuilder();
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+		if(Move.getFlags(move) == Move.CASTLE)
+		{
+			san.append((to > from) ? "O-O" : "O-O-O");
+		}
+		else if(type == ChessPiece.PAWN)
+		{
+			if(capture)
+			{
+				san.append((char) ('a' + Bitboards.file(from))).append('x');
+			}
+			san.append(Bitboards.squareName(to));
+			if(Move.getPromotion(move) != ChessPiece.INVALID)
+			{
+				san.append('=').append(LETTERS.charAt(Move.getPromotion(move)));
+			}
+		}
+		else
+		{
+			san.append(LETTERS.charAt(type));
+
+			//name the file or rank if another piece of the type can go there
+			boolean ambiguous = false;
+			boolean sameFile = false;
+			boolean sameRank = false;
+			int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+			for(int i = 0; i < numMoves; i++)
+			{
+				int other = Move.getFrom(moves[i]);
+				if(Move.getTo(moves[i]) == to && other != from && position.typeAt(other) == type)
+				{
+					ambiguous = true;
+					sameFile |= Bitboards.file(other) == Bitboards.file(from);
+					sameRank |= Bitboards.rank(other) == Bitboards.rank(from);
+				}
+			}
+			if(ambiguous)
+			{
+				if(!sameFile)
+				{
+					san.append((char) ('a' + Bitboards.file(from)));
+				}
+				else if(!sameRank)
+				{
+					san.append((char) ('1' + Bitboards.rank(from)));
+				}
+				else
+				{
+					san.append(Bitboards.squareName(from));
+				}
+			}
+			if(capture)
+			{
+				san.append('x');
+			}
+			san.append(Bitboards.squareName(to));
+		}
+
+		position.makeMove(move);
+		if(position.isInCheck(position.getSideToMove()))
+		{
+			san.append((MoveGenerator.generateLegalMoves(position, moves) == 0) ? '#' : '+');
+		}
+		position.unmakeMove();
+		return san.toString();
+	}
+
+	/**
+	 * Makes the usual tags of a game, in the order PGN lists them
+	 * @param event
+	 * @param round
+	 * @param white
+	 * @param black
+	 * @param result "1-0", "0-1", "1/2-1/2" or "*"
+	 * @param fen the starting position, or null for the normal start
+	 * @return the tags, which more can be added to
+	 */
+	public static Map<String, String> tags(String event, int round, String white, String black,
+			String result, String fen)
+	{
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("Event", event);
+		tags.put("Site", "?");
+		tags.put("Date", new SimpleDateFormat("yyyy.MM.dd").format(new Date()));
+		tags.put("Round", Integer.toString(round));
+		tags.put("White", white);
+		tags.put("Black", black);
+		tags.put("Result", result);
+		if(fen != null && !fen.equals(Position.START_FEN))
+		{
+			tags.put("SetUp", "1");
+			tags.put("FEN", fen);
+		}
+		return tags;
+	}
+
+	/**
+	 * Formats a game
+	 * @param tags the tags, from tags()
+	 * @param start the starting position, for the move numbers
+	 * @param sanMoves the moves from toSan
+	 * @param result "1-0", "0-1", "1/2-1/2" or "*"
+	 * @return the game, ending with a blank line
+	 */
+	public static String format(Map<String, String> tags, Position start, List<String> sanMoves, String result)
+	{
+		StringBuilder text = new StringBuilder();
+		for(Map.Entry<String, String> tag: tags.entrySet())
+		{
+			text.append('[').append(tag.getKey()).append(" \"")
+					.append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+		}
+		text.append('\n');
+
+		StringBuilder line = new StringBuilder();
+		int number = start.getFullmoveNumber();
+		boolean white = start.getSideToMove() == Position.WHITE;
+		for(int i = 0; i < sanMoves.size(); i++)
+		{
+			String token = "";
+			if(white)
+			{
+				token = number + ". ";
+			}
+			else if(i == 0)
+			{
+				token = number + "... ";
+			}
+			token += sanMoves.get(i);
+			line = addToken(text, line, token);
+			if(!white)
+			{
+				number++;
+			}
+			white = !white;
+		}
+		line = addToken(text, line, result);
+		text.append(line).append("\n\n");
+		return text.toString();
+	}
+
+	/**
+	 * Adds a token to the current line of moves, starting a new line if it
+	 * would be too long
+	 * @return the current line
+	 */
+	private static StringBuilder addToken(StringBuilder text, StringBuilder line, String token)
+	{
+		if(line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH)
+		{
+			text.append(line).append('\n');
+			line.setLength(0);
+		}
+		if(line.length() > 0)
+		{
+			line.append(' ');
+		}
+		return line.append(token);
+	}
+}
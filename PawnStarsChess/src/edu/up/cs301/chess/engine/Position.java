@@ -0,0 +1,865 @@
+package edu.up.cs301.chess.engine;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * A chess position stored as bitboards. There is one bitboard for each
+ * piece type and color, one for each color's occupancy, and a mailbox
+ * array so the piece on a square can be found without searching. It also
+ * stores the side to move, castling rights, the en passant square and
+ * the move counters.
+ *
+ * Piece types use the constants in ChessPiece, and squares go from
+ * a1 = 0 to h8 = 63 (see Bitboards).
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class Position implements Serializable {
+
+	// to satisfy Serializable interface
+	private static final long serialVersionUID = 4417853220906186713L;
+
+	//The two colors
+	public static final int WHITE = 0;
+	public static final int BLACK = 1;
+
+	//Value of an empty square in the mailbox
+	public static final byte EMPTY = -1;
+
+	//Castling rights, stored as bits
+	public static final int WHITE_KINGSIDE = 1;
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+	public static final int ALL_CASTLING = 15;
+
+	//The position at the start of a game
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	//FEN letters indexed by piece type (see ChessPiece)
+	private static final String PIECE_LETTERS = "qkrbnp";
+
+	//One bitboard per piece, indexed by pieceIndex(color, type)
+	private long[] pieces;
+
+	//Every square occupied by each color
+	private long[] colors;
+
+	//The piece on each square, or EMPTY
+	private byte[] board;
+
+	//WHITE or BLACK
+	private int sideToMove;
+
+	//Castling rights as a combination of the castling bits
+	private int castling;
+
+	//The square a pawn can move to when capturing en passant
+	private int enPassant;
+
+	//Half moves since the last capture or pawn move
+	private int halfmoveClock;
+
+	//Starts at 1 and goes up after black moves
+	private int fullmoveNumber;
+
+	//Zobrist hash of everything above except the move counters
+	private long hash;
+
+	//White's lead in material and piece-square values, kept up to date as
+	//pieces move so the evaluation doesn't have to add them up
+	private int midgameScore;
+	private int endgameScore;
+
+	//How much material is left, from Evaluation.phaseWeight
+	private int phase;
+
+	/*
+	 * Everything needed to unmake each move made with makeMove. Each entry
+	 * has the move in the high 32 bits and the state it changed in the low
+	 * 32 bits: the captured piece, castling rights, en passant square,
+	 * halfmove clock and side to move. Copies of a position start with an
+	 * empty stack.
+	 */
+	private transient long[] undoStack;
+	private transient int undoSize;
+
+	//The hash before each move on the undo stack, used to unmake it and to find repetitions
+	private transient long[] hashStack;
+
+	//The castling rights that are left after a piece leaves or lands on a square
+	private static final int[] CASTLING_MASK = new int[Bitboards.NUM_SQUARES];
+	static
+	{
+		Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+		CASTLING_MASK[Bitboards.parseSquare("a1")] &= ~WHITE_QUEENSIDE;
+		CASTLING_MASK[Bitboards.parseSquare("h1")] &= ~WHITE_KINGSIDE;
+		CASTLING_MASK[Bitboards.parseSquare("e1")] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+		CASTLING_MASK[Bitboards.parseSquare("a8")] &= ~BLACK_QUEENSIDE;
+		CASTLING_MASK[Bitboards.parseSquare("h8")] &= ~BLACK_KINGSIDE;
+		CASTLING_MASK[Bitboards.parseSquare("e8")] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+	}
+
+	//Initial size of the undo stack
+	private static final int UNDO_CAPACITY = 64;
+
+	/**
+	 * Creates an empty board with white to move
+	 */
+	public Position()
+	{
+		pieces = new long[2 * ChessPiece.NUM_TYPES];
+		colors = new long[2];
+		board = new byte[Bitboards.NUM_SQUARES];
+		clear();
+	}
+
+	/**
+	 * Copy constructor
+	 * @param orig the position to copy
+	 */
+	public Position(Position orig)
+	{
+		pieces = orig.pieces.clone();
+		colors = orig.colors.clone();
+		board = orig.board.clone();
+		sideToMove = orig.sideToMove;
+		castling = orig.castling;
+		enPassant = orig.enPassant;
+		halfmoveClock = orig.halfmoveClock;
+		fullmoveNumber = orig.fullmoveNumber;
+		hash = orig.hash;
+		midgameScore = orig.midgameScore;
+		endgameScore = orig.endgameScore;
+		phase = orig.phase;
+	}
+
+	/**
+	 * Returns the index of a piece's bitboard
+	 * @param color WHITE or BLACK
+	 * @param type a type from ChessPiece
+	 * @return the index
+	 */
+	public static int pieceIndex(int color, int type)
+	{
+		return color * ChessPiece.NUM_TYPES + type;
+	}
+
+	/**
+	 * Removes every piece and resets the other fields
+	 */
+	public void clear()
+	{
+		Arrays.fill(pieces, 0L);
+		Arrays.fill(colors, 0L);
+		Arrays.fill(board, EMPTY);
+		sideToMove = WHITE;
+		castling = 0;
+		enPassant = Bitboards.NO_SQUARE;
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		hash = 0;
+		midgameScore = 0;
+		endgameScore = 0;
+		phase = 0;
+	}
+
+	/**
+	 * Puts a piece on an empty square
+	 * @param square
+	 * @param color
+	 * @param type
+	 */
+	public void putPiece(int square, int color, int type)
+	{
+		long bit = 1L << square;
+		int index = pieceIndex(color, type);
+		long enPassantKey = Zobrist.enPassant(this);
+		pieces[index] |= bit;
+		colors[color] |= bit;
+		board[square] = (byte) index;
+		hash ^= Zobrist.piece(index, square) ^ enPassantKey ^ Zobrist.enPassant(this);
+		midgameScore += Evaluation.midgame(index, square);
+		endgameScore += Evaluation.endgame(index, square);
+		phase += Evaluation.phaseWeight(index);
+	}
+
+	/**
+	 * Removes the piece on a square
+	 * @param square
+	 */
+	public void removePiece(int square)
+	{
+		int index = board[square];
+		if(index == EMPTY)
+		{
+			return;
+		}
+		long bit = 1L << square;
+		long enPassantKey = Zobrist.enPassant(this);
+		pieces[index] &= ~bit;
+		colors[index / ChessPiece.NUM_TYPES] &= ~bit;
+		board[square] = EMPTY;
+		hash ^= Zobrist.piece(index, square) ^ enPassantKey ^ Zobrist.enPassant(this);
+		midgameScore -= Evaluation.midgame(index, square);
+		endgameScore -= Evaluation.endgame(index, square);
+		phase -= Evaluation.phaseWeight(index);
+	}
+
+	/**
+	 * Moves a piece to an empty square
+	 * @param from
+	 * @param to
+	 */
+	public void movePiece(int from, int to)
+	{
+		int index = board[from];
+		long fromTo = (1L << from) | (1L << to);
+		long enPassantKey = Zobrist.enPassant(this);
+		pieces[index] ^= fromTo;
+		colors[index / ChessPiece.NUM_TYPES] ^= fromTo;
+		board[from] = EMPTY;
+		board[to] = (byte) index;
+		hash ^= Zobrist.piece(index, from) ^ Zobrist.piece(index, to)
+				^ enPassantKey ^ Zobrist.enPassant(this);
+		midgameScore += Evaluation.midgame(index, to) - Evaluation.midgame(index, from);
+		endgameScore += Evaluation.endgame(index, to) - Evaluation.endgame(index, from);
+	}
+
+	/**
+	 * Returns the piece on a square
+	 * @param square
+	 * @return the piece index, or EMPTY
+	 */
+	public int pieceAt(int square)
+	{
+		return board[square];
+	}
+
+	/**
+	 * Returns the type of the piece on a square
+	 * @param square
+	 * @return the type from ChessPiece, or ChessPiece.INVALID
+	 */
+	public int typeAt(int square)
+	{
+		int index = board[square];
+		if(index == EMPTY)
+		{
+			return ChessPiece.INVALID;
+		}
+		return index % ChessPiece.NUM_TYPES;
+	}
+
+	/**
+	 * Returns the color of the piece on a square
+	 * @param square
+	 * @return WHITE, BLACK, or EMPTY
+	 */
+	public int colorAt(int square)
+	{
+		int index = board[square];
+		if(index == EMPTY)
+		{
+			return EMPTY;
+		}
+		return index / ChessPiece.NUM_TYPES;
+	}
+
+	/**
+	 * Returns the bitboard of a piece type and color
+	 */
+	public long getPieces(int color, int type)
+	{
+		return pieces[pieceIndex(color, type)];
+	}
+
+	/**
+	 * Returns every square the given color occupies
+	 */
+	public long getOccupancy(int color)
+	{
+		return colors[color];
+	}
+
+	/**
+	 * Returns every occupied square
+	 */
+	public long getOccupied()
+	{
+		return colors[WHITE] | colors[BLACK];
+	}
+
+	/**
+	 * Returns the square of a color's king
+	 * @param color
+	 * @return the square, or NO_SQUARE if there is no king
+	 */
+	public int getKingSquare(int color)
+	{
+		long king = pieces[pieceIndex(color, ChessPiece.KING)];
+		if(king == 0)
+		{
+			return Bitboards.NO_SQUARE;
+		}
+		return Long.numberOfTrailingZeros(king);
+	}
+
+	/**
+	 * Returns true if a square is attacked by any piece of the given color
+	 * @param square
+	 * @param byColor
+	 * @return true if it is attacked
+	 */
+	public boolean isAttacked(int square, int byColor)
+	{
+		long occupied = getOccupied();
+
+		//a pawn attacks this square if a pawn of the other color here would attack it
+		if((AttackTables.pawnAttacks(1 - byColor, square) & getPieces(byColor, ChessPiece.PAWN)) != 0
+				|| (AttackTables.knightAttacks(square) & getPieces(byColor, ChessPiece.KNIGHT)) != 0
+				|| (AttackTables.kingAttacks(square) & getPieces(byColor, ChessPiece.KING)) != 0)
+		{
+			return true;
+		}
+
+		long queens = getPieces(byColor, ChessPiece.QUEEN);
+		return (AttackTables.bishopAttacks(square, occupied) & (getPieces(byColor, ChessPiece.BISHOP) | queens)) != 0
+				|| (AttackTables.rookAttacks(square, occupied) & (getPieces(byColor, ChessPiece.ROOK) | queens)) != 0;
+	}
+
+	/**
+	 * Returns every piece of a color that attacks a square
+	 * @param square
+	 * @param byColor
+	 * @param occupied the occupied squares to use for blocking sliders
+	 * @return the squares of the attackers
+	 */
+	public long attackersTo(int square, int byColor, long occupied)
+	{
+		long queens = getPieces(byColor, ChessPiece.QUEEN);
+		return (AttackTables.pawnAttacks(1 - byColor, square) & getPieces(byColor, ChessPiece.PAWN))
+				| (AttackTables.knightAttacks(square) & getPieces(byColor, ChessPiece.KNIGHT))
+				| (AttackTables.kingAttacks(square) & getPieces(byColor, ChessPiece.KING))
+				| (AttackTables.bishopAttacks(square, occupied) & (getPieces(byColor, ChessPiece.BISHOP) | queens))
+				| (AttackTables.rookAttacks(square, occupied) & (getPieces(byColor, ChessPiece.ROOK) | queens));
+	}
+
+	/**
+	 * Returns the pieces giving check to a color's king
+	 * @param color
+	 * @return the squares of the checking pieces
+	 */
+	public long getCheckers(int color)
+	{
+		int king = getKingSquare(color);
+		if(king == Bitboards.NO_SQUARE)
+		{
+			return 0L;
+		}
+		return attackersTo(king, 1 - color, getOccupied());
+	}
+
+	/**
+	 * Returns a color's pieces that are pinned to its king: they are the
+	 * only piece between the king and an enemy rook, bishop or queen
+	 * @param color
+	 * @return the squares of the pinned pieces
+	 */
+	public long getPinned(int color)
+	{
+		int king = getKingSquare(color);
+		if(king == Bitboards.NO_SQUARE)
+		{
+			return 0L;
+		}
+		int enemy = 1 - color;
+		long queens = getPieces(enemy, ChessPiece.QUEEN);
+
+		//sliders that would attack the king if none of this color's pieces were in the way
+		long snipers = (AttackTables.rookAttacks(king, colors[enemy])
+				& (getPieces(enemy, ChessPiece.ROOK) | queens))
+				| (AttackTables.bishopAttacks(king, colors[enemy])
+				& (getPieces(enemy, ChessPiece.BISHOP) | queens));
+
+		long pinned = 0;
+		while(snipers != 0)
+		{
+			int sniper = Long.numberOfTrailingZeros(snipers);
+			snipers &= snipers - 1;
+			long blockers = AttackTables.between(king, sniper) & colors[color];
+			if(blockers != 0 && (blockers & (blockers - 1)) == 0)
+			{
+				pinned |= blockers;
+			}
+		}
+		return pinned;
+	}
+
+	/**
+	 * Makes a move in place. It can be taken back with unmakeMove. The move
+	 * must be pseudo-legal: the piece can move there, ignoring whether it
+	 * leaves its king in check. It is normally the side to move's piece, but
+	 * the other side's pieces can be moved too to test their moves. A king
+	 * moving two files is castling and also moves the rook.
+	 * @param move a move from Move.create
+	 */
+	public void makeMove(int move)
+	{
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+		int index = board[from];
+		int color = index / ChessPiece.NUM_TYPES;
+		int type = index % ChessPiece.NUM_TYPES;
+
+		//en passant takes the pawn behind the square moved to
+		int captureSquare = to;
+		if(type == ChessPiece.PAWN && to == enPassant)
+		{
+			captureSquare = (color == WHITE) ? to - 8 : to + 8;
+		}
+		int captured = board[captureSquare];
+
+		//save what can't be worked out from the move when unmaking it
+		if(undoStack == null)
+		{
+			undoStack = new long[UNDO_CAPACITY];
+			hashStack = new long[UNDO_CAPACITY];
+		}
+		else if(undoSize == undoStack.length)
+		{
+			undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+			hashStack = Arrays.copyOf(hashStack, undoSize * 2);
+		}
+		int undo = (captured + 1) | (castling << 4) | ((enPassant + 1) << 8)
+				| (Math.min(halfmoveClock, 0x7FFF) << 16) | (sideToMove << 31);
+		hashStack[undoSize] = hash;
+		undoStack[undoSize++] = ((long) move << 32) | (undo & 0xFFFFFFFFL);
+
+		if(captured != EMPTY)
+		{
+			removePiece(captureSquare);
+		}
+
+		//castling moves the rook over the king
+		if(type == ChessPiece.KING && Math.abs(to - from) == 2)
+		{
+			if(to > from)
+			{
+				movePiece(from + 3, from + 1);
+			}
+			else
+			{
+				movePiece(from - 4, from - 1);
+			}
+		}
+
+		movePiece(from, to);
+
+		int promotion = Move.getPromotion(move);
+		if(promotion != ChessPiece.INVALID)
+		{
+			removePiece(to);
+			putPiece(to, color, promotion);
+		}
+
+		//the en passant key depends on the side to move too, so it is put
+		//back once that has changed
+		hash ^= Zobrist.castling(castling) ^ Zobrist.enPassant(this);
+		castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+
+		//a pawn that moved two squares can be taken en passant next move
+		if(type == ChessPiece.PAWN && Math.abs(to - from) == 16)
+		{
+			enPassant = (from + to) / 2;
+		}
+		else
+		{
+			enPassant = Bitboards.NO_SQUARE;
+		}
+		hash ^= Zobrist.castling(castling);
+
+		if(type == ChessPiece.PAWN || captured != EMPTY)
+		{
+			halfmoveClock = 0;
+		}
+		else
+		{
+			halfmoveClock++;
+		}
+		if(color == BLACK)
+		{
+			fullmoveNumber++;
+		}
+		if(sideToMove != 1 - color)
+		{
+			hash ^= Zobrist.blackToMove();
+		}
+		sideToMove = 1 - color;
+		hash ^= Zobrist.enPassant(this);
+	}
+
+	/**
+	 * Takes back the last move made with makeMove
+	 * @throws IllegalStateException if there is no move to unmake
+	 */
+	public void unmakeMove()
+	{
+		if(undoSize == 0)
+		{
+			throw new IllegalStateException("no move to unmake");
+		}
+		long entry = undoStack[--undoSize];
+		int move = (int) (entry >>> 32);
+		int undo = (int) entry;
+
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+		int color = colorAt(to);
+		if(color == BLACK)
+		{
+			fullmoveNumber--;
+		}
+		sideToMove = undo >>> 31;
+		castling = (undo >>> 4) & 0xF;
+		enPassant = ((undo >>> 8) & 0xFF) - 1;
+		halfmoveClock = (undo >>> 16) & 0x7FFF;
+
+		if(Move.getPromotion(move) != ChessPiece.INVALID)
+		{
+			removePiece(to);
+			putPiece(to, color, ChessPiece.PAWN);
+		}
+
+		movePiece(to, from);
+		int type = typeAt(from);
+
+		if(type == ChessPiece.KING && Math.abs(to - from) == 2)
+		{
+			if(to > from)
+			{
+				movePiece(from + 1, from + 3);
+			}
+			else
+			{
+				movePiece(from - 1, from - 4);
+			}
+		}
+
+		int captured = (undo & 0xF) - 1;
+		if(captured != EMPTY)
+		{
+			int captureSquare = to;
+			if(type == ChessPiece.PAWN && to == enPassant)
+			{
+				captureSquare = (color == WHITE) ? to - 8 : to + 8;
+			}
+			putPiece(captureSquare, captured / ChessPiece.NUM_TYPES, captured % ChessPiece.NUM_TYPES);
+		}
+		hash = hashStack[undoSize];
+	}
+
+	/**
+	 * Returns the number of moves that can be unmade
+	 */
+	public int getUndoSize()
+	{
+		return undoSize;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the position. Positions with the same
+	 * pieces, side to move, castling rights and en passant square have the
+	 * same hash; an en passant square that no pawn can take on is left out.
+	 */
+	public long getHash()
+	{
+		return hash;
+	}
+
+	/**
+	 * Returns white's lead in middlegame material and piece-square values
+	 * @see Evaluation#midgame(int, int)
+	 */
+	public int getMidgameScore()
+	{
+		return midgameScore;
+	}
+
+	/**
+	 * Returns white's lead in endgame material and piece-square values
+	 * @see Evaluation#endgame(int, int)
+	 */
+	public int getEndgameScore()
+	{
+		return endgameScore;
+	}
+
+	/**
+	 * Returns how much material is left, from 0 with only kings and pawns
+	 * to Evaluation.MAX_PHASE at the start of a game (more with extra queens)
+	 */
+	public int getPhase()
+	{
+		return phase;
+	}
+
+	/**
+	 * Returns true if this position has already occurred since the first
+	 * move on the undo stack. Only positions with the same side to move and
+	 * no capture or pawn move since are compared, so the search is limited
+	 * to every second hash inside the halfmove clock.
+	 * @return true if the position is a repetition
+	 */
+	public boolean isRepetition()
+	{
+		int oldest = Math.max(0, undoSize - halfmoveClock);
+		for(int i = undoSize - 2; i >= oldest; i -= 2)
+		{
+			if(hashStack[i] == hash)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the given color's king is attacked
+	 * @param color
+	 * @return true if it is in check
+	 */
+	public boolean isInCheck(int color)
+	{
+		int king = getKingSquare(color);
+		return king != Bitboards.NO_SQUARE && isAttacked(king, 1 - color);
+	}
+
+	public int getSideToMove() {
+		return sideToMove;
+	}
+
+	public void setSideToMove(int sideToMove) {
+		hash ^= Zobrist.enPassant(this);
+		if(this.sideToMove != sideToMove)
+		{
+			hash ^= Zobrist.blackToMove();
+		}
+		this.sideToMove = sideToMove;
+		hash ^= Zobrist.enPassant(this);
+	}
+
+	public int getCastling() {
+		return castling;
+	}
+
+	public void setCastling(int castling) {
+		hash ^= Zobrist.castling(this.castling) ^ Zobrist.castling(castling);
+		this.castling = castling;
+	}
+
+	public int getEnPassant() {
+		return enPassant;
+	}
+
+	public void setEnPassant(int enPassant) {
+		hash ^= Zobrist.enPassant(this);
+		this.enPassant = enPassant;
+		hash ^= Zobrist.enPassant(this);
+	}
+
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	public void setHalfmoveClock(int halfmoveClock) {
+		this.halfmoveClock = halfmoveClock;
+	}
+
+	public int getFullmoveNumber() {
+		return fullmoveNumber;
+	}
+
+	public void setFullmoveNumber(int fullmoveNumber) {
+		this.fullmoveNumber = fullmoveNumber;
+	}
+
+	/**
+	 * Creates a position from Forsyth-Edwards Notation
+	 * @param fen
+	 * @return the position
+	 * @throws IllegalArgumentException if the FEN cannot be read
+	 */
+	public static Position fromFEN(String fen)
+	{
+		if(fen == null)
+		{
+			throw new IllegalArgumentException("null FEN");
+		}
+		String[] fields = fen.trim().split("\\s+");
+		Position pos = new Position();
+
+		//piece placement, starting from the eighth rank
+		int rank = 7;
+		int file = 0;
+		for(char c: fields[0].toCharArray())
+		{
+			if(c == '/')
+			{
+				rank--;
+				file = 0;
+			}
+			else if(c >= '1' && c <= '8')
+			{
+				file += c - '0';
+			}
+			else
+			{
+				int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+				if(type < 0 || !Bitboards.onBoard(rank, file))
+				{
+					throw new IllegalArgumentException("bad FEN: " + fen);
+				}
+				int color = Character.isUpperCase(c) ? WHITE : BLACK;
+				pos.putPiece(Bitboards.square(rank, file), color, type);
+				file++;
+			}
+		}
+
+		if(fields.length > 1)
+		{
+			pos.sideToMove = fields[1].equals("b") ? BLACK : WHITE;
+		}
+		if(fields.length > 2)
+		{
+			for(char c: fields[2].toCharArray())
+			{
+				if(c == 'K') pos.castling |= WHITE_KINGSIDE;
+				if(c == 'Q') pos.castling |= WHITE_QUEENSIDE;
+				if(c == 'k') pos.castling |= BLACK_KINGSIDE;
+				if(c == 'q') pos.castling |= BLACK_QUEENSIDE;
+			}
+		}
+		if(fields.length > 3)
+		{
+			pos.enPassant = Bitboards.parseSquare(fields[3]);
+		}
+		try
+		{
+			if(fields.length > 4)
+			{
+				pos.halfmoveClock = Integer.parseInt(fields[4]);
+			}
+			if(fields.length > 5)
+			{
+				pos.fullmoveNumber = Integer.parseInt(fields[5]);
+			}
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("bad FEN: " + fen);
+		}
+		pos.hash = Zobrist.compute(pos);
+		return pos;
+	}
+
+	/**
+	 * Converts the position to Forsyth-Edwards Notation
+	 * @return the FEN string
+	 */
+	public String toFEN()
+	{
+		StringBuilder fen = new StringBuilder(90);
+		for(int rank = 7; rank >= 0; rank--)
+		{
+			int numEmpty = 0;
+			for(int file = 0; file < 8; file++)
+			{
+				int index = board[Bitboards.square(rank, file)];
+				if(index == EMPTY)
+				{
+					numEmpty++;
+					continue;
+				}
+				if(numEmpty > 0)
+				{
+					fen.append(numEmpty);
+					numEmpty = 0;
+				}
+				char c = PIECE_LETTERS.charAt(index % ChessPiece.NUM_TYPES);
+				if(index / ChessPiece.NUM_TYPES == WHITE)
+				{
+					c = Character.toUpperCase(c);
+				}
+				fen.append(c);
+			}
+			if(numEmpty > 0)
+			{
+				fen.append(numEmpty);
+			}
+			if(rank > 0)
+			{
+				fen.append('/');
+			}
+		}
+
+		fen.append(sideToMove == WHITE ? " w " : " b ");
+
+		if(castling == 0)
+		{
+			fen.append('-');
+		}
+		if((castling & WHITE_KINGSIDE) != 0) fen.append('K');
+		if((castling & WHITE_QUEENSIDE) != 0) fen.append('Q');
+		if((castling & BLACK_KINGSIDE) != 0) fen.append('k');
+		if((castling & BLACK_QUEENSIDE) != 0) fen.append('q');
+
+		fen.append(' ').append(Bitboards.squareName(enPassant));
+		fen.append(' ').append(halfmoveClock);
+		fen.append(' ').append(fullmoveNumber);
+		return fen.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Position other = (Position) obj;
+		if (hash != other.hash)
+			return false;
+		if (sideToMove != other.sideToMove)
+			return false;
+		if (castling != other.castling)
+			return false;
+		if (enPassant != other.enPassant)
+			return false;
+		if (halfmoveClock != other.halfmoveClock)
+			return false;
+		if (fullmoveNumber != other.fullmoveNumber)
+			return false;
+		return Arrays.equals(pieces, other.pieces);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return toFEN();
+	}
+}
@@ -0,0 +1,631 @@
+package edu.up.cs301.chess.engine;
+
+/**
+ * Finds the best move in a position without an external engine. It uses
+ * iterative deepening: the position is searched one move deep, then two,
+ * and so on until the time runs out, and the best move of the deepest
+ * search that finished is played. Each search is a principal variation
+ * search, an alpha-beta search that assumes the first move it tries is the
+ * best and only proves the others are worse with narrow searches.
+ *
+ * The search checks the clock every few thousand positions and stops when
+ * it passes the deadline or its node limit, or when another thread calls
+ * stop() or gives it a time to stop with stopAt().
+ *
+ * Results are kept in a TranspositionTable, which is kept between searches
+ * so the next move can reuse the work done for this one. The moves of each
+ * position are tried in the order given by MoveOrder.
+ *
+ * At the end of each line a quiescence search plays out the captures, so a
+ * position isn't scored in the middle of an exchange.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class Search {
+
+	/**
+	 * Told about each iteration of the search as it finishes
+	 */
+	public interface Listener {
+
+		/**
+		 * Called on the searching thread after each completed iteration;
+		 * the search's getters give its result
+		 * @param search
+		 */
+		void iterationFinished(Search search);
+	}
+
+	//Deepest the search can go, counting check extensions
+	public static final int MAX_PLY = 64;
+
+	//Bigger than any score
+	public static final int INFINITY = 32000;
+
+	//The score for checkmating; mate in n plies is MATE - n
+	public static final int MATE = 30000;
+
+	//Scores past this are forced mates
+	public static final int MATE_BOUND = MATE - MAX_PLY;
+
+	//How many positions to search between checking the clock, minus one
+	private static final int CHECK_INTERVAL = 2047;
+
+	//The position being searched, changed in place
+	private Position position;
+
+	//Results of earlier searches, possibly shared with other threads
+	private final TranspositionTable table;
+
+	//0 for the main search, or which helper thread this is
+	private final int id;
+
+	//Decides which moves to try first
+	private final MoveOrder ordering = new MoveOrder();
+
+	//One move buffer per ply
+	private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+
+	//Hashes of the game's positions before the search started
+	private long[] gameHistory = new long[0];
+
+	//Set to stop the search, possibly from another thread
+	private volatile boolean stopped;
+
+	//Set by stop, and only cleared by reset, so a stop that comes before
+	//the search starts isn't lost
+	private volatile boolean stopRequested;
+
+	//When to stop, from System.currentTimeMillis()
+	private long deadline;
+
+	//When stopAt said to stop, or Long.MAX_VALUE; like stopRequested, only
+	//cleared by reset
+	private volatile long stopTime = Long.MAX_VALUE;
+
+	//The search stops after this many positions
+	private long nodeLimit = Long.MAX_VALUE;
+
+	//Told about each finished iteration, or null
+	private Listener listener;
+
+	//Positions searched so far
+	private long nodes;
+
+	//The result of the deepest finished iteration
+	private int bestMove;
+	private int bestScore;
+	private int completedDepth;
+
+	/**
+	 * Makes a search with its own table of the default size
+	 */
+	public Search()
+	{
+		this(new TranspositionTable());
+	}
+
+	/**
+	 * Constructor
+	 * @param table the transposition table to use
+	 */
+	public Search(TranspositionTable table)
+	{
+		this(table, 0);
+	}
+
+	/**
+	 * Makes one of the searches run in parallel by ParallelSearch. Helpers
+	 * start at a different depth and try the root moves in a different
+	 * order from the main search, so they fill the shared table with
+	 * results the others haven't found yet.
+	 * @param table the transposition table shared by the threads
+	 * @param id 0 for the main search, or the number of the helper
+	 */
+	Search(TranspositionTable table, int id)
+	{
+		this.table = table;
+		this.id = id;
+	}
+
+	/**
+	 * Sets the hashes of the positions played in the game so far, so the
+	 * search can see repetitions of them. ChessGameState.getPositionHistory
+	 * gives them in the right form.
+	 * @param history hashes of the positions since the last capture or pawn move
+	 */
+	public void setGameHistory(long[] history)
+	{
+		gameHistory = (history == null) ? new long[0] : history.clone();
+	}
+
+	/**
+	 * Searches a position for the best move
+	 * @param root the position to search; it is not changed
+	 * @param maxDepth the deepest iteration to search, from 1 to MAX_PLY - 1
+	 * @param timeMillis how long to search, or 0 for no limit
+	 * @return the best move, or Move.NONE if there are no legal moves
+	 */
+	public int search(Position root, int maxDepth, long timeMillis)
+	{
+		return search(root, maxDepth, timeMillis, true);
+	}
+
+	/**
+	 * Searches a position for the best move
+	 * @param root the position to search; it is not changed
+	 * @param maxDepth the deepest iteration to search, from 1 to MAX_PLY - 1
+	 * @param timeMillis how long to search, or 0 for no limit
+	 * @param newSearch whether to start a new search in the table; false when
+	 * whoever shares the table has done it already
+	 * @return the best move, or Move.NONE if there are no legal moves
+	 */
+	int search(Position root, int maxDepth, long timeMillis, boolean newSearch)
+	{
+		position = new Position(root);
+		//clear the last search's deadline, then check for a stop; in this
+		//order a stop from another thread can't be overwritten
+		stopped = false;
+		if(stopRequested)
+		{
+			stopped = true;
+		}
+		nodes = 0;
+		deadline = (timeMillis > 0) ? System.currentTimeMillis() + timeMillis : Long.MAX_VALUE;
+		bestMove = Move.NONE;
+		bestScore = 0;
+		completedDepth = 0;
+		maxDepth = Math.max(1, Math.min(maxDepth, MAX_PLY - 1));
+		if(newSearch)
+		{
+			table.newSearch();
+		}
+		ordering.newSearch();
+
+		int[] rootMoves = moves[0];
+		int numMoves = MoveGenerator.generateLegalMoves(position, rootMoves);
+		if(numMoves == 0)
+		{
+			return Move.NONE;
+		}
+
+		//start with the best move from an earlier search, and sort the rest
+		long entry = table.probe(position.getHash());
+		ordering.score(position, rootMoves, numMoves, 0,
+				(entry != 0) ? TranspositionTable.getMove(entry) : Move.NONE);
+		for(int i = 0; i < numMoves; i++)
+		{
+			ordering.next(rootMoves, 0, i, numMoves);
+		}
+		bestMove = rootMoves[0];
+
+		//helpers try the other moves in a different order
+		if(id > 0 && numMoves > 2)
+		{
+			rotate(rootMoves, 1, numMoves, id % (numMoves - 1));
+		}
+
+		for(int depth = 1 + (id & 1); depth <= maxDepth; depth++)
+		{
+			int alpha = -INFINITY;
+			int iterationBest = 0;
+			for(int i = 0; i < numMoves; i++)
+			{
+				position.makeMove(rootMoves[i]);
+				int score;
+				if(i == 0)
+				{
+					score = -pvs(depth - 1, -INFINITY, -alpha, 1);
+				}
+				else
+				{
+					score = -pvs(depth - 1, -alpha - 1, -alpha, 1);
+					if(score > alpha && !stopped)
+					{
+						score = -pvs(depth - 1, -INFINITY, -alpha, 1);
+					}
+				}
+				position.unmakeMove();
+				if(stopped)
+				{
+					break;
+				}
+				if(score > alpha)
+				{
+					alpha = score;
+					iterationBest = i;
+				}
+			}
+
+			//only trust iterations that finished
+			if(stopped)
+			{
+				break;
+			}
+
+			//search the best move first next time
+			int best = rootMoves[iterationBest];
+			System.arraycopy(rootMoves, 0, rootMoves, 1, iterationBest);
+			rootMoves[0] = best;
+
+			bestMove = best;
+			bestScore = alpha;
+			completedDepth = depth;
+			table.store(position.getHash(), best, alpha, depth, TranspositionTable.BOUND_EXACT);
+			if(listener != null)
+			{
+				listener.iterationFinished(this);
+			}
+
+			//a forced mate won't get any better
+			if(Math.abs(alpha) >= MATE_BOUND || numMoves == 1)
+			{
+				break;
+			}
+		}
+		return bestMove;
+	}
+
+	/**
+	 * Principal variation search
+	 * @param depth how many more moves to search
+	 * @param alpha the score the side to move already has
+	 * @param beta the score the other side already has
+	 * @param ply how many moves from the root
+	 * @return the score for the side to move
+	 */
+	private int pvs(int depth, int alpha, int beta, int ply)
+	{
+		if((++nodes & CHECK_INTERVAL) == 0 && (System.currentTimeMillis() >= Math.min(deadline, stopTime)
+				|| nodes >= nodeLimit))
+		{
+			stopped = true;
+		}
+		if(stopped)
+		{
+			return 0;
+		}
+		if(isDraw(ply))
+		{
+			return 0;
+		}
+
+		int color = position.getSideToMove();
+		boolean inCheck = position.isInCheck(color);
+
+		//look one move further when in check so a mate isn't missed
+		if(inCheck)
+		{
+			depth++;
+		}
+		if(depth <= 0 || ply >= MAX_PLY - 1)
+		{
+			return quiesce(alpha, beta, ply);
+		}
+
+		//use an earlier result if it was searched deep enough, except on the
+		//principal variation where the exact score matters
+		long hash = position.getHash();
+		long entry = table.probe(hash);
+		int hashMove = Move.NONE;
+		if(entry != 0)
+		{
+			hashMove = TranspositionTable.getMove(entry);
+			if(beta - alpha == 1 && TranspositionTable.getDepth(entry) >= depth)
+			{
+				int score = TranspositionTable.scoreFromTable(TranspositionTable.getScore(entry), ply);
+				int bound = TranspositionTable.getBound(entry);
+				if(bound == TranspositionTable.BOUND_EXACT
+						|| (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+						|| (bound == TranspositionTable.BOUND_UPPER && score <= alpha))
+				{
+					return score;
+				}
+			}
+		}
+
+		int[] plyMoves = moves[ply];
+		int numMoves = MoveGenerator.generateLegalMoves(position, plyMoves);
+		if(numMoves == 0)
+		{
+			//checkmate or stalemate; a closer mate scores higher
+			return inCheck ? -MATE + ply : 0;
+		}
+		ordering.score(position, plyMoves, numMoves, ply, hashMove);
+
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMove = Move.NONE;
+		for(int i = 0; i < numMoves; i++)
+		{
+			int move = ordering.next(plyMoves, ply, i, numMoves);
+			position.makeMove(move);
+			int score;
+			if(i == 0)
+			{
+				score = -pvs(depth - 1, -beta, -alpha, ply + 1);
+			}
+			else
+			{
+				score = -pvs(depth - 1, -alpha - 1, -alpha, ply + 1);
+				if(score > alpha && score < beta)
+				{
+					score = -pvs(depth - 1, -beta, -alpha, ply + 1);
+				}
+			}
+			position.unmakeMove();
+			if(stopped)
+			{
+				return 0;
+			}
+			if(score > best)
+			{
+				best = score;
+				if(score > alpha)
+				{
+					alpha = score;
+					bestMove = move;
+					if(alpha >= beta)
+					{
+						ordering.cutoff(position, move, ply, depth, i);
+						break;
+					}
+				}
+			}
+		}
+
+		int bound = (best >= beta) ? TranspositionTable.BOUND_LOWER
+				: (best > originalAlpha) ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+		table.store(hash, bestMove, TranspositionTable.scoreToTable(best, ply), depth, bound);
+		return best;
+	}
+
+	/**
+	 * Quiescence search: searches only captures and promotions, or every
+	 * move when in check, until the position is quiet. The side to move can
+	 * also "stand pat" and take the score of the position as it is, since
+	 * it doesn't have to capture. Captures that lose material according to
+	 * StaticExchange aren't searched.
+	 * @param alpha the score the side to move already has
+	 * @param beta the score the other side already has
+	 * @param ply how many moves from the root
+	 * @return the score for the side to move
+	 */
+	private int quiesce(int alpha, int beta, int ply)
+	{
+		if((++nodes & CHECK_INTERVAL) == 0 && (System.currentTimeMillis() >= Math.min(deadline, stopTime)
+				|| nodes >= nodeLimit))
+		{
+			stopped = true;
+		}
+		if(stopped)
+		{
+			return 0;
+		}
+
+		boolean inCheck = position.isInCheck(position.getSideToMove());
+		if(ply >= MAX_PLY - 1)
+		{
+			return inCheck ? 0 : Evaluation.evaluate(position);
+		}
+
+		int best = -INFINITY;
+		if(!inCheck)
+		{
+			best = Evaluation.evaluate(position);
+			if(best >= beta)
+			{
+				return best;
+			}
+			if(best > alpha)
+			{
+				alpha = best;
+			}
+		}
+
+		int[] plyMoves = moves[ply];
+		int numMoves = inCheck ? MoveGenerator.generateLegalMoves(position, plyMoves)
+				: MoveGenerator.generateLegalCaptures(position, plyMoves);
+		if(numMoves == 0 && inCheck)
+		{
+			return -MATE + ply;
+		}
+		ordering.score(position, plyMoves, numMoves, ply, Move.NONE);
+
+		for(int i = 0; i < numMoves; i++)
+		{
+			int move = ordering.next(plyMoves, ply, i, numMoves);
+			if(!inCheck && !StaticExchange.isAtLeast(position, move, 0))
+			{
+				continue;
+			}
+			position.makeMove(move);
+			int score = -quiesce(-beta, -alpha, ply + 1);
+			position.unmakeMove();
+			if(stopped)
+			{
+				return 0;
+			}
+			if(score > best)
+			{
+				best = score;
+				if(score > alpha)
+				{
+					alpha = score;
+					if(alpha >= beta)
+					{
+						break;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Rotates part of a list to the left
+	 * @param moveList
+	 * @param start the first index to rotate
+	 * @param end one past the last index to rotate
+	 * @param distance how many places to rotate by
+	 */
+	private static void rotate(int[] moveList, int start, int end, int distance)
+	{
+		for(int i = 0; i < distance; i++)
+		{
+			int first = moveList[start];
+			System.arraycopy(moveList, start + 1, moveList, start, end - start - 1);
+			moveList[end - 1] = first;
+		}
+	}
+
+	/**
+	 * Returns true if the position is drawn by the fifty move rule or by
+	 * repeating a position from the search or from the game
+	 */
+	private boolean isDraw(int ply)
+	{
+		if(position.getHalfmoveClock() >= 100 || position.isRepetition())
+		{
+			return true;
+		}
+
+		//the game's positions can only repeat if there was no capture or
+		//pawn move since the root
+		if(position.getHalfmoveClock() >= ply)
+		{
+			long hash = position.getHash();
+			for(int i = gameHistory.length - 1; i >= 0; i--)
+			{
+				if(gameHistory[i] == hash)
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Forgets the positions counted by the last search, so a count read
+	 * from another thread before this search starts isn't left over
+	 */
+	void clearNodes()
+	{
+		nodes = 0;
+	}
+
+	/**
+	 * Limits how many positions the next searches can visit. The limit is
+	 * checked with the clock, so it can be passed by a few thousand.
+	 * @param limit the most positions, or 0 for no limit
+	 */
+	public void setNodeLimit(long limit)
+	{
+		nodeLimit = (limit > 0) ? limit : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Sets what is told about each finished iteration
+	 * @param listener the listener, or null for none
+	 */
+	public void setListener(Listener listener)
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * Stops the search as soon as possible. It can be called from any thread.
+	 * If the search hasn't started yet, it stops as soon as it starts, until
+	 * reset is called.
+	 */
+	public void stop()
+	{
+		stopRequested = true;
+		stopped = true;
+	}
+
+	/**
+	 * Stops the search at a given time, as well as at its own deadline. It
+	 * can be called from any thread, and counts for a search that hasn't
+	 * started yet, until reset is called.
+	 * @param time when to stop, from System.currentTimeMillis()
+	 */
+	public void stopAt(long time)
+	{
+		stopTime = time;
+	}
+
+	/**
+	 * Clears a stop, so the next search runs. A thread that starts a search
+	 * on another thread must call this before starting it, not let the
+	 * search do it, or a stop sent in between would be lost.
+	 */
+	public void reset()
+	{
+		stopRequested = false;
+		stopTime = Long.MAX_VALUE;
+		stopped = false;
+	}
+
+	/**
+	 * @return true if the search was stopped before reaching its depth
+	 */
+	public boolean isStopped()
+	{
+		return stopped;
+	}
+
+	/**
+	 * @return the best move found by the last search
+	 */
+	public int getBestMove()
+	{
+		return bestMove;
+	}
+
+	/**
+	 * @return the score of the best move for the side to move
+	 */
+	public int getBestScore()
+	{
+		return bestScore;
+	}
+
+	/**
+	 * @return the depth of the deepest iteration that finished
+	 */
+	public int getCompletedDepth()
+	{
+		return completedDepth;
+	}
+
+	/**
+	 * @return the transposition table, to read its statistics or clear it
+	 */
+	public TranspositionTable getTable()
+	{
+		return table;
+	}
+
+	/**
+	 * @return the move ordering, to read its statistics
+	 */
+	public MoveOrder getMoveOrder()
+	{
+		return ordering;
+	}
+
+	/**
+	 * @return the number of positions searched by the last search
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+}
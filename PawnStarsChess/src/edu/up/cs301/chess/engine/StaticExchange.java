@@ -0,0 +1,135 @@
+package edu.up.cs301.chess.engine;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Static exchange evaluation (SEE): works out whether a capture wins
+ * material once both sides have taken back on the square as many times as
+ * is good for them, without making any moves. Each side recaptures with its
+ * least valuable attacker. The attackers come from Position.attackersTo,
+ * and when a piece is used up the sliders behind it are added, so batteries
+ * like a rook behind a queen are counted.
+ *
+ * Pins are ignored, so a pinned piece can recapture. That makes the answer
+ * wrong now and then, but it is only used to decide which captures are
+ * worth searching.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class StaticExchange {
+
+	//The attackers to try, least valuable first
+	private static final int[] ATTACKER_ORDER = { ChessPiece.PAWN, ChessPiece.KNIGHT,
+		ChessPiece.BISHOP, ChessPiece.ROOK, ChessPiece.QUEEN, ChessPiece.KING };
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private StaticExchange()
+	{
+	}
+
+	/**
+	 * Returns true if a move wins at least an amount of material after the
+	 * exchange on its square. Promotions, en passant and castling count as
+	 * winning nothing.
+	 * @param position the position the move is made from
+	 * @param move a legal move
+	 * @param threshold the least the move has to win, in centipawns
+	 * @return true if it wins at least that much
+	 */
+	public static boolean isAtLeast(Position position, int move, int threshold)
+	{
+		if(Move.getFlags(move) != Move.NORMAL || Move.getPromotion(move) != ChessPiece.INVALID)
+		{
+			return threshold <= 0;
+		}
+		int[] values = Evaluation.PIECE_VALUES;
+		int from = Move.getFrom(move);
+		int to = Move.getTo(move);
+
+		//what is won if the piece isn't taken back
+		int captured = position.typeAt(to);
+		int swap = ((captured == ChessPiece.INVALID) ? 0 : values[captured]) - threshold;
+		if(swap < 0)
+		{
+			return false;
+		}
+
+		//what is won if it is taken back and nothing else happens
+		swap = values[position.typeAt(from)] - swap;
+		if(swap <= 0)
+		{
+			return true;
+		}
+
+		long occupied = position.getOccupied() ^ (1L << from) ^ (1L << to);
+		long bishops = position.getPieces(Position.WHITE, ChessPiece.BISHOP)
+				| position.getPieces(Position.BLACK, ChessPiece.BISHOP)
+				| position.getPieces(Position.WHITE, ChessPiece.QUEEN)
+				| position.getPieces(Position.BLACK, ChessPiece.QUEEN);
+		long rooks = position.getPieces(Position.WHITE, ChessPiece.ROOK)
+				| position.getPieces(Position.BLACK, ChessPiece.ROOK)
+				| position.getPieces(Position.WHITE, ChessPiece.QUEEN)
+				| position.getPieces(Position.BLACK, ChessPiece.QUEEN);
+		long attackers = position.attackersTo(to, Position.WHITE, occupied)
+				| position.attackersTo(to, Position.BLACK, occupied);
+		int color = position.colorAt(from);
+
+		//1 if the side that made the move is ahead so far
+		int result = 1;
+		while(true)
+		{
+			color = 1 - color;
+			attackers &= occupied;
+			long colorAttackers = attackers & position.getOccupancy(color);
+			if(colorAttackers == 0)
+			{
+				break;
+			}
+			result ^= 1;
+
+			//take back with the least valuable attacker
+			int type = ChessPiece.INVALID;
+			long pieces = 0;
+			for(int attacker: ATTACKER_ORDER)
+			{
+				pieces = colorAttackers & position.getPieces(color, attacker);
+				if(pieces != 0)
+				{
+					type = attacker;
+					break;
+				}
+			}
+
+			//the king can only take back if nothing can take it
+			if(type == ChessPiece.KING)
+			{
+				return ((attackers & ~position.getOccupancy(color)) != 0) ? result == 0 : result == 1;
+			}
+
+			swap = values[type] - swap;
+			if(swap < result)
+			{
+				break;
+			}
+			occupied ^= pieces & -pieces;
+
+			//uncover the sliders behind it
+			if(type == ChessPiece.PAWN || type == ChessPiece.BISHOP || type == ChessPiece.QUEEN)
+			{
+				attackers |= AttackTables.bishopAttacks(to, occupied) & bishops;
+			}
+			if(type == ChessPiece.ROOK || type == ChessPiece.QUEEN)
+			{
+				attackers |= AttackTables.rookAttacks(to, occupied) & rooks;
+			}
+		}
+		return result == 1;
+	}
+}
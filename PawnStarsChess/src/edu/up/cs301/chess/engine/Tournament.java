@@ -0,0 +1,873 @@
+package edu.up.cs301.chess.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Plays engines against each other without the Android game framework, to
+ * measure whether a change to the engine makes it stronger. Games are
+ * played on every core at once. Each opening is played twice, once with
+ * each engine as white, and every move gets the same fixed node count,
+ * time or depth.
+ *
+ * An engine is either "builtin", the Search in this build, or the command
+ * line of any UCI engine, such as an older build run as
+ * "java -cp old.jar edu.up.cs301.chess.engine.UCIServer".
+ *
+ * An external engine that doesn't answer in time loses on time, and one
+ * that exits loses too; either way its process is killed.
+ *
+ * The result of each game is written as a line to the results file and the
+ * games to the PGN file. The score of the first engine is given as an Elo
+ * difference with a 95% confidence interval, along with games per hour.
+ *
+ * Can be run from the command line:
+ * Tournament [-engine1 ENGINE] [-engine2 ENGINE] [-games N] [-threads N]
+ *     [-nodes N | -movetime MS | -depth N] [-openings FILE] [-pgn FILE]
+ *     [-results FILE] [-hash MB] [-maxplies N]
+ * The openings file has one FEN per line.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class Tournament {
+
+	//The engine name for the built in search
+	public static final String BUILTIN = "builtin";
+
+	//Results, for the first engine
+	public static final int WIN = 0;
+	public static final int DRAW = 1;
+	public static final int LOSS = 2;
+
+	//Openings used when no file is given, as moves from the start
+	private static final String[] DEFAULT_OPENINGS = {
+		"e2e4 e7e5 g1f3 b8c6", "e2e4 c7c5 g1f3 d7d6", "e2e4 e7e6 d2d4 d7d5",
+		"e2e4 c7c6 d2d4 d7d5", "d2d4 d7d5 c2c4 e7e6", "d2d4 g8f6 c2c4 g7g6",
+		"d2d4 g8f6 c2c4 e7e6", "c2c4 e7e5 b1c3 g8f6", "g1f3 d7d5 g2g3 g8f6",
+		"e2e4 d7d5 e4d5 d8d5", "e2e4 e7e5 f1c4 g8f6", "d2d4 d7d5 c2c4 c7c6" };
+
+	//Games longer than this are drawn
+	private static final int MAX_PLIES = 400;
+
+	//How long an external engine has to start up, and to make a move that
+	//is limited by nodes or depth rather than time
+	private static final long START_TIMEOUT = 10000;
+	private static final long MOVE_TIMEOUT = 60000;
+
+	//How much longer than its move time an engine can take to answer
+	private static final long TIME_MARGIN = 1000;
+
+	/**
+	 * Something that chooses moves in a game
+	 */
+	public interface Engine {
+
+		/**
+		 * Chooses a move
+		 * @param start the position the game started from
+		 * @param moves the moves played since, in UCI notation
+		 * @param position the position now
+		 * @param history hashes of the positions since the last capture or pawn move
+		 * @return the move in UCI notation, or null if it has none
+		 * @throws IOException if an external engine fails
+		 */
+		String chooseMove(String start, List<String> moves, Position position, long[] history)
+				throws IOException;
+
+		/**
+		 * Frees everything the engine uses
+		 */
+		void close();
+	}
+
+	/**
+	 * How long each move is searched for
+	 */
+	public static class Limit {
+		private final long nodes;
+		private final long moveTime;
+		private final int depth;
+
+		/**
+		 * Constructor; only one of the limits should be given
+		 * @param nodes the positions to search, or 0
+		 * @param moveTime the milliseconds to search, or 0
+		 * @param depth the depth to search, or 0
+		 */
+		public Limit(long nodes, long moveTime, int depth)
+		{
+			this.nodes = nodes;
+			this.moveTime = moveTime;
+			this.depth = depth;
+		}
+
+		/**
+		 * @return how long an engine can take to answer a move before it
+		 * 		loses on time
+		 */
+		public long getTimeout()
+		{
+			return (moveTime > 0) ? moveTime + TIME_MARGIN : MOVE_TIMEOUT;
+		}
+
+		/**
+		 * @return the limit as the arguments of a UCI "go"
+		 */
+		public String toUci()
+		{
+			if(nodes > 0)
+			{
+				return "nodes " + nodes;
+			}
+			if(moveTime > 0)
+			{
+				return "movetime " + moveTime;
+			}
+			return "depth " + depth;
+		}
+
+		@Override
+		public String toString()
+		{
+			return toUci();
+		}
+	}
+
+	/**
+	 * Plays with the Search in this build, on the calling thread
+	 */
+	private static class BuiltinEngine implements Engine {
+		private final Search search;
+		private final Limit limit;
+
+		public BuiltinEngine(Limit limit, int hashMegabytes)
+		{
+			this.limit = limit;
+			search = new Search(new TranspositionTable(hashMegabytes, false));
+			search.setNodeLimit(limit.nodes);
+		}
+
+		public String chooseMove(String start, List<String> moves, Position position, long[] history)
+		{
+			search.setGameHistory(history);
+			int move = search.search(position, (limit.depth > 0) ? limit.depth : Search.MAX_PLY, limit.moveTime);
+			return (move == Move.NONE) ? null : Move.toString(move);
+		}
+
+		public void close()
+		{
+		}
+	}
+
+	/**
+	 * Plays with an external UCI engine in its own process. It is run
+	 * directly rather than through UCIInterface, which needs Android.
+	 * Its output is read on a thread of its own, so waiting for an answer
+	 * can time out.
+	 */
+	private static class ProcessEngine implements Engine {
+		//Put in lines once the engine's output has ended
+		private static final String EXITED = new String("exited");
+
+		private final Process process;
+		private final BufferedReader input;
+		private final Writer output;
+		private final Limit limit;
+
+		//The lines the engine has written and not yet been read
+		private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+
+		public ProcessEngine(String command, Limit limit) throws IOException
+		{
+			this.limit = limit;
+			process = new ProcessBuilder(command.trim().split("\\s+")).redirectErrorStream(true).start();
+			input = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			output = new OutputStreamWriter(process.getOutputStream());
+			Thread reader = new Thread(new Runnable() {
+				public void run()
+				{
+					readLines();
+				}
+			}, "engine output");
+			reader.setDaemon(true);
+			reader.start();
+			try
+			{
+				send("uci");
+				readUntil("uciok", START_TIMEOUT);
+				send("ucinewgame");
+				send("isready");
+				readUntil("readyok", START_TIMEOUT);
+			}
+			catch(IOException e)
+			{
+				close();
+				throw e;
+			}
+		}
+
+		public String chooseMove(String start, List<String> moves, Position position, long[] history)
+				throws IOException
+		{
+			StringBuilder command = new StringBuilder("position fen ").append(start);
+			if(!moves.isEmpty())
+			{
+				command.append(" moves");
+				for(String move: moves)
+				{
+					command.append(' ').append(move);
+				}
+			}
+			send(command.toString());
+			send("go " + limit.toUci());
+			String[] words = readUntil("bestmove", limit.getTimeout()).trim().split("\\s+");
+			return (words.length < 2 || words[1].equals("0000") || words[1].equals("(none)")) ? null : words[1];
+		}
+
+		private void send(String command) throws IOException
+		{
+			output.write(command + "\n");
+			output.flush();
+		}
+
+		/**
+		 * Passes on the engine's output until it ends (runs on the reader
+		 * thread)
+		 */
+		private void readLines()
+		{
+			try
+			{
+				String line;
+				while((line = input.readLine()) != null)
+				{
+					lines.add(line);
+				}
+			}
+			catch(IOException e)
+			{
+				//the engine has gone
+			}
+			finally
+			{
+				try
+				{
+					input.close();
+				}
+				catch(IOException e)
+				{
+				}
+			}
+			lines.add(EXITED);
+		}
+
+		/**
+		 * Reads up to a line starting with a word
+		 * @param start the word
+		 * @param timeout the most milliseconds to wait
+		 * @return the line
+		 * @throws InterruptedIOException if it doesn't come in time
+		 * @throws IOException if the engine exits first
+		 */
+		private String readUntil(String start, long timeout) throws IOException
+		{
+			long deadline = System.currentTimeMillis() + timeout;
+			while(true)
+			{
+				String line;
+				try
+				{
+					line = lines.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted waiting for " + start);
+				}
+				if(line == null)
+				{
+					throw new InterruptedIOException("no " + start + " in " + timeout + " ms");
+				}
+				if(line == EXITED)
+				{
+					lines.add(EXITED);
+					throw new IOException("engine exited");
+				}
+				if(line.startsWith(start))
+				{
+					return line;
+				}
+			}
+		}
+
+		/**
+		 * Ends the engine. Its output is closed by the reader thread once
+		 * the process has gone, since closing it here would wait for a
+		 * read that a hung engine never finishes.
+		 */
+		public void close()
+		{
+			try
+			{
+				send("quit");
+				output.close();
+			}
+			catch(IOException e)
+			{
+				//it has already gone
+			}
+			process.destroy();
+		}
+	}
+
+	/**
+	 * The outcome of one game
+	 */
+	public static class GameResult {
+		private final int number;
+		private final String white;
+		private final String black;
+		private final String result;
+		private final String reason;
+		private final String pgn;
+		private final int plies;
+
+		public GameResult(int number, String white, String black, String result, String reason,
+				String pgn, int plies)
+		{
+			this.number = number;
+			this.white = white;
+			this.black = black;
+			this.result = result;
+			this.reason = reason;
+			this.pgn = pgn;
+			this.plies = plies;
+		}
+
+		/**
+		 * @return "1-0", "0-1" or "1/2-1/2"
+		 */
+		public String getResult()
+		{
+			return result;
+		}
+
+		/**
+		 * @return why the game ended
+		 */
+		public String getReason()
+		{
+			return reason;
+		}
+
+		/**
+		 * @return the game in PGN
+		 */
+		public String getPgn()
+		{
+			return pgn;
+		}
+
+		/**
+		 * @return the number of moves made by both sides
+		 */
+		public int getPlies()
+		{
+			return plies;
+		}
+
+		@Override
+		public String toString()
+		{
+			return number + "\t" + white + "\t" + black + "\t" + result + "\t" + reason + "\t" + plies;
+		}
+	}
+
+	private final String[] engines;
+	private final String[] names;
+	private final Limit limit;
+	private final int hashMegabytes;
+	private final int maxPlies;
+
+	//Results so far, for the first engine
+	private final int[] results = new int[3];
+	private long startNanos;
+
+	//Where the results and games are written, or null
+	private PrintWriter resultsOut;
+	private PrintWriter pgnOut;
+
+	/**
+	 * Constructor
+	 * @param engine1 "builtin" or a UCI engine's command line
+	 * @param engine2 "builtin" or a UCI engine's command line
+	 * @param limit how long each move is searched
+	 * @param hashMegabytes the table size of each built in engine
+	 * @param maxPlies the longest game before it is drawn
+	 */
+	public Tournament(String engine1, String engine2, Limit limit, int hashMegabytes, int maxPlies)
+	{
+		engines = new String[] { engine1, engine2 };
+		names = new String[] { name(engine1, 1), name(engine2, 2) };
+		this.limit = limit;
+		this.hashMegabytes = hashMegabytes;
+		this.maxPlies = maxPlies;
+	}
+
+	/**
+	 * Makes a short name for an engine, numbered so two of the same
+	 * engine can be told apart
+	 */
+	private static String name(String engine, int number)
+	{
+		String[] words = engine.trim().split("\\s+");
+		String name = new File(words[words.length - 1]).getName();
+		return name + "-" + number;
+	}
+
+	/**
+	 * Sets where results and games are written
+	 * @param results a line per game, or null
+	 * @param pgn the games, or null
+	 */
+	public void setOutput(PrintWriter results, PrintWriter pgn)
+	{
+		resultsOut = results;
+		pgnOut = pgn;
+	}
+
+	/**
+	 * Starts an engine for a game
+	 */
+	private Engine startEngine(int index) throws IOException
+	{
+		if(engines[index].equals(BUILTIN))
+		{
+			return new BuiltinEngine(limit, hashMegabytes);
+		}
+		return new ProcessEngine(engines[index], limit);
+	}
+
+	/**
+	 * Plays one game
+	 * @param number the game's number, from 1
+	 * @param fen the opening
+	 * @param firstIsWhite true if the first engine plays white
+	 * @return the result
+	 */
+	public GameResult playGame(int number, String fen, boolean firstIsWhite)
+	{
+		int whiteIndex = firstIsWhite ? 0 : 1;
+		Engine[] players = new Engine[2];
+		Position position = Position.fromFEN(fen);
+		Position start = new Position(position);
+		List<String> moves = new ArrayList<String>();
+		List<String> sanMoves = new ArrayList<String>();
+		Map<Long, Integer> seen = new HashMap<Long, Integer>();
+		long[] history = new long[MAX_PLIES];
+		int historySize = 0;
+		int[] legal = new int[MoveGenerator.MAX_MOVES];
+		String result;
+		String reason;
+
+		//the side whose engine is being waited for, which loses if it fails
+		int acting = Position.WHITE;
+		try
+		{
+			players[Position.WHITE] = startEngine(whiteIndex);
+			acting = Position.BLACK;
+			players[Position.BLACK] = startEngine(1 - whiteIndex);
+			seen.put(position.getHash(), 1);
+			while(true)
+			{
+				int color = position.getSideToMove();
+				int numLegal = MoveGenerator.generateLegalMoves(position, legal);
+				if(numLegal == 0)
+				{
+					boolean mate = position.isInCheck(color);
+					result = !mate ? "1/2-1/2" : (color == Position.WHITE) ? "0-1" : "1-0";
+					reason = mate ? "checkmate" : "stalemate";
+					break;
+				}
+				if(position.getHalfmoveClock() >= 100)
+				{
+					result = "1/2-1/2";
+					reason = "fifty moves";
+					break;
+				}
+				if(seen.get(position.getHash()) >= 3)
+				{
+					result = "1/2-1/2";
+					reason = "repetition";
+					break;
+				}
+				if(isInsufficientMaterial(position))
+				{
+					result = "1/2-1/2";
+					reason = "insufficient material";
+					break;
+				}
+				if(moves.size() >= maxPlies)
+				{
+					result = "1/2-1/2";
+					reason = "move limit";
+					break;
+				}
+
+				acting = color;
+				String text = players[color].chooseMove(fen, moves, position,
+						Arrays.copyOf(history, historySize));
+				int move = MoveGenerator.parseMove(position, text);
+				if(move == Move.NONE)
+				{
+					result = (color == Position.WHITE) ? "0-1" : "1-0";
+					reason = "illegal move " + text;
+					break;
+				}
+
+				sanMoves.add(Pgn.toSan(position, move));
+				moves.add(text);
+				if(historySize == history.length)
+				{
+					history = Arrays.copyOf(history, historySize * 2);
+				}
+				history[historySize++] = position.getHash();
+				position.makeMove(move);
+				if(position.getHalfmoveClock() == 0)
+				{
+					historySize = 0;
+				}
+				Integer count = seen.get(position.getHash());
+				seen.put(position.getHash(), (count == null) ? 1 : count + 1);
+			}
+		}
+		catch(InterruptedIOException e)
+		{
+			//an engine that hangs loses on time
+			result = (acting == Position.WHITE) ? "0-1" : "1-0";
+			reason = "time forfeit: " + e.getMessage();
+		}
+		catch(IOException e)
+		{
+			//an engine that crashes loses
+			result = (acting == Position.WHITE) ? "0-1" : "1-0";
+			reason = "engine failed: " + e.getMessage();
+		}
+		finally
+		{
+			for(Engine player: players)
+			{
+				if(player != null)
+				{
+					player.close();
+				}
+			}
+		}
+
+		String white = names[whiteIndex];
+		String black = names[1 - whiteIndex];
+		Map<String, String> tags = Pgn.tags("Tournament " + limit, number, white, black, result, fen);
+		tags.put("Termination", reason);
+		String pgn = Pgn.format(tags, start, sanMoves, result);
+		return new GameResult(number, white, black, result, reason, pgn, moves.size());
+	}
+
+	/**
+	 * Returns true if neither side has enough pieces left to mate: only
+	 * kings and at most one knight or bishop
+	 */
+	private static boolean isInsufficientMaterial(Position position)
+	{
+		long heavy = 0;
+		long minor = 0;
+		for(int color = Position.WHITE; color <= Position.BLACK; color++)
+		{
+			heavy |= position.getPieces(color, ChessPiece.PAWN) | position.getPieces(color, ChessPiece.ROOK)
+					| position.getPieces(color, ChessPiece.QUEEN);
+			minor |= position.getPieces(color, ChessPiece.KNIGHT) | position.getPieces(color, ChessPiece.BISHOP);
+		}
+		return heavy == 0 && Long.bitCount(minor) <= 1;
+	}
+
+	/**
+	 * Plays the games on a number of threads, writing each result as it
+	 * finishes
+	 * @param openings the starting positions; each is played with both colors
+	 * @param games the number of games
+	 * @param threads the number of games played at once
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void run(final String[] openings, int games, int threads) throws InterruptedException
+	{
+		startNanos = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for(int i = 0; i < games; i++)
+		{
+			final int number = i + 1;
+			final String fen = openings[(i / 2) % openings.length];
+			final boolean firstIsWhite = (i % 2) == 0;
+			executor.execute(new Runnable() {
+				public void run()
+				{
+					record(playGame(number, fen, firstIsWhite));
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Counts a finished game and writes it out
+	 */
+	private synchronized void record(GameResult game)
+	{
+		boolean firstIsWhite = game.white.equals(names[0]);
+		if(game.result.equals("1/2-1/2"))
+		{
+			results[DRAW]++;
+		}
+		else if(game.result.equals("1-0") == firstIsWhite)
+		{
+			results[WIN]++;
+		}
+		else
+		{
+			results[LOSS]++;
+		}
+		if(resultsOut != null)
+		{
+			resultsOut.println(game);
+			resultsOut.flush();
+		}
+		if(pgnOut != null)
+		{
+			pgnOut.print(game.pgn);
+			pgnOut.flush();
+		}
+		System.out.println(game + "\t" + getSummary());
+	}
+
+	/**
+	 * @return the first engine's wins, draws and losses so far
+	 */
+	public synchronized int[] getResults()
+	{
+		return results.clone();
+	}
+
+	/**
+	 * Works out the Elo difference that a score gives, with a 95%
+	 * confidence interval from the spread of the game results
+	 * @param wins
+	 * @param draws
+	 * @param losses
+	 * @return the difference, then the lowest and highest it is likely to be
+	 */
+	public static double[] elo(int wins, int draws, int losses)
+	{
+		int games = wins + draws + losses;
+		if(games == 0)
+		{
+			return new double[] { 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+		}
+		double score = (wins + 0.5 * draws) / games;
+		double variance = (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+				+ losses * score * score) / games;
+		double margin = 1.96 * Math.sqrt(variance / games);
+		return new double[] { eloFromScore(score), eloFromScore(score - margin), eloFromScore(score + margin) };
+	}
+
+	/**
+	 * Converts a score from 0 to 1 into an Elo difference
+	 */
+	private static double eloFromScore(double score)
+	{
+		if(score <= 0)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		if(score >= 1)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		//adding 0 turns -0 into 0
+		return -400 * Math.log10(1 / score - 1) + 0.0;
+	}
+
+	/**
+	 * @return the score so far as text
+	 */
+	public synchronized String getSummary()
+	{
+		int games = results[WIN] + results[DRAW] + results[LOSS];
+		double[] elo = elo(results[WIN], results[DRAW], results[LOSS]);
+		double hours = (System.nanoTime() - startNanos) / 3.6e12;
+		return String.format("%s vs %s: +%d =%d -%d, elo %+.1f [%+.1f, %+.1f], %.0f games/hour",
+				names[0], names[1], results[WIN], results[DRAW], results[LOSS], elo[0], elo[1], elo[2],
+				(hours > 0) ? games / hours : 0);
+	}
+
+	/**
+	 * Reads the openings, one FEN per line
+	 */
+	private static String[] readOpenings(String fileName) throws IOException
+	{
+		List<String> openings = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try
+		{
+			String line;
+			while((line = in.readLine()) != null)
+			{
+				if(line.trim().length() > 0 && !line.startsWith("#"))
+				{
+					openings.add(Position.fromFEN(line.trim()).toFEN());
+				}
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return openings.toArray(new String[openings.size()]);
+	}
+
+	/**
+	 * Plays the default openings' moves from the start
+	 * @return their positions
+	 */
+	public static String[] getDefaultOpenings()
+	{
+		String[] openings = new String[DEFAULT_OPENINGS.length];
+		for(int i = 0; i < openings.length; i++)
+		{
+			Position position = Position.fromFEN(Position.START_FEN);
+			for(String name: DEFAULT_OPENINGS[i].split(" "))
+			{
+				position.makeMove(MoveGenerator.parseMove(position, name));
+			}
+			openings[i] = position.toFEN();
+		}
+		return openings;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String engine1 = BUILTIN;
+		String engine2 = BUILTIN;
+		int games = 2 * DEFAULT_OPENINGS.length;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long nodes = 0;
+		long moveTime = 0;
+		int depth = 0;
+		int hash = TranspositionTable.DEFAULT_MEGABYTES;
+		int maxPlies = MAX_PLIES;
+		String openingsFile = null;
+		String pgnFile = "tournament.pgn";
+		String resultsFile = "tournament.txt";
+		for(int i = 0; i + 1 < args.length; i += 2)
+		{
+			String option = args[i];
+			String value = args[i + 1];
+			if(option.equals("-engine1"))
+			{
+				engine1 = value;
+			}
+			else if(option.equals("-engine2"))
+			{
+				engine2 = value;
+			}
+			else if(option.equals("-games"))
+			{
+				games = Integer.parseInt(value);
+			}
+			else if(option.equals("-threads"))
+			{
+				threads = Integer.parseInt(value);
+			}
+			else if(option.equals("-nodes"))
+			{
+				nodes = Long.parseLong(value);
+			}
+			else if(option.equals("-movetime"))
+			{
+				moveTime = Long.parseLong(value);
+			}
+			else if(option.equals("-depth"))
+			{
+				depth = Integer.parseInt(value);
+			}
+			else if(option.equals("-hash"))
+			{
+				hash = Integer.parseInt(value);
+			}
+			else if(option.equals("-maxplies"))
+			{
+				maxPlies = Integer.parseInt(value);
+			}
+			else if(option.equals("-openings"))
+			{
+				openingsFile = value;
+			}
+			else if(option.equals("-pgn"))
+			{
+				pgnFile = value;
+			}
+			else if(option.equals("-results"))
+			{
+				resultsFile = value;
+			}
+			else
+			{
+				System.out.println("unknown option " + option);
+				return;
+			}
+		}
+		if(nodes == 0 && moveTime == 0 && depth == 0)
+		{
+			nodes = 20000;
+		}
+
+		String[] openings = (openingsFile == null) ? getDefaultOpenings() : readOpenings(openingsFile);
+		Tournament tournament = new Tournament(engine1, engine2, new Limit(nodes, moveTime, depth), hash, maxPlies);
+		PrintWriter results = new PrintWriter(new FileWriter(resultsFile));
+		PrintWriter pgn = new PrintWriter(new FileWriter(pgnFile));
+		tournament.setOutput(results, pgn);
+		try
+		{
+			tournament.run(openings, games, threads);
+		}
+		finally
+		{
+			results.close();
+			pgn.close();
+		}
+		System.out.println(tournament.getSummary());
+	}
+}
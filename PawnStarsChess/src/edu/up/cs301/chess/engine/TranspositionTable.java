@@ -0,0 +1,432 @@
+package edu.up.cs301.chess.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Remembers the results of searched positions by their Zobrist hash, so a
+ * position reached again by a different order of moves, or searched again
+ * on the next iteration or the next turn, doesn't have to be searched from
+ * scratch.
+ *
+ * The table has a fixed size and never allocates after it is made. Each
+ * entry is two longs: the hash XORed with the data, and the data, which
+ * packs the best move, score, depth, bound type and the search it came
+ * from. Storing the hash XORed with the data means an entry that was only
+ * half written by another thread doesn't match any hash, so threads can
+ * share a table without locking.
+ *
+ * Entries are grouped into buckets of BUCKET_SIZE. A new result goes in an
+ * empty slot or the slot for the same position if there is one, and
+ * otherwise replaces the entry in its bucket that is shallowest and oldest.
+ *
+ * The entries can be kept in direct ByteBuffers instead of a long array,
+ * which keeps a big table out of the garbage collector's heap. A buffer
+ * holds at most CHUNK_BYTES, so a table bigger than that is split over
+ * several.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class TranspositionTable {
+
+	//Bound types
+	public static final int BOUND_NONE = 0;
+	public static final int BOUND_UPPER = 1;
+	public static final int BOUND_LOWER = 2;
+	public static final int BOUND_EXACT = 3;
+
+	//Entries per bucket
+	public static final int BUCKET_SIZE = 4;
+
+	//Bytes per entry
+	public static final int ENTRY_BYTES = 16;
+
+	//Default size in megabytes
+	public static final int DEFAULT_MEGABYTES = 8;
+
+	//Most bytes in one direct buffer; a power of 2, so no entry is split
+	private static final int CHUNK_SHIFT = 30;
+	private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+
+	//Layout of the data long
+	private static final int MOVE_BITS = 20;
+	private static final int SCORE_SHIFT = 20;
+	private static final int DEPTH_SHIFT = 36;
+	private static final int BOUND_SHIFT = 44;
+	private static final int AGE_SHIFT = 46;
+	private static final long MOVE_MASK = (1L << MOVE_BITS) - 1;
+
+	//Entries checked to estimate how full the table is
+	private static final int SAMPLE_SIZE = 1000;
+
+	//Exactly one of these holds the entries
+	private final long[] table;
+	private final ByteBuffer[] buffers;
+
+	//The number of buckets minus one; the number of buckets is a power of 2
+	private final long bucketMask;
+
+	//Number of entries
+	private final int size;
+
+	//Counts up once per search, so old entries are replaced first
+	private int age;
+
+	//Statistics, not exact when the table is shared between threads
+	private long probes;
+	private long hits;
+	private long stores;
+
+	/**
+	 * Makes an on heap table of the default size
+	 */
+	public TranspositionTable()
+	{
+		this(DEFAULT_MEGABYTES, false);
+	}
+
+	/**
+	 * Constructor
+	 * @param megabytes the most memory to use; rounded down to a power of 2
+	 * @param offHeap true to keep the entries in direct ByteBuffers
+	 */
+	public TranspositionTable(int megabytes, boolean offHeap)
+	{
+		if(megabytes < 1)
+		{
+			throw new IllegalArgumentException("the table must be at least 1 megabyte");
+		}
+		long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / (ENTRY_BYTES * BUCKET_SIZE));
+		if(buckets * BUCKET_SIZE * 2 > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("the table is too big");
+		}
+		bucketMask = buckets - 1;
+		size = (int) (buckets * BUCKET_SIZE);
+		if(offHeap)
+		{
+			table = null;
+			long bytes = (long) size * ENTRY_BYTES;
+			buffers = new ByteBuffer[(int) ((bytes + CHUNK_BYTES - 1) >>> CHUNK_SHIFT)];
+			for(int i = 0; i < buffers.length; i++)
+			{
+				int length = (int) Math.min(CHUNK_BYTES, bytes - ((long) i << CHUNK_SHIFT));
+				buffers[i] = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+			}
+		}
+		else
+		{
+			table = new long[size * 2];
+			buffers = null;
+		}
+	}
+
+	/**
+	 * Reads one of the longs of the table
+	 */
+	private long get(int index)
+	{
+		if(table != null)
+		{
+			return table[index];
+		}
+		long offset = (long) index << 3;
+		return buffers[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & (CHUNK_BYTES - 1)));
+	}
+
+	/**
+	 * Writes one of the longs of the table
+	 */
+	private void set(int index, long value)
+	{
+		if(table != null)
+		{
+			table[index] = value;
+		}
+		else
+		{
+			long offset = (long) index << 3;
+			buffers[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & (CHUNK_BYTES - 1)), value);
+		}
+	}
+
+	/**
+	 * Returns the index of the first long of a position's bucket
+	 */
+	private int bucket(long hash)
+	{
+		return (int) (hash & bucketMask) * BUCKET_SIZE * 2;
+	}
+
+	/**
+	 * Looks up a position
+	 * @param hash the position's Zobrist hash
+	 * @return the entry's data, to be read with getMove, getScore, getDepth
+	 * 		and getBound, or 0 if the position isn't in the table
+	 */
+	public long probe(long hash)
+	{
+		probes++;
+		int index = bucket(hash);
+		for(int i = 0; i < BUCKET_SIZE; i++, index += 2)
+		{
+			long data = get(index + 1);
+			if(data != 0 && (get(index) ^ data) == hash)
+			{
+				hits++;
+				return data;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores the result of searching a position
+	 * @param hash the position's Zobrist hash
+	 * @param move the best move, or Move.NONE
+	 * @param score the score, adjusted with scoreToTable
+	 * @param depth the depth searched, from 0 to 255
+	 * @param bound one of BOUND_UPPER, BOUND_LOWER and BOUND_EXACT
+	 */
+	public void store(long hash, int move, int score, int depth, int bound)
+	{
+		int index = bucket(hash);
+		int replace = index;
+		int replaceValue = Integer.MAX_VALUE;
+		for(int i = 0; i < BUCKET_SIZE; i++, index += 2)
+		{
+			long data = get(index + 1);
+			if(data == 0 || (get(index) ^ data) == hash)
+			{
+				//keep the old best move if there isn't a new one
+				if(move == Move.NONE && data != 0)
+				{
+					move = getMove(data);
+				}
+				replace = index;
+				break;
+			}
+
+			//replace the shallowest entry, counting older ones as shallower
+			int value = getDepth(data) - 8 * ((age - getAge(data)) & 0xFF);
+			if(value < replaceValue)
+			{
+				replaceValue = value;
+				replace = index;
+			}
+		}
+
+		long data = (move & MOVE_MASK)
+				| ((long) (score & 0xFFFF) << SCORE_SHIFT)
+				| ((long) Math.max(0, Math.min(depth, 255)) << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT)
+				| ((long) age << AGE_SHIFT);
+		set(replace, hash ^ data);
+		set(replace + 1, data);
+		stores++;
+	}
+
+	/**
+	 * Starts a new search, so entries from earlier searches are replaced
+	 * before the new ones. The entries themselves are kept.
+	 */
+	public void newSearch()
+	{
+		age = (age + 1) & 0xFF;
+	}
+
+	/**
+	 * Empties the table and resets the statistics, for a new game
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < size * 2; i++)
+		{
+			set(i, 0);
+		}
+		age = 0;
+		probes = 0;
+		hits = 0;
+		stores = 0;
+	}
+
+	/**
+	 * Converts a score to store in the table. Mate scores count plies from
+	 * the root, but the table needs them to count from the position itself.
+	 * @param score
+	 * @param ply how many moves from the root the position is
+	 * @return the score to store
+	 */
+	public static int scoreToTable(int score, int ply)
+	{
+		if(score >= Search.MATE_BOUND)
+		{
+			return score + ply;
+		}
+		if(score <= -Search.MATE_BOUND)
+		{
+			return score - ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Converts a score read from the table back to count from the root
+	 * @param score
+	 * @param ply how many moves from the root the position is
+	 * @return the score for the search
+	 */
+	public static int scoreFromTable(int score, int ply)
+	{
+		if(score >= Search.MATE_BOUND)
+		{
+			return score - ply;
+		}
+		if(score <= -Search.MATE_BOUND)
+		{
+			return score + ply;
+		}
+		return score;
+	}
+
+	/**
+	 * @param data from probe
+	 * @return the best move
+	 */
+	public static int getMove(long data)
+	{
+		return (int) (data & MOVE_MASK);
+	}
+
+	/**
+	 * @param data from probe
+	 * @return the score, to be adjusted with scoreFromTable
+	 */
+	public static int getScore(long data)
+	{
+		return (short) (data >>> SCORE_SHIFT);
+	}
+
+	/**
+	 * @param data from probe
+	 * @return the depth searched
+	 */
+	public static int getDepth(long data)
+	{
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * @param data from probe
+	 * @return the bound type
+	 */
+	public static int getBound(long data)
+	{
+		return (int) (data >>> BOUND_SHIFT) & 3;
+	}
+
+	/**
+	 * Returns the search an entry was stored in
+	 */
+	private static int getAge(long data)
+	{
+		return (int) (data >>> AGE_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return true if the entries are in direct ByteBuffers
+	 */
+	public boolean isOffHeap()
+	{
+		return buffers != null;
+	}
+
+	/**
+	 * @return the number of lookups since the table was made or cleared
+	 */
+	public long getProbes()
+	{
+		return probes;
+	}
+
+	/**
+	 * @return the number of lookups that found their position
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of results stored
+	 */
+	public long getStores()
+	{
+		return stores;
+	}
+
+	/**
+	 * @return the fraction of lookups that found their position
+	 */
+	public double getHitRate()
+	{
+		return (probes == 0) ? 0 : (double) hits / probes;
+	}
+
+	/**
+	 * Estimates how full the table is from the first entries, counting only
+	 * entries from the current search, like the UCI hashfull value
+	 * @return entries used per thousand
+	 */
+	public int getHashfull()
+	{
+		int sample = Math.min(SAMPLE_SIZE, size);
+		int used = 0;
+		for(int i = 0; i < sample; i++)
+		{
+			long data = get(i * 2 + 1);
+			if(data != 0 && getAge(data) == age)
+			{
+				used++;
+			}
+		}
+		return used * 1000 / sample;
+	}
+
+	/**
+	 * Counts the entries in use from any search
+	 * @return the number of entries in use
+	 */
+	public int getOccupied()
+	{
+		int used = 0;
+		for(int i = 0; i < size; i++)
+		{
+			if(get(i * 2 + 1) != 0)
+			{
+				used++;
+			}
+		}
+		return used;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TranspositionTable[" + size + " entries" + (isOffHeap() ? ", off heap" : "")
+				+ ", hashfull " + getHashfull() + ", hit rate " + Math.round(getHitRate() * 100) + "%]";
+	}
+}
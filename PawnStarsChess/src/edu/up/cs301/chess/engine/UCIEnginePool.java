@@ -0,0 +1,325 @@
+package edu.up.cs301.chess.engine;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed number of UCI engine processes shared by every game being
+ * played. A game borrows an engine for one search and gives it back, so
+ * there are never more engines thinking than the pool has, however many
+ * games there are. The processes are started the first time they are
+ * borrowed and then kept running, and an engine is sent "ucinewgame" when
+ * it moves on to a different game.
+ *
+ * When every engine is busy, callers wait in the order they asked.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class UCIEnginePool {
+
+	//The shared pools, by engine path
+	private static final Map<String, UCIEnginePool> shared = new HashMap<String, UCIEnginePool>();
+
+	/**
+	 * What the pool knows about one of its engines
+	 */
+	private static class Slot {
+
+		//The game it last searched for, or null
+		private Object game;
+
+		//True once its process has been started
+		private boolean started;
+	}
+
+	//The engines that aren't borrowed; fair, so waiting callers take turns
+	private final BlockingQueue<UCIInterface> idle;
+
+	//Every engine in the pool; only read after the constructor
+	private final Map<UCIInterface, Slot> slots = new IdentityHashMap<UCIInterface, Slot>();
+
+	private final String path;
+
+	//Statistics
+	private long borrows;
+	private long timeouts;
+	private long waitNanos;
+	private long maxWaitNanos;
+	private long searches;
+	private long searchNanos;
+	private long restarts;
+
+	/**
+	 * Constructor
+	 * @param path the engine executable
+	 * @param size the number of engine processes, at least 1
+	 */
+	public UCIEnginePool(String path, int size)
+	{
+		if(size < 1)
+		{
+			throw new IllegalArgumentException("there must be at least one engine");
+		}
+		this.path = path;
+		idle = new ArrayBlockingQueue<UCIInterface>(size, true);
+		for(int i = 0; i < size; i++)
+		{
+			UCIInterface engine = new UCIInterface(path);
+			slots.put(engine, new Slot());
+			idle.add(engine);
+		}
+	}
+
+	/**
+	 * Returns the pool shared by everything that runs an engine, with one
+	 * engine per processor if it has to be made
+	 * @param path the engine executable
+	 * @return the pool
+	 */
+	public static UCIEnginePool getShared(String path)
+	{
+		return getShared(path, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the pool shared by everything that runs an engine
+	 * @param path the engine executable
+	 * @param size the number of engine processes if the pool has to be
+	 * 		made; a pool that already exists keeps its size
+	 * @return the pool
+	 */
+	public static UCIEnginePool getShared(String path, int size)
+	{
+		synchronized(shared)
+		{
+			UCIEnginePool pool = shared.get(path);
+			if(pool == null)
+			{
+				pool = new UCIEnginePool(path, size);
+				shared.put(path, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Borrows an engine for a search, waiting for one if they are all
+	 * busy. It has to be given back with release().
+	 * @param game the game the search is for; the engine starts a new game
+	 * 		if it last searched for a different one
+	 * @param timeoutMillis the longest to wait
+	 * @return a running engine, or null if none was free in time or it
+	 * 		couldn't be started
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public UCIInterface borrow(Object game, long timeoutMillis) throws InterruptedException
+	{
+		long begin = System.nanoTime();
+		UCIInterface engine = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		long waited = System.nanoTime() - begin;
+		Slot slot = (engine == null) ? null : slots.get(engine);
+		synchronized(this)
+		{
+			waitNanos += waited;
+			maxWaitNanos = Math.max(maxWaitNanos, waited);
+			if(engine == null)
+			{
+				timeouts++;
+				return null;
+			}
+			borrows++;
+			if(slot.started && (engine.isRestart() || !engine.isRunning()))
+			{
+				restarts++;
+			}
+		}
+
+		//only this thread has the engine now
+		boolean running = engine.isRunning() && !engine.isRestart();
+		if(!engine.startEngine())
+		{
+			slot.game = null;
+			idle.add(engine);
+			return null;
+		}
+		slot.started = true;
+		if(!running)
+		{
+			//a new process has just had a new game
+			slot.game = game;
+		}
+		else if(slot.game != game)
+		{
+			engine.newGame();
+			slot.game = game;
+		}
+		return engine;
+	}
+
+	/**
+	 * Gives back a borrowed engine
+	 * @param engine
+	 */
+	public void release(UCIInterface engine)
+	{
+		if(!slots.containsKey(engine))
+		{
+			throw new IllegalArgumentException("the engine isn't from this pool");
+		}
+		idle.add(engine);
+	}
+
+	/**
+	 * Borrows an engine, finds the best move and gives it back
+	 * @param game the game the search is for
+	 * @param fen the position
+	 * @param moveTime how long the engine should think, in milliseconds
+	 * @param timeoutMillis the longest to wait for a free engine
+	 * @return the move in UCI notation, or null if there was no engine or
+	 * 		it didn't answer
+	 */
+	public String getBestMove(Object game, String fen, int moveTime, long timeoutMillis)
+	{
+		UCIInterface engine;
+		try
+		{
+			engine = borrow(game, timeoutMillis);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		if(engine == null)
+		{
+			return null;
+		}
+		long begin = System.nanoTime();
+		try
+		{
+			return engine.getBestMove(fen, moveTime);
+		}
+		finally
+		{
+			long searched = System.nanoTime() - begin;
+			synchronized(this)
+			{
+				searches++;
+				searchNanos += searched;
+			}
+			release(engine);
+		}
+	}
+
+	/**
+	 * Stops every engine process. Engines that are borrowed are stopped
+	 * too, so this should only be called when nothing is searching. The
+	 * pool can still be used afterwards; the engines are started again.
+	 */
+	public void shutdown()
+	{
+		for(UCIInterface engine: slots.keySet())
+		{
+			engine.stopEngine();
+		}
+		synchronized(this)
+		{
+			for(Slot slot: slots.values())
+			{
+				slot.game = null;
+				slot.started = false;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of engines
+	 */
+	public int getSize()
+	{
+		return slots.size();
+	}
+
+	/**
+	 * @return the number of engines not borrowed
+	 */
+	public int getIdle()
+	{
+		return idle.size();
+	}
+
+	/**
+	 * @return the engine executable
+	 */
+	public String getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * @return the number of times an engine was borrowed
+	 */
+	public synchronized long getBorrows()
+	{
+		return borrows;
+	}
+
+	/**
+	 * @return the number of times no engine was free in time
+	 */
+	public synchronized long getTimeouts()
+	{
+		return timeouts;
+	}
+
+	/**
+	 * @return the average time spent waiting for an engine, in milliseconds
+	 */
+	public synchronized double getAverageWaitMillis()
+	{
+		long waits = borrows + timeouts;
+		return (waits == 0) ? 0 : waitNanos / 1e6 / waits;
+	}
+
+	/**
+	 * @return the longest time spent waiting for an engine, in milliseconds
+	 */
+	public synchronized double getMaxWaitMillis()
+	{
+		return maxWaitNanos / 1e6;
+	}
+
+	/**
+	 * @return the average time an engine took to find a move, in milliseconds
+	 */
+	public synchronized double getAverageSearchMillis()
+	{
+		return (searches == 0) ? 0 : searchNanos / 1e6 / searches;
+	}
+
+	/**
+	 * @return the number of engine processes that had to be started again
+	 * 		after they failed
+	 */
+	public synchronized long getRestarts()
+	{
+		return restarts;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "engines " + getSize() + " idle " + getIdle() + " borrows " + borrows + " timeouts " + timeouts
+				+ " wait " + Math.round(getAverageWaitMillis()) + "ms (max " + Math.round(getMaxWaitMillis())
+				+ "ms) search " + Math.round(getAverageSearchMillis()) + "ms restarts " + restarts;
+	}
+}
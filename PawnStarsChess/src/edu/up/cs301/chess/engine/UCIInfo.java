@@ -0,0 +1,234 @@
+package edu.up.cs301.chess.engine;
+
+/**
+ * One "info" line from a UCI engine, parsed as it arrives. Only the parts
+ * about the search are kept: depth, score, nodes, speed, time and the
+ * principal variation. A part the engine left out is -1, or an empty pv.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class UCIInfo {
+
+	//Bounds a score can be
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+
+	private int depth = -1;
+	private int selectiveDepth = -1;
+	private int multiPv = -1;
+	private int score;
+	private boolean hasScore;
+	private boolean mate;
+	private int bound = EXACT;
+	private long nodes = -1;
+	private long nodesPerSecond = -1;
+	private long time = -1;
+	private String[] pv = new String[0];
+
+	/**
+	 * Not made directly; see parse()
+	 */
+	private UCIInfo()
+	{
+	}
+
+	/**
+	 * Parses an info line
+	 * @param line a line of engine output
+	 * @return the info, or null if it isn't an info line about the search
+	 */
+	public static UCIInfo parse(String line)
+	{
+		String[] words = line.trim().split("\\s+");
+		if(words.length < 2 || !words[0].equals("info"))
+		{
+			return null;
+		}
+		UCIInfo info = new UCIInfo();
+		boolean useful = false;
+		try
+		{
+			for(int i = 1; i < words.length; i++)
+			{
+				String word = words[i];
+				if(word.equals("string"))
+				{
+					//the rest of the line is free text
+					break;
+				}
+				else if(word.equals("pv"))
+				{
+					info.pv = new String[words.length - i - 1];
+					System.arraycopy(words, i + 1, info.pv, 0, info.pv.length);
+					useful = true;
+					break;
+				}
+				else if(word.equals("score") && i + 2 < words.length)
+				{
+					info.hasScore = true;
+					info.mate = words[++i].equals("mate");
+					info.score = Integer.parseInt(words[++i]);
+					if(i + 1 < words.length && words[i + 1].equals("lowerbound"))
+					{
+						info.bound = LOWER_BOUND;
+						i++;
+					}
+					else if(i + 1 < words.length && words[i + 1].equals("upperbound"))
+					{
+						info.bound = UPPER_BOUND;
+						i++;
+					}
+					useful = true;
+				}
+				else if(i + 1 < words.length)
+				{
+					if(word.equals("depth"))
+					{
+						info.depth = Integer.parseInt(words[++i]);
+						useful = true;
+					}
+					else if(word.equals("seldepth"))
+					{
+						info.selectiveDepth = Integer.parseInt(words[++i]);
+					}
+					else if(word.equals("multipv"))
+					{
+						info.multiPv = Integer.parseInt(words[++i]);
+					}
+					else if(word.equals("nodes"))
+					{
+						info.nodes = Long.parseLong(words[++i]);
+					}
+					else if(word.equals("nps"))
+					{
+						info.nodesPerSecond = Long.parseLong(words[++i]);
+					}
+					else if(word.equals("time"))
+					{
+						info.time = Long.parseLong(words[++i]);
+					}
+				}
+			}
+		}
+		catch(NumberFormatException e)
+		{
+			return null;
+		}
+		return useful ? info : null;
+	}
+
+	/**
+	 * @return the depth searched, or -1
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * @return the selective search depth, or -1
+	 */
+	public int getSelectiveDepth()
+	{
+		return selectiveDepth;
+	}
+
+	/**
+	 * @return which of the best lines this is, or -1
+	 */
+	public int getMultiPv()
+	{
+		return multiPv;
+	}
+
+	/**
+	 * @return true if the line had a score
+	 */
+	public boolean hasScore()
+	{
+		return hasScore;
+	}
+
+	/**
+	 * @return true if the score is a mate, false if it is in centipawns
+	 */
+	public boolean isMate()
+	{
+		return mate;
+	}
+
+	/**
+	 * @return the score for the side to move: centipawns, or moves to mate
+	 * 		(negative if it is getting mated) if isMate()
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+
+	/**
+	 * @return EXACT, LOWER_BOUND or UPPER_BOUND
+	 */
+	public int getBound()
+	{
+		return bound;
+	}
+
+	/**
+	 * @return the number of positions searched, or -1
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * @return the positions searched per second, or -1
+	 */
+	public long getNodesPerSecond()
+	{
+		return nodesPerSecond;
+	}
+
+	/**
+	 * @return the time searched in milliseconds, or -1
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return the principal variation as moves in UCI notation
+	 */
+	public String[] getPv()
+	{
+		return pv;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder("depth " + depth);
+		if(hasScore)
+		{
+			builder.append(mate ? " mate " : " cp ").append(score);
+		}
+		builder.append(" nodes ").append(nodes).append(" nps ").append(nodesPerSecond);
+		if(pv.length > 0)
+		{
+			builder.append(" pv");
+			for(String move: pv)
+			{
+				builder.append(' ').append(move);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -4,24 +4,76 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import android.util.Log;
 
 /**
  * A simple and efficient client to run Stockfish from Java
  * 
+ * The engine's output is read by its own thread as it arrives. "info"
+ * lines are parsed into UCIInfo events and "bestmove" lines end a search,
+ * so a search returns as soon as the engine has its move instead of after
+ * a fixed wait. Everything else is queued for the commands that read it.
+ * 
  * @author Rahul A R
  * 
  */
 public class UCIInterface {
 
+	/**
+	 * Receives the engine's search events. The methods are called on the
+	 * reader thread, so they should return quickly.
+	 */
+	public interface Listener {
+		
+		/**
+		 * Called for each info line about the search
+		 * @param info
+		 */
+		void onInfo(UCIInfo info);
+		
+		/**
+		 * Called when the engine finishes a search
+		 * @param bestMove the move in UCI notation
+		 * @param ponder the reply it expects, or null
+		 */
+		void onBestMove(String bestMove, String ponder);
+	}
+	
+	//How long past the time limit to wait for the engine's move before
+	//telling it to stop
+	private static final long GRACE_MILLIS = 250;
+	
+	//How long to wait for a reply to a command that should be answered at once
+	private static final long REPLY_MILLIS = 10000;
+	
+	//Queued when the engine's output ends, to wake up whoever is waiting
+	private static final String END = new String("end of output");
+
 	private Process engineProcess;
 	private BufferedReader processReader;
 	private OutputStreamWriter processWriter;
+	
+	//Reads the engine's output
+	private volatile Thread reader;
+	
+	//Lines that aren't info or bestmove, waiting to be read
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+	
+	//The bestmove lines, waiting to be read
+	private final BlockingQueue<String> bestMoves = new LinkedBlockingQueue<String>();
+	
+	//The last info line with a score
+	private volatile UCIInfo lastInfo;
+	
+	private volatile Listener listener;
 
 	private String PATH;
 	
-	private boolean restart;
+	private volatile boolean restart;
 	
 	public UCIInterface(String path)
 	{
@@ -29,24 +81,69 @@ public class UCIInterface {
 	}
 	
 	/**
-	 * Starts the engine as a process and initializes it
+	 * Starts the engine as a process and initializes it. The process is
+	 * kept running between moves, so if it is already running and hasn't
+	 * failed this does nothing.
 	 * 
 	 * @param None
 	 * @return 
 	 * @return True on success. False otherwise
 	 */
-	public boolean startEngine() {
+	public synchronized boolean startEngine() {
+		if(isRunning() && !restart) {
+			return true;
+		}
+		if(engineProcess != null) {
+			//the old process failed, so replace it
+			stopEngine();
+		}
 		try {
 			engineProcess = Runtime.getRuntime().exec(PATH);
 			processReader = new BufferedReader(new InputStreamReader(
 					engineProcess.getInputStream()));
 			processWriter = new OutputStreamWriter(
 					engineProcess.getOutputStream());
+			restart = false;
+			lines.clear();
+			bestMoves.clear();
+			reader = new Thread(new OutputReader(processReader), "uci reader");
+			reader.setDaemon(true);
+			reader.start();
+			
+			//the handshake only has to be done once per process
+			sendCommand("uci");
+			readUntil("uciok");
+			newGame();
 		} catch (Exception e) {
 			restart = true;
 			return false;
 		}
-		return true;
+		return !restart;
+	}
+	
+	/**
+	 * Tells the engine a new game is starting, so it forgets what it
+	 * learned from the last one, and waits until it is ready
+	 */
+	public void newGame() {
+		sendCommand("ucinewgame");
+		sendCommand("isready");
+		readUntil("readyok");
+	}
+	
+	/**
+	 * Returns true if the engine process has been started and hasn't exited
+	 */
+	public synchronized boolean isRunning() {
+		if(engineProcess == null) {
+			return false;
+		}
+		try {
+			engineProcess.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
 	}
 
 	/**
@@ -76,53 +173,182 @@ public class UCIInterface {
 	 */
 	public String getOutput(int waitTime) {
 		
-		StringBuffer buffer = new StringBuffer();
+		pause(waitTime);
+		sendCommand("stop");//idk
+		sendCommand("isready");
+		return readUntil("readyok");
+	}
+	
+	/**
+	 * Waits while the engine thinks
+	 */
+	private static void pause(int waitTime) {
 		try {
 			Thread.sleep(waitTime);
-			sendCommand("stop");//idk
-			sendCommand("isready");
-			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Reads the engine's output up to and including a line. Info and
+	 * bestmove lines aren't included; they are handled as they arrive.
+	 * 
+	 * @param last
+	 *            the start of the line to stop at
+	 * @return Raw output from the engine
+	 */
+	private String readUntil(String last) {
+		StringBuffer buffer = new StringBuffer();
+		try {
 			while (true) {
-				String text = processReader.readLine();
-				if (text.equals("readyok"))
+				String text = lines.poll(REPLY_MILLIS, TimeUnit.MILLISECONDS);
+				if (text == null) {
+					//the engine has stopped answering
+					restart = true;
+					break;
+				}
+				if (text == END) {
+					//the engine has exited; leave it for the next reader
+					lines.add(END);
+					restart = true;
+					break;
+				}
+				buffer.append(text + "\n");
+				if (text.startsWith(last))
 					break;
-				else
-					buffer.append(text + "\n");
 			}
-		} catch (Exception e) {
-			restart = true;
-			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 		return buffer.toString();
 	}
+	
+	/**
+	 * Reads the engine's output on its own thread, sorting the lines as
+	 * they arrive
+	 */
+	private class OutputReader implements Runnable {
+		
+		private final BufferedReader input;
+		
+		public OutputReader(BufferedReader input) {
+			this.input = input;
+		}
+		
+		public void run() {
+			try {
+				String text;
+				while ((text = input.readLine()) != null) {
+					if (text.startsWith("info")) {
+						UCIInfo info = UCIInfo.parse(text);
+						if (info != null) {
+							if (info.hasScore()) {
+								lastInfo = info;
+							}
+							Listener current = listener;
+							if (current != null) {
+								current.onInfo(info);
+							}
+						}
+					} else if (text.startsWith("bestmove")) {
+						bestMoves.add(text);
+						Listener current = listener;
+						if (current != null) {
+							String[] words = text.trim().split("\\s+");
+							current.onBestMove((words.length > 1) ? words[1] : null,
+									(words.length > 3 && words[2].equals("ponder")) ? words[3] : null);
+						}
+					} else {
+						lines.add(text);
+					}
+				}
+			} catch (IOException e) {
+				//the stream was closed
+			}
+			//a reader for a process that has been stopped doesn't matter
+			if (reader == Thread.currentThread()) {
+				restart = true;
+				lines.add(END);
+				bestMoves.add(END);
+			}
+		}
+	}
 
 	/**
 	 * This function returns the best move for a given position after
-	 * calculating for 'waitTime' ms
+	 * calculating for up to 'waitTime' ms
 	 * 
 	 * @param fen
 	 *            Position string
 	 * @param waitTime
 	 *            in milliseconds
-	 * @return Best Move in PGN format
+	 * @return Best Move in UCI format, or null
 	 */
 	public String getBestMove(String fen, int waitTime) {
+		return go(fen, "movetime " + waitTime, waitTime);
+	}
+	
+	/**
+	 * This function returns the best move for a given position when the
+	 * players have these times left on their clocks
+	 * 
+	 * @param fen
+	 *            Position string
+	 * @param whiteTime
+	 *            white's time left in milliseconds
+	 * @param blackTime
+	 *            black's time left in milliseconds
+	 * @param increment
+	 *            the time added after each move in milliseconds
+	 * @return Best Move in UCI format, or null
+	 */
+	public String getBestMove(String fen, long whiteTime, long blackTime, long increment) {
+		long ownTime = fen.contains(" b ") ? blackTime : whiteTime;
+		return go(fen, "wtime " + whiteTime + " btime " + blackTime + " winc " + increment
+				+ " binc " + increment, ownTime + increment);
+	}
+	
+	/**
+	 * Searches a position and waits for the engine's move. It returns as
+	 * soon as the engine sends it; if that takes longer than the limit the
+	 * engine is told to stop.
+	 * 
+	 * @param fen
+	 *            Position string
+	 * @param limits
+	 *            what follows "go", like "movetime 1000"
+	 * @param maxWait
+	 *            the most the engine should take in milliseconds
+	 * @return Best Move in UCI format, or null
+	 */
+	public String go(String fen, String limits, long maxWait) {
+		bestMoves.clear();
+		lastInfo = null;
 		sendCommand("position fen " + fen);
-		sendCommand("go");// movetime " + waitTime);
-		String out = getOutput(waitTime + 20);
-		if(out != null)
-		{
-			Log.d("uci interface",out);
-			String[] outs = out.split("bestmove ");
-			if(outs.length > 1)
-			{
-				out = outs[1];
-				outs = out.split(" ");
-				if(outs.length > 0)
-				{
-					return outs[0];
-				}
+		sendCommand("go " + limits);
+		String out = null;
+		try {
+			out = bestMoves.poll(maxWait + GRACE_MILLIS, TimeUnit.MILLISECONDS);
+			if (out == null) {
+				//wait for the move it has so far, so the output of this
+				//search can't be taken for the next one
+				sendCommand("stop");
+				out = bestMoves.poll(REPLY_MILLIS, TimeUnit.MILLISECONDS);
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(out == null || out == END)
+		{
+			restart = true;
+			return null;
+		}
+		Log.d("uci interface",out + " after " + lastInfo);
+		String[] outs = out.trim().split("\\s+");
+		if(outs.length > 1)
+		{
+			return outs[1];
 		}
 		return null;
 	}
@@ -130,7 +356,13 @@ public class UCIInterface {
 	/**
 	 * Stops the engine and cleans up before closing it
 	 */
-	public void stopEngine() {
+	public synchronized void stopEngine() {
+		if(engineProcess == null) {
+			return;
+		}
+		
+		//the reader should stop quietly
+		reader = null;
 		try {
 			sendCommand("quit");
 			processReader.close();
@@ -139,6 +371,7 @@ public class UCIInterface {
 			restart = true;
 		}
 		engineProcess.destroy();
+		engineProcess = null;
 	}
 
 	/**
@@ -178,23 +411,28 @@ public class UCIInterface {
 	 * @return evalScore
 	 */
 	public float getEvalScore(String fen, int waitTime) {
-		sendCommand("position fen " + fen);
-		sendCommand("go movetime " + waitTime);
-
-		float evalScore = 0.0f;
-		String[] dump = getOutput(waitTime + 20).split("\n");
-		for (int i = dump.length - 1; i >= 0; i--) {
-			if (dump[i].startsWith("info depth ")) {
-				try {
-				evalScore = Float.parseFloat(dump[i].split("score cp ")[1]
-						.split(" nodes")[0]);
-				} catch(Exception e) {
-					evalScore = Float.parseFloat(dump[i].split("score cp ")[1]
-							.split(" upperbound nodes")[0]);
-				}
-			}
+		go(fen, "movetime " + waitTime, waitTime);
+		UCIInfo info = lastInfo;
+		if (info == null || info.isMate()) {
+			return 0.0f;
 		}
-		return evalScore/100;
+		return info.getScore() / 100.0f;
+	}
+
+	/**
+	 * Returns the last info line with a score from the last search
+	 * @return the info, or null if there wasn't one
+	 */
+	public UCIInfo getLastInfo() {
+		return lastInfo;
+	}
+	
+	/**
+	 * Sets what receives the engine's search events
+	 * @param listener the listener, or null for none
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
 	}
 
 	public boolean isRestart() {
@@ -0,0 +1,626 @@
+package edu.up.cs301.chess.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the built in search as a UCI engine on standard input and output,
+ * so it can be played against other engines and tested with the usual
+ * chess tools. The supported commands are:
+ *
+ * uci, isready, ucinewgame, quit
+ * setoption name Hash value MB / setoption name Threads value N /
+ *    setoption name OffHeapHash value true|false
+ * position startpos|fen FEN [moves MOVE...]
+ * go [depth N] [nodes N] [movetime MS] [wtime MS btime MS winc MS binc MS
+ *    movestogo N] [infinite] [ponder]
+ * stop, ponderhit
+ * bench [depth]: searches the standard positions to a fixed depth on one
+ *    thread and prints the total nodes, which only change when the search
+ *    does, and the speed
+ *
+ * Can be run from the command line:
+ * UCIServer [bench [depth]]
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public class UCIServer {
+
+	public static final String NAME = "PawnStars";
+	public static final String AUTHOR = "Allison Liedtke, Anthony Donaldson, Derek Schumacher, Scott Rowland";
+
+	//Limits of the options
+	private static final int MAX_HASH = 1024;
+	private static final int MAX_THREADS = 64;
+
+	//Default bench depth
+	private static final int BENCH_DEPTH = 6;
+
+	//Time kept back from the clock for the time it takes to send the move
+	private static final long MOVE_OVERHEAD = 50;
+
+	//How many more moves to plan for when the time control doesn't say
+	private static final int MOVES_TO_GO = 30;
+
+	//Where the output goes; all writes are synchronized on it
+	private final PrintStream out;
+
+	private int hashMegabytes = TranspositionTable.DEFAULT_MEGABYTES;
+	private boolean offHeapHash = false;
+	private int threads = 1;
+	private ParallelSearch search;
+
+	//The position to search and the hashes of the game's positions before it
+	private Position position = Position.fromFEN(Position.START_FEN);
+	private long[] history = new long[0];
+
+	//The thread running "go", or null
+	private Thread searcher;
+
+	//Holds back the move of an infinite or pondering search, which UCI
+	//doesn't allow until "stop" or "ponderhit", even if the search ends
+	private CountDownLatch release = new CountDownLatch(0);
+
+	//How long a pondering search has once "ponderhit" comes, or 0
+	private long ponderTime;
+
+	/**
+	 * Constructor
+	 * @param out where to write the engine's output
+	 */
+	public UCIServer(PrintStream out)
+	{
+		this.out = out;
+	}
+
+	/**
+	 * Reads commands until "quit" or the end of the input
+	 * @param in
+	 * @throws IOException
+	 */
+	public void run(BufferedReader in) throws IOException
+	{
+		String line;
+		while((line = in.readLine()) != null)
+		{
+			if(!execute(line))
+			{
+				break;
+			}
+		}
+		stopSearch();
+		if(search != null)
+		{
+			search.shutdown();
+		}
+	}
+
+	/**
+	 * Runs one command
+	 * @param line the command
+	 * @return false if it was "quit"
+	 */
+	public boolean execute(String line)
+	{
+		String[] words = line.trim().split("\\s+");
+		String command = words[0];
+		try
+		{
+			if(command.equals("uci"))
+			{
+				send("id name " + NAME);
+				send("id author " + AUTHOR);
+				send("option name Hash type spin default " + TranspositionTable.DEFAULT_MEGABYTES
+						+ " min 1 max " + MAX_HASH);
+				send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+				send("option name OffHeapHash type check default false");
+				send("uciok");
+			}
+			else if(command.equals("isready"))
+			{
+				send("readyok");
+			}
+			else if(command.equals("ucinewgame"))
+			{
+				waitForSearch();
+				getSearch().getTable().clear();
+			}
+			else if(command.equals("setoption"))
+			{
+				waitForSearch();
+				setOption(words);
+			}
+			else if(command.equals("position"))
+			{
+				waitForSearch();
+				setPosition(words);
+			}
+			else if(command.equals("go"))
+			{
+				waitForSearch();
+				go(words);
+			}
+			else if(command.equals("stop"))
+			{
+				stopSearch();
+			}
+			else if(command.equals("ponderhit"))
+			{
+				ponderHit();
+			}
+			else if(command.equals("bench"))
+			{
+				waitForSearch();
+				bench((words.length > 1) ? Integer.parseInt(words[1]) : BENCH_DEPTH);
+			}
+			else if(command.equals("d"))
+			{
+				send(position.toFEN());
+			}
+			else if(command.equals("quit"))
+			{
+				return false;
+			}
+			else if(command.length() > 0)
+			{
+				send("info string unknown command " + line.trim());
+			}
+		}
+		catch(RuntimeException e)
+		{
+			//a bad command shouldn't stop the engine
+			send("info string error in " + line.trim() + ": " + e);
+		}
+		return true;
+	}
+
+	/**
+	 * Handles "setoption name Hash|Threads value N" and
+	 * "setoption name OffHeapHash value true|false"
+	 */
+	private void setOption(String[] words)
+	{
+		String name = null;
+		String value = null;
+		for(int i = 1; i + 1 < words.length; i++)
+		{
+			if(words[i].equals("name"))
+			{
+				name = words[i + 1];
+			}
+			else if(words[i].equals("value"))
+			{
+				value = words[i + 1];
+			}
+		}
+		if("Hash".equalsIgnoreCase(name) && value != null)
+		{
+			hashMegabytes = Math.max(1, Math.min(MAX_HASH, Integer.parseInt(value)));
+			replaceSearch();
+		}
+		else if("Threads".equalsIgnoreCase(name) && value != null)
+		{
+			threads = Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value)));
+			replaceSearch();
+		}
+		else if("OffHeapHash".equalsIgnoreCase(name) && value != null)
+		{
+			offHeapHash = Boolean.parseBoolean(value);
+			replaceSearch();
+		}
+		else
+		{
+			send("info string unknown option " + name);
+		}
+	}
+
+	/**
+	 * Makes the search again with the current options
+	 */
+	private void replaceSearch()
+	{
+		if(search != null)
+		{
+			search.shutdown();
+			search = null;
+		}
+	}
+
+	/**
+	 * @return the search, made with the current options if needed
+	 */
+	private ParallelSearch getSearch()
+	{
+		if(search == null)
+		{
+			search = new ParallelSearch(threads, new TranspositionTable(hashMegabytes, offHeapHash));
+		}
+		return search;
+	}
+
+	/**
+	 * Handles "position startpos|fen FEN [moves MOVE...]"
+	 */
+	private void setPosition(String[] words)
+	{
+		int index = 1;
+		Position newPosition;
+		if(words.length > 1 && words[1].equals("startpos"))
+		{
+			newPosition = Position.fromFEN(Position.START_FEN);
+			index = 2;
+		}
+		else if(words.length > 1 && words[1].equals("fen"))
+		{
+			StringBuilder fen = new StringBuilder();
+			for(index = 2; index < words.length && !words[index].equals("moves"); index++)
+			{
+				fen.append(words[index]).append(' ');
+			}
+			newPosition = Position.fromFEN(fen.toString().trim());
+		}
+		else
+		{
+			throw new IllegalArgumentException("expected startpos or fen");
+		}
+
+		//keep the positions since the last capture or pawn move, for repetitions
+		long[] newHistory = new long[16];
+		int historySize = 0;
+		if(index < words.length && words[index].equals("moves"))
+		{
+			for(index++; index < words.length; index++)
+			{
+				int move = findMove(newPosition, words[index]);
+				if(historySize == newHistory.length)
+				{
+					newHistory = Arrays.copyOf(newHistory, historySize * 2);
+				}
+				newHistory[historySize++] = newPosition.getHash();
+				newPosition.makeMove(move);
+				if(newPosition.getHalfmoveClock() == 0)
+				{
+					historySize = 0;
+				}
+			}
+		}
+		position = new Position(newPosition);
+		history = Arrays.copyOf(newHistory, historySize);
+	}
+
+	/**
+	 * Finds a legal move from its UCI name
+	 */
+	private static int findMove(Position position, String name)
+	{
+		int move = MoveGenerator.parseMove(position, name);
+		if(move == Move.NONE)
+		{
+			throw new IllegalArgumentException("illegal move " + name);
+		}
+		return move;
+	}
+
+	/**
+	 * Handles "go", starting the search on its own thread so "stop" can
+	 * still be read
+	 */
+	private void go(String[] words)
+	{
+		int depth = Search.MAX_PLY;
+		long nodes = 0;
+		long moveTime = 0;
+		long[] time = { -1, -1 };
+		long[] increment = { 0, 0 };
+		int movesToGo = MOVES_TO_GO;
+		boolean infinite = false;
+		boolean ponder = false;
+		for(int i = 1; i < words.length; i++)
+		{
+			String word = words[i];
+			if(word.equals("infinite"))
+			{
+				infinite = true;
+			}
+			else if(word.equals("ponder"))
+			{
+				ponder = true;
+			}
+			else if(i + 1 == words.length)
+			{
+				break;
+			}
+			else if(word.equals("depth"))
+			{
+				depth = Integer.parseInt(words[++i]);
+			}
+			else if(word.equals("nodes"))
+			{
+				nodes = Long.parseLong(words[++i]);
+			}
+			else if(word.equals("movetime"))
+			{
+				moveTime = Long.parseLong(words[++i]);
+			}
+			else if(word.equals("wtime"))
+			{
+				time[Position.WHITE] = Long.parseLong(words[++i]);
+			}
+			else if(word.equals("btime"))
+			{
+				time[Position.BLACK] = Long.parseLong(words[++i]);
+			}
+			else if(word.equals("winc"))
+			{
+				increment[Position.WHITE] = Long.parseLong(words[++i]);
+			}
+			else if(word.equals("binc"))
+			{
+				increment[Position.BLACK] = Long.parseLong(words[++i]);
+			}
+			else if(word.equals("movestogo"))
+			{
+				movesToGo = Math.max(1, Integer.parseInt(words[++i]));
+			}
+		}
+
+		//use a share of the clock unless told exactly how long to take
+		int color = position.getSideToMove();
+		if(moveTime == 0 && time[color] >= 0)
+		{
+			long left = Math.max(1, time[color] - MOVE_OVERHEAD);
+			moveTime = Math.min(left, left / movesToGo + increment[color] * 3 / 4);
+			moveTime = Math.max(1, moveTime);
+		}
+
+		//pondering runs until ponderhit says whose time it is
+		ponderTime = ponder ? moveTime : 0;
+		if(ponder)
+		{
+			moveTime = 0;
+		}
+
+		final ParallelSearch parallel = getSearch();
+		final Position root = position;
+		final int maxDepth = depth;
+		final long limit = moveTime;
+		final CountDownLatch hold = new CountDownLatch((infinite || ponder) ? 1 : 0);
+		release = hold;
+		final long start = System.currentTimeMillis();
+		parallel.setGameHistory(history);
+		parallel.setNodeLimit(nodes);
+		//a stop can come before the new thread reaches the search
+		parallel.reset();
+		parallel.setListener(new Search.Listener() {
+			public void iterationFinished(Search main)
+			{
+				sendInfo(root, parallel, main.getCompletedDepth(), main.getBestScore(),
+						main.getBestMove(), System.currentTimeMillis() - start);
+			}
+		});
+		searcher = new Thread(new Runnable() {
+			public void run()
+			{
+				int best = parallel.search(root, maxDepth, limit);
+				awaitRelease(hold);
+				send("bestmove " + ((best == Move.NONE) ? "0000" : Move.toString(best)));
+			}
+		}, "uci search");
+		searcher.start();
+	}
+
+	/**
+	 * Stops the running search, if there is one, and waits for its move to
+	 * be sent
+	 */
+	private void stopSearch()
+	{
+		if(searcher != null)
+		{
+			search.stop();
+			release.countDown();
+		}
+		waitForSearch();
+	}
+
+	/**
+	 * Handles "ponderhit": the pondering search becomes a normal one, which
+	 * stops once its share of the clock has passed and can send its move
+	 */
+	private void ponderHit()
+	{
+		if(searcher == null)
+		{
+			return;
+		}
+		if(ponderTime > 0)
+		{
+			search.stopAt(System.currentTimeMillis() + ponderTime);
+		}
+		release.countDown();
+	}
+
+	/**
+	 * Waits on the search thread until its move can be sent
+	 */
+	private static void awaitRelease(CountDownLatch hold)
+	{
+		boolean interrupted = false;
+		while(true)
+		{
+			try
+			{
+				hold.await();
+				break;
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits for the running search, if there is one, to finish and send its
+	 * move. Only stop and quit end a search early, so an infinite or
+	 * pondering search has to be stopped before the next command.
+	 */
+	private void waitForSearch()
+	{
+		if(searcher == null)
+		{
+			return;
+		}
+		boolean interrupted = false;
+		while(searcher.isAlive())
+		{
+			try
+			{
+				searcher.join();
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		searcher = null;
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sends an info line for a finished iteration, with the principal
+	 * variation read from the transposition table
+	 */
+	private void sendInfo(Position root, ParallelSearch parallel, int depth, int score, int bestMove,
+			long millis)
+	{
+		long nodes = parallel.getNodes();
+		StringBuilder line = new StringBuilder("info depth ").append(depth).append(" score ");
+		if(score >= Search.MATE_BOUND)
+		{
+			line.append("mate ").append((Search.MATE - score + 1) / 2);
+		}
+		else if(score <= -Search.MATE_BOUND)
+		{
+			line.append("mate ").append(-(Search.MATE + score) / 2);
+		}
+		else
+		{
+			line.append("cp ").append(score);
+		}
+		line.append(" nodes ").append(nodes).append(" nps ").append(nodes * 1000 / Math.max(1, millis));
+		line.append(" time ").append(millis).append(" hashfull ").append(parallel.getTable().getHashfull());
+		line.append(" pv");
+		for(int move: getPv(root, parallel.getTable(), bestMove, depth))
+		{
+			line.append(' ').append(Move.toString(move));
+		}
+		send(line.toString());
+	}
+
+	/**
+	 * Follows the best moves stored in the table from a position
+	 * @param root
+	 * @param table
+	 * @param bestMove the first move
+	 * @param maxLength the most moves to follow
+	 * @return the moves
+	 */
+	public static int[] getPv(Position root, TranspositionTable table, int bestMove, int maxLength)
+	{
+		Position position = new Position(root);
+		int[] pv = new int[Math.max(1, maxLength)];
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int length = 0;
+		int next = bestMove;
+		while(next != Move.NONE && length < pv.length)
+		{
+			//stored moves could be from a colliding position, so check them
+			int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+			int move = Move.NONE;
+			for(int i = 0; i < numMoves; i++)
+			{
+				if(moves[i] == next)
+				{
+					move = next;
+					break;
+				}
+			}
+			if(move == Move.NONE)
+			{
+				break;
+			}
+			pv[length++] = move;
+			position.makeMove(move);
+			if(position.isRepetition())
+			{
+				break;
+			}
+			long entry = table.probe(position.getHash());
+			next = (entry != 0) ? TranspositionTable.getMove(entry) : Move.NONE;
+		}
+		return Arrays.copyOf(pv, length);
+	}
+
+	/**
+	 * Searches the standard positions to a fixed depth on one thread with an
+	 * empty table, and sends the total nodes and speed
+	 * @param depth
+	 * @return the total nodes
+	 */
+	public long bench(int depth)
+	{
+		Search bench = new Search(new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES, false));
+		long nodes = 0;
+		long start = System.nanoTime();
+		for(String fen: Perft.POSITIONS)
+		{
+			bench.getTable().clear();
+			bench.search(Position.fromFEN(fen), depth, 0);
+			nodes += bench.getNodes();
+			send("info string " + fen + ": " + Move.toString(bench.getBestMove()) + " nodes " + bench.getNodes());
+		}
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+		send("bench depth " + depth + " nodes " + nodes + " time " + millis + " nps " + nodes * 1000 / millis);
+		return nodes;
+	}
+
+	/**
+	 * Writes a line of output
+	 */
+	private void send(String line)
+	{
+		synchronized(out)
+		{
+			out.println(line);
+			out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		UCIServer server = new UCIServer(System.out);
+		if(args.length > 0 && args[0].equals("bench"))
+		{
+			server.bench((args.length > 1) ? Integer.parseInt(args[1]) : BENCH_DEPTH);
+			return;
+		}
+		server.run(new BufferedReader(new InputStreamReader(System.in)));
+	}
+}
@@ -0,0 +1,158 @@
+package edu.up.cs301.chess.engine;
+
+import java.util.Random;
+
+import edu.up.cs301.chess.ChessPiece;
+
+/**
+ * Random keys for Zobrist hashing. A position's hash is the XOR of a key
+ * for each piece on each square, a key if black is to move, a key for the
+ * castling rights and a key for the file of the en passant square, if a
+ * pawn can take there. Making a move only has to XOR in and out the keys
+ * that changed, so the hash is kept up to date by Position as pieces move
+ * instead of being recomputed.
+ *
+ * The keys come from a fixed seed, so hashes are the same every run.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ *
+ */
+public final class Zobrist {
+
+	//Seed for the keys, so hashes can be compared between runs
+	private static final long SEED = 0x2015C5301L;
+
+	//One key per piece index and square
+	private static final long[][] PIECE_SQUARE = new long[2 * ChessPiece.NUM_TYPES][Bitboards.NUM_SQUARES];
+
+	//XORed in when black is to move
+	private static final long BLACK_TO_MOVE;
+
+	//One key per combination of castling rights
+	private static final long[] CASTLING = new long[Position.ALL_CASTLING + 1];
+
+	//One key per file of the en passant square
+	private static final long[] EN_PASSANT = new long[8];
+
+	static
+	{
+		Random random = new Random(SEED);
+		for(int i = 0; i < PIECE_SQUARE.length; i++)
+		{
+			for(int j = 0; j < Bitboards.NUM_SQUARES; j++)
+			{
+				PIECE_SQUARE[i][j] = random.nextLong();
+			}
+		}
+		BLACK_TO_MOVE = random.nextLong();
+
+		//no rights hash to 0 so an empty board hashes to 0
+		for(int i = 1; i < CASTLING.length; i++)
+		{
+			CASTLING[i] = random.nextLong();
+		}
+		for(int i = 0; i < EN_PASSANT.length; i++)
+		{
+			EN_PASSANT[i] = random.nextLong();
+		}
+	}
+
+	/**
+	 * Not meant to be instantiated
+	 */
+	private Zobrist()
+	{
+	}
+
+	/**
+	 * Returns the key for a piece on a square
+	 * @param pieceIndex see Position.pieceIndex
+	 * @param square
+	 * @return the key
+	 */
+	public static long piece(int pieceIndex, int square)
+	{
+		return PIECE_SQUARE[pieceIndex][square];
+	}
+
+	/**
+	 * Returns the key XORed in when black is to move
+	 */
+	public static long blackToMove()
+	{
+		return BLACK_TO_MOVE;
+	}
+
+	/**
+	 * Returns the key for a set of castling rights
+	 * @param castling a combination of the castling bits in Position
+	 * @return the key
+	 */
+	public static long castling(int castling)
+	{
+		return CASTLING[castling];
+	}
+
+	/**
+	 * Returns the key for an en passant square
+	 * @param square the en passant square, or Bitboards.NO_SQUARE
+	 * @return the key, or 0 if there is no en passant square
+	 */
+	public static long enPassant(int square)
+	{
+		return (square == Bitboards.NO_SQUARE) ? 0L : EN_PASSANT[Bitboards.file(square)];
+	}
+
+	/**
+	 * Returns the en passant part of a position's hash. As in Polyglot, the
+	 * en passant square only counts if a pawn of the side to move could take
+	 * on it; otherwise the position is the same as one without the square,
+	 * and must hash the same for repetitions to be found.
+	 * @param position
+	 * @return the key for the en passant square, or 0
+	 */
+	public static long enPassant(Position position)
+	{
+		int square = position.getEnPassant();
+		if(square == Bitboards.NO_SQUARE)
+		{
+			return 0L;
+		}
+		int color = position.getSideToMove();
+		if((AttackTables.pawnAttacks(1 - color, square) & position.getPieces(color, ChessPiece.PAWN)) == 0)
+		{
+			return 0L;
+		}
+		return EN_PASSANT[Bitboards.file(square)];
+	}
+
+	/**
+	 * Computes a position's hash from scratch. Position keeps its hash up to
+	 * date as it changes, so this is only needed to check that it is right.
+	 * @param position
+	 * @return the hash
+	 */
+	public static long compute(Position position)
+	{
+		long hash = 0;
+		for(int square = 0; square < Bitboards.NUM_SQUARES; square++)
+		{
+			int index = position.pieceAt(square);
+			if(index != Position.EMPTY)
+			{
+				hash ^= PIECE_SQUARE[index][square];
+			}
+		}
+		if(position.getSideToMove() == Position.BLACK)
+		{
+			hash ^= BLACK_TO_MOVE;
+		}
+		hash ^= CASTLING[position.getCastling()];
+		hash ^= enPassant(position);
+		return hash;
+	}
+}
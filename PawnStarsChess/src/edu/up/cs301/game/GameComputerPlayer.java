@@ -10,10 +10,10 @@ import edu.up.cs301.game.infoMsg.StartGameInfo;
 import edu.up.cs301.game.infoMsg.TimerInfo;
 import edu.up.cs301.game.util.GameTimer;
 import edu.up.cs301.game.util.MessageBox;
+import edu.up.cs301.game.util.MessageLoop;
+import edu.up.cs301.game.util.MessageLoops;
 import edu.up.cs301.game.util.Tickable;
 
-import android.os.Handler;
-import android.os.Looper;
 
 /**
  * An abstract computerized game player player. This is an abstract class, that
@@ -32,8 +32,8 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
 	protected int playerNum; // which player number I am
 	protected String name; // my name
 	protected String[] allPlayerNames; // list of all player names, in ID order
-	private Handler myHandler; // the handler for this player's thread
-	private boolean running; // whether the player's thread is running
+	private MessageLoop myLoop; // the loop this player handles its messages on
+	private boolean running; // whether the player's loop is running
 	private boolean gameOver = false; // whether the game is over
 	private GameMainActivity myActivity; // the game's main activity, set only
 			// this game is connected to the GUI
@@ -121,30 +121,37 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
 	 * 			the information message to send
 	 */
 	public final void sendInfo(GameInfo info) {
-		// post the state to the player's thread
-		while (myHandler == null) Thread.yield();
-		myHandler.post(new MyRunnable(info));
+		// post the state to the player's loop, starting it if need be
+		start();
+		myLoop.post(new MyRunnable(info));
 	}
 	
 	/**
 	 * Starts the player.
 	 */
 	public final void start() {
-		// if the player's thread is not presently running, start it up, keeping
-		// track of its handler so that messages can be sent to the thread.
+		// if the player's loop is not presently running, start it up, keeping
+		// track of it so that messages can be sent to it.
 		synchronized(this) {
 			if (running) return;
 			running = true;
-			Runnable runnable = new Runnable() {
-				public void run() {
-					Looper.prepare();
-					myHandler = new Handler();
-					Looper.loop();
-				}
-			};
-			Thread thread = new Thread(runnable);
-			thread.setName("Computer Player");
-			thread.start();
+			if (myLoop == null) {
+				myLoop = MessageLoops.create("Computer Player");
+			}
+		}
+	}
+	
+	/**
+	 * Sets the loop the player handles its messages on, instead of the one
+	 * MessageLoops.create would make. Must be called before the player is
+	 * started.
+	 * 
+	 * @param loop
+	 * 			the loop
+	 */
+	public final synchronized void setMessageLoop(MessageLoop loop) {
+		if (!running) {
+			myLoop = loop;
 		}
 	}
 	
@@ -221,8 +228,10 @@ public abstract class GameComputerPlayer implements GamePlayer, Tickable {
 					// acknowledge to the game that we have receive the message
 					game.sendAction(new GameOverAckAction(GameComputerPlayer.this));
 					
-					// mark game as being over
+					// mark game as being over; nothing else will be handled
 					gameOver = true;
+					myTimer.stop();
+					myLoop.quit();
 				}
 				else if (myInfo instanceof TimerInfo) {
 
@@ -29,6 +29,7 @@ import edu.up.cs301.game.config.GameConfig;
 import edu.up.cs301.game.config.GamePlayerType;
 import edu.up.cs301.game.util.IPCoder;
 import edu.up.cs301.game.util.MessageBox;
+import edu.up.cs301.game.util.WireCodec;
 
 /**
  * class GameMainActivity
@@ -118,12 +119,35 @@ View.OnClickListener {
 	 * 
 	 * @param hostName
 	 *            the name of the machine where the game resides. (e.g.,
-	 *            "upibmg.egr.up.edu")
+	 *            "upibmg.egr.up.edu"). A name ending in "#" and a number,
+	 *            such as "upibmg.egr.up.edu#12", joins that game on a
+	 *            GameServer; "#" alone joins any game waiting for players.
 	 * @return the ProxyGame object that was created
 	 */
 	private ProxyGame createRemoteGame(String hostName) {
 		int portNum = getPortNumber();
-		return ProxyGame.create(portNum, hostName);
+		int gameId = -1;
+		int hash = hostName.indexOf('#');
+		if (hash >= 0) {
+			try {
+				gameId = Math.max(0, Integer.parseInt(hostName.substring(hash + 1).trim()));
+			} catch (NumberFormatException e) {
+				gameId = 0;
+			}
+			hostName = hostName.substring(0, hash);
+		}
+		return ProxyGame.create(portNum, hostName, gameId, createWireCodec());
+	}
+
+	/**
+	 * Creates the codec that a network player or game uses to send game
+	 * states in a compact form. A game that does not override this sends
+	 * whole states with Java serialization.
+	 * 
+	 * @return a new codec, or null to serialize the states
+	 */
+	public WireCodec createWireCodec() {
+		return null;
 	}
 
 	/*
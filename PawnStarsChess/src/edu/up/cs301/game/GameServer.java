@@ -0,0 +1,694 @@
+package edu.up.cs301.game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+import edu.up.cs301.game.actionMsg.GameAction;
+import edu.up.cs301.game.infoMsg.BindGameInfo;
+import edu.up.cs301.game.infoMsg.GameInfo;
+import edu.up.cs301.game.infoMsg.GameOverInfo;
+import edu.up.cs301.game.util.Frames;
+import edu.up.cs301.game.util.MessageLoops;
+import edu.up.cs301.game.util.SerialExecutor;
+import edu.up.cs301.game.util.WireCodec;
+
+/**
+ * A server, without any GUI, that hosts many games for players on other
+ * machines. Every client connects to the same port and sends frames (see
+ * Frames) that say which game they are for. A client joins ID 0 to be put
+ * in whichever game is waiting for players, or joins a game the server has
+ * given out by its ID; a game starts when it has all its players. Each
+ * connection can only play in one game.
+ *
+ * One thread runs a Selector over every connection, reading and writing
+ * without blocking. The frames that are read, and the games themselves,
+ * are handled by a small, fixed pool of threads: each connection's frames
+ * and each game's actions are still handled one at a time, in order.
+ *
+ * To host a game, create a subclass that implements createLocalGame and
+ * getNumPlayers, and call start().
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public abstract class GameServer {
+
+	// the size of the buffer each connection reads into at first
+	private static final int BUFFER_SIZE = 8192;
+
+	// the port to listen on, and the one that was bound
+	private final int port;
+	private int boundPort;
+
+	// the threads that handle the frames
+	private final ExecutorService workers;
+
+	// the games, by ID
+	private final Map<Integer, HostedGame> games = new HashMap<Integer, HostedGame>();
+
+	// the game waiting for players that ID 0 joins, and the next new ID
+	private HostedGame openGame;
+	private int nextId = 1;
+
+	// the selector and the thread that runs it
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private Thread loopThread;
+	private volatile boolean running;
+
+	// connections that have frames to write
+	private final Queue<Connection> writeReady = new ConcurrentLinkedQueue<Connection>();
+
+	// the number of open connections
+	private volatile int connections;
+
+	// statistics
+	private final AtomicLong framesIn = new AtomicLong();
+	private final AtomicLong framesOut = new AtomicLong();
+	private final AtomicLong bytesIn = new AtomicLong();
+	private final AtomicLong bytesOut = new AtomicLong();
+
+	/**
+	 * constructor
+	 *
+	 * @param port
+	 * 		the port to listen on, or 0 for any free port
+	 * @param threads
+	 * 		the number of threads that handle frames
+	 */
+	public GameServer(int port, int threads) {
+		this.port = port;
+		workers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			private int count = 0;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Game server worker " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Creates a new game.
+	 *
+	 * @return
+	 * 		a new, game-specific instance of a sub-class of the LocalGame class
+	 */
+	public abstract LocalGame createLocalGame();
+
+	/**
+	 * @return
+	 * 		the number of players in each game
+	 */
+	public abstract int getNumPlayers();
+
+	/**
+	 * Creates the codec that sends a game's states to one of its players.
+	 * The clients must use the same kind of codec.
+	 *
+	 * @return
+	 * 		a new codec, or null to serialize the states
+	 */
+	public WireCodec createWireCodec() {
+		return null;
+	}
+
+	/**
+	 * Starts listening for clients
+	 *
+	 * @throws IOException
+	 * 		if the port can't be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (running) {
+			return;
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(port));
+		boundPort = serverChannel.socket().getLocalPort();
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		running = true;
+
+		loopThread = new Thread(new Runnable() {
+			public void run() {
+				loop();
+			}
+		});
+		loopThread.setName("Game server");
+		loopThread.start();
+		Log.i("GameServer", "listening on port " + boundPort);
+	}
+
+	/**
+	 * Stops the server, closing every connection
+	 */
+	public void stop() {
+		Thread thread;
+		synchronized (this) {
+			if (!running) {
+				return;
+			}
+			running = false;
+			thread = loopThread;
+		}
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		workers.shutdown();
+	}
+
+	/**
+	 * The selector loop: accepts connections, reads frames and writes the
+	 * frames waiting to go out
+	 */
+	private void loop() {
+		while (running) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				Log.e("GameServer", "select failed: " + e.getMessage());
+				break;
+			}
+
+			// connections with something to write want to hear about it
+			Connection ready;
+			while ((ready = writeReady.poll()) != null) {
+				if (ready.key.isValid()) {
+					ready.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				try {
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Connection connection = (Connection)key.attachment();
+					if (key.isReadable()) {
+						connection.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.write();
+					}
+				} catch (IOException e) {
+					Object attachment = key.attachment();
+					if (attachment instanceof Connection) {
+						((Connection)attachment).close();
+					}
+				}
+			}
+		}
+
+		// close everything
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof Connection) {
+				((Connection)key.attachment()).close();
+			}
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Accepts a connection from a client
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		key.attach(new Connection(channel, key));
+		connections++;
+	}
+
+	/**
+	 * Puts a player in a game (runs on a worker thread)
+	 *
+	 * @param connection
+	 * 		the player's connection
+	 * @param gameId
+	 * 		the game to join, or 0 for the game waiting for players
+	 */
+	private void join(Connection connection, int gameId) {
+		HostedGame hosted = null;
+		String refusal = null;
+		boolean full = false;
+		synchronized (games) {
+			if (!connection.players.isEmpty()) {
+				refusal = "You are already in a game.";
+			}
+			else if (gameId <= 0) {
+				// the game waiting for players, or a new one
+				if (openGame == null || openGame.started) {
+					openGame = new HostedGame(nextId++);
+					games.put(openGame.id, openGame);
+				}
+				hosted = openGame;
+			}
+			else {
+				// only IDs we gave out, so clients can't make up games;
+				// one nobody is connected to any more starts again
+				hosted = games.get(gameId);
+				if (hosted == null && gameId < nextId) {
+					hosted = new HostedGame(gameId);
+					games.put(gameId, hosted);
+				}
+				if (hosted == null) {
+					refusal = "There is no game " + gameId + ".";
+				}
+			}
+			if (hosted != null && hosted.started) {
+				refusal = "Game " + hosted.id + " has already started.";
+			}
+			if (refusal == null) {
+				RemotePlayer player = new RemotePlayer(connection, hosted.id, createWireCodec());
+				hosted.players.add(player);
+				connection.players.put(hosted.id, player);
+				full = hosted.players.size() >= getNumPlayers();
+				hosted.started = full;
+			}
+		}
+
+		if (refusal != null) {
+			// tell the client it can't play
+			connection.send((hosted == null) ? gameId : hosted.id, new GameOverInfo(refusal));
+		}
+		else if (full) {
+			Log.i("GameServer", "starting game " + hosted.id);
+			hosted.game.start(hosted.players.toArray(new GamePlayer[hosted.players.size()]));
+		}
+	}
+
+	/**
+	 * Takes a connection's players out of their games (runs on a worker
+	 * thread). Games that haven't started give up the seat; games that have
+	 * are ended, so they don't keep running for nobody. Games that no longer
+	 * have anyone connected are forgotten.
+	 */
+	private void leave(Connection connection) {
+		synchronized (games) {
+			for (RemotePlayer player : connection.players.values()) {
+				HostedGame hosted = games.get(player.gameId);
+				if (hosted == null) {
+					continue;
+				}
+				if (!hosted.started) {
+					hosted.players.remove(player);
+				}
+				else {
+					hosted.game.playerLeft(player);
+				}
+				boolean anyConnected = false;
+				for (RemotePlayer other : hosted.players) {
+					anyConnected |= other.connection.isOpen();
+				}
+				if (!anyConnected) {
+					games.remove(hosted.id);
+					if (hosted == openGame) {
+						openGame = null;
+					}
+				}
+			}
+			connection.players.clear();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the port the server is listening on
+	 */
+	public int getPort() {
+		return boundPort;
+	}
+
+	/**
+	 * @return
+	 * 		the number of games being played or waiting for players
+	 */
+	public int getGameCount() {
+		synchronized (games) {
+			return games.size();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the number of clients connected
+	 */
+	public int getConnectionCount() {
+		return connections;
+	}
+
+	/**
+	 * @return
+	 * 		the numbers of frames and bytes read and written
+	 */
+	public String getStats() {
+		return getConnectionCount() + " connections, " + getGameCount() + " games, "
+				+ framesIn.get() + " frames (" + bytesIn.get() + " bytes) in, "
+				+ framesOut.get() + " frames (" + bytesOut.get() + " bytes) out";
+	}
+
+	/**
+	 * A game and the players that have joined it
+	 */
+	private class HostedGame {
+		// the game's ID
+		private final int id;
+
+		// the game
+		private final LocalGame game = createLocalGame();
+
+		// the players, in the order they joined
+		private final List<RemotePlayer> players = new ArrayList<RemotePlayer>();
+
+		// whether the game has all its players
+		private boolean started;
+
+		// constructor; the game handles its actions on the worker threads
+		public HostedGame(int id) {
+			this.id = id;
+			game.setMessageLoop(MessageLoops.onExecutor(workers));
+		}
+	}
+
+	/**
+	 * One client's connection. It is read and written only by the selector
+	 * thread; frames to send can be queued from any thread.
+	 */
+	private class Connection {
+		// the channel and its key
+		private final SocketChannel channel;
+		private final SelectionKey key;
+
+		// the bytes read that don't make a whole frame yet; it only grows
+		// past BUFFER_SIZE while a bigger frame is being read
+		private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+
+		// the frames waiting to be written
+		private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<ByteBuffer>();
+
+		// handles the frames read, in order
+		private final SerialExecutor inbox = new SerialExecutor(workers);
+
+		// the players on this connection, by game ID; only used on the inbox
+		private final Map<Integer, RemotePlayer> players = new HashMap<Integer, RemotePlayer>();
+
+		// whether the connection is open
+		private volatile boolean open = true;
+
+		// constructor
+		public Connection(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+		}
+
+		/**
+		 * Reads what has arrived and hands on each whole frame
+		 */
+		public void read() throws IOException {
+			int count = channel.read(input);
+			if (count < 0) {
+				close();
+				return;
+			}
+			bytesIn.addAndGet(count);
+			input.flip();
+			while (input.remaining() >= Frames.LENGTH_SIZE) {
+				int length = input.getInt(input.position());
+				if (length < Frames.HEADER_SIZE || length > Frames.MAX_FRAME) {
+					throw new IOException("bad frame length " + length);
+				}
+				if (input.remaining() < Frames.LENGTH_SIZE + length) {
+					if (input.capacity() < Frames.LENGTH_SIZE + length) {
+						// make room for the whole frame
+						ByteBuffer bigger = ByteBuffer.allocate(Frames.LENGTH_SIZE + length);
+						bigger.put(input);
+						input = bigger;
+						return;
+					}
+					break;
+				}
+				input.getInt();
+				final int gameId = input.getInt();
+				final int kind = input.get();
+				final byte[] payload = new byte[length - Frames.HEADER_SIZE];
+				input.get(payload);
+				framesIn.incrementAndGet();
+				inbox.execute(new Runnable() {
+					public void run() {
+						receive(gameId, kind, payload);
+					}
+				});
+			}
+			input.compact();
+
+			// don't keep a big frame's buffer once it has been handled
+			if (input.capacity() > BUFFER_SIZE && input.position() <= BUFFER_SIZE) {
+				input.flip();
+				ByteBuffer smaller = ByteBuffer.allocate(BUFFER_SIZE);
+				smaller.put(input);
+				input = smaller;
+			}
+		}
+
+		/**
+		 * Handles a frame (runs on the inbox)
+		 */
+		private void receive(int gameId, int kind, byte[] payload) {
+			if (kind == Frames.JOIN) {
+				join(this, gameId);
+				return;
+			}
+			RemotePlayer player = players.get(gameId);
+			if (player == null) {
+				return;
+			}
+			if (kind == Frames.BYTES) {
+				player.resend(payload);
+			}
+			else if (kind == Frames.OBJECT) {
+				try {
+					Object obj = Frames.deserialize(payload);
+					if (obj instanceof GameAction) {
+						player.receiveAction((GameAction)obj);
+					}
+				} catch (IOException e) {
+					Log.e("GameServer", "could not read object: " + e.getMessage());
+				}
+			}
+		}
+
+		/**
+		 * Writes as many waiting frames as the socket will take
+		 */
+		public void write() throws IOException {
+			ByteBuffer frame;
+			while ((frame = output.peek()) != null) {
+				bytesOut.addAndGet(channel.write(frame));
+				if (frame.hasRemaining()) {
+					// the socket is full; carry on when it has room
+					return;
+				}
+				output.poll();
+			}
+			key.interestOps(SelectionKey.OP_READ);
+
+			// a frame queued after the loop found none is written next time
+			if (!output.isEmpty()) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+
+		/**
+		 * Queues a frame to be written
+		 *
+		 * @param frame
+		 * 		the frame
+		 */
+		public void send(ByteBuffer frame) {
+			if (!open) {
+				return;
+			}
+			output.add(frame);
+			framesOut.incrementAndGet();
+			writeReady.add(this);
+			selector.wakeup();
+		}
+
+		/**
+		 * Queues an object to be written
+		 *
+		 * @param gameId
+		 * 		the game it is from
+		 * @param obj
+		 * 		the object
+		 */
+		public void send(int gameId, Object obj) {
+			try {
+				send(Frames.frame(gameId, Frames.OBJECT, Frames.serialize(obj)));
+			} catch (IOException e) {
+				Log.e("GameServer", "could not write object: " + e.getMessage());
+			}
+		}
+
+		/**
+		 * @return
+		 * 		whether the connection is open
+		 */
+		public boolean isOpen() {
+			return open;
+		}
+
+		/**
+		 * Closes the connection and takes its players out of their games
+		 */
+		public void close() {
+			if (!open) {
+				return;
+			}
+			open = false;
+			connections--;
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+			inbox.execute(new Runnable() {
+				public void run() {
+					leave(Connection.this);
+				}
+			});
+		}
+	}
+
+	/**
+	 * A player in a hosted game, who is really on the other end of a
+	 * connection. Like a ProxyPlayer, it sends what the game tells it to the
+	 * client and passes on the actions that come back.
+	 */
+	private class RemotePlayer implements GamePlayer {
+		// the client's connection
+		private final Connection connection;
+
+		// the game's ID, and the game once it has bound us
+		private final int gameId;
+		private Game game;
+
+		// the codec for the states we send, or null to serialize them
+		private final WireCodec codec;
+
+		// the last info we sent, so it can be sent again in full
+		private GameInfo lastInfo;
+
+		// constructor
+		public RemotePlayer(Connection connection, int gameId, WireCodec codec) {
+			this.connection = connection;
+			this.gameId = gameId;
+			this.codec = codec;
+		}
+
+		/**
+		 * Sends an info to the client, encoded if we can
+		 */
+		public synchronized void sendInfo(GameInfo info) {
+			if (info instanceof BindGameInfo) {
+				game = ((BindGameInfo)info).getGame();
+			}
+			info.setGame(null);
+			lastInfo = info;
+			byte[] message = (codec == null) ? null : codec.encode(info);
+			if (message == null) {
+				connection.send(gameId, info);
+			}
+			else {
+				connection.send(Frames.frame(gameId, Frames.BYTES, message));
+			}
+		}
+
+		/**
+		 * Sends the last info again in full, if the codec asks for it
+		 */
+		public synchronized void resend(byte[] reply) {
+			if (codec != null && codec.onReply(reply) && lastInfo != null) {
+				GameInfo info = lastInfo;
+				lastInfo = null;
+				sendInfo(info);
+			}
+		}
+
+		/**
+		 * Passes on an action from the client
+		 */
+		public void receiveAction(GameAction action) {
+			Game g;
+			synchronized (this) {
+				g = game;
+			}
+			if (g != null) {
+				action.setPlayer(this);
+				g.sendAction(action);
+			}
+		}
+
+		public void start() {
+		}
+
+		public final void gameSetAsGui(GameMainActivity a) {
+		}
+
+		public void setAsGui(GameMainActivity a) {
+		}
+
+		public boolean requiresGui() {
+			return false;
+		}
+
+		public boolean supportsGui() {
+			return false;
+		}
+
+		public void receiveActivity(GameMainActivity activity) {
+		}
+	}
+}
@@ -11,11 +11,10 @@ import edu.up.cs301.game.infoMsg.IllegalMoveInfo;
 import edu.up.cs301.game.infoMsg.NotYourTurnInfo;
 import edu.up.cs301.game.infoMsg.StartGameInfo;
 import edu.up.cs301.game.util.GameTimer;
+import edu.up.cs301.game.util.MessageLoop;
+import edu.up.cs301.game.util.MessageLoops;
 import edu.up.cs301.game.util.Tickable;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
 import android.util.Log;
 
 /**
@@ -36,13 +35,13 @@ public abstract class LocalGame implements Game, Tickable {
 	// the stage that the game is in
 	private GameStage gameStage = GameStage.BEFORE_GAME;
 	
-	// the handler for the game's thread
-	private Handler myHandler;
+	// the loop the game handles its actions on
+	private MessageLoop myLoop;
 		
 	// the players in the game, in order of  player number
 	protected GamePlayer[] players;
 	
-	// whether the game's thread is running
+	// whether the game's message loop is running
 	private boolean running = false;
 	
 	// the players' names, paralleling the 'players' array
@@ -87,24 +86,16 @@ public abstract class LocalGame implements Game, Tickable {
 		// and players
 		this.playerNames = new String[players.length];
 		
-		// start the thread for this game
+		// start the message loop for this game
 		synchronized(this) {
 			// if already started, don't restart
 			if (running) return;
 			running = true; // mark as running
 			
-			// create a thread that loops, waiting for actions;
-			// start the thread
-			Runnable runnable = new Runnable() {
-				public void run() {
-					Looper.prepare();
-					myHandler = new MyHandler(LocalGame.this);
-					Looper.loop();
-				}
-			};
-			Thread thread = new Thread(runnable);
-			thread.setName("Local Game");
-			thread.start();
+			// create the loop that waits for actions, unless one was given
+			if (myLoop == null) {
+				myLoop = MessageLoops.create("Local Game");
+			}
 		}
 		
 		// at this point the game is running, so set our game stage to be that of
@@ -159,12 +150,12 @@ public abstract class LocalGame implements Game, Tickable {
 	 * Invoked whenever the game's thread receives a message (e.g., from a player
 	 * or from a timer).
 	 * 
-	 * @param msg
+	 * @param obj
 	 * 			the message that was received
 	 */
-	private void receiveMessage(Message msg) {
-		if (msg.obj instanceof GameAction) { // ignore if not GameAction
-			GameAction action = (GameAction)msg.obj;
+	private void receiveMessage(Object obj) {
+		if (obj instanceof GameAction) { // ignore if not GameAction
+			GameAction action = (GameAction)obj;
 			
 			// CASE 1: the game is at the stage where we we waiting for
 			// players to tell us their names. In this case, we expect
@@ -227,6 +218,13 @@ public abstract class LocalGame implements Game, Tickable {
 				// Only perform the "tick" if it was our timer; otherwise, just post the message
 				if (((TimerAction)action).getTimer() == myTimer) {
 					this.timerTicked();
+					
+					// the tick may have ended the game, e.g. on time
+					String overMsg = checkIfGameOver();
+					if (overMsg != null) {
+						sendAllUpdatedState();
+						finishUpGame(overMsg);
+					}
 				}
 				else {
 					this.checkAndHandleAction(action);
@@ -246,6 +244,12 @@ public abstract class LocalGame implements Game, Tickable {
 					playersFinished[playerIdx] = true;
 					playerFinishedCount++;
 				}
+				
+				// once everyone knows, the game has nothing left to do
+				if (playerFinishedCount >= players.length) {
+					myTimer.stop();
+					myLoop.quit();
+				}
 			}
 		}
 	}
@@ -347,13 +351,63 @@ public abstract class LocalGame implements Game, Tickable {
 	 * @param the
 	 *            player requesting the action
 	 */
-	public final void sendAction(GameAction action) {
-		if (myHandler == null) return; // give up if no handler
+	public final void sendAction(final GameAction action) {
+		MessageLoop loop;
+		synchronized(this) {
+			loop = myLoop;
+		}
+		if (loop == null) return; // give up if not started
 		
-		// package the action into a message and send it to the handler
-		Message msg = new Message();
-		msg.obj = action;
-		myHandler.dispatchMessage(msg);
+		// handle the action on the game's loop, after those sent before it
+		loop.post(new Runnable() {
+			public void run() {
+				receiveMessage(action);
+			}
+		});
+	}
+	
+	/**
+	 * Ends the game because a player has left it, e.g. when their network
+	 * connection closes. The other players are told the game is over, and
+	 * the game stops its timer and loop without waiting for them to
+	 * acknowledge, since the player who left never will.
+	 * 
+	 * @param player
+	 * 			the player who left
+	 */
+	public final void playerLeft(final GamePlayer player) {
+		MessageLoop loop;
+		synchronized(this) {
+			loop = myLoop;
+		}
+		if (loop == null) return; // give up if not started
+		
+		loop.post(new Runnable() {
+			public void run() {
+				if (gameStage != GameStage.GAME_OVER) {
+					int playerIdx = getPlayerIdx(player);
+					String name = (playerIdx >= 0 && playerNames[playerIdx] != null)
+							? playerNames[playerIdx] : "A player";
+					finishUpGame(name + " has left the game.");
+				}
+				myTimer.stop();
+				myLoop.quit();
+			}
+		});
+	}
+	
+	/**
+	 * Sets the loop the game handles its actions on, instead of the one
+	 * MessageLoops.create would make. Must be called before the game is
+	 * started.
+	 * 
+	 * @param loop
+	 * 			the loop
+	 */
+	public synchronized void setMessageLoop(MessageLoop loop) {
+		if (!running) {
+			myLoop = loop;
+		}
 	}
 	
 	/**
@@ -375,21 +429,5 @@ public abstract class LocalGame implements Game, Tickable {
 	private static enum GameStage {
 		BEFORE_GAME, WAITING_FOR_NAMES, WAITING_FOR_READY, DURING_GAME, GAME_OVER
 	}
-	
-	// a handler class for the game's thread
-	private static class MyHandler extends Handler {
-		// the game
-		private LocalGame game;
-		
-		// constructor; parameter is expected to be this game
-		public MyHandler(LocalGame game) {
-			this.game = game;
-		}
-		
-		// callback when message is received; invoke the 'gameReceived' message
-		public void handleMessage(Message msg) {
-			game.receiveMessage(msg);
-		}
-	}
 
 }// class LocalGame
@@ -5,8 +5,11 @@ import java.util.Queue;
 import android.util.Log;
 import edu.up.cs301.game.actionMsg.GameAction;
 import edu.up.cs301.game.infoMsg.GameInfo;
+import edu.up.cs301.game.util.FramedObjectPasser;
 import edu.up.cs301.game.util.IPCoder;
 import edu.up.cs301.game.util.NetworkObjectPasser;
+import edu.up.cs301.game.util.ObjectPasser;
+import edu.up.cs301.game.util.WireCodec;
 
 /**
  * A Game object that is used as a proxy for the real game that is on another
@@ -29,7 +32,10 @@ public class ProxyGame implements Game {
     private Queue<GameInfo> queuedObjectsForPlayer = new LinkedList<GameInfo>();
     
     // the network-connection object
-    private NetworkObjectPasser networkPasser;
+    private ObjectPasser networkPasser;
+
+    // the codec for the states we receive, or null if they are serialized
+    private WireCodec codec;
 
     /**
      * Static method used instead of a constructor, so that null can be returned if
@@ -42,8 +48,45 @@ public class ProxyGame implements Game {
      * @return
      */
     public static ProxyGame create(int portNum, String ipCode) {
+    	return create(portNum, ipCode, null);
+    }
+    
+    /**
+     * Static method used instead of a constructor, so that null can be returned if
+     * the creation was unsuccessful.
+     * 
+     * @param portNum
+     * 			the port number for connecting to the host
+     * @param ipCode
+     * 			the IP code of the server where the game is hosted
+     * @param codec
+     * 			the codec for the states the host sends, or null if they
+     * 			are serialized
+     * @return
+     */
+    public static ProxyGame create(int portNum, String ipCode, WireCodec codec) {
+    	return create(portNum, ipCode, -1, codec);
+    }
+    
+    /**
+     * Static method used instead of a constructor, so that null can be returned if
+     * the creation was unsuccessful.
+     * 
+     * @param portNum
+     * 			the port number for connecting to the host
+     * @param ipCode
+     * 			the IP code of the server where the game is hosted
+     * @param gameId
+     * 			the game to join on a GameServer (0 for any), or -1 if the
+     * 			game is hosted by another device
+     * @param codec
+     * 			the codec for the states the host sends, or null if they
+     * 			are serialized
+     * @return
+     */
+    public static ProxyGame create(int portNum, String ipCode, int gameId, WireCodec codec) {
     	// create the game object
-    	ProxyGame rtnVal = new ProxyGame(portNum, ipCode);
+    	ProxyGame rtnVal = new ProxyGame(portNum, ipCode, gameId, codec);
     	
     	// see if a connection becomes established; if so, return
     	// the object, otherwise null
@@ -64,53 +107,94 @@ public class ProxyGame implements Game {
      * @param ipCode
      * 		the IP code of the remote site to where the actual
      *  	game is running
+     * @param gameId
+     * 		the game to join on a GameServer (0 for any), or -1 if the
+     * 		game is hosted by another device's ProxyPlayer
+     * @param codec
+     * 		the codec for the states we receive, or null
      */
-    private ProxyGame(int portNum, String ipCode) {
+    private ProxyGame(int portNum, String ipCode, int gameId, WireCodec codec) {
 
         // set instance variables to their initial values
         player = null;
+        this.codec = codec;
         ipCode = IPCoder.decodeIp(ipCode); // convert to IP address
         
         // create the network-connector object
-        networkPasser = new NetworkObjectPasser(ipCode, portNum) {
-        	
-        	// callback method, called whenever an object is sent to us from
-        	// across the network
-        	public void onReceiveObject(Object obj) {
-        		Log.i("ProxyGame", "received object ("+obj.getClass()+")");
-        		try {
-        			boolean b = obj instanceof GameInfo;
-        			if (b) {
-        				// object is a GameStae object
-        				GameInfo gs = (GameInfo)obj;
-        				gs.setGame(ProxyGame.this);
-        				synchronized(this) {
-        					if (player == null) {
-        						// if the player has not been connected, save the
-        						// object in a queue
-        						Log.i("ProxyGame", "adding object to queue");
-        						queuedObjectsForPlayer.add(gs);
-        					}
-        					else {
-        						// if the player has been connected, send the object
-        						// directly to the player
-                				Log.i("ProxyGame", "about to send state to player");
-                				player.sendInfo(gs);
-                				Log.i("ProxyGame", "... done sending state");
-        					}
-        				}
-        			}
-        			else {
-        				// ignore if the object is not a GameInfo object
-        				Log.i("ProxyGame", "object NOT being sent to player");
-        			}
+        if (gameId < 0) {
+        	networkPasser = new NetworkObjectPasser(ipCode, portNum) {
+        		// callback method, called whenever an object is sent to us from
+        		// across the network
+        		public void onReceiveObject(Object obj) {
+        			receiveObject(obj);
         		}
-        		catch (Exception x) {
-        			// if any other exception occurs, log it
-        			Log.i(x.getClass().toString(), x.getMessage());
+        	};
+        }
+        else {
+        	networkPasser = new FramedObjectPasser(ipCode, portNum, gameId) {
+        		// callback method, called whenever an object is sent to us from
+        		// the server
+        		public void onReceiveObject(Object obj) {
+        			receiveObject(obj);
         		}
-        	}
-        };
+        	};
+        }
+    }
+
+    /**
+     * Handles an object that is sent to us from across the network
+     * 
+     * @param obj
+     * 		the object
+     */
+    private void receiveObject(Object obj) {
+    	Log.i("ProxyGame", "received object ("+obj.getClass()+")");
+    	try {
+    		if (obj instanceof byte[] && codec != null) {
+    			// an encoded state: decode it, or ask for the whole
+    			// state if we can't
+    			obj = codec.decode((byte[])obj);
+    			if (obj == null) {
+    				byte[] request = codec.resyncRequest();
+    				if (request != null) {
+    					networkPasser.sendObject(request);
+    				}
+    				return;
+    			}
+    		}
+    		else if (obj instanceof GameInfo && codec != null) {
+    			codec.received((GameInfo)obj);
+    		}
+    		boolean b = obj instanceof GameInfo;
+    		if (b) {
+    			// object is a GameStae object
+    			GameInfo gs = (GameInfo)obj;
+    			gs.setGame(this);
+    			synchronized(this) {
+    				if (player == null) {
+    					// if the player has not been connected, save the
+    					// object in a queue
+    					Log.i("ProxyGame", "adding object to queue");
+    					queuedObjectsForPlayer.add(gs);
+    				}
+    				else {
+    					// if the player has been connected, send the object
+    					// directly to the player
+    					Log.i("ProxyGame", "about to send state to player");
+    					player.sendInfo(gs);
+    					Log.i("ProxyGame", "... done sending state");
+    				}
+    			}
+    		}
+    		else {
+    			// ignore if the object is not a GameInfo object
+    			Log.i("ProxyGame", "object NOT being sent to player");
+    		}
+    	}
+    	catch (Exception x) {
+    		// if any other exception occurs, log it
+    		Log.i(x.getClass().toString(), x.getMessage());
+    	}
     }
 
     /**
@@ -4,6 +4,7 @@ import edu.up.cs301.game.actionMsg.GameAction;
 import edu.up.cs301.game.infoMsg.BindGameInfo;
 import edu.up.cs301.game.infoMsg.GameInfo;
 import edu.up.cs301.game.util.NetworkObjectPasser;
+import edu.up.cs301.game.util.WireCodec;
 import android.util.Log;
 
 /**
@@ -24,6 +25,12 @@ public class ProxyPlayer implements GamePlayer {
     // the object that connects us to the network
     private NetworkObjectPasser networkPasser;
 
+    // the codec for the states we send, or null to serialize them
+    private WireCodec codec;
+
+    // the last info we sent, so it can be sent again in full
+    private GameInfo lastInfo;
+
     // whether this player is ready to play the game.  In this case, being
     // ready essentially means that the a connection with a remote player
     // has been established
@@ -57,6 +64,11 @@ public class ProxyPlayer implements GamePlayer {
         			action.setPlayer(ProxyPlayer.this);
         			game.sendAction(action);
         		}
+        		else if (obj instanceof byte[] && codec != null) {
+        			// the other side has lost track of the state, so
+        			// send the last one again
+        			resend((byte[])obj);
+        		}
         	}
         };
     }
@@ -101,9 +113,26 @@ public class ProxyPlayer implements GamePlayer {
     	// network
     	state.setGame(null);
     	
-    	// send the state across the network
-    	networkPasser.sendObject(state);
+    	// send the state across the network, encoded if we can
+    	synchronized (this) {
+    		lastInfo = state;
+    		byte[] message = (codec == null) ? null : codec.encode(state);
+    		networkPasser.sendObject(message == null ? state : message);
+    	}
 	}
+
+    /**
+     * Sends the last info again in full, if the codec asks for it
+     * 
+     * @param reply
+     * 		the message the other side sent back
+     */
+    private synchronized void resend(byte[] reply) {
+    	if (codec.onReply(reply) && lastInfo != null) {
+    		byte[] message = codec.encode(lastInfo);
+    		networkPasser.sendObject(message == null ? lastInfo : message);
+    	}
+    }
     
     
     /**
@@ -142,8 +171,8 @@ public class ProxyPlayer implements GamePlayer {
 
 	@Override
 	public void receiveActivity(GameMainActivity activity) {
-		// TODO Auto-generated method stub
-		
+		// the game decides how its states go across the network
+		codec = activity.createWireCodec();
 	}
 }
 
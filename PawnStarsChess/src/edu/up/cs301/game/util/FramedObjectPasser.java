@@ -0,0 +1,221 @@
+package edu.up.cs301.game.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
+/**
+ * Passes objects to and from one game on a GameServer, as frames (see
+ * Frames). The connection is made by the sending thread, which then joins
+ * the game; objects received are read by a thread of their own.
+ *
+ * A game ID of 0 joins whichever game the server has waiting for players,
+ * and the ID of that game is used from the first frame the server sends.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public abstract class FramedObjectPasser implements ObjectPasser {
+
+	// the size of the buffers between the streams and the socket
+	private static final int BUFFER_SIZE = 8192;
+
+	// how long isReady waits for the connection, in milliseconds
+	private static final int CONNECT_WAIT = 1000;
+
+	// the thread that connects and writes the frames
+	private final ExecutorService sender = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Network send-handler");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// counted down once the connection has been made or has failed
+	private final CountDownLatch connected = new CountDownLatch(1);
+
+	// the game on the server
+	private volatile int gameId;
+
+	// the connection, only used by the sending thread
+	private Socket socket;
+	private DataOutputStream out;
+
+	// whether the game has been joined
+	private volatile boolean ready = false;
+
+	/**
+	 * constructor
+	 *
+	 * @param ipAddress
+	 * 		the IP address of the server
+	 * @param port
+	 * 		the port number the server listens on
+	 * @param gameId
+	 * 		the game to join, or 0 for any
+	 */
+	public FramedObjectPasser(final String ipAddress, final int port, int gameId) {
+		this.gameId = gameId;
+		sender.execute(new Runnable() {
+			public void run() {
+				connect(ipAddress, port);
+			}
+		});
+	}
+
+	/**
+	 * callback method, called whenever an object arrives: a deserialized
+	 * object, or a byte[] message from a WireCodec
+	 *
+	 * @param obj
+	 * 		the object
+	 */
+	public abstract void onReceiveObject(Object obj);
+
+	/**
+	 * Connects to the server, joins the game and starts reading (runs in the
+	 * sending thread)
+	 */
+	private void connect(String ipAddress, int port) {
+		final DataInputStream in;
+		try {
+			Log.i("FramedObjectPasser", "client attempt at port "+port);
+			socket = new Socket(ipAddress, port);
+			socket.setTcpNoDelay(true);
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+			Frames.write(out, gameId, Frames.JOIN, new byte[0]);
+			out.flush();
+			ready = true;
+		} catch (IOException e) {
+			Log.d(e.getClass()+"", e.getMessage());
+			return;
+		} finally {
+			connected.countDown();
+		}
+
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				read(in);
+			}
+		});
+		reader.setName("Network receive-handler");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Reads frames until the connection closes, passing on what they hold
+	 */
+	private void read(DataInputStream in) {
+		try {
+			for (;;) {
+				int length = in.readInt();
+				if (length < Frames.HEADER_SIZE || length > Frames.MAX_FRAME) {
+					throw new IOException("bad frame length " + length);
+				}
+				int id = in.readInt();
+				int kind = in.readUnsignedByte();
+				byte[] payload = new byte[length - Frames.HEADER_SIZE];
+				in.readFully(payload);
+
+				// the game the server put us in
+				if (gameId == 0) {
+					gameId = id;
+				}
+				if (kind == Frames.OBJECT) {
+					onReceiveObject(Frames.deserialize(payload));
+				}
+				else if (kind == Frames.BYTES) {
+					onReceiveObject(payload);
+				}
+			}
+		} catch (IOException e) {
+			Log.i("FramedObjectPasser", "connection closed: "+e.getMessage());
+		}
+		ready = false;
+	}
+
+	/**
+	 * send an object to the game on the server. A byte[] is sent as it is;
+	 * anything else is serialized.
+	 *
+	 * @param obj
+	 * 		the object to send
+	 */
+	public void sendObject(final Object obj) {
+		sender.execute(new Runnable() {
+			public void run() {
+				if (out == null) {
+					return;
+				}
+				try {
+					if (obj instanceof byte[]) {
+						Frames.write(out, gameId, Frames.BYTES, (byte[])obj);
+					}
+					else {
+						Frames.write(out, gameId, Frames.OBJECT, Frames.serialize(obj));
+					}
+					out.flush();
+				} catch (IOException e) {
+					Log.e("FramedObjectPasser", "could not write object");
+				}
+			}
+		});
+	}
+
+	/**
+	 * Asks whether the game has been joined, waiting a little while for the
+	 * connection
+	 *
+	 * @return
+	 * 		whether the object is ready
+	 */
+	public boolean isReady() {
+		try {
+			connected.await(CONNECT_WAIT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return ready;
+	}
+
+	/**
+	 * @return
+	 * 		the game on the server, or 0 if it isn't known yet
+	 */
+	public int getGameId() {
+		return gameId;
+	}
+
+	/**
+	 * Closes the connection
+	 */
+	public void close() {
+		sender.execute(new Runnable() {
+			public void run() {
+				try {
+					if (socket != null) {
+						socket.close();
+					}
+				} catch (IOException e) {
+				}
+			}
+		});
+		sender.shutdown();
+	}
+}
@@ -0,0 +1,220 @@
+package edu.up.cs301.game.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.up.cs301.game.actionMsg.GameAction;
+import edu.up.cs301.game.infoMsg.GameInfo;
+
+/**
+ * The frames that a GameServer and its clients send each other. Every
+ * frame is
+ * <PRE>
+ *   int  length of the rest of the frame
+ *   int  game ID
+ *   byte kind
+ *   the payload
+ * </PRE>
+ * where the payload is a serialized object, a message from a WireCodec, or
+ * nothing for a JOIN. Each serialized object has a stream of its own, so
+ * neither side has to remember what was sent before.
+ *
+ * Since anyone can connect to a server, deserialize only reads actions,
+ * infos, the classes their fields are declared as, and a few JDK classes;
+ * a stream naming any other class is refused before it is instantiated.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public final class Frames {
+
+	// the kinds of frame
+	public static final int JOIN = 0;
+	public static final int OBJECT = 1;
+	public static final int BYTES = 2;
+
+	// the JDK classes a game's objects may hold besides those named by
+	// their fields, e.g. the elements of a collection
+	private static final Set<Class<?>> JDK_CLASSES = new HashSet<Class<?>>(
+			Arrays.<Class<?>>asList(String.class, Number.class, Integer.class,
+					Long.class, Short.class, Byte.class, Boolean.class,
+					Character.class, java.util.ArrayList.class,
+					java.util.ArrayDeque.class));
+
+	// the size of the length field, and of the game ID and kind after it
+	public static final int LENGTH_SIZE = 4;
+	public static final int HEADER_SIZE = 5;
+
+	// the longest a frame can be, not counting its length field
+	public static final int MAX_FRAME = 1 << 20;
+
+	/**
+	 * not meant to be instantiated
+	 */
+	private Frames() {
+	}
+
+	/**
+	 * Makes a frame
+	 * 
+	 * @param gameId
+	 * 		the game the frame is for
+	 * @param kind
+	 * 		JOIN, OBJECT or BYTES
+	 * @param payload
+	 * 		the payload
+	 * @return
+	 * 		the frame, ready to be written
+	 */
+	public static ByteBuffer frame(int gameId, int kind, byte[] payload) {
+		ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + payload.length);
+		buffer.putInt(HEADER_SIZE + payload.length);
+		buffer.putInt(gameId);
+		buffer.put((byte)kind);
+		buffer.put(payload);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes a frame to a stream
+	 * 
+	 * @param out
+	 * 		the stream, which is not flushed
+	 * @param gameId
+	 * 		the game the frame is for
+	 * @param kind
+	 * 		JOIN, OBJECT or BYTES
+	 * @param payload
+	 * 		the payload
+	 * @throws IOException
+	 */
+	public static void write(DataOutputStream out, int gameId, int kind, byte[] payload)
+			throws IOException {
+		out.writeInt(HEADER_SIZE + payload.length);
+		out.writeInt(gameId);
+		out.writeByte(kind);
+		out.write(payload);
+	}
+
+	/**
+	 * Serializes an object on its own
+	 * 
+	 * @param obj
+	 * 		the object
+	 * @return
+	 * 		its bytes
+	 * @throws IOException
+	 * 		if it can't be serialized
+	 */
+	public static byte[] serialize(Object obj) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(obj);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads back an object from serialize
+	 * 
+	 * @param bytes
+	 * 		its bytes
+	 * @return
+	 * 		the object
+	 * @throws IOException
+	 * 		if it can't be read
+	 */
+	public static Object deserialize(byte[] bytes) throws IOException {
+		ObjectInputStream in = new GameObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("unknown class " + e.getMessage());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * An object stream that only reads the classes of game actions and infos
+	 */
+	private static class GameObjectInputStream extends ObjectInputStream {
+
+		// the classes named by the fields of the classes read so far
+		private final Set<Class<?>> fieldClasses = new HashSet<Class<?>>();
+
+		public GameObjectInputStream(ByteArrayInputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			// loading a class doesn't initialize it, so this is safe to check
+			Class<?> type = super.resolveClass(desc);
+			if (!isAllowed(type)) {
+				throw new InvalidClassException(desc.getName(), "not a game class");
+			}
+			addFieldClasses(type);
+			return type;
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces)
+				throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("proxy classes are not game classes");
+		}
+
+		/**
+		 * Tells whether objects of a class may be read
+		 */
+		private boolean isAllowed(Class<?> type) {
+			while (type.isArray()) {
+				type = type.getComponentType();
+			}
+			return type.isPrimitive() || GameAction.class.isAssignableFrom(type)
+					|| GameInfo.class.isAssignableFrom(type)
+					|| JDK_CLASSES.contains(type) || fieldClasses.contains(type);
+		}
+
+		/**
+		 * Allows the classes a class's serialized fields are declared as,
+		 * and theirs in turn. Fields declared as an interface or Object
+		 * allow nothing, since any class could be sent for them.
+		 */
+		private void addFieldClasses(Class<?> type) {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+						continue;
+					}
+					Class<?> fieldType = field.getType();
+					while (fieldType.isArray()) {
+						fieldType = fieldType.getComponentType();
+					}
+					if (!fieldType.isPrimitive() && !fieldType.isInterface()
+							&& fieldType != Object.class && fieldClasses.add(fieldType)) {
+						addFieldClasses(fieldType);
+					}
+				}
+			}
+		}
+	}
+}
@@ -1,5 +1,13 @@
 package edu.up.cs301.game.util;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
 /**
  * A GameTimer is an object that sends a GameTimerAction to a Game or a
  * Player at regular intervals.  It can be used, for example, in games
@@ -20,23 +28,32 @@ package edu.up.cs301.game.util;
  * If additional timers are required, they must be explicitly created, and
  * then handled as a TimerAction (in the checkAndHandleAction method) or
  * TimerInfo (in the receiveInfo method).
+ * <P>
+ * All timers share one scheduling thread, so a server with many games does
+ * not need a thread per timer. Ticks are scheduled at a fixed rate from
+ * when the timer was started, so they do not drift as ticks run late. A
+ * target's tick method runs on the shared thread and must return quickly;
+ * games and players only post a message to their own loop.
  * 
  * @author Steven R. Vegdahl
  * @version July 2013
  */
 public class GameTimer {
+	// the thread that runs every timer's ticks
+	private static ScheduledExecutorService scheduler;
+
 	// the game to send actions to
 	private Tickable target;
 
 	// the number of ticks since timer was created (or last reset)
-	private int ticks;
+	private volatile int ticks;
 
 	// the interval, in milliseconds, between timer events
 	private int interval;
 
-	// the thread that is running, which causes the "ticks" to occur.  If
-	// this variable is null, it means that the timer is stopped
-	private Thread thread;
+	// the scheduled ticks.  If this variable is null, it means that the
+	// timer is stopped
+	private ScheduledFuture<?> future;
 
 	/**
 	 * Constructor for objects of class GameTimer
@@ -49,27 +66,30 @@ public class GameTimer {
 	{
 		this.target = target; // initialize game
 		ticks = 0; // start #ticks at zero
-		thread = null; // indicates thread not running  
+		future = null; // indicates timer not running  
 	}
 	
-	public void setInterval(int interval) {
+	/**
+	 * Sets the interval between ticks. If the timer is running, the next
+	 * tick comes one new interval from now.
+	 * 
+	 * @param interval the number of milliseconds between ticks
+	 */
+	public synchronized void setInterval(int interval) {
 		this.interval = Math.max(0, interval);
+		if (future != null) {
+			future.cancel(false);
+			future = schedule();
+		}
 	}
 
 	/**
 	 * Starts the timer.  Has no effect if the timer is already running.
 	 * 
 	 */
-	public void start() {
-		// synchronize to ensure null test and thread-start are "atomic"
-		synchronized(this) {
-			if (thread == null) {
-				// if thread is not null create new timer object/thread
-				// and start it
-				MyTimer timer = new MyTimer();
-				thread = new Thread(timer);
-				thread.start();
-			}
+	public synchronized void start() {
+		if (future == null) {
+			future = schedule();
 		}
 	}
 
@@ -77,10 +97,13 @@ public class GameTimer {
 	 * Stops the timer.
 	 * 
 	 */
-	public void stop() {
-		// set the 'thread' instance-variable to null.  The next time the
-		// thread tests this variable, it will terminate.
-		thread = null;
+	public synchronized void stop() {
+		// cancel the ticks that are still to come; one that is running
+		// finishes
+		if (future != null) {
+			future.cancel(false);
+			future = null;
+		}
 	}
 
 	/**
@@ -104,29 +127,54 @@ public class GameTimer {
 	}
 
 	/**
-	 * MyTimer: A private inner-class that runs the timer-thread.
+	 * Schedules this timer's ticks on the shared thread
+	 * 
+	 * @return the scheduled ticks
+	 */
+	private ScheduledFuture<?> schedule() {
+		// an interval of zero would tick as fast as the thread can go
+		long period = Math.max(1, interval);
+		return getScheduler().scheduleAtFixedRate(new MyTimer(), period,
+				period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gets the thread that runs every timer's ticks, creating it the first
+	 * time
+	 * 
+	 * @return the scheduler
+	 */
+	private static synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Game timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return scheduler;
+	}
+
+	/**
+	 * MyTimer: A private inner-class that performs one tick.
 	 */
 	private class MyTimer implements Runnable {
 
 		/**
-		 * The code that runs in the separate thread.
+		 * The code that runs on the timer thread at each interval.
 		 */
 		public void run() {
-
-			// as long as we've not been marked as "stopped", apply the
-			// timer action to the games at the appropriate time-intervals
-			//
-			while (thread != null)
-				try {
-					Thread.sleep(interval); // wait for appropriate interval
-					ticks++; // increment # ticks
-					target.tick(GameTimer.this); // apply action to target
-				}
-			catch (InterruptedException ix) {
-				// this should never happen, but if it does, loop back
+			try {
+				ticks++; // increment # ticks
+				target.tick(GameTimer.this); // apply action to target
+			}
+			catch (RuntimeException rx) {
+				// an exception would cancel the ticks to come
+				Log.e("GameTimer", "tick failed: "+rx);
 			}
 		}
 	}
 
 }
-
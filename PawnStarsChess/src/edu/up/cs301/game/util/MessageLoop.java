@@ -0,0 +1,29 @@
+package edu.up.cs301.game.util;
+
+/**
+ * Where a game or player handles its messages: one at a time, in the order
+ * they were posted. A loop may have a thread of its own or share threads
+ * with other loops; see MessageLoops.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public interface MessageLoop {
+
+	/**
+	 * Handles a message after the ones posted before it
+	 * 
+	 * @param task
+	 * 		the code that handles the message
+	 */
+	public void post(Runnable task);
+
+	/**
+	 * Stops the loop once the messages already posted have been handled.
+	 * Messages posted afterwards are dropped.
+	 */
+	public void quit();
+}
@@ -0,0 +1,199 @@
+package edu.up.cs301.game.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Makes the message loops that games and computer players run on. By
+ * default each loop has a thread of its own, running an Android Looper.
+ * A program that runs many games at once, such as a GameServer, can
+ * instead share a small pool of threads between all the loops with
+ * useSharedPool; each loop still handles its messages one at a time and
+ * in order.
+ * 
+ * A loop on a shared pool holds one of its threads for as long as it takes
+ * to handle a message, so a player that thinks for a long time in
+ * receiveInfo should be given a pool with room for it, or a thread of its
+ * own.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public final class MessageLoops {
+
+	// the executor new loops run on, or null for a thread each
+	private static Executor defaultExecutor = null;
+
+	/**
+	 * not meant to be instantiated
+	 */
+	private MessageLoops() {
+	}
+
+	/**
+	 * Makes a loop in the default way
+	 * 
+	 * @param name
+	 * 		the name of the loop's thread, if it has one
+	 * @return
+	 * 		the loop
+	 */
+	public static MessageLoop create(String name) {
+		Executor executor;
+		synchronized (MessageLoops.class) {
+			executor = defaultExecutor;
+		}
+		return (executor == null) ? newThread(name) : onExecutor(executor);
+	}
+
+	/**
+	 * Sets what loops made by create run on
+	 * 
+	 * @param executor
+	 * 		the executor loops share, or null to give each loop a thread
+	 */
+	public static synchronized void setDefaultExecutor(Executor executor) {
+		defaultExecutor = executor;
+	}
+
+	/**
+	 * Makes loops made by create share a new pool of daemon threads
+	 * 
+	 * @param threads
+	 * 		the number of threads
+	 * @return
+	 * 		the pool, which can be shut down when nothing uses it
+	 */
+	public static ExecutorService useSharedPool(int threads) {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactory() {
+			private int count = 0;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Message loop " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		setDefaultExecutor(pool);
+		return pool;
+	}
+
+	/**
+	 * Makes a loop with a thread of its own
+	 * 
+	 * @param name
+	 * 		the name of the thread
+	 * @return
+	 * 		the loop
+	 */
+	public static MessageLoop newThread(String name) {
+		return new LooperLoop(name);
+	}
+
+	/**
+	 * Makes a loop that runs on an executor's threads
+	 * 
+	 * @param executor
+	 * 		the executor, which may be shared with other loops
+	 * @return
+	 * 		the loop
+	 */
+	public static MessageLoop onExecutor(Executor executor) {
+		return new ExecutorLoop(executor);
+	}
+
+	/**
+	 * A loop with a thread of its own, running a Looper. Messages posted
+	 * before the thread is ready are kept until it is.
+	 */
+	private static class LooperLoop implements MessageLoop {
+		// the handler for the thread, once it has one
+		private Handler handler;
+
+		// messages posted before there was a handler
+		private List<Runnable> early = new ArrayList<Runnable>();
+
+		// whether quit has been called
+		private boolean quit;
+
+		// constructor: starts the thread
+		public LooperLoop(String name) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					Looper.prepare();
+					synchronized (LooperLoop.this) {
+						handler = new Handler();
+						for (Runnable task : early) {
+							handler.post(task);
+						}
+						early = null;
+					}
+					Looper.loop();
+				}
+			});
+			thread.setName(name);
+			thread.start();
+		}
+
+		public synchronized void post(Runnable task) {
+			if (quit) {
+				return;
+			}
+			if (handler == null) {
+				early.add(task);
+			}
+			else {
+				handler.post(task);
+			}
+		}
+
+		public synchronized void quit() {
+			if (quit) {
+				return;
+			}
+			post(new Runnable() {
+				public void run() {
+					Looper.myLooper().quit();
+				}
+			});
+			quit = true;
+		}
+	}
+
+	/**
+	 * A loop that runs on an executor's threads
+	 */
+	private static class ExecutorLoop implements MessageLoop {
+		// keeps the messages in order
+		private final SerialExecutor serial;
+
+		// whether quit has been called
+		private volatile boolean quit;
+
+		// constructor
+		public ExecutorLoop(Executor executor) {
+			serial = new SerialExecutor(executor);
+		}
+
+		public void post(Runnable task) {
+			if (!quit) {
+				serial.execute(task);
+			}
+		}
+
+		public void quit() {
+			quit = true;
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package edu.up.cs301.game.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -19,25 +22,59 @@ import android.util.Pair;
  * A class that supports two-way passing of objects across the network,
  * using serialization.
  * 
+ * Objects are written by a single sending thread. Everything that has been
+ * sent by the time it runs is written as one batch through a buffered
+ * stream and flushed once. The object stream remembers every object it has
+ * written, so that it can refer back to them; it is reset every
+ * RESET_BYTES bytes so that a long game doesn't keep every state it ever
+ * sent.
+ * 
  * @author Steven R. Vegdahl
  * @version July 2013
  *
  */
-public abstract class NetworkObjectPasser {
+public abstract class NetworkObjectPasser implements ObjectPasser {
+	/**
+	 * constants
+	 */
+	
+	// the size of the buffers between the object streams and the socket
+	private static final int BUFFER_SIZE = 8192;
+	
+	// the number of bytes written before the output stream forgets the
+	// objects it has written
+	public static final int RESET_BYTES = 64 * 1024;
+	
 	/**
 	 * instance variables
 	 */
 	
-	// a queue for collecting objects that "sent" to this object
-	// before the network connection is established
+	// a queue for collecting objects that "sent" to this object, until
+	// the sending thread writes them (or the connection is established)
 	private Queue<Object> objQueue = new LinkedList<Object>();
 	
+	// whether a flush has been posted to the sending thread that will
+	// write the objects in the queue
+	private boolean flushPosted = false;
+	
 	// the handler the objects "sending thread"
 	private Handler sendHandler;
 	
-	// the streams for reading and writing objects from/to the network
+	// the streams for reading and writing objects from/to the network;
+	// the output stream is only used while holding sendLock
 	private ObjectInputStream in = null;
 	private ObjectOutputStream out = null;
+	private final Object sendLock = new Object();
+	
+	// counts the bytes that go to the socket, and the count when the
+	// output stream was last reset
+	private CountingOutputStream counter;
+	private long bytesAtReset;
+	
+	// statistics, written only by the sending thread
+	private volatile long messagesSent;
+	private volatile long flushes;
+	private volatile long connectedAt;
 	
 //	private static int numRunsLocal = 0;
 	
@@ -164,15 +201,17 @@ public abstract class NetworkObjectPasser {
 			}
 			
 			// create the input and output streams; also send already queued objects
-			synchronized (this) {
+			synchronized (sendLock) {
 				
 				try {
 					// create the input and output streams, and flush the output stream
 					InputStream inBasic = socket.getInputStream();
 					OutputStream outBasic = socket.getOutputStream();
-					out = new ObjectOutputStream(outBasic);
-					in = new ObjectInputStream(inBasic);
+					counter = new CountingOutputStream(outBasic);
+					out = new ObjectOutputStream(new BufferedOutputStream(counter, BUFFER_SIZE));
 					out.flush();
+					in = new ObjectInputStream(new BufferedInputStream(inBasic, BUFFER_SIZE));
+					connectedAt = System.nanoTime();
 				}
 				catch (IOException e) {
 					// if exception, return
@@ -181,15 +220,7 @@ public abstract class NetworkObjectPasser {
 				}
 				
 				// send out all queued-up objects
-				while (!objQueue.isEmpty()) {
-					Object obj = objQueue.remove();
-					try {
-						out.writeObject(obj);
-						out.flush();
-					} catch (IOException e) {
-						Log.e("NetworkObjectPasser", "could not write object");
-					}
-				}
+				writeQueued();
 			}
 			
 			// go into our read-object loop, passing the object to our user by
@@ -205,6 +236,7 @@ public abstract class NetworkObjectPasser {
 					break;
 				}
 			}
+			Log.i("NetworkObjectPasser", "connection closed: "+getStats());
 		}
 	}
 	
@@ -216,9 +248,17 @@ public abstract class NetworkObjectPasser {
 	 * 		the object to send
 	 */
 	public void sendObject(Object obj) {
-		// schedule the "send" in the object's "sending" thread
-		Runnable run = new MsgRunnable(obj);
-		sendHandler.post(run);
+		// queue the object; if no flush is waiting to run, schedule one
+		// in the object's "sending" thread, which will write everything
+		// queued by then
+		synchronized (objQueue) {
+			objQueue.add(obj);
+			if (flushPosted) {
+				return;
+			}
+			flushPosted = true;
+		}
+		sendHandler.post(new FlushRunnable());
 	}
 	
 	/**
@@ -227,35 +267,129 @@ public abstract class NetworkObjectPasser {
 	 * @version July 2013
 	 *
 	 */
-	private class MsgRunnable implements Runnable {
-		
-		// the object we're going to send
-		private Object obj;
+	private class FlushRunnable implements Runnable {
 		
-		// constructor
-		public MsgRunnable(Object obj) {
-			this.obj = obj;
-		}
-		
-		// run method, which writes out the object or, if unsuccessful,
-		// queues the object up for sending later
+		// run method, which writes out the queued objects or, if we are
+		// not connected yet, leaves them for when we are
 		public void run() {
-			synchronized(this) {
-				boolean success = false;
-				if (out != null) {
-					try {
-						// write object
-						out.writeObject(obj);
-						success = true;
-					} catch (IOException e) {
-						Log.e("NetworkObjectPasser", "could not write object");
-					}
+			synchronized (objQueue) {
+				flushPosted = false;
+			}
+			synchronized (sendLock) {
+				writeQueued();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the queued objects as one batch and flushes the stream. Must be
+	 * called while holding sendLock.
+	 */
+	private void writeQueued() {
+		if (out == null) {
+			// not connected yet
+			return;
+		}
+		int written = 0;
+		try {
+			for (;;) {
+				Object obj;
+				synchronized (objQueue) {
+					obj = objQueue.poll();
 				}
-				if (!success) {
-					// could not write object, so queue it up
-					objQueue.add(obj);
+				if (obj == null) {
+					break;
 				}
+				out.writeObject(obj);
+				written++;
+				
+				// forget the objects written so far, so they can be collected
+				if (counter.getCount() - bytesAtReset >= RESET_BYTES) {
+					out.reset();
+					bytesAtReset = counter.getCount();
+				}
+			}
+			if (written == 0) {
+				return;
 			}
+			out.flush();
+		} catch (IOException e) {
+			Log.e("NetworkObjectPasser", "could not write object");
+		}
+		messagesSent += written;
+		flushes++;
+	}
+	
+	/**
+	 * @return
+	 * 		the number of bytes sent
+	 */
+	public long getBytesSent() {
+		CountingOutputStream c = counter;
+		return (c == null) ? 0 : c.getCount();
+	}
+	
+	/**
+	 * @return
+	 * 		the number of objects sent
+	 */
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+	
+	/**
+	 * @return
+	 * 		the number of times the output stream was flushed
+	 */
+	public long getFlushes() {
+		return flushes;
+	}
+	
+	/**
+	 * Describes how much has been sent since the connection was made
+	 * 
+	 * @return
+	 * 		the bytes, messages and flushes per second
+	 */
+	public String getStats() {
+		double seconds = (connectedAt == 0) ? 0 : (System.nanoTime() - connectedAt) / 1e9;
+		if (seconds <= 0) {
+			seconds = 1;
+		}
+		return String.format("%d bytes, %d messages, %d flushes "
+				+ "(%.0f bytes/s, %.1f messages/s, %.1f flushes/s)",
+				getBytesSent(), messagesSent, flushes, getBytesSent() / seconds,
+				messagesSent / seconds, flushes / seconds);
+	}
+	
+	/**
+	 * A stream that counts the bytes written through it
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		
+		// the number of bytes written; only read by other threads
+		private volatile long count;
+		
+		// constructor
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+		
+		// the number of bytes written
+		public long getCount() {
+			return count;
 		}
 	}
 	
@@ -0,0 +1,32 @@
+package edu.up.cs301.game.util;
+
+/**
+ * Something that passes objects to the other end of a network connection,
+ * such as a NetworkObjectPasser or a FramedObjectPasser. The objects that
+ * come back are handed to its onReceiveObject method.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public interface ObjectPasser {
+
+	/**
+	 * send an object across the network
+	 * 
+	 * @param obj
+	 * 		the object to send
+	 */
+	public void sendObject(Object obj);
+
+	/**
+	 * Asks whether the connection has been made, waiting a little while
+	 * for it if it hasn't
+	 * 
+	 * @return
+	 * 		whether the object is ready
+	 */
+	public boolean isReady();
+}
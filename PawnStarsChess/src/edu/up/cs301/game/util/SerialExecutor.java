@@ -0,0 +1,93 @@
+package edu.up.cs301.game.util;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import android.util.Log;
+
+/**
+ * Runs tasks one at a time, in the order they were given, on threads
+ * borrowed from another executor. Many of these can share a small thread
+ * pool: each keeps its own tasks in order without holding a thread while
+ * it has nothing to do.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public class SerialExecutor implements Executor {
+
+	// the most tasks run before the thread is given back, so that a busy
+	// executor doesn't keep the others waiting
+	private static final int MAX_BATCH = 64;
+
+	// the executor whose threads run the tasks
+	private final Executor executor;
+
+	// runs the waiting tasks
+	private final Runnable drainer = new Runnable() {
+		public void run() {
+			drain();
+		}
+	};
+
+	// the tasks waiting to run
+	private final Queue<Runnable> tasks = new LinkedList<Runnable>();
+
+	// whether a task is running (or about to)
+	private boolean running;
+
+	/**
+	 * constructor
+	 * 
+	 * @param executor
+	 * 		the executor whose threads run the tasks
+	 */
+	public SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs a task after the ones given before it
+	 * 
+	 * @param task
+	 * 		the task
+	 */
+	public void execute(Runnable task) {
+		synchronized (tasks) {
+			tasks.add(task);
+			if (running) {
+				return;
+			}
+			running = true;
+		}
+		executor.execute(drainer);
+	}
+
+	/**
+	 * Runs tasks until there are none left, or gives the thread back and
+	 * carries on later if there are a lot of them
+	 */
+	private void drain() {
+		for (int i = 0; i < MAX_BATCH; i++) {
+			Runnable task;
+			synchronized (tasks) {
+				task = tasks.poll();
+				if (task == null) {
+					running = false;
+					return;
+				}
+			}
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				// one task failing shouldn't stop the others
+				Log.e("SerialExecutor", "task failed: " + e);
+			}
+		}
+		executor.execute(drainer);
+	}
+}
@@ -0,0 +1,74 @@
+package edu.up.cs301.game.util;
+
+import edu.up.cs301.game.infoMsg.GameInfo;
+
+/**
+ * Turns the game states sent to a network player into small byte messages,
+ * so that a whole state does not have to be serialized for every move. A
+ * game that has a codec usually sends only what changed since the last
+ * state, and the whole state again when the other side joins or loses
+ * track.
+ *
+ * Each ProxyPlayer and ProxyGame has its own codec, made by
+ * GameMainActivity.createWireCodec. The ProxyPlayer uses encode and
+ * onReply; the ProxyGame uses decode, received and resyncRequest.
+ *
+ * @author Allison Liedtke
+ * @author Anthony Donaldson
+ * @author Derek Schumacher
+ * @author Scott Rowland
+ * @version May 2015
+ */
+public interface WireCodec {
+
+	/**
+	 * Encodes an info for the other side.
+	 *
+	 * @param info
+	 * 		the info being sent
+	 * @return
+	 * 		the message to send instead of the info, or null to send the info
+	 * 		itself
+	 */
+	public byte[] encode(GameInfo info);
+
+	/**
+	 * Handles a message the other side sent back.
+	 *
+	 * @param message
+	 * 		the message, from resyncRequest
+	 * @return
+	 * 		true if the last info should be sent again, in full
+	 */
+	public boolean onReply(byte[] message);
+
+	/**
+	 * Decodes a message from encode.
+	 *
+	 * @param message
+	 * 		the message
+	 * @return
+	 * 		the info, or null if it could not be decoded because this side no
+	 * 		longer has the state it builds on
+	 */
+	public GameInfo decode(byte[] message);
+
+	/**
+	 * Tells the codec about an info that was sent itself rather than
+	 * encoded, since later messages may build on it.
+	 *
+	 * @param info
+	 * 		the info
+	 */
+	public void received(GameInfo info);
+
+	/**
+	 * Makes the message that asks the other side for the whole state, after
+	 * decode failed.
+	 *
+	 * @return
+	 * 		the message, or null if one has already been sent and not yet
+	 * 		answered
+	 */
+	public byte[] resyncRequest();
+}